@@ -0,0 +1,64 @@
+package com.cedarsoft.osgi.validator.benchmarks;
+
+import com.cedarsoft.osgi.validator.ManifestHeaderParser;
+import com.cedarsoft.osgi.validator.ManifestValidator;
+import com.google.common.collect.ImmutableSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.Manifest;
+
+/**
+ * Measures the validation of the imported/exported packages (validateImportedPackages) on large bnd style manifests.
+ *
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class ManifestBenchmark {
+  @Param( {"100", "1000", "10000"} )
+  public int clauses;
+
+  private Manifest manifest;
+  private String importPackage;
+  private ManifestValidator validator;
+  private NullLog log;
+
+  @Setup
+  public void setUp() {
+    manifest = SyntheticData.createManifest( clauses );
+    importPackage = manifest.getMainAttributes().getValue( "Import-Package" );
+    validator = new ManifestValidator( ImmutableSet.of( "internal", "impl" ) );
+    log = new NullLog();
+  }
+
+  @Benchmark
+  public boolean validateManifest() {
+    return validator.validate( manifest, log );
+  }
+
+  @Benchmark
+  public List<ManifestHeaderParser.Clause> parseHeader() {
+    return ManifestHeaderParser.parse( importPackage );
+  }
+
+  @Benchmark
+  public List<String> parsePackageNames() {
+    return ManifestHeaderParser.parsePaths( importPackage );
+  }
+}
@@ -0,0 +1,81 @@
+package com.cedarsoft.osgi.validator.benchmarks;
+
+import com.cedarsoft.osgi.validator.ManifestHeaderParser;
+import com.cedarsoft.osgi.validator.PackagePatterns;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the compiled package patterns with the nested loop (each package name against each pattern)
+ * that has been used before.
+ * <p/>
+ * The nested loop uses {@link String#contains(CharSequence)} - therefore it only supports plain patterns.
+ *
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class PackagePatternsBenchmark {
+  @Param( {"1", "10", "100", "500"} )
+  public int patternCount;
+
+  private List<String> packageNames;
+  private String[] plainPatterns;
+  private PackagePatterns compiled;
+
+  @Setup
+  public void setUp() {
+    String importPackage = SyntheticData.createManifest( 1000 ).getMainAttributes().getValue( "Import-Package" );
+    packageNames = ManifestHeaderParser.parsePaths( importPackage );
+
+    List<String> patterns = new ArrayList<String>();
+    patterns.add( "internal" );
+    for ( int i = 1; i < patternCount; i++ ) {
+      patterns.add( "prohibited" + i );
+    }
+    plainPatterns = patterns.toArray( new String[patterns.size()] );
+    compiled = PackagePatterns.compile( patterns );
+  }
+
+  @Benchmark
+  public int compiledPatterns() {
+    int count = 0;
+    for ( String packageName : packageNames ) {
+      if ( compiled.matches( packageName ) ) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  @Benchmark
+  public int nestedLoop() {
+    int count = 0;
+    for ( String packageName : packageNames ) {
+      for ( String pattern : plainPatterns ) {
+        if ( packageName.contains( pattern ) ) {
+          count++;
+          break;
+        }
+      }
+    }
+    return count;
+  }
+}
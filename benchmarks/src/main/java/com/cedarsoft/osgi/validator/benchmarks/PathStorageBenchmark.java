@@ -0,0 +1,145 @@
+package com.cedarsoft.osgi.validator.benchmarks;
+
+import com.cedarsoft.osgi.validator.PathTrie;
+import com.cedarsoft.osgi.validator.SourceRootValidator;
+import com.cedarsoft.osgi.validator.ValidationFailedException;
+import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the storage of the problematic files of a huge (generated) source tree:
+ * a sorted map with the complete relative paths as keys and the {@link PathTrie}.
+ * <p/>
+ * The JMH benchmarks measure the time to fill the structures (run with <code>-prof gc</code> for the allocation rate).
+ * The retained heap is measured by {@link #main(String[])}:
+ * <pre>
+ *   PathStorageBenchmark [files]
+ * </pre>
+ *
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class PathStorageBenchmark {
+  private static final String REASON = "Expected <cedarsoft> but was <other>";
+
+  /**
+   * Keeps the measured structure reachable until the heap has been measured
+   */
+  @Nullable
+  private static Object retained;
+
+  @Param( {"100000", "500000"} )
+  public int files;
+
+  @Benchmark
+  public Object sortedMap() {
+    return fillMap( files );
+  }
+
+  @Benchmark
+  public Object trie() {
+    return fillTrie( files );
+  }
+
+  /**
+   * The storage that has been used before: the complete path as key and one exception for each file
+   */
+  @Nonnull
+  static Map<String, ValidationFailedException> fillExceptionMap( int files ) {
+    Map<String, ValidationFailedException> map = new ConcurrentSkipListMap<String, ValidationFailedException>();
+    for ( int i = 0; i < files; i++ ) {
+      String path = SyntheticData.filePath( i );
+      map.put( path, new ValidationFailedException( path, Lists.newArrayList( Splitter.on( File.separatorChar ).split( path ) ), 3, REASON ) );
+    }
+    return map;
+  }
+
+  @Nonnull
+  static Map<String, SourceRootValidator.Violation> fillMap( int files ) {
+    Map<String, SourceRootValidator.Violation> map = new ConcurrentSkipListMap<String, SourceRootValidator.Violation>();
+    SourceRootValidator.Violation violation = new SourceRootValidator.Violation( 3, REASON );
+    for ( int i = 0; i < files; i++ ) {
+      map.put( SyntheticData.filePath( i ), violation );
+    }
+    return map;
+  }
+
+  @Nonnull
+  static PathTrie<SourceRootValidator.Violation> fillTrie( int files ) {
+    PathTrie<SourceRootValidator.Violation> trie = new PathTrie<SourceRootValidator.Violation>( File.separatorChar );
+    SourceRootValidator.Violation violation = new SourceRootValidator.Violation( 3, REASON );
+    for ( int i = 0; i < files; i++ ) {
+      trie.put( SyntheticData.filePath( i ), violation );
+    }
+    return trie;
+  }
+
+  public static void main( String[] args ) {
+    int files = args.length > 0 ? Integer.parseInt( args[0] ) : 500000;
+
+    System.out.println( "Retained heap for " + files + " files:" );
+    System.out.println( "  map with exceptions: " + measure( new Fill() {
+      @Override
+      public Object fill( int files ) {
+        return fillExceptionMap( files );
+      }
+    }, files ) / 1024 + " KiB" );
+    System.out.println( "  map with full paths: " + measure( new Fill() {
+      @Override
+      public Object fill( int files ) {
+        return fillMap( files );
+      }
+    }, files ) / 1024 + " KiB" );
+    System.out.println( "  trie:                " + measure( new Fill() {
+      @Override
+      public Object fill( int files ) {
+        return fillTrie( files );
+      }
+    }, files ) / 1024 + " KiB" );
+  }
+
+  private static long measure( @Nonnull Fill fill, int files ) {
+    long before = usedHeap();
+    retained = fill.fill( files );
+    try {
+      return usedHeap() - before;
+    } finally {
+      retained = null;
+    }
+  }
+
+  private static long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for ( int i = 0; i < 5; i++ ) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  private interface Fill {
+    @Nonnull
+    Object fill( int files );
+  }
+}
@@ -0,0 +1,120 @@
+package com.cedarsoft.osgi.validator.benchmarks;
+
+import com.cedarsoft.osgi.validator.SourceFileSelector;
+import com.cedarsoft.osgi.validator.SourceRootValidator;
+import com.cedarsoft.osgi.validator.SourceTreeScanner;
+import com.cedarsoft.osgi.validator.ValidationCache;
+import com.cedarsoft.osgi.validator.ValidationFailedException;
+import com.cedarsoft.osgi.validator.ValidationResult;
+import com.cedarsoft.osgi.validator.Validator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.codehaus.plexus.util.DirectoryScanner;
+import org.codehaus.plexus.util.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the validation of a source root (this replaced findAllJavaFiles) on generated trees of increasing size.
+ * <ul>
+ *   <li>plexusScan: the baseline - the plexus DirectoryScanner (used before) collects the java files.
+ *   Like the other benchmarks each package directory is validated only once - only the scanners are compared</li>
+ *   <li>fullScan: without cache - every directory is listed and validated</li>
+ *   <li>cachedScan: all directories are taken from the cache of the previous run</li>
+ * </ul>
+ * The trees are created by {@link SyntheticData} within the temp directory and are reused across runs.
+ *
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class SourceTreeBenchmark {
+  @Param( {"1000", "10000", "100000", "1000000"} )
+  public int files;
+
+  @Param( {"1", "4"} )
+  public int threads;
+
+  private File sourceRoot;
+  private Validator validator;
+  private SourceFileSelector selector;
+  private ExecutorService executor;
+  private ValidationCache warmCache;
+
+  @Setup( Level.Trial )
+  public void setUp() throws IOException, InterruptedException {
+    sourceRoot = new File( System.getProperty( "java.io.tmpdir" ), "osgi-validator-jmh-" + files );
+    if ( !new File( sourceRoot, "com" ).isDirectory() ) {
+      FileUtils.deleteDirectory( sourceRoot );
+      SyntheticData.createTree( sourceRoot, files );
+    }
+
+    validator = new Validator( SyntheticData.PROJECT_ID, ImmutableSet.<String>of() );
+    selector = new SourceFileSelector( ImmutableList.of( "**/Skipped.java" ) );
+    executor = threads > 1 ? Executors.newFixedThreadPool( threads, new ThreadFactoryBuilder().setDaemon( true ).build() ) : null;
+
+    //The directories have been created long enough before the measurement - otherwise they would not be cached
+    warmCache = new ValidationCache();
+    new SourceRootValidator( validator, selector, new ValidationCache(), warmCache, new NullLog(), new SourceTreeScanner( executor ) ).validate( sourceRoot );
+  }
+
+  @TearDown( Level.Trial )
+  public void tearDown() {
+    if ( executor != null ) {
+      executor.shutdownNow();
+    }
+  }
+
+  @Benchmark
+  public Map<String, ValidationResult> plexusScan() {
+    DirectoryScanner scanner = new DirectoryScanner();
+    scanner.setBasedir( sourceRoot );
+    scanner.setIncludes( new String[]{"**/*.java"} );
+    scanner.setExcludes( new String[]{"**/Skipped.java"} );
+    scanner.scan();
+
+    Map<String, ValidationResult> verdicts = new HashMap<String, ValidationResult>();
+    for ( String javaFile : scanner.getIncludedFiles() ) {
+      int lastSeparator = javaFile.lastIndexOf( File.separatorChar );
+      String directory = lastSeparator < 0 ? "" : javaFile.substring( 0, lastSeparator );
+      if ( !verdicts.containsKey( directory ) ) {
+        verdicts.put( directory, validator.validate( javaFile ) );
+      }
+    }
+    return verdicts;
+  }
+
+  @Benchmark
+  public Map<String, ValidationFailedException> fullScan() throws InterruptedException {
+    return new SourceRootValidator( validator, selector, new ValidationCache(), new ValidationCache(), new NullLog(), new SourceTreeScanner( executor ) ).validate( sourceRoot );
+  }
+
+  @Benchmark
+  public Map<String, ValidationFailedException> cachedScan() throws InterruptedException {
+    return new SourceRootValidator( validator, selector, warmCache, new ValidationCache(), new NullLog(), new SourceTreeScanner( executor ) ).validate( sourceRoot );
+  }
+}
@@ -0,0 +1,160 @@
+package com.cedarsoft.osgi.validator.benchmarks;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.jar.Attributes;
+import java.util.jar.Manifest;
+
+/**
+ * Generates the synthetic source trees and manifests the benchmarks are run against.
+ * <p/>
+ * The data only depends on the parameters - so the results are reproducible without access to real projects.
+ * <p/>
+ * Can be started to write the data to disk:
+ * <pre>
+ *   SyntheticData &lt;target dir&gt; &lt;files&gt; &lt;clauses&gt;
+ * </pre>
+ *
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+public class SyntheticData {
+  /**
+   * The project id the generated trees are valid for
+   */
+  public static final String PROJECT_ID = "com.cedarsoft.benchmark";
+
+  public static final int FILES_PER_DIRECTORY = 50;
+  public static final int DIRECTORIES_PER_DIRECTORY = 10;
+  public static final int USES_PER_CLAUSE = 8;
+
+  private SyntheticData() {
+  }
+
+  public static void main( String[] args ) throws IOException {
+    if ( args.length != 3 ) {
+      System.err.println( "Usage: SyntheticData <target dir> <files> <clauses>" );
+      return;
+    }
+
+    File target = new File( args[0] );
+    int files = Integer.parseInt( args[1] );
+    int clauses = Integer.parseInt( args[2] );
+
+    createTree( new File( target, "src" ), files );
+    FileOutputStream out = new FileOutputStream( new File( target, "MANIFEST.MF" ) );
+    try {
+      createManifest( clauses ).write( out );
+    } finally {
+      out.close();
+    }
+
+    System.out.println( "Created " + files + " files and a manifest with " + clauses + " clauses in " + target.getAbsolutePath() );
+  }
+
+  /**
+   * Creates a source tree with the given number of java files below com/cedarsoft/benchmark.
+   * Each directory contains {@link #FILES_PER_DIRECTORY} files. The directories are distributed over several levels.
+   *
+   * @param root  the source root
+   * @param files the number of files
+   * @throws IOException if the files could not be created
+   */
+  public static void createTree( @Nonnull File root, int files ) throws IOException {
+    File base = new File( root, "com" + File.separator + "cedarsoft" + File.separator + "benchmark" );
+    int directories = ( files + FILES_PER_DIRECTORY - 1 ) / FILES_PER_DIRECTORY;
+
+    int created = 0;
+    for ( int directory = 0; directory < directories; directory++ ) {
+      String relativeDirectory = directoryPath( directory );
+      File dir = new File( base, relativeDirectory );
+      if ( !dir.isDirectory() && !dir.mkdirs() ) {
+        throw new IOException( "Could not create " + dir.getAbsolutePath() );
+      }
+
+      String packageName = "com.cedarsoft.benchmark." + relativeDirectory.replace( File.separatorChar, '.' );
+      for ( int i = 0; i < FILES_PER_DIRECTORY && created < files; i++ ) {
+        String className = "Class" + i;
+        Files.write( "package " + packageName + ";\n\npublic class " + className + " {\n}\n", new File( dir, className + ".java" ), Charsets.UTF_8 );
+        created++;
+      }
+    }
+  }
+
+  /**
+   * Returns the relative paths of the files {@link #createTree(File, int)} creates - without touching the file system
+   *
+   * @param index the index of the file
+   * @return the relative path (using the platform separator)
+   */
+  @Nonnull
+  public static String filePath( int index ) {
+    char separator = File.separatorChar;
+    return "com" + separator + "cedarsoft" + separator + "benchmark" + separator + directoryPath( index / FILES_PER_DIRECTORY ) + separator + "Class" + index % FILES_PER_DIRECTORY + ".java";
+  }
+
+  /**
+   * Distributes the directories over several levels
+   */
+  @Nonnull
+  private static String directoryPath( int index ) {
+    StringBuilder path = new StringBuilder();
+    int remaining = index;
+    do {
+      if ( path.length() > 0 ) {
+        path.insert( 0, File.separatorChar );
+      }
+      path.insert( 0, "p" + remaining % DIRECTORIES_PER_DIRECTORY );
+      remaining /= DIRECTORIES_PER_DIRECTORY;
+    } while ( remaining > 0 );
+    return path.toString();
+  }
+
+  /**
+   * Creates a manifest like bnd generates it: Each clause has a uses directive and a version range
+   *
+   * @param clauses the number of clauses for Export-Package and Import-Package
+   * @return the manifest
+   */
+  @Nonnull
+  public static Manifest createManifest( int clauses ) {
+    Manifest manifest = new Manifest();
+    Attributes attributes = manifest.getMainAttributes();
+    attributes.put( Attributes.Name.MANIFEST_VERSION, "1.0" );
+    attributes.putValue( "Bundle-SymbolicName", PROJECT_ID );
+    attributes.putValue( "Export-Package", createHeader( "com.cedarsoft.benchmark.p", clauses ) );
+    attributes.putValue( "Import-Package", createHeader( "org.example.imported.p", clauses ) );
+    return manifest;
+  }
+
+  /**
+   * Creates a package header
+   *
+   * @param packagePrefix the prefix of the package names
+   * @param clauses       the number of clauses
+   * @return the header
+   */
+  @Nonnull
+  public static String createHeader( @Nonnull String packagePrefix, int clauses ) {
+    StringBuilder header = new StringBuilder();
+    for ( int i = 0; i < clauses; i++ ) {
+      if ( i > 0 ) {
+        header.append( ',' );
+      }
+      header.append( packagePrefix ).append( i );
+      header.append( ";uses:=\"" );
+      for ( int j = 0; j < USES_PER_CLAUSE; j++ ) {
+        if ( j > 0 ) {
+          header.append( ',' );
+        }
+        header.append( packagePrefix ).append( ( i + j + 1 ) % clauses );
+      }
+      header.append( "\";version=\"[" ).append( i % 10 ).append( ".0," ).append( i % 10 + 1 ).append( ".0)\"" );
+    }
+    return header.toString();
+  }
+}
@@ -0,0 +1,125 @@
+package com.cedarsoft.osgi.validator.benchmarks;
+
+import com.cedarsoft.osgi.validator.ValidationFailedException;
+import com.cedarsoft.osgi.validator.ValidationResult;
+import com.cedarsoft.osgi.validator.Validator;
+import com.google.common.collect.ImmutableSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Validator#isValid(String)}.
+ * <ul>
+ *   <li>realistic: a valid path of a typical project</li>
+ *   <li>invalid: a path that fails at the last package part (the exception is created)</li>
+ *   <li>invalidResult: the same path using the exception free API (no message is built)</li>
+ *   <li>deep: a deep path below the project id</li>
+ *   <li>skipChain: a project id that consists of many parts to skip (and duplicates). The path matches only a few of them.</li>
+ * </ul>
+ *
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class ValidatorBenchmark {
+  private static final Set<String> PARTS_TO_SKIP = ImmutableSet.of( "commons", "maven", "plugin" );
+
+  /**
+   * The number of skippable parts within the project id for {@link #skipChain()}
+   */
+  @Param( {"4", "16", "64"} )
+  public int skipChainLength;
+
+  private Validator validator;
+  private Validator skipChainValidator;
+
+  private String realisticPath;
+  private String invalidPath;
+  private String deepPath;
+  private String skipChainPath;
+
+  @Setup
+  public void setUp() {
+    validator = new Validator( "com.cedarsoft.commons.osgi-validator-maven-plugin", PARTS_TO_SKIP );
+    realisticPath = path( "com", "cedarsoft", "osgi", "validator", "SourceRootValidator.java" );
+    invalidPath = path( "com", "cedarsoft", "osgi", "other", "SourceRootValidator.java" );
+
+    StringBuilder deep = new StringBuilder( path( "com", "cedarsoft", "osgi", "validator" ) );
+    for ( int i = 0; i < 30; i++ ) {
+      deep.append( File.separatorChar ).append( "level" ).append( i );
+    }
+    deepPath = deep.append( File.separatorChar ).append( "Deep.java" ).toString();
+
+    StringBuilder projectId = new StringBuilder( "com.cedarsoft" );
+    for ( int i = 0; i < skipChainLength; i++ ) {
+      //Alternating parts to skip and duplicates
+      projectId.append( i % 2 == 0 ? ".commons" : ".maven.maven" );
+    }
+    projectId.append( ".validator" );
+    skipChainValidator = new Validator( projectId.toString(), PARTS_TO_SKIP );
+    skipChainPath = path( "com", "cedarsoft", "commons", "maven", "validator", "Skipped.java" );
+  }
+
+  @Benchmark
+  public boolean realistic() throws ValidationFailedException {
+    validator.isValid( realisticPath );
+    return true;
+  }
+
+  @Benchmark
+  public Object invalid() {
+    try {
+      validator.isValid( invalidPath );
+      return null;
+    } catch ( ValidationFailedException e ) {
+      return e;
+    }
+  }
+
+  @Benchmark
+  public ValidationResult invalidResult() {
+    return validator.validate( invalidPath );
+  }
+
+  @Benchmark
+  public boolean deep() throws ValidationFailedException {
+    validator.isValid( deepPath );
+    return true;
+  }
+
+  @Benchmark
+  public boolean skipChain() throws ValidationFailedException {
+    skipChainValidator.isValid( skipChainPath );
+    return true;
+  }
+
+  @Nonnull
+  private static String path( @Nonnull String... parts ) {
+    StringBuilder path = new StringBuilder();
+    for ( String part : parts ) {
+      if ( path.length() > 0 ) {
+        path.append( File.separatorChar );
+      }
+      path.append( part );
+    }
+    return path.toString();
+  }
+}
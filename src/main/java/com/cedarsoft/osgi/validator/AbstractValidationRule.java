@@ -0,0 +1,37 @@
+package com.cedarsoft.osgi.validator;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.util.List;
+import java.util.jar.Manifest;
+
+/**
+ * Base class for rules that only implement some of the callbacks.
+ * The rule is named after the class and is not thread safe.
+ *
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+public abstract class AbstractValidationRule implements ValidationRule {
+  @Nonnull
+  @Override
+  public String getName() {
+    return getClass().getSimpleName();
+  }
+
+  @Override
+  public boolean isThreadSafe() {
+    return false;
+  }
+
+  @Override
+  public void validateDirectory( @Nonnull RuleContext context, @Nonnull File directory, @Nonnull String relativeDirectory, @Nonnull List<String> fileNames ) {
+  }
+
+  @Override
+  public void validateFile( @Nonnull RuleContext context, @Nonnull File file, @Nonnull String relativePath ) {
+  }
+
+  @Override
+  public void validateManifest( @Nonnull RuleContext context, @Nonnull Manifest manifest ) {
+  }
+}
@@ -0,0 +1,775 @@
+package com.cedarsoft.osgi.validator;
+
+import com.google.common.collect.ImmutableSet;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.concurrent.ExecutorService;
+import java.util.jar.Manifest;
+
+/**
+ * Contains the configuration and the reporting that is shared by the validation goals.
+ *
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+public abstract class AbstractValidatorMojo extends SourceFolderAwareMojo {
+  /**
+   * Whether the build shall fail if a validation is detected
+   */
+  @Parameter( defaultValue = "${fail}", property = "osgi-validation.fail" )
+  protected boolean fail = true;
+
+  /**
+   * The source directories containing the test sources to be compiled.
+   */
+  @Parameter( defaultValue = "${skipped.files}", property = "skipped.files" )
+  protected List<String> skippedFiles = new ArrayList<String>();
+
+  /**
+   * The patterns of the prohibited packages (see {@link PackagePatterns}).
+   * A pattern without wildcards matches whole package parts (<code>internal</code>),
+   * <code>*</code> matches one part, <code>**</code> any number of parts (<code>com.acme.impl.**</code>).
+   * Exceptions start with <code>!</code>.
+   */
+  @Parameter
+  protected Set<String> prohibitedPackages = ImmutableSet.of( "internal" );
+
+  /**
+   * The patterns of the project id parts that may be skipped within the package names (see {@link PackagePatterns})
+   */
+  @Parameter
+  protected Set<String> packagePartsToSkip = ImmutableSet.of( "commons", "maven", "plugin" );
+
+  /**
+   * Whether all files shall be validated again.
+   * Otherwise only the package directories that have been changed since the last run are validated.
+   */
+  @Parameter( defaultValue = "false", property = "osgi-validation.force" )
+  protected boolean forceFullValidation;
+
+  /**
+   * The number of threads that read the files (source roots, class files, JARs).
+   * Either a number (<code>4</code>) or a factor of the available processors (<code>1C</code>, <code>1.5C</code>).
+   * If set to 1, the files are read within the build thread.
+   */
+  @Parameter( defaultValue = "1", property = "osgi-validation.threads" )
+  protected String threads = "1";
+
+  /**
+   * Whether the files are read within virtual threads (requires Java 21).
+   * Older VMs fall back to a pool of platform threads (see {@link #threads}).
+   */
+  @Parameter( defaultValue = "false", property = "osgi-validation.virtualThreads" )
+  protected boolean virtualThreads;
+
+  /**
+   * Whether the package declarations of the java files are compared with the directories they are placed in.
+   * Only the first bytes of each file are read.
+   */
+  @Parameter( defaultValue = "false", property = "osgi-validation.packageDeclarations" )
+  protected boolean checkPackageDeclarations;
+
+  /**
+   * Whether the class files are scanned for the referenced packages.
+   * Imported packages that are not referenced are reported as warning; references to prohibited packages fail the build.
+   */
+  @Parameter( defaultValue = "false", property = "osgi-validation.bytecode" )
+  protected boolean checkBytecode;
+
+  /**
+   * Whether the timing and throughput of the validation is reported.
+   * A summary is written to the log, the details to target/osgi-validator/metrics.json
+   */
+  @Parameter( defaultValue = "true", property = "osgi-validation.metrics" )
+  protected boolean collectMetrics = true;
+
+  /**
+   * The number of problematic files that are listed within the build output.
+   * All problematic files are written to the reports within target/osgi-validator. A negative value lists all files.
+   */
+  @Parameter( defaultValue = "100", property = "osgi-validation.maxListed" )
+  protected int maxListedViolations = ViolationReport.DEFAULT_MAX_LISTED;
+
+  /**
+   * Whether the validation is stopped at the first problematic file
+   */
+  @Parameter( defaultValue = "false", property = "osgi-validation.failFast" )
+  protected boolean failFast;
+
+  /**
+   * The validation is stopped as soon as this number of problematic files has been found (0 for no limit).
+   * The report is marked as truncated in that case.
+   */
+  @Parameter( defaultValue = "0", property = "osgi-validation.maxViolations" )
+  protected int maxViolations;
+
+  /**
+   * Whether packages that are contained within several modules of the reactor (split packages) are reported.
+   * The packages of the sources and the Export-Package header of each module are stored within
+   * target/osgi-validator/package-index.bin below the directory the build has been started in.
+   * Modules that are not part of the current reactor are removed from the index.
+   */
+  @Parameter( defaultValue = "false", property = "osgi-validation.splitPackages" )
+  protected boolean detectSplitPackages;
+
+  /**
+   * The directory the build has been started in. The package index is placed within its target directory.
+   */
+  @Parameter( defaultValue = "${session.executionRootDirectory}", readonly = true )
+  protected String executionRootDirectory;
+
+  @Parameter( defaultValue = "${reactorProjects}", readonly = true )
+  protected List<MavenProject> reactorProjects;
+
+  /**
+   * The class names of additional rules (see {@link ValidationRule}). The classes must be added to the dependencies of the plugin.
+   * Rules that are registered as service (META-INF/services/com.cedarsoft.osgi.validator.ValidationRule) are used automatically.
+   */
+  @Parameter
+  protected List<String> rules;
+
+  @Nullable
+  private List<ValidationRule> loadedRules;
+
+  /**
+   * The compiled patterns (created once for each execution)
+   */
+  @Nullable
+  private PackagePatterns compiledProhibitedPackages;
+  @Nullable
+  private PackagePatterns compiledPackagePartsToSkip;
+
+  /**
+   * The metrics of the current execution (null if no metrics are collected)
+   */
+  @Nullable
+  protected ValidationMetrics metrics;
+
+  /**
+   * Creates the executor the source trees are distributed to (see {@link ValidatorExecutors})
+   *
+   * @return the executor or null if the source roots are walked within the build thread
+   *
+   * @throws MojoExecutionException if the thread count is invalid
+   */
+  @Nullable
+  protected ExecutorService createExecutor() throws MojoExecutionException {
+    int threadCount = getThreadCount();
+    if ( threadCount <= 1 ) {
+      return null;
+    }
+    if ( virtualThreads && !ValidatorExecutors.isVirtualThreadsSupported() ) {
+      getLog().info( "Virtual threads are not supported by this VM. Using " + threadCount + " platform threads" );
+    }
+    return ValidatorExecutors.create( threadCount, virtualThreads );
+  }
+
+  /**
+   * Returns the configured number of threads
+   *
+   * @return the number of threads
+   *
+   * @throws MojoExecutionException if the thread count is invalid
+   */
+  protected int getThreadCount() throws MojoExecutionException {
+    if ( threads == null ) {
+      return 1;
+    }
+    try {
+      return ValidatorExecutors.parseThreadCount( threads, Runtime.getRuntime().availableProcessors() );
+    } catch ( IllegalArgumentException e ) {
+      throw new MojoExecutionException( e.getMessage(), e );
+    }
+  }
+
+  /**
+   * Writes the summary of the metrics to the log and the details to the build directory
+   */
+  protected void reportMetrics() {
+    if ( metrics == null ) {
+      return;
+    }
+
+    metrics.logSummary( getLog() );
+
+    if ( buildDirectory == null ) {
+      return;
+    }
+    File metricsFile = new File( new File( buildDirectory, "osgi-validator" ), "metrics.json" );
+    try {
+      metrics.write( metricsFile );
+    } catch ( IOException e ) {
+      getLog().warn( "Could not write metrics <" + metricsFile.getAbsolutePath() + ">: " + e.getMessage() );
+    }
+  }
+
+  @Nonnull
+  protected static String getProjectId( @Nonnull MavenProject project ) {
+    return project.getGroupId() + "." + project.getArtifactId();
+  }
+
+  /**
+   * Creates the validator for the given project id
+   *
+   * @param projectId the project id
+   * @return the validator that skips the {@link #packagePartsToSkip}
+   *
+   * @throws MojoExecutionException if the patterns are invalid
+   */
+  @Nonnull
+  protected Validator createValidator( @Nonnull String projectId ) throws MojoExecutionException {
+    if ( compiledPackagePartsToSkip == null ) {
+      compiledPackagePartsToSkip = compilePatterns( packagePartsToSkip, "packagePartsToSkip" );
+    }
+    return new Validator( projectId, compiledPackagePartsToSkip );
+  }
+
+  /**
+   * Returns the compiled {@link #prohibitedPackages}
+   *
+   * @return the compiled patterns
+   *
+   * @throws MojoExecutionException if the patterns are invalid
+   */
+  @Nonnull
+  protected PackagePatterns getProhibitedPackagePatterns() throws MojoExecutionException {
+    if ( compiledProhibitedPackages == null ) {
+      compiledProhibitedPackages = compilePatterns( prohibitedPackages, "prohibitedPackages" );
+    }
+    return compiledProhibitedPackages;
+  }
+
+  @Nonnull
+  private static PackagePatterns compilePatterns( @Nonnull Set<String> patterns, @Nonnull String parameterName ) throws MojoExecutionException {
+    try {
+      return PackagePatterns.compile( patterns );
+    } catch ( IllegalArgumentException e ) {
+      throw new MojoExecutionException( "Invalid " + parameterName + ": " + e.getMessage(), e );
+    }
+  }
+
+  @Nonnull
+  protected ValidationCache loadCache( @Nullable File cacheFile ) {
+    if ( cacheFile == null || forceFullValidation ) {
+      return new ValidationCache();
+    }
+
+    try {
+      ValidationCache cache = ValidationCache.load( cacheFile );
+      getLog().debug( "Loaded " + cache.size() + " cached directories from " + cacheFile.getAbsolutePath() );
+      return cache;
+    } catch ( IOException e ) {
+      getLog().warn( "Could not read validation cache <" + cacheFile.getAbsolutePath() + ">: " + e.getMessage() );
+      return new ValidationCache();
+    } catch ( RuntimeException e ) {
+      getLog().warn( "Could not read validation cache <" + cacheFile.getAbsolutePath() + ">: " + e );
+      return new ValidationCache();
+    }
+  }
+
+  protected void storeCache( @Nonnull ValidationCache cache, @Nullable File cacheFile ) {
+    if ( cacheFile == null ) {
+      return;
+    }
+
+    try {
+      cache.store( cacheFile );
+    } catch ( IOException e ) {
+      getLog().warn( "Could not write validation cache <" + cacheFile.getAbsolutePath() + ">: " + e.getMessage() );
+    }
+  }
+
+  /**
+   * Returns the file the package index of the reactor is stored in
+   *
+   * @return the index file or null if there is neither an execution root nor a build directory
+   */
+  @Nullable
+  protected File getPackageIndexFile() {
+    File targetDir;
+    if ( executionRootDirectory != null ) {
+      targetDir = new File( executionRootDirectory, "target" );
+    } else if ( buildDirectory != null ) {
+      targetDir = buildDirectory;
+    } else {
+      return null;
+    }
+    return new File( new File( targetDir, "osgi-validator" ), "package-index.bin" );
+  }
+
+  @Nonnull
+  protected static String getModuleId( @Nonnull MavenProject project ) {
+    return project.getGroupId() + ":" + project.getArtifactId();
+  }
+
+  /**
+   * Returns the ids of the modules of the reactor. Entries of other modules (e.g. renamed or removed modules) are removed from the package index.
+   *
+   * @return the module ids
+   */
+  @Nonnull
+  protected Set<String> getReactorModuleIds() {
+    Set<String> moduleIds = new HashSet<String>();
+    if ( reactorProjects == null ) {
+      moduleIds.add( getModuleId( getProject() ) );
+      return moduleIds;
+    }
+    for ( MavenProject project : reactorProjects ) {
+      moduleIds.add( getModuleId( project ) );
+    }
+    return moduleIds;
+  }
+
+  /**
+   * Reports the given split packages
+   *
+   * @param splitPackages the split packages and the modules that contain them
+   * @throws MojoFailureException if there are split packages and the build shall fail
+   */
+  protected void reportSplitPackages( @Nonnull SortedMap<String, SortedSet<String>> splitPackages ) throws MojoFailureException {
+    if ( splitPackages.isEmpty() ) {
+      getLog().info( "No split packages found" );
+      return;
+    }
+
+    for ( Map.Entry<String, SortedSet<String>> entry : splitPackages.entrySet() ) {
+      String message = "Split package " + entry.getKey() + " found in " + entry.getValue();
+      if ( fail ) {
+        getLog().error( message );
+      } else {
+        getLog().warn( message );
+      }
+    }
+
+    if ( fail ) {
+      throw new MojoFailureException( "There exist " + splitPackages.size() + " packages that are contained within several modules" );
+    }
+  }
+
+  /**
+   * Returns the packages that are exported by the manifest within the given classes directory
+   *
+   * @param classesDir the classes directory
+   * @return the exported packages (empty if there is no manifest)
+   *
+   * @throws MojoFailureException if the manifest could not be read
+   */
+  @Nonnull
+  protected static List<String> readExportedPackages( @Nullable File classesDir ) throws MojoFailureException {
+    @Nullable String exportPackage = readHeader( classesDir, "Export-Package" );
+    if ( exportPackage == null ) {
+      return Collections.emptyList();
+    }
+
+    try {
+      return ManifestHeaderParser.parsePaths( exportPackage );
+    } catch ( IllegalArgumentException e ) {
+      throw new MojoFailureException( "Invalid Export-Package header", e );
+    }
+  }
+
+  /**
+   * Returns the number of problematic files the validation is stopped at
+   *
+   * @return the limit (0 for no limit)
+   */
+  protected int getViolationLimit() {
+    if ( failFast ) {
+      return 1;
+    }
+    return Math.max( 0, maxViolations );
+  }
+
+  /**
+   * Creates the report the violations are streamed to.
+   * The files are placed within target/osgi-validator (&lt;name&gt;-violations.json and TEST-&lt;name&gt;.xml).
+   *
+   * @param name    the name of the report (e.g. the goal)
+   * @param scanner the scanner that is cancelled when the violation limit has been reached (null if there is no scanner)
+   * @return the report
+   *
+   * @throws MojoExecutionException if the report files could not be created
+   */
+  @Nonnull
+  protected ViolationReport createViolationReport( @Nonnull String name, @Nullable final SourceTreeScanner scanner ) throws MojoExecutionException {
+    ViolationReport report;
+    if ( buildDirectory == null ) {
+      report = new ViolationReport( maxListedViolations );
+    } else {
+      File reportDirectory = new File( buildDirectory, "osgi-validator" );
+      try {
+        report = new ViolationReport( maxListedViolations, new File( reportDirectory, name + "-violations.json" ), new File( reportDirectory, "TEST-" + name + ".xml" ) );
+      } catch ( IOException e ) {
+        throw new MojoExecutionException( "Could not create violation report in <" + reportDirectory.getAbsolutePath() + ">", e );
+      }
+    }
+
+    report.setMaxViolations( getViolationLimit(), scanner == null ? null : new Runnable() {
+      @Override
+      public void run() {
+        scanner.cancel();
+      }
+    } );
+    return report;
+  }
+
+  /**
+   * Closes the given report - the console output is not affected if the files could not be written
+   *
+   * @param report the report
+   */
+  protected void closeViolationReport( @Nonnull ViolationReport report ) {
+    try {
+      report.close();
+    } catch ( IOException e ) {
+      getLog().warn( "Could not write violation report: " + e.getMessage() );
+    }
+  }
+
+  /**
+   * Reports the problematic files
+   *
+   * @param name             the name of the report
+   * @param source           the file that has been validated
+   * @param problematicFiles the problematic files
+   * @throws MojoExecutionException if there are problematic files and the build shall fail
+   */
+  protected void reportProblematicFiles( @Nonnull String name, @Nonnull File source, @Nonnull Map<String, ValidationFailedException> problematicFiles ) throws MojoExecutionException {
+    ViolationReport report = createViolationReport( name, null );
+    try {
+      for ( Map.Entry<String, ValidationFailedException> entry : problematicFiles.entrySet() ) {
+        //noinspection ThrowableResultOfMethodCallIgnored
+        ValidationFailedException exception = entry.getValue();
+        report.add( entry.getKey(), source, exception.getRelativePath(), exception.getFailingIndex(), exception.getReason() );
+      }
+    } finally {
+      closeViolationReport( report );
+    }
+    reportViolations( report );
+  }
+
+  /**
+   * Reports the violations. Only the first violations are listed (see {@link #maxListedViolations}).
+   *
+   * @param report the (closed) report
+   * @throws MojoExecutionException if there are problematic files and the build shall fail
+   */
+  protected void reportViolations( @Nonnull ViolationReport report ) throws MojoExecutionException {
+    int violationCount = report.getViolationCount();
+    if ( violationCount == 0 ) {
+      getLog().info( "No problematic files found" );
+      return;
+    }
+
+    if ( fail ) {
+      getLog().error( "Found files within a problematic package:" );
+    } else {
+      getLog().warn( "Found files within a problematic package:" );
+    }
+
+    if ( report.isTruncated() ) {
+      String stopped = "Validation stopped after " + violationCount + " problematic files (" + ( failFast ? "failFast" : "maxViolations" ) + ")";
+      if ( fail ) {
+        getLog().error( stopped );
+      } else {
+        getLog().warn( stopped );
+      }
+    }
+
+    SortedMap<String, String> listed = report.getListed();
+    for ( Map.Entry<String, String> entry : listed.entrySet() ) {
+      if ( fail ) {
+        getLog().error( "  " + entry.getKey() );
+        getLog().error( "     " + entry.getValue() );
+      } else {
+        getLog().warn( "  " + entry.getKey() );
+        getLog().warn( "     " + entry.getValue() );
+      }
+    }
+
+    if ( violationCount > listed.size() ) {
+      String more = "  ... and " + ( violationCount - listed.size() ) + " more";
+      if ( report.getJsonFile() != null ) {
+        more += " (see " + report.getJsonFile().getAbsolutePath() + ")";
+      }
+      if ( fail ) {
+        getLog().error( more );
+      } else {
+        getLog().warn( more );
+      }
+    }
+
+    if ( fail ) {
+      throw new MojoExecutionException( "There exist " + ( report.isTruncated() ? "at least " : "" ) + violationCount + " files that seem to be placed within a problematic package" );
+    }
+  }
+
+  /**
+   * Validates the manifest within the given classes directory
+   *
+   * @param classesDir the classes directory
+   * @return true if the manifest is valid (or does not exist)
+   *
+   * @throws MojoExecutionException if the rules could not be loaded
+   * @throws MojoFailureException   if the manifest could not be read
+   */
+  protected boolean validateManifest( @Nullable File classesDir ) throws MojoExecutionException, MojoFailureException {
+    return validateManifest( classesDir, getProjectId( getProject() ) );
+  }
+
+  /**
+   * Validates the manifest within the given classes directory
+   *
+   * @param classesDir the classes directory
+   * @param projectId  the id of the project the manifest belongs to
+   * @return true if the manifest is valid (or does not exist)
+   *
+   * @throws MojoExecutionException if the rules could not be loaded
+   * @throws MojoFailureException   if the manifest could not be read
+   */
+  protected boolean validateManifest( @Nullable File classesDir, @Nonnull String projectId ) throws MojoExecutionException, MojoFailureException {
+    File manifestFile = new File( new File( classesDir, "META-INF" ), "MANIFEST.MF" );
+
+    if ( !manifestFile.exists() ) {
+      getLog().info( "No MANIFEST.MF found" );
+      return true;
+    }
+
+    getLog().info( "Validating MANIFEST @ " + manifestFile.getAbsolutePath() );
+
+    Manifest manifest;
+    try {
+      FileInputStream in = new FileInputStream( manifestFile );
+      try {
+        manifest = new Manifest( in );
+      } finally {
+        in.close();
+      }
+    } catch ( IOException e ) {
+      throw new MojoFailureException( "Could not read manifest", e );
+    }
+    return validateManifest( manifest, projectId );
+  }
+
+  /**
+   * Passes the manifest to the prohibited package rule and the custom rules.
+   * The violations are written to the log.
+   *
+   * @param manifest  the manifest
+   * @param projectId the id of the project the manifest belongs to
+   * @return true if no rule has reported a violation
+   *
+   * @throws MojoExecutionException if the rules could not be loaded
+   */
+  protected boolean validateManifest( @Nonnull Manifest manifest, @Nonnull String projectId ) throws MojoExecutionException {
+    return validateManifest( manifest, projectId, null );
+  }
+
+  /**
+   * Passes the manifest to the prohibited package rule and the custom rules.
+   * The violations are written to the log - prefixed with the given label.
+   *
+   * @param manifest  the manifest
+   * @param projectId the id of the project the manifest belongs to
+   * @param label     the label the violations are prefixed with (e.g. the coordinates of a dependency)
+   * @return true if no rule has reported a violation
+   *
+   * @throws MojoExecutionException if the rules could not be loaded
+   */
+  protected boolean validateManifest( @Nonnull Manifest manifest, @Nonnull final String projectId, @Nullable final String label ) throws MojoExecutionException {
+    final int[] violationCount = {0};
+    RuleContext context = new RuleContext() {
+      @Nonnull
+      @Override
+      public String getProjectId() {
+        return projectId;
+      }
+
+      @Nonnull
+      @Override
+      public Log getLog() {
+        return AbstractValidatorMojo.this.getLog();
+      }
+
+      @Override
+      public void violation( @Nonnull String relativePath, int failingIndex, @Nonnull String reason ) {
+        AbstractValidatorMojo.this.getLog().error( label == null ? reason : label + ": " + reason );
+        violationCount[0]++;
+      }
+    };
+
+    new ProhibitedPackageRule( new ManifestValidator( getProhibitedPackagePatterns() ) ).validateManifest( context, manifest );
+    for ( ValidationRule rule : getRules() ) {
+      rule.validateManifest( context, manifest );
+    }
+    return violationCount[0] == 0;
+  }
+
+  /**
+   * Returns the custom rules. They are loaded once for each execution.
+   *
+   * @return the custom rules (registered as service or configured by class name)
+   *
+   * @throws MojoExecutionException if a rule could not be loaded
+   */
+  @Nonnull
+  protected List<ValidationRule> getRules() throws MojoExecutionException {
+    if ( loadedRules != null ) {
+      return loadedRules;
+    }
+
+    List<ValidationRule> loaded = new ArrayList<ValidationRule>();
+    ClassLoader classLoader = getClass().getClassLoader();
+    try {
+      for ( ValidationRule rule : ServiceLoader.load( ValidationRule.class, classLoader ) ) {
+        loaded.add( rule );
+      }
+    } catch ( ServiceConfigurationError e ) {
+      throw new MojoExecutionException( "Could not load validation rules", e );
+    }
+
+    if ( rules != null ) {
+      for ( String ruleClassName : rules ) {
+        try {
+          loaded.add( classLoader.loadClass( ruleClassName.trim() ).asSubclass( ValidationRule.class ).getConstructor().newInstance() );
+        } catch ( ClassNotFoundException e ) {
+          throw new MojoExecutionException( "Could not find rule <" + ruleClassName + ">. Add it to the dependencies of the plugin.", e );
+        } catch ( ClassCastException e ) {
+          throw new MojoExecutionException( "Rule <" + ruleClassName + "> does not implement " + ValidationRule.class.getName(), e );
+        } catch ( NoSuchMethodException e ) {
+          throw new MojoExecutionException( "Could not create rule <" + ruleClassName + ">: a public no-arg constructor is required", e );
+        } catch ( InstantiationException e ) {
+          throw new MojoExecutionException( "Could not create rule <" + ruleClassName + ">: a public no-arg constructor is required", e );
+        } catch ( IllegalAccessException e ) {
+          throw new MojoExecutionException( "Could not create rule <" + ruleClassName + ">: a public no-arg constructor is required", e );
+        } catch ( InvocationTargetException e ) {
+          throw new MojoExecutionException( "Could not create rule <" + ruleClassName + ">: the public no-arg constructor failed", e.getCause() );
+        }
+      }
+    }
+
+    for ( ValidationRule rule : loaded ) {
+      getLog().debug( "Using rule " + rule.getName() + ( rule.isThreadSafe() ? " (thread safe)" : "" ) );
+    }
+    loadedRules = loaded;
+    return loaded;
+  }
+
+  /**
+   * Scans the class files within the given classes directory and compares the referenced packages with
+   * the Import-Package header and the prohibited packages
+   *
+   * @param classesDir the classes directory
+   * @return true if no prohibited package is referenced
+   *
+   * @throws MojoExecutionException if the scan has been interrupted
+   * @throws MojoFailureException   if the manifest could not be read
+   */
+  protected boolean validateBytecode( @Nullable File classesDir ) throws MojoExecutionException, MojoFailureException {
+    if ( !checkBytecode ) {
+      return true;
+    }
+    if ( classesDir == null || !classesDir.isDirectory() ) {
+      getLog().info( "No classes found" );
+      return true;
+    }
+
+    getLog().info( "Scanning class files @ " + classesDir.getAbsolutePath() );
+
+    long started = ValidationMetrics.start();
+    PackageReferenceCollector collector = new PackageReferenceCollector();
+    @Nullable ExecutorService executor = createExecutor();
+    try {
+      new SourceTreeScanner( executor ).scan( classesDir, collector );
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new MojoExecutionException( "Interrupted while scanning the class files", e );
+    } finally {
+      if ( executor != null ) {
+        executor.shutdownNow();
+      }
+    }
+
+    for ( Map.Entry<String, IOException> entry : collector.getFailures().entrySet() ) {
+      getLog().warn( "Could not read class file <" + entry.getKey() + ">: " + entry.getValue().getMessage() );
+    }
+
+    ManifestValidator manifestValidator = new ManifestValidator( getProhibitedPackagePatterns() );
+    Map<String, String> referencedPackages = collector.getReferencedPackages();
+
+    int prohibitedCount = 0;
+    for ( Map.Entry<String, String> entry : referencedPackages.entrySet() ) {
+      if ( manifestValidator.isProhibited( entry.getKey() ) ) {
+        getLog().error( "Prohibited package referenced: " + entry.getKey() + " (by " + entry.getValue() + ")" );
+        prohibitedCount++;
+      }
+    }
+
+    if ( metrics != null ) {
+      metrics.add( new ValidationMetrics.Phase( "scanClassFiles", classesDir.getPath(), System.nanoTime() - started, collector.getClassFileCount(), collector.getDirectoryCount(), 0, prohibitedCount ) );
+    }
+
+    @Nullable String importPackage = readHeader( classesDir, "Import-Package" );
+    if ( importPackage != null ) {
+      List<String> importedPackages;
+      try {
+        importedPackages = ManifestHeaderParser.parsePaths( importPackage );
+      } catch ( IllegalArgumentException e ) {
+        throw new MojoFailureException( "Invalid Import-Package header", e );
+      }
+
+      Set<String> ownPackages = collector.getOwnPackages();
+      for ( String importedPackage : importedPackages ) {
+        if ( importedPackage.endsWith( "*" ) || ownPackages.contains( importedPackage ) ) {
+          continue;
+        }
+        if ( !referencedPackages.containsKey( importedPackage ) ) {
+          getLog().warn( "Imported package not referenced by any class: " + importedPackage );
+        }
+      }
+    }
+
+    return prohibitedCount == 0;
+  }
+
+  @Nullable
+  private static String readHeader( @Nullable File classesDir, @Nonnull String name ) throws MojoFailureException {
+    if ( classesDir == null ) {
+      return null;
+    }
+    File manifestFile = new File( new File( classesDir, "META-INF" ), "MANIFEST.MF" );
+    if ( !manifestFile.exists() ) {
+      return null;
+    }
+
+    try {
+      FileInputStream in = new FileInputStream( manifestFile );
+      try {
+        return new Manifest( in ).getMainAttributes().getValue( name );
+      } finally {
+        in.close();
+      }
+    } catch ( IOException e ) {
+      throw new MojoFailureException( "Could not read manifest", e );
+    }
+  }
+}
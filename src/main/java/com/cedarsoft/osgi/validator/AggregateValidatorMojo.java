@@ -0,0 +1,200 @@
+package com.cedarsoft.osgi.validator;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.project.MavenProject;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Validates the package structure of all modules within the reactor at once.
+ * <p/>
+ * The source roots of all modules are walked within one scan that shares the thread pool and the cache.
+ * This avoids that the pool is created and the cache is loaded for each module again - and the threads are
+ * busy as long as there are directories left within any of the modules.
+ * <p/>
+ * The output is grouped by module (in reactor order) and there is one combined report.
+ * Afterwards the package index is updated for all modules and all split packages of the reactor are reported.
+ *
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+@Mojo( name = "validate-all", aggregator = true, threadSafe = true )
+public class AggregateValidatorMojo extends AbstractValidatorMojo {
+  @Override
+  public void execute() throws MojoExecutionException, MojoFailureException {
+    List<MavenProject> projects = getModules();
+    getLog().info( "Validating OSGi-stuff for " + projects.size() + " modules" );
+
+    SourceFileSelector selector = new SourceFileSelector( skippedFiles );
+
+    @Nullable File cacheFile = getCacheFile();
+    ValidationCache previousCache = loadCache( cacheFile );
+    ValidationCache nextCache = new ValidationCache();
+
+    //The jobs of all modules - in reactor order
+    Map<MavenProject, List<SourceRootValidator.Job>> moduleJobs = new LinkedHashMap<MavenProject, List<SourceRootValidator.Job>>();
+    Map<File, SourceRootValidator.Job> jobs = new LinkedHashMap<File, SourceRootValidator.Job>();
+
+    //The violations of all modules are streamed to one report
+    @Nullable ExecutorService executor = createExecutor();
+    SourceTreeScanner scanner = new SourceTreeScanner( executor );
+    ViolationReport report = createViolationReport( "validate-all", scanner );
+    try {
+
+      for ( MavenProject project : projects ) {
+        Validator validator = createValidator( getProjectId( project ) );
+        SourceRootValidator sourceRootValidator = new SourceRootValidator( validator, selector, previousCache, nextCache, getLog(), scanner );
+        sourceRootValidator.setCheckPackageDeclarations( checkPackageDeclarations );
+        sourceRootValidator.setRules( getRules() );
+        sourceRootValidator.setViolationHandler( report.forPrefix( project.getArtifactId() ) );
+
+        List<SourceRootValidator.Job> projectJobs = new ArrayList<SourceRootValidator.Job>();
+        for ( String sourceRoot : project.getCompileSourceRoots() ) {
+          File sourceRootDir = new File( sourceRoot );
+          if ( !sourceRootDir.isDirectory() || jobs.containsKey( sourceRootDir ) ) {
+            continue;
+          }
+
+          SourceRootValidator.Job job = sourceRootValidator.createJob( sourceRootDir, new BufferedLog( getLog() ) );
+          jobs.put( sourceRootDir, job );
+          projectJobs.add( job );
+        }
+        moduleJobs.put( project, projectJobs );
+      }
+
+      scanner.scan( jobs );
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new MojoExecutionException( "Interrupted while validating the source roots", e );
+    } finally {
+      if ( executor != null ) {
+        executor.shutdownNow();
+      }
+      closeViolationReport( report );
+    }
+
+    List<String> invalidManifests = new ArrayList<String>();
+    final Map<MavenProject, Set<String>> modulePackages = new LinkedHashMap<MavenProject, Set<String>>();
+
+    for ( Map.Entry<MavenProject, List<SourceRootValidator.Job>> entry : moduleJobs.entrySet() ) {
+      MavenProject project = entry.getKey();
+      getLog().info( "Module " + project.getArtifactId() + ":" );
+
+      Set<String> sourcePackages = new TreeSet<String>();
+      for ( SourceRootValidator.Job job : entry.getValue() ) {
+        SourceRootValidator.Result result = job.getResult();
+        getLog().info( "\t" + result.getSourceRoot().getPath() );
+        result.flushLog();
+        sourcePackages.addAll( result.getPackages() );
+      }
+      modulePackages.put( project, sourcePackages );
+
+      if ( !validateManifest( new File( project.getBuild().getOutputDirectory() ), getProjectId( project ) ) ) {
+        invalidManifests.add( project.getArtifactId() );
+      }
+    }
+
+    storeCache( nextCache, cacheFile );
+    reportViolations( report );
+
+    if ( !invalidManifests.isEmpty() ) {
+      throw new MojoFailureException( "Invalid package export/import in " + invalidManifests );
+    }
+
+    //The packages of an incomplete scan must not be stored
+    if ( !report.isTruncated() ) {
+      validateSplitPackages( modulePackages );
+    }
+  }
+
+  /**
+   * Updates the package index with the packages of all modules and reports all split packages of the reactor
+   *
+   * @param modulePackages the packages of the main sources for each module
+   * @throws MojoFailureException if there are split packages and the build shall fail
+   */
+  private void validateSplitPackages( @Nonnull final Map<MavenProject, Set<String>> modulePackages ) throws MojoFailureException {
+    if ( !detectSplitPackages ) {
+      return;
+    }
+    @Nullable File indexFile = getPackageIndexFile();
+    if ( indexFile == null ) {
+      getLog().debug( "Skipping split package detection" );
+      return;
+    }
+
+    //Read all manifests before the index file is locked
+    final Map<MavenProject, List<String>> moduleExports = new LinkedHashMap<MavenProject, List<String>>();
+    for ( MavenProject project : modulePackages.keySet() ) {
+      moduleExports.put( project, readExportedPackages( new File( project.getBuild().getOutputDirectory() ) ) );
+    }
+
+    final Set<String> reactorModuleIds = getReactorModuleIds();
+    PackageIndex index;
+    try {
+      index = PackageIndex.updateFile( indexFile, new PackageIndex.Updater() {
+        @Override
+        public void update( @Nonnull PackageIndex index ) {
+          index.retain( reactorModuleIds );
+          for ( Map.Entry<MavenProject, Set<String>> entry : modulePackages.entrySet() ) {
+            MavenProject project = entry.getKey();
+            index.update( getModuleId( project ), project.getBasedir(), entry.getValue(), moduleExports.get( project ) );
+          }
+        }
+      } );
+    } catch ( IOException e ) {
+      getLog().warn( "Could not update package index <" + indexFile.getAbsolutePath() + ">: " + e.getMessage() );
+      return;
+    }
+
+    getLog().info( "Package index contains " + index.getPackageCount() + " packages of " + index.getModuleCount() + " modules" );
+    reportSplitPackages( index.findSplitPackages() );
+  }
+
+  /**
+   * Returns the modules that contain sources
+   *
+   * @return the modules (without pom modules) in reactor order
+   */
+  @Nonnull
+  private List<MavenProject> getModules() {
+    if ( reactorProjects == null ) {
+      return Collections.singletonList( getProject() );
+    }
+
+    List<MavenProject> modules = new ArrayList<MavenProject>();
+    for ( MavenProject project : reactorProjects ) {
+      if ( "pom".equals( project.getPackaging() ) ) {
+        getLog().debug( "Skipping " + project.getArtifactId() + " for packaging \"pom\"" );
+        continue;
+      }
+      modules.add( project );
+    }
+    return modules;
+  }
+
+  /**
+   * Returns the cache file that is shared by all modules
+   *
+   * @return the cache file or null if there is no build directory
+   */
+  @Nullable
+  private File getCacheFile() {
+    if ( buildDirectory == null ) {
+      return null;
+    }
+    return new File( new File( buildDirectory, "osgi-validator" ), "aggregate-validation.cache" );
+  }
+}
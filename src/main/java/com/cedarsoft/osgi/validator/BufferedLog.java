@@ -0,0 +1,193 @@
+package com.cedarsoft.osgi.validator;
+
+import org.apache.maven.plugin.logging.Log;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects log messages that are written later to another log.
+ * <p/>
+ * Used for work that is done concurrently: Each unit of work gets its own buffer. The buffers are flushed
+ * in a fixed order afterwards, so the output is the same as for a serial run.
+ *
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+public class BufferedLog implements Log {
+  @Nonnull
+  private final Log target;
+  @Nonnull
+  private final List<Entry> entries = new ArrayList<Entry>();
+
+  /**
+   * Creates a new buffered log
+   *
+   * @param target the target log (also used to decide which levels are enabled)
+   */
+  public BufferedLog( @Nonnull Log target ) {
+    this.target = target;
+  }
+
+  /**
+   * Writes all collected messages to the target log and clears the buffer
+   */
+  public void flush() {
+    List<Entry> copy;
+    synchronized ( entries ) {
+      copy = new ArrayList<Entry>( entries );
+      entries.clear();
+    }
+
+    for ( Entry entry : copy ) {
+      entry.writeTo( target );
+    }
+  }
+
+  private void add( @Nonnull Level level, @Nullable CharSequence content, @Nullable Throwable error ) {
+    synchronized ( entries ) {
+      entries.add( new Entry( level, content, error ) );
+    }
+  }
+
+  @Override
+  public boolean isDebugEnabled() {
+    return target.isDebugEnabled();
+  }
+
+  @Override
+  public void debug( CharSequence content ) {
+    add( Level.DEBUG, content, null );
+  }
+
+  @Override
+  public void debug( CharSequence content, Throwable error ) {
+    add( Level.DEBUG, content, error );
+  }
+
+  @Override
+  public void debug( Throwable error ) {
+    add( Level.DEBUG, null, error );
+  }
+
+  @Override
+  public boolean isInfoEnabled() {
+    return target.isInfoEnabled();
+  }
+
+  @Override
+  public void info( CharSequence content ) {
+    add( Level.INFO, content, null );
+  }
+
+  @Override
+  public void info( CharSequence content, Throwable error ) {
+    add( Level.INFO, content, error );
+  }
+
+  @Override
+  public void info( Throwable error ) {
+    add( Level.INFO, null, error );
+  }
+
+  @Override
+  public boolean isWarnEnabled() {
+    return target.isWarnEnabled();
+  }
+
+  @Override
+  public void warn( CharSequence content ) {
+    add( Level.WARN, content, null );
+  }
+
+  @Override
+  public void warn( CharSequence content, Throwable error ) {
+    add( Level.WARN, content, error );
+  }
+
+  @Override
+  public void warn( Throwable error ) {
+    add( Level.WARN, null, error );
+  }
+
+  @Override
+  public boolean isErrorEnabled() {
+    return target.isErrorEnabled();
+  }
+
+  @Override
+  public void error( CharSequence content ) {
+    add( Level.ERROR, content, null );
+  }
+
+  @Override
+  public void error( CharSequence content, Throwable error ) {
+    add( Level.ERROR, content, error );
+  }
+
+  @Override
+  public void error( Throwable error ) {
+    add( Level.ERROR, null, error );
+  }
+
+  private enum Level {
+    DEBUG, INFO, WARN, ERROR
+  }
+
+  private static class Entry {
+    @Nonnull
+    private final Level level;
+    @Nullable
+    private final CharSequence content;
+    @Nullable
+    private final Throwable error;
+
+    private Entry( @Nonnull Level level, @Nullable CharSequence content, @Nullable Throwable error ) {
+      this.level = level;
+      this.content = content;
+      this.error = error;
+    }
+
+    private void writeTo( @Nonnull Log log ) {
+      switch ( level ) {
+        case DEBUG:
+          if ( error == null ) {
+            log.debug( content );
+          } else if ( content == null ) {
+            log.debug( error );
+          } else {
+            log.debug( content, error );
+          }
+          break;
+        case INFO:
+          if ( error == null ) {
+            log.info( content );
+          } else if ( content == null ) {
+            log.info( error );
+          } else {
+            log.info( content, error );
+          }
+          break;
+        case WARN:
+          if ( error == null ) {
+            log.warn( content );
+          } else if ( content == null ) {
+            log.warn( error );
+          } else {
+            log.warn( content, error );
+          }
+          break;
+        case ERROR:
+          if ( error == null ) {
+            log.error( content );
+          } else if ( content == null ) {
+            log.error( error );
+          } else {
+            log.error( content, error );
+          }
+          break;
+      }
+    }
+  }
+}
@@ -0,0 +1,100 @@
+package com.cedarsoft.osgi.validator;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Validates the class entries of a bundle using the same rules as for the source files.
+ * <p/>
+ * The entry names are converted to relative paths (using the platform separator). Entries within META-INF and OSGI-INF,
+ * the module descriptor (module-info.class) and entries that are not classes are ignored. The excludes are applied to the name of the corresponding source file.
+ * <p/>
+ * Like for the source roots the package directory is validated only once - the verdict does not depend on the file name.
+ *
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+public class BundleContentValidator {
+  public static final String CLASS_FILE_SUFFIX = ".class";
+  @Nonnull
+  private static final String MODULE_DESCRIPTOR = "module-info" + CLASS_FILE_SUFFIX;
+
+  @Nonnull
+  private final Validator validator;
+  @Nonnull
+  private final SourceFileSelector selector;
+
+  public BundleContentValidator( @Nonnull Validator validator, @Nonnull SourceFileSelector selector ) {
+    this.validator = validator;
+    this.selector = selector;
+  }
+
+  /**
+   * Validates the given entries
+   *
+   * @param entryNames the names of the entries (as stored within the zip file)
+   * @return the problematic class files (relative paths) and the failures
+   */
+  @Nonnull
+  public Map<String, ValidationFailedException> validate( @Nonnull Iterable<? extends String> entryNames ) {
+    Map<String, ValidationFailedException> problematicFiles = new TreeMap<String, ValidationFailedException>();
+
+    //The verdict for each package directory
+    Map<String, ValidationResult> verdicts = new HashMap<String, ValidationResult>();
+
+    for ( String entryName : entryNames ) {
+      if ( !isClass( entryName ) ) {
+        continue;
+      }
+
+      String relativePath = entryName.replace( '/', File.separatorChar );
+      if ( selector.isExcluded( getSourcePath( relativePath ) ) ) {
+        continue;
+      }
+
+      int lastSeparator = entryName.lastIndexOf( '/' );
+      String directory = lastSeparator < 0 ? "" : entryName.substring( 0, lastSeparator );
+
+      @Nullable ValidationResult verdict = verdicts.get( directory );
+      if ( verdict == null ) {
+        verdict = validator.validate( relativePath );
+        verdicts.put( directory, verdict );
+      }
+
+      if ( !verdict.isValid() ) {
+        problematicFiles.put( relativePath, new ValidationFailedException( relativePath, Validator.splitPath( relativePath ), verdict.getFailingIndex(), verdict.getReason() ) );
+      }
+    }
+
+    return problematicFiles;
+  }
+
+  private static boolean isClass( @Nonnull String entryName ) {
+    if ( !entryName.endsWith( CLASS_FILE_SUFFIX ) ) {
+      return false;
+    }
+    if ( entryName.equals( MODULE_DESCRIPTOR ) || entryName.endsWith( "/" + MODULE_DESCRIPTOR ) ) {
+      return false;
+    }
+    return !entryName.startsWith( "META-INF/" ) && !entryName.startsWith( "OSGI-INF/" );
+  }
+
+  /**
+   * Returns the path of the source file the given class has been compiled from (ignoring inner classes)
+   *
+   * @param relativePath the relative path of the class file
+   * @return the relative path of the source file
+   */
+  @Nonnull
+  static String getSourcePath( @Nonnull String relativePath ) {
+    int nameStart = relativePath.lastIndexOf( File.separatorChar ) + 1;
+    int nameEnd = relativePath.indexOf( '$', nameStart );
+    if ( nameEnd < 0 ) {
+      nameEnd = relativePath.length() - CLASS_FILE_SUFFIX.length();
+    }
+    return relativePath.substring( 0, nameEnd ) + SourceFileSelector.JAVA_FILE_SUFFIX;
+  }
+}
@@ -0,0 +1,89 @@
+package com.cedarsoft.osgi.validator;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.jar.Manifest;
+
+/**
+ * Validates the packaged bundle.
+ * <p/>
+ * The bundle might differ from the sources (e.g. if classes are shaded or added by bnd instructions).
+ * Therefore the class entries and the manifest of the final JAR are validated.
+ * Only the central directory and the manifest are read - so even large artifacts are validated quickly.
+ *
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+@Mojo( name = "validate-bundle", defaultPhase = LifecyclePhase.PACKAGE, threadSafe = true )
+public class BundleValidatorMojo extends AbstractValidatorMojo {
+  /**
+   * The bundle that is validated
+   */
+  @Parameter( defaultValue = "${project.build.directory}/${project.build.finalName}.jar", property = "osgi-validation.bundle" )
+  protected File bundle;
+
+  @Override
+  public void execute() throws MojoExecutionException, MojoFailureException {
+    if ( "pom".equals( mavenProject.getPackaging() ) ) {
+      getLog().info( "Skipping for packaging \"pom\"" );
+      return;
+    }
+
+    @Nullable File bundleFile = getBundleFile();
+    if ( bundleFile == null || !bundleFile.isFile() ) {
+      getLog().info( "No bundle found" );
+      return;
+    }
+
+    getLog().info( "Validating bundle @ " + bundleFile.getAbsolutePath() );
+
+    JarCentralDirectory centralDirectory;
+    try {
+      centralDirectory = JarCentralDirectory.read( bundleFile );
+    } catch ( IOException e ) {
+      throw new MojoExecutionException( "Could not read bundle <" + bundleFile.getAbsolutePath() + ">", e );
+    }
+    getLog().debug( "Found " + centralDirectory.getEntryNames().size() + " entries" );
+
+    boolean validManifest = validateManifest( centralDirectory.getManifest() );
+
+    Validator validator = createValidator( getProjectId( getProject() ) );
+    Map<String, ValidationFailedException> problematicFiles = new BundleContentValidator( validator, new SourceFileSelector( skippedFiles ) ).validate( centralDirectory.getEntryNames() );
+    reportProblematicFiles( "validate-bundle", bundleFile, problematicFiles );
+
+    if ( !validManifest ) {
+      throw new MojoFailureException( "Invalid package export/import" );
+    }
+  }
+
+  private boolean validateManifest( @Nullable Manifest manifest ) throws MojoExecutionException {
+    if ( manifest == null ) {
+      getLog().info( "No MANIFEST.MF found" );
+      return true;
+    }
+    return validateManifest( manifest, getProjectId( getProject() ) );
+  }
+
+  /**
+   * Returns the bundle file. The file of the project artifact is preferred (if it has been set).
+   *
+   * @return the bundle file
+   */
+  @Nullable
+  private File getBundleFile() {
+    if ( getProject().getArtifact() != null ) {
+      @Nullable File artifactFile = getProject().getArtifact().getFile();
+      if ( artifactFile != null && artifactFile.isFile() ) {
+        return artifactFile;
+      }
+    }
+    return bundle;
+  }
+}
@@ -0,0 +1,224 @@
+package com.cedarsoft.osgi.validator;
+
+import com.google.common.base.Charsets;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * Collects the packages that are referenced by a class file.
+ * <p/>
+ * Only the constant pool is inspected - the rest of the class file is skipped. The class is neither parsed completely nor loaded.
+ * The packages are taken from the class entries and from all descriptors (fields, methods, name and type entries).
+ * String constants are ignored.
+ *
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+public class ConstantPoolScanner {
+  private static final int MAGIC = 0xCAFEBABE;
+
+  private static final int CONSTANT_UTF8 = 1;
+  private static final int CONSTANT_INTEGER = 3;
+  private static final int CONSTANT_FLOAT = 4;
+  private static final int CONSTANT_LONG = 5;
+  private static final int CONSTANT_DOUBLE = 6;
+  private static final int CONSTANT_CLASS = 7;
+  private static final int CONSTANT_STRING = 8;
+  private static final int CONSTANT_FIELD_REF = 9;
+  private static final int CONSTANT_METHOD_REF = 10;
+  private static final int CONSTANT_INTERFACE_METHOD_REF = 11;
+  private static final int CONSTANT_NAME_AND_TYPE = 12;
+  private static final int CONSTANT_METHOD_HANDLE = 15;
+  private static final int CONSTANT_METHOD_TYPE = 16;
+  private static final int CONSTANT_DYNAMIC = 17;
+  private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+  private static final int CONSTANT_MODULE = 19;
+  private static final int CONSTANT_PACKAGE = 20;
+
+  private ConstantPoolScanner() {
+  }
+
+  /**
+   * Reads the constant pool and adds the referenced packages (dotted names) to the given collection.
+   * The default package is not added.
+   * <p/>
+   * The class file is parsed in place: Strings are only created for the package names.
+   *
+   * @param classFile the content of the class file
+   * @param length    the length of the class file within the array
+   * @param packages  the collection the packages are added to
+   * @throws IOException if the class file is invalid
+   */
+  public static void collectReferencedPackages( @Nonnull byte[] classFile, int length, @Nonnull Collection<? super String> packages ) throws IOException {
+    if ( length < 10 || readInt( classFile, 0 ) != MAGIC ) {
+      throw new IOException( "Not a class file" );
+    }
+
+    int count = readUnsignedShort( classFile, 8 );
+    //The offsets of the utf8 entries (0 for other entries)
+    int[] utf8Offsets = new int[count];
+    //The indices of the utf8 entries that contain class names
+    boolean[] classNames = new boolean[count];
+    //The indices of the utf8 entries that are string constants
+    boolean[] stringConstants = new boolean[count];
+
+    int position = 10;
+    try {
+      for ( int i = 1; i < count; i++ ) {
+        int tag = classFile[position] & 0xFF;
+        switch ( tag ) {
+          case CONSTANT_UTF8:
+            utf8Offsets[i] = position + 1;
+            position += 3 + readUnsignedShort( classFile, position + 1 );
+            break;
+          case CONSTANT_CLASS:
+            classNames[checkIndex( readUnsignedShort( classFile, position + 1 ), count )] = true;
+            position += 3;
+            break;
+          case CONSTANT_STRING:
+            stringConstants[checkIndex( readUnsignedShort( classFile, position + 1 ), count )] = true;
+            position += 3;
+            break;
+          case CONSTANT_METHOD_TYPE:
+          case CONSTANT_MODULE:
+          case CONSTANT_PACKAGE:
+            position += 3;
+            break;
+          case CONSTANT_METHOD_HANDLE:
+            position += 4;
+            break;
+          case CONSTANT_INTEGER:
+          case CONSTANT_FLOAT:
+          case CONSTANT_FIELD_REF:
+          case CONSTANT_METHOD_REF:
+          case CONSTANT_INTERFACE_METHOD_REF:
+          case CONSTANT_NAME_AND_TYPE:
+          case CONSTANT_DYNAMIC:
+          case CONSTANT_INVOKE_DYNAMIC:
+            position += 5;
+            break;
+          case CONSTANT_LONG:
+          case CONSTANT_DOUBLE:
+            position += 9;
+            //Takes two slots
+            i++;
+            break;
+          default:
+            throw new IOException( "Invalid constant pool tag <" + tag + "> at index " + i );
+        }
+        if ( position > length ) {
+          throw new IOException( "Truncated constant pool" );
+        }
+      }
+    } catch ( ArrayIndexOutOfBoundsException ignore ) {
+      throw new IOException( "Truncated constant pool" );
+    }
+
+    for ( int i = 1; i < count; i++ ) {
+      int offset = utf8Offsets[i];
+      if ( offset == 0 || stringConstants[i] ) {
+        continue;
+      }
+
+      int start = offset + 2;
+      int end = start + readUnsignedShort( classFile, offset );
+      if ( classNames[i] ) {
+        if ( classFile[start] == '[' ) {
+          addDescriptorPackages( classFile, start, end, packages );
+        } else {
+          addPackage( classFile, start, end, packages );
+        }
+      } else if ( isDescriptor( classFile, start, end ) ) {
+        addDescriptorPackages( classFile, start, end, packages );
+      }
+    }
+  }
+
+  private static int readInt( @Nonnull byte[] bytes, int position ) {
+    return ( bytes[position] & 0xFF ) << 24 | ( bytes[position + 1] & 0xFF ) << 16 | ( bytes[position + 2] & 0xFF ) << 8 | bytes[position + 3] & 0xFF;
+  }
+
+  private static int readUnsignedShort( @Nonnull byte[] bytes, int position ) {
+    return ( bytes[position] & 0xFF ) << 8 | bytes[position + 1] & 0xFF;
+  }
+
+  private static int checkIndex( int index, int count ) throws IOException {
+    if ( index <= 0 || index >= count ) {
+      throw new IOException( "Invalid constant pool index <" + index + ">" );
+    }
+    return index;
+  }
+
+  /**
+   * Returns whether the given value is a field or method descriptor.
+   * Generic signatures are skipped - their erasure is contained within the descriptors anyway.
+   */
+  private static boolean isDescriptor( @Nonnull byte[] bytes, int start, int end ) {
+    if ( end - start < 2 || indexOf( bytes, start, end, '<' ) >= 0 ) {
+      return false;
+    }
+    byte first = bytes[start];
+    if ( first == '(' ) {
+      return indexOf( bytes, start, end, ')' ) > 0;
+    }
+    return ( first == 'L' || first == '[' ) && bytes[end - 1] == ';';
+  }
+
+  private static void addDescriptorPackages( @Nonnull byte[] bytes, int start, int end, @Nonnull Collection<? super String> packages ) {
+    int i = start;
+    while ( i < end ) {
+      if ( bytes[i] != 'L' ) {
+        i++;
+        continue;
+      }
+
+      int nameEnd = indexOf( bytes, i, end, ';' );
+      if ( nameEnd < 0 ) {
+        return;
+      }
+      addPackage( bytes, i + 1, nameEnd, packages );
+      i = nameEnd + 1;
+    }
+  }
+
+  /**
+   * Adds the package of the internal class name within the given range
+   */
+  private static void addPackage( @Nonnull byte[] bytes, int start, int end, @Nonnull Collection<? super String> packages ) {
+    int lastSlash = -1;
+    boolean ascii = true;
+    for ( int i = start; i < end; i++ ) {
+      byte b = bytes[i];
+      if ( b == '/' ) {
+        lastSlash = i;
+      } else if ( b < 0 ) {
+        ascii = false;
+      }
+    }
+    if ( lastSlash < 0 ) {
+      return;
+    }
+
+    if ( ascii ) {
+      char[] chars = new char[lastSlash - start];
+      for ( int i = 0; i < chars.length; i++ ) {
+        byte b = bytes[start + i];
+        chars[i] = b == '/' ? '.' : ( char ) b;
+      }
+      packages.add( new String( chars ) );
+    } else {
+      //Modified UTF-8 - only used for non ascii names
+      packages.add( new String( bytes, start, lastSlash - start, Charsets.UTF_8 ).replace( '/', '.' ) );
+    }
+  }
+
+  private static int indexOf( @Nonnull byte[] bytes, int start, int end, char c ) {
+    for ( int i = start; i < end; i++ ) {
+      if ( bytes[i] == c ) {
+        return i;
+      }
+    }
+    return -1;
+  }
+}
@@ -0,0 +1,310 @@
+package com.cedarsoft.osgi.validator;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.Attributes;
+import java.util.jar.Manifest;
+
+/**
+ * Caches the main attributes of the manifests of dependency artifacts.
+ * <p/>
+ * The entries are keyed by the coordinates and the checksum of the artifact. The checksum is taken from the
+ * SHA-1 file the repository stores next to downloaded artifacts. Artifacts without a SHA-1 file (e.g. installed snapshots)
+ * are identified by their size and modification time instead.
+ * So each artifact version is only read once - even if the cache is shared by several modules and builds.
+ * <p/>
+ * Entries that have not been used for {@link #MAX_UNUSED_TIME} are removed when the cache is stored.
+ * <p/>
+ * The cache is thread safe.
+ *
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+public class DependencyManifestCache {
+  static final int MAGIC = 0x4f56444d;
+  static final int VERSION = 1;
+
+  /**
+   * Entries that have not been used for this time are removed
+   */
+  public static final long MAX_UNUSED_TIME = TimeUnit.DAYS.toMillis( 90 );
+
+  @Nonnull
+  private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+  /**
+   * Creates the key for the given artifact file
+   *
+   * @param coordinates the coordinates of the artifact
+   * @param file        the artifact file
+   * @return the key
+   */
+  @Nonnull
+  public static String createKey( @Nonnull String coordinates, @Nonnull File file ) {
+    @Nullable String sha1 = readSha1( file );
+    if ( sha1 != null ) {
+      return coordinates + "|sha1:" + sha1;
+    }
+    return coordinates + "|" + file.length() + ":" + file.lastModified();
+  }
+
+  @Nullable
+  private static String readSha1( @Nonnull File file ) {
+    File sha1File = new File( file.getPath() + ".sha1" );
+    if ( !sha1File.isFile() ) {
+      return null;
+    }
+
+    try {
+      String content = Files.toString( sha1File, Charsets.US_ASCII ).trim();
+      //The file might contain the file name after the checksum
+      int end = content.indexOf( ' ' );
+      String sha1 = end < 0 ? content : content.substring( 0, end );
+      return sha1.length() == 40 ? sha1.toLowerCase() : null;
+    } catch ( IOException ignore ) {
+      return null;
+    }
+  }
+
+  /**
+   * Returns whether there is an entry for the given key
+   *
+   * @param key the key
+   * @return true if the manifest of the artifact has already been read
+   */
+  public boolean contains( @Nonnull String key ) {
+    return entries.containsKey( key );
+  }
+
+  /**
+   * Returns the cached manifest
+   *
+   * @param key the key
+   * @return the manifest (only the main attributes) or null if the artifact does not contain a manifest or there is no entry
+   */
+  @Nullable
+  public Manifest get( @Nonnull String key ) {
+    Entry entry = entries.get( key );
+    if ( entry == null ) {
+      return null;
+    }
+    entry.lastUsed = System.currentTimeMillis();
+    return entry.toManifest();
+  }
+
+  /**
+   * Stores the manifest of an artifact
+   *
+   * @param key      the key
+   * @param manifest the manifest (null if the artifact does not contain a manifest)
+   */
+  public void put( @Nonnull String key, @Nullable Manifest manifest ) {
+    Map<String, String> attributes = null;
+    if ( manifest != null ) {
+      attributes = new LinkedHashMap<String, String>();
+      for ( Map.Entry<Object, Object> attribute : manifest.getMainAttributes().entrySet() ) {
+        attributes.put( attribute.getKey().toString(), String.valueOf( attribute.getValue() ) );
+      }
+    }
+    entries.put( key, new Entry( System.currentTimeMillis(), attributes ) );
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  /**
+   * Stores the cache. The entries are merged with the entries that have been stored by other builds in the meantime.
+   *
+   * @param file the file
+   * @throws IOException if the file could not be written
+   */
+  public void merge( @Nonnull final File file ) throws IOException {
+    FileLocks.update( file, new FileLocks.Update<Void>() {
+      @Override
+      public Void run() throws IOException {
+        DependencyManifestCache stored = loadOrEmpty( file );
+        for ( Map.Entry<String, Entry> entry : stored.entries.entrySet() ) {
+          Entry own = entries.get( entry.getKey() );
+          if ( own == null || own.lastUsed < entry.getValue().lastUsed ) {
+            entries.put( entry.getKey(), entry.getValue() );
+          }
+        }
+
+        long limit = System.currentTimeMillis() - MAX_UNUSED_TIME;
+        for ( Iterator<Entry> iterator = entries.values().iterator(); iterator.hasNext(); ) {
+          if ( iterator.next().lastUsed < limit ) {
+            iterator.remove();
+          }
+        }
+
+        store( file );
+        return null;
+      }
+    } );
+  }
+
+  /**
+   * Loads the stored cache. A damaged file is treated as empty cache - and is overwritten when the cache is stored.
+   */
+  @Nonnull
+  private static DependencyManifestCache loadOrEmpty( @Nonnull File file ) {
+    try {
+      return load( file );
+    } catch ( IOException ignore ) {
+      return new DependencyManifestCache();
+    } catch ( RuntimeException ignore ) {
+      return new DependencyManifestCache();
+    }
+  }
+
+  private void store( @Nonnull File file ) throws IOException {
+    //Write to a temporary file first. A broken build must not leave a half written cache behind
+    File tmp = new File( file.getPath() + ".tmp" );
+    DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( tmp ) ) );
+    try {
+      out.writeInt( MAGIC );
+      out.writeInt( VERSION );
+
+      Map<String, Entry> snapshot = new LinkedHashMap<String, Entry>( entries );
+      out.writeInt( snapshot.size() );
+      for ( Map.Entry<String, Entry> entry : snapshot.entrySet() ) {
+        out.writeUTF( entry.getKey() );
+        entry.getValue().write( out );
+      }
+    } finally {
+      out.close();
+    }
+
+    if ( file.exists() && !file.delete() ) {
+      throw new IOException( "Could not delete <" + file.getAbsolutePath() + ">" );
+    }
+    if ( !tmp.renameTo( file ) ) {
+      throw new IOException( "Could not rename <" + tmp.getAbsolutePath() + "> to <" + file.getAbsolutePath() + ">" );
+    }
+  }
+
+  /**
+   * Loads the cache from the given file.
+   * Returns an empty cache if the file does not exist or has been written by another version.
+   *
+   * @param file the file
+   * @return the cache
+   *
+   * @throws IOException if the file could not be read or is damaged
+   */
+  @Nonnull
+  public static DependencyManifestCache load( @Nonnull File file ) throws IOException {
+    DependencyManifestCache cache = new DependencyManifestCache();
+    if ( !file.isFile() ) {
+      return cache;
+    }
+
+    //No count or length within the file can exceed the length of the file
+    long fileLength = file.length();
+    DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( file ) ) );
+    try {
+      if ( in.readInt() != MAGIC || in.readInt() != VERSION ) {
+        return cache;
+      }
+
+      int entryCount = checkLength( in.readInt(), fileLength );
+      for ( int i = 0; i < entryCount; i++ ) {
+        String key = in.readUTF();
+        cache.entries.put( key, Entry.read( in, fileLength ) );
+      }
+    } finally {
+      in.close();
+    }
+    return cache;
+  }
+
+  private static int checkLength( int length, long fileLength ) throws IOException {
+    if ( length < 0 || length > fileLength ) {
+      throw new IOException( "Damaged cache file: invalid length " + length );
+    }
+    return length;
+  }
+
+  /**
+   * The main attributes of one manifest
+   */
+  private static class Entry {
+    private volatile long lastUsed;
+    /**
+     * The main attributes - null if the artifact does not contain a manifest
+     */
+    @Nullable
+    private final Map<String, String> attributes;
+
+    private Entry( long lastUsed, @Nullable Map<String, String> attributes ) {
+      this.lastUsed = lastUsed;
+      this.attributes = attributes;
+    }
+
+    @Nullable
+    private Manifest toManifest() {
+      if ( attributes == null ) {
+        return null;
+      }
+
+      Manifest manifest = new Manifest();
+      Attributes mainAttributes = manifest.getMainAttributes();
+      for ( Map.Entry<String, String> attribute : attributes.entrySet() ) {
+        mainAttributes.putValue( attribute.getKey(), attribute.getValue() );
+      }
+      return manifest;
+    }
+
+    private void write( @Nonnull DataOutputStream out ) throws IOException {
+      out.writeLong( lastUsed );
+      out.writeBoolean( attributes != null );
+      if ( attributes == null ) {
+        return;
+      }
+
+      out.writeInt( attributes.size() );
+      for ( Map.Entry<String, String> attribute : attributes.entrySet() ) {
+        out.writeUTF( attribute.getKey() );
+        //Headers might exceed the 64k limit of writeUTF
+        byte[] value = attribute.getValue().getBytes( Charsets.UTF_8 );
+        out.writeInt( value.length );
+        out.write( value );
+      }
+    }
+
+    @Nonnull
+    private static Entry read( @Nonnull DataInputStream in, long fileLength ) throws IOException {
+      long lastUsed = in.readLong();
+      if ( !in.readBoolean() ) {
+        return new Entry( lastUsed, null );
+      }
+
+      int size = checkLength( in.readInt(), fileLength );
+      Map<String, String> attributes = new LinkedHashMap<String, String>();
+      for ( int i = 0; i < size; i++ ) {
+        String name = in.readUTF();
+        byte[] value = new byte[checkLength( in.readInt(), fileLength )];
+        in.readFully( value );
+        attributes.put( name, new String( value, Charsets.UTF_8 ) );
+      }
+      return new Entry( lastUsed, attributes );
+    }
+  }
+}
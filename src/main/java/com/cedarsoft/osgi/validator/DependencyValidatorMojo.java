@@ -0,0 +1,243 @@
+package com.cedarsoft.osgi.validator;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.Manifest;
+
+/**
+ * Validates the manifests of the bundles the project depends on.
+ * <p/>
+ * The same checks that are applied to the manifest of the project (prohibited packages and the custom rules)
+ * are applied to every runtime dependency that is an OSGi bundle.
+ * <p/>
+ * This goal requires the dependencies to be resolved. Therefore it is a separate goal and not part of the validation
+ * of the sources (that runs before the reactor modules have been built).
+ * <p/>
+ * The manifests are read in parallel (see {@link #threads}). Only the central directory and the manifest of each JAR are read.
+ * The main attributes are cached (see {@link DependencyManifestCache}) - so each artifact version is only read once.
+ *
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+@Mojo( name = "validate-dependencies", defaultPhase = LifecyclePhase.VERIFY, requiresDependencyResolution = ResolutionScope.RUNTIME, threadSafe = true )
+public class DependencyValidatorMojo extends AbstractValidatorMojo {
+  /**
+   * The local repository. The cache is stored within this directory - so it is shared by all builds.
+   */
+  @Parameter( defaultValue = "${settings.localRepository}", readonly = true )
+  protected String localRepository;
+
+  /**
+   * The file the manifests of the dependencies are cached in. Defaults to a file within the local repository.
+   */
+  @Parameter( property = "osgi-validation.dependencyCache" )
+  protected File dependencyCacheFile;
+
+  @Override
+  public void execute() throws MojoExecutionException, MojoFailureException {
+    List<Artifact> artifacts = getDependencyArtifacts();
+    if ( artifacts.isEmpty() ) {
+      getLog().info( "No dependencies found" );
+      return;
+    }
+
+    @Nullable File cacheFile = getDependencyCacheFile();
+    DependencyManifestCache cache = loadDependencyCache( cacheFile );
+    AtomicInteger cacheHits = new AtomicInteger();
+    List<Manifest> manifests = readManifests( artifacts, cache, cacheHits );
+
+    List<String> invalid = new ArrayList<String>();
+    int bundleCount = 0;
+    for ( int i = 0; i < artifacts.size(); i++ ) {
+      @Nullable Manifest manifest = manifests.get( i );
+      if ( manifest == null || manifest.getMainAttributes().getValue( "Bundle-SymbolicName" ) == null ) {
+        //Not a bundle
+        continue;
+      }
+
+      bundleCount++;
+      Artifact artifact = artifacts.get( i );
+      String coordinates = getCoordinates( artifact );
+      if ( !validateManifest( manifest, artifact.getGroupId() + "." + artifact.getArtifactId(), coordinates ) ) {
+        invalid.add( coordinates );
+      }
+    }
+
+    getLog().info( "Validated " + bundleCount + " of " + artifacts.size() + " dependencies (" + cacheHits.get() + " manifests from cache)" );
+
+    if ( cacheFile != null ) {
+      try {
+        cache.merge( cacheFile );
+      } catch ( IOException e ) {
+        getLog().warn( "Could not write dependency cache <" + cacheFile.getAbsolutePath() + ">: " + e.getMessage() );
+      }
+    }
+
+    if ( !invalid.isEmpty() && fail ) {
+      throw new MojoFailureException( "Invalid manifests found in " + invalid.size() + " dependencies: " + invalid );
+    }
+  }
+
+  /**
+   * Returns the resolved dependencies that are available at runtime
+   */
+  @Nonnull
+  private List<Artifact> getDependencyArtifacts() {
+    List<Artifact> artifacts = new ArrayList<Artifact>();
+    for ( Artifact artifact : getProject().getArtifacts() ) {
+      if ( artifact.getFile() == null ) {
+        continue;
+      }
+      if ( Artifact.SCOPE_TEST.equals( artifact.getScope() ) || Artifact.SCOPE_PROVIDED.equals( artifact.getScope() ) ) {
+        continue;
+      }
+      artifacts.add( artifact );
+    }
+    return artifacts;
+  }
+
+  /**
+   * Reads the manifests of the given artifacts (using the executor if there is one)
+   *
+   * @return the manifests (null for artifacts without a manifest) - in the same order as the artifacts
+   */
+  @Nonnull
+  private List<Manifest> readManifests( @Nonnull List<Artifact> artifacts, @Nonnull final DependencyManifestCache cache, @Nonnull final AtomicInteger cacheHits ) throws MojoExecutionException {
+    List<Callable<Manifest>> tasks = new ArrayList<Callable<Manifest>>();
+    for ( final Artifact artifact : artifacts ) {
+      tasks.add( new Callable<Manifest>() {
+        @Override
+        public Manifest call() throws IOException {
+          return readManifest( artifact, cache, cacheHits );
+        }
+      } );
+    }
+
+    List<Manifest> manifests = new ArrayList<Manifest>();
+    @Nullable ExecutorService executor = createExecutor();
+    try {
+      if ( executor == null ) {
+        for ( int i = 0; i < tasks.size(); i++ ) {
+          try {
+            manifests.add( tasks.get( i ).call() );
+          } catch ( Exception e ) {
+            throw new MojoExecutionException( "Could not read manifest of <" + getCoordinates( artifacts.get( i ) ) + ">", e );
+          }
+        }
+        return manifests;
+      }
+
+      List<Future<Manifest>> futures = executor.invokeAll( tasks );
+      for ( int i = 0; i < futures.size(); i++ ) {
+        try {
+          manifests.add( futures.get( i ).get() );
+        } catch ( ExecutionException e ) {
+          throw new MojoExecutionException( "Could not read manifest of <" + getCoordinates( artifacts.get( i ) ) + ">", e.getCause() );
+        }
+      }
+      return manifests;
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new MojoExecutionException( "Interrupted while reading the manifests", e );
+    } finally {
+      if ( executor != null ) {
+        executor.shutdownNow();
+      }
+    }
+  }
+
+  @Nullable
+  private static Manifest readManifest( @Nonnull Artifact artifact, @Nonnull DependencyManifestCache cache, @Nonnull AtomicInteger cacheHits ) throws IOException {
+    File file = artifact.getFile();
+
+    //Reactor modules that have not been packaged yet
+    if ( file.isDirectory() ) {
+      File manifestFile = new File( new File( file, "META-INF" ), "MANIFEST.MF" );
+      if ( !manifestFile.isFile() ) {
+        return null;
+      }
+      FileInputStream in = new FileInputStream( manifestFile );
+      try {
+        return new Manifest( in );
+      } finally {
+        in.close();
+      }
+    }
+
+    String key = DependencyManifestCache.createKey( getCoordinates( artifact ), file );
+    if ( cache.contains( key ) ) {
+      cacheHits.incrementAndGet();
+      return cache.get( key );
+    }
+
+    Manifest manifest = JarCentralDirectory.read( file ).getManifest();
+    cache.put( key, manifest );
+    return manifest;
+  }
+
+  @Nonnull
+  private DependencyManifestCache loadDependencyCache( @Nullable File cacheFile ) {
+    if ( cacheFile == null || forceFullValidation ) {
+      return new DependencyManifestCache();
+    }
+
+    try {
+      DependencyManifestCache cache = DependencyManifestCache.load( cacheFile );
+      getLog().debug( "Loaded " + cache.size() + " cached manifests from " + cacheFile.getAbsolutePath() );
+      return cache;
+    } catch ( IOException e ) {
+      //The damaged file is overwritten when the cache is merged
+      getLog().warn( "Could not read dependency cache <" + cacheFile.getAbsolutePath() + ">: " + e.getMessage() );
+      return new DependencyManifestCache();
+    } catch ( RuntimeException e ) {
+      getLog().warn( "Could not read dependency cache <" + cacheFile.getAbsolutePath() + ">: " + e );
+      return new DependencyManifestCache();
+    }
+  }
+
+  /**
+   * Returns the cache file: within the local repository or (if there is none) within the reactor target directory
+   */
+  @Nullable
+  protected File getDependencyCacheFile() {
+    if ( dependencyCacheFile != null ) {
+      return dependencyCacheFile;
+    }
+    if ( localRepository != null ) {
+      return new File( new File( new File( localRepository, ".cache" ), "osgi-validator" ), "dependency-manifests.bin" );
+    }
+
+    @Nullable File packageIndexFile = getPackageIndexFile();
+    if ( packageIndexFile == null ) {
+      return null;
+    }
+    return new File( packageIndexFile.getParentFile(), "dependency-manifests.bin" );
+  }
+
+  @Nonnull
+  private static String getCoordinates( @Nonnull Artifact artifact ) {
+    StringBuilder coordinates = new StringBuilder();
+    coordinates.append( artifact.getGroupId() ).append( ':' ).append( artifact.getArtifactId() ).append( ':' ).append( artifact.getVersion() );
+    if ( artifact.getClassifier() != null && artifact.getClassifier().length() > 0 ) {
+      coordinates.append( ':' ).append( artifact.getClassifier() );
+    }
+    return coordinates.toString();
+  }
+}
@@ -0,0 +1,324 @@
+package com.cedarsoft.osgi.validator;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Indexes the classes of several origins (source roots, class directories and JARs) to find the classes
+ * that are contained more than once.
+ * <p/>
+ * The index is compact: each package name is stored once, the simple class names are stored within the package.
+ * The origins are referenced by their index - a class that is found only once (the usual case) holds one {@link Integer}.
+ * <p/>
+ * The origins are grouped by artifact: the source roots and the classes directory of the project form one group,
+ * each classpath element forms its own group. The class files within the classes directory that have been compiled from
+ * a source root are no duplicates. Therefore output origins are ignored for classes that have a source origin.
+ * <p/>
+ * The index is not thread safe. The entries may be read in parallel - but must be added from one thread.
+ *
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+public class DuplicateClassIndex {
+  public static final String CLASS_FILE_SUFFIX = BundleContentValidator.CLASS_FILE_SUFFIX;
+  public static final String SOURCE_FILE_SUFFIX = ".java";
+
+  @Nonnull
+  private final List<Origin> origins = new ArrayList<Origin>();
+  /**
+   * The packages ('/' separated)
+   */
+  @Nonnull
+  private final Map<String, PackageEntry> packages = new HashMap<String, PackageEntry>();
+
+  private int classCount;
+
+  /**
+   * Adds a new origin
+   *
+   * @param label  the label the origin is reported with
+   * @param group  the group (artifact) of the origin
+   * @param output whether the classes of the origin are compiled from other origins within the group (e.g. the classes directory)
+   * @return the index of the origin
+   */
+  public int addOrigin( @Nonnull String label, int group, boolean output ) {
+    origins.add( new Origin( label, group, output ) );
+    return origins.size() - 1;
+  }
+
+  @Nonnull
+  public String getOriginLabel( int origin ) {
+    return origins.get( origin ).label;
+  }
+
+  /**
+   * Adds a class
+   *
+   * @param origin    the index of the origin
+   * @param className the class name ('/' separated - as within JAR files - without suffix)
+   */
+  public void add( int origin, @Nonnull String className ) {
+    int lastSeparator = className.lastIndexOf( '/' );
+    String packageName = lastSeparator < 0 ? "" : className.substring( 0, lastSeparator );
+    String simpleName = className.substring( lastSeparator + 1 );
+
+    PackageEntry packageEntry = packages.get( packageName );
+    if ( packageEntry == null ) {
+      packageEntry = new PackageEntry();
+      packages.put( packageName, packageEntry );
+    }
+    if ( packageEntry.add( simpleName, origin ) ) {
+      classCount++;
+    }
+  }
+
+  /**
+   * Converts the entry names (e.g. the entries of a JAR) to class names.
+   * Inner classes, module and package descriptors and the entries within META-INF are skipped.
+   *
+   * @param entryNames the entry names ('/' separated)
+   * @return the class names ('/' separated, without suffix)
+   */
+  @Nonnull
+  public static List<String> toClassNames( @Nonnull Iterable<? extends String> entryNames ) {
+    List<String> classNames = new ArrayList<String>();
+    for ( String entryName : entryNames ) {
+      @Nullable String className = toClassName( entryName );
+      if ( className != null ) {
+        classNames.add( className );
+      }
+    }
+    return classNames;
+  }
+
+  /**
+   * Returns the number of distinct classes
+   *
+   * @return the number of classes
+   */
+  public int getClassCount() {
+    return classCount;
+  }
+
+  public int getPackageCount() {
+    return packages.size();
+  }
+
+  /**
+   * Returns the classes that are contained within more than one origin
+   *
+   * @return the class names ('.' separated) and the labels of the origins
+   */
+  @Nonnull
+  public SortedMap<String, List<String>> findDuplicateClasses() {
+    SortedMap<String, List<String>> duplicates = new TreeMap<String, List<String>>();
+    for ( Map.Entry<String, PackageEntry> packageEntry : packages.entrySet() ) {
+      for ( Map.Entry<String, Object> classEntry : packageEntry.getValue().classes.entrySet() ) {
+        Object value = classEntry.getValue();
+        if ( !( value instanceof int[] ) ) {
+          continue;
+        }
+
+        int[] classOrigins = relevantOrigins( ( int[] ) value );
+        if ( classOrigins.length < 2 ) {
+          continue;
+        }
+
+        List<String> labels = new ArrayList<String>();
+        for ( int origin : classOrigins ) {
+          labels.add( origins.get( origin ).label );
+        }
+        duplicates.put( toDotted( packageEntry.getKey(), classEntry.getKey() ), labels );
+      }
+    }
+    return duplicates;
+  }
+
+  /**
+   * Returns the packages that are contained within the given group and at least one other group (split packages).
+   * Packages that are only split between other groups (e.g. two dependencies) are not returned.
+   *
+   * @param group the group (e.g. the group of the project)
+   * @return the package names ('.' separated) and the labels of the origins
+   */
+  @Nonnull
+  public SortedMap<String, List<String>> findSplitPackages( int group ) {
+    SortedMap<String, List<String>> splitPackages = new TreeMap<String, List<String>>();
+    for ( Map.Entry<String, PackageEntry> packageEntry : packages.entrySet() ) {
+      BitSet packageOrigins = packageEntry.getValue().origins;
+
+      BitSet groups = new BitSet();
+      for ( int origin = packageOrigins.nextSetBit( 0 ); origin >= 0; origin = packageOrigins.nextSetBit( origin + 1 ) ) {
+        groups.set( origins.get( origin ).group );
+      }
+      if ( !groups.get( group ) || groups.cardinality() < 2 ) {
+        continue;
+      }
+
+      List<String> labels = new ArrayList<String>();
+      for ( int origin = packageOrigins.nextSetBit( 0 ); origin >= 0; origin = packageOrigins.nextSetBit( origin + 1 ) ) {
+        labels.add( origins.get( origin ).label );
+      }
+      splitPackages.put( packageEntry.getKey().replace( '/', '.' ), labels );
+    }
+    return splitPackages;
+  }
+
+  /**
+   * Removes the output origins if there is a source origin within the same group
+   */
+  @Nonnull
+  private int[] relevantOrigins( @Nonnull int[] classOrigins ) {
+    BitSet sourceGroups = new BitSet();
+    for ( int origin : classOrigins ) {
+      if ( !origins.get( origin ).output ) {
+        sourceGroups.set( origins.get( origin ).group );
+      }
+    }
+
+    int[] relevant = new int[classOrigins.length];
+    int count = 0;
+    for ( int origin : classOrigins ) {
+      Origin current = origins.get( origin );
+      if ( !current.output || !sourceGroups.get( current.group ) ) {
+        relevant[count++] = origin;
+      }
+    }
+
+    int[] result = new int[count];
+    System.arraycopy( relevant, 0, result, 0, count );
+    return result;
+  }
+
+  /**
+   * Converts the entry name to a class name
+   *
+   * @param entryName the entry name ('/' separated)
+   * @return the class name ('/' separated, without suffix) or null if the entry is not a top level class
+   */
+  @Nullable
+  public static String toClassName( @Nonnull String entryName ) {
+    if ( !entryName.endsWith( CLASS_FILE_SUFFIX ) || entryName.startsWith( "META-INF/" ) ) {
+      return null;
+    }
+
+    String className = entryName.substring( 0, entryName.length() - CLASS_FILE_SUFFIX.length() );
+    //Inner classes are contained within the same file as their outer class
+    if ( className.indexOf( '$' ) >= 0 || className.endsWith( "package-info" ) || className.endsWith( "module-info" ) ) {
+      return null;
+    }
+    return className;
+  }
+
+  /**
+   * Collects the classes within the given directory (class files or source files)
+   *
+   * @param directory the directory
+   * @param suffix    the suffix of the files ({@link #CLASS_FILE_SUFFIX} or {@link #SOURCE_FILE_SUFFIX})
+   * @return the class names ('/' separated, without suffix)
+   */
+  @Nonnull
+  public static List<String> collectClassNames( @Nonnull File directory, @Nonnull String suffix ) {
+    List<String> classNames = new ArrayList<String>();
+    collectClassNames( directory, "", suffix, classNames );
+    return classNames;
+  }
+
+  private static void collectClassNames( @Nonnull File directory, @Nonnull String relativeDirectory, @Nonnull String suffix, @Nonnull List<String> classNames ) {
+    File[] children = directory.listFiles();
+    if ( children == null ) {
+      return;
+    }
+
+    for ( File child : children ) {
+      String name = child.getName();
+      String relativePath = relativeDirectory.length() == 0 ? name : relativeDirectory + '/' + name;
+      if ( child.isDirectory() ) {
+        if ( !relativePath.equals( "META-INF" ) ) {
+          collectClassNames( child, relativePath, suffix, classNames );
+        }
+        continue;
+      }
+
+      if ( !name.endsWith( suffix ) ) {
+        continue;
+      }
+      @Nullable String className = toClassName( relativePath.substring( 0, relativePath.length() - suffix.length() ) + CLASS_FILE_SUFFIX );
+      if ( className != null ) {
+        classNames.add( className );
+      }
+    }
+  }
+
+  @Nonnull
+  private static String toDotted( @Nonnull String packageName, @Nonnull String simpleName ) {
+    if ( packageName.length() == 0 ) {
+      return simpleName;
+    }
+    return packageName.replace( '/', '.' ) + '.' + simpleName;
+  }
+
+  private static class Origin {
+    @Nonnull
+    private final String label;
+    private final int group;
+    private final boolean output;
+
+    private Origin( @Nonnull String label, int group, boolean output ) {
+      this.label = label;
+      this.group = group;
+      this.output = output;
+    }
+  }
+
+  /**
+   * The classes of one package
+   */
+  private static class PackageEntry {
+    /**
+     * The simple class name to the origin ({@link Integer}) or the origins (int[]) if the class is contained more than once
+     */
+    @Nonnull
+    private final Map<String, Object> classes = new HashMap<String, Object>();
+    /**
+     * The origins that contain classes within this package
+     */
+    @Nonnull
+    private final BitSet origins = new BitSet();
+
+    /**
+     * Adds the class
+     *
+     * @return true if the class has not been added before
+     */
+    private boolean add( @Nonnull String simpleName, int origin ) {
+      origins.set( origin );
+
+      Object existing = classes.put( simpleName, origin );
+      if ( existing == null ) {
+        return true;
+      }
+
+      int[] existingOrigins = existing instanceof Integer ? new int[]{( Integer ) existing} : ( int[] ) existing;
+      for ( int existingOrigin : existingOrigins ) {
+        if ( existingOrigin == origin ) {
+          classes.put( simpleName, existing );
+          return false;
+        }
+      }
+
+      int[] merged = new int[existingOrigins.length + 1];
+      System.arraycopy( existingOrigins, 0, merged, 0, existingOrigins.length );
+      merged[existingOrigins.length] = origin;
+      classes.put( simpleName, merged );
+      return false;
+    }
+  }
+}
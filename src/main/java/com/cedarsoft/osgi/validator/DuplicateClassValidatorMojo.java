@@ -0,0 +1,223 @@
+package com.cedarsoft.osgi.validator;
+
+import org.apache.maven.artifact.DependencyResolutionRequiredException;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Finds classes that are contained more than once within the source roots, the classes directory and the compile classpath.
+ * <p/>
+ * If two source roots (e.g. generated sources and src/main/java) or a dependency contain the same class,
+ * the compiler or the class loader silently picks one of them.
+ * <p/>
+ * The source roots, class directories and the central directories of the JARs are read in parallel (see {@link #threads}).
+ * The classes are collected within a {@link DuplicateClassIndex}.
+ * Packages of the project that are also contained within a dependency (split packages) are reported as warnings.
+ *
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+@Mojo( name = "validate-duplicates", defaultPhase = LifecyclePhase.PROCESS_CLASSES, requiresDependencyResolution = ResolutionScope.COMPILE, threadSafe = true )
+public class DuplicateClassValidatorMojo extends AbstractValidatorMojo {
+  /**
+   * The group of the source roots and the classes directory
+   */
+  private static final int PROJECT_GROUP = 0;
+
+  @Override
+  public void execute() throws MojoExecutionException, MojoFailureException {
+    if ( "pom".equals( mavenProject.getPackaging() ) ) {
+      getLog().info( "Skipping for packaging \"pom\"" );
+      return;
+    }
+
+    DuplicateClassIndex index = new DuplicateClassIndex();
+    List<Callable<List<String>>> tasks = new ArrayList<Callable<List<String>>>();
+    List<File> files = new ArrayList<File>();
+
+    for ( String sourceRoot : new LinkedHashSet<String>( getSourceRoots() ) ) {
+      File sourceRootDir = new File( sourceRoot );
+      if ( sourceRootDir.isDirectory() ) {
+        index.addOrigin( getLabel( sourceRootDir ), PROJECT_GROUP, false );
+        tasks.add( createDirectoryTask( sourceRootDir, DuplicateClassIndex.SOURCE_FILE_SUFFIX ) );
+        files.add( sourceRootDir );
+      }
+    }
+
+    if ( classesDir != null && classesDir.isDirectory() ) {
+      index.addOrigin( getLabel( classesDir ), PROJECT_GROUP, true );
+      tasks.add( createDirectoryTask( classesDir, DuplicateClassIndex.CLASS_FILE_SUFFIX ) );
+      files.add( classesDir );
+    }
+
+    int group = PROJECT_GROUP;
+    for ( File element : getClasspathElements() ) {
+      if ( element.isDirectory() ) {
+        tasks.add( createDirectoryTask( element, DuplicateClassIndex.CLASS_FILE_SUFFIX ) );
+      } else if ( element.isFile() ) {
+        tasks.add( createJarTask( element ) );
+      } else {
+        continue;
+      }
+      index.addOrigin( getLabel( element ), ++group, false );
+      files.add( element );
+    }
+
+    List<List<String>> classNames = read( tasks, files );
+    //Added within the build thread in the order of the origins - the result is reproducible
+    for ( int origin = 0; origin < classNames.size(); origin++ ) {
+      for ( String className : classNames.get( origin ) ) {
+        index.add( origin, className );
+      }
+    }
+    getLog().info( "Indexed " + index.getClassCount() + " classes in " + index.getPackageCount() + " packages from " + files.size() + " locations" );
+
+    SortedMap<String, List<String>> splitPackages = index.findSplitPackages( PROJECT_GROUP );
+    if ( !splitPackages.isEmpty() ) {
+      getLog().warn( "Found " + splitPackages.size() + " packages that are also contained within dependencies:" );
+      list( splitPackages, false );
+    }
+
+    SortedMap<String, List<String>> duplicates = index.findDuplicateClasses();
+    if ( duplicates.isEmpty() ) {
+      getLog().info( "No duplicate classes found" );
+      return;
+    }
+
+    getLog().error( "Found " + duplicates.size() + " duplicate classes:" );
+    list( duplicates, true );
+    if ( fail ) {
+      throw new MojoFailureException( "There exist " + duplicates.size() + " classes that are contained more than once" );
+    }
+  }
+
+  /**
+   * Reads the class names (using the executor if there is one)
+   *
+   * @return the class names for each task
+   */
+  @Nonnull
+  private List<List<String>> read( @Nonnull List<Callable<List<String>>> tasks, @Nonnull List<File> files ) throws MojoExecutionException {
+    List<List<String>> classNames = new ArrayList<List<String>>();
+    @Nullable ExecutorService executor = createExecutor();
+    try {
+      if ( executor == null ) {
+        for ( int i = 0; i < tasks.size(); i++ ) {
+          try {
+            classNames.add( tasks.get( i ).call() );
+          } catch ( Exception e ) {
+            throw new MojoExecutionException( "Could not read <" + files.get( i ).getAbsolutePath() + ">", e );
+          }
+        }
+        return classNames;
+      }
+
+      List<Future<List<String>>> futures = executor.invokeAll( tasks );
+      for ( int i = 0; i < futures.size(); i++ ) {
+        try {
+          classNames.add( futures.get( i ).get() );
+        } catch ( ExecutionException e ) {
+          throw new MojoExecutionException( "Could not read <" + files.get( i ).getAbsolutePath() + ">", e.getCause() );
+        }
+      }
+      return classNames;
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new MojoExecutionException( "Interrupted while reading the classpath", e );
+    } finally {
+      if ( executor != null ) {
+        executor.shutdownNow();
+      }
+    }
+  }
+
+  private void list( @Nonnull SortedMap<String, List<String>> entries, boolean error ) {
+    int listed = 0;
+    for ( Map.Entry<String, List<String>> entry : entries.entrySet() ) {
+      if ( maxListedViolations >= 0 && listed >= maxListedViolations ) {
+        getLog().warn( "  ... and " + ( entries.size() - listed ) + " more" );
+        return;
+      }
+
+      String message = "  " + entry.getKey() + ": " + entry.getValue();
+      if ( error ) {
+        getLog().error( message );
+      } else {
+        getLog().warn( message );
+      }
+      listed++;
+    }
+  }
+
+  /**
+   * Returns the compile classpath without the classes directory of the project
+   */
+  @Nonnull
+  private Set<File> getClasspathElements() throws MojoExecutionException {
+    Set<File> elements = new LinkedHashSet<File>();
+    try {
+      for ( String element : getProject().getCompileClasspathElements() ) {
+        File file = new File( element );
+        if ( !file.equals( classesDir ) ) {
+          elements.add( file );
+        }
+      }
+    } catch ( DependencyResolutionRequiredException e ) {
+      throw new MojoExecutionException( "Could not resolve the compile classpath", e );
+    }
+    return elements;
+  }
+
+  @Nonnull
+  private String getLabel( @Nonnull File file ) {
+    @Nullable File basedir = getProject().getBasedir();
+    if ( basedir != null ) {
+      String basePath = basedir.getAbsolutePath() + File.separator;
+      String path = file.getAbsolutePath();
+      if ( path.startsWith( basePath ) ) {
+        return path.substring( basePath.length() );
+      }
+    }
+    if ( file.isFile() ) {
+      return file.getName();
+    }
+    return file.getPath();
+  }
+
+  @Nonnull
+  private static Callable<List<String>> createDirectoryTask( @Nonnull final File directory, @Nonnull final String suffix ) {
+    return new Callable<List<String>>() {
+      @Override
+      public List<String> call() {
+        return DuplicateClassIndex.collectClassNames( directory, suffix );
+      }
+    };
+  }
+
+  @Nonnull
+  private static Callable<List<String>> createJarTask( @Nonnull final File jar ) {
+    return new Callable<List<String>>() {
+      @Override
+      public List<String> call() throws IOException {
+        return DuplicateClassIndex.toClassNames( JarCentralDirectory.read( jar ).getEntryNames() );
+      }
+    };
+  }
+}
@@ -0,0 +1,97 @@
+package com.cedarsoft.osgi.validator;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Escapes strings for the reports that are written without any JSON or XML library.
+ *
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+final class Escaping {
+  private Escaping() {
+  }
+
+  /**
+   * Returns the given value as quoted JSON string
+   *
+   * @param value the value
+   * @return the quoted value
+   */
+  @Nonnull
+  static String json( @Nonnull String value ) {
+    StringBuilder quoted = new StringBuilder( value.length() + 2 );
+    quoted.append( '"' );
+    for ( int i = 0; i < value.length(); i++ ) {
+      char c = value.charAt( i );
+      switch ( c ) {
+        case '"':
+          quoted.append( "\\\"" );
+          break;
+        case '\\':
+          quoted.append( "\\\\" );
+          break;
+        case '\n':
+          quoted.append( "\\n" );
+          break;
+        case '\r':
+          quoted.append( "\\r" );
+          break;
+        case '\t':
+          quoted.append( "\\t" );
+          break;
+        default:
+          if ( c < 0x20 ) {
+            quoted.append( "\\u" );
+            String hex = Integer.toHexString( c );
+            for ( int j = hex.length(); j < 4; j++ ) {
+              quoted.append( '0' );
+            }
+            quoted.append( hex );
+          } else {
+            quoted.append( c );
+          }
+      }
+    }
+    return quoted.append( '"' ).toString();
+  }
+
+  /**
+   * Escapes the given value for usage within XML content and attribute values.
+   * Control characters that are not allowed in XML 1.0 are replaced by '?'.
+   *
+   * @param value the value
+   * @return the escaped value
+   */
+  @Nonnull
+  static String xml( @Nonnull String value ) {
+    StringBuilder escaped = new StringBuilder( value.length() );
+    for ( int i = 0; i < value.length(); i++ ) {
+      char c = value.charAt( i );
+      switch ( c ) {
+        case '&':
+          escaped.append( "&amp;" );
+          break;
+        case '<':
+          escaped.append( "&lt;" );
+          break;
+        case '>':
+          escaped.append( "&gt;" );
+          break;
+        case '"':
+          escaped.append( "&quot;" );
+          break;
+        case '\'':
+          escaped.append( "&apos;" );
+          break;
+        case '\n':
+        case '\r':
+        case '\t':
+          escaped.append( "&#" ).append( ( int ) c ).append( ';' );
+          break;
+        default:
+          escaped.append( c < 0x20 ? '?' : c );
+      }
+    }
+    return escaped.toString();
+  }
+}
@@ -0,0 +1,63 @@
+package com.cedarsoft.osgi.validator;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+
+/**
+ * Serializes the updates of files that are shared by several modules or builds (e.g. within the reactor target directory).
+ * <p/>
+ * A lock file next to the file is locked while the update runs. Since file locks are held by the whole VM,
+ * the updates within one VM (parallel builds) are serialized additionally.
+ *
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+final class FileLocks {
+  @Nonnull
+  private static final Object LOCK = new Object();
+
+  private FileLocks() {
+  }
+
+  /**
+   * Runs the given update while the file is locked
+   *
+   * @param file   the file that is updated
+   * @param update the update
+   * @param <T>    the type of the result
+   * @return the result of the update
+   *
+   * @throws IOException if the file could not be locked or the update failed
+   */
+  static <T> T update( @Nonnull File file, @Nonnull Update<T> update ) throws IOException {
+    synchronized ( LOCK ) {
+      File dir = file.getParentFile();
+      if ( dir != null && !dir.isDirectory() && !dir.mkdirs() ) {
+        throw new IOException( "Could not create directory <" + dir.getAbsolutePath() + ">" );
+      }
+
+      RandomAccessFile lockFile = new RandomAccessFile( new File( file.getPath() + ".lock" ), "rw" );
+      try {
+        FileLock lock = lockFile.getChannel().lock();
+        try {
+          return update.run();
+        } finally {
+          lock.release();
+        }
+      } finally {
+        lockFile.close();
+      }
+    }
+  }
+
+  /**
+   * An update of a locked file
+   *
+   * @param <T> the type of the result
+   */
+  interface Update<T> {
+    T run() throws IOException;
+  }
+}
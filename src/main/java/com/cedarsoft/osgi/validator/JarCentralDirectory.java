@@ -0,0 +1,273 @@
+package com.cedarsoft.osgi.validator;
+
+import com.google.common.base.Charsets;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads the entry names and the manifest of a JAR without inflating the other entries.
+ * <p/>
+ * Only the end of the file (the central directory) is memory mapped. The entries themselves are never touched - except
+ * the manifest. Therefore large artifacts can be read without loading them into the heap.
+ * <p/>
+ * Zip64 archives are supported.
+ *
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+public class JarCentralDirectory {
+  private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+  private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+  private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+  private static final int ZIP64_LOCATOR_SIZE = 20;
+  private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06064b50;
+  private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_SIZE = 56;
+  private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+  private static final int CENTRAL_HEADER_SIZE = 46;
+  private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+  private static final int LOCAL_HEADER_SIZE = 30;
+  private static final int MAX_COMMENT_LENGTH = 0xFFFF;
+
+  private static final int METHOD_STORED = 0;
+  private static final int METHOD_DEFLATED = 8;
+
+  private static final long UNSIGNED_INT_MASK = 0xFFFFFFFFL;
+  private static final int UNSIGNED_SHORT_MASK = 0xFFFF;
+
+  @Nonnull
+  private final File file;
+  @Nonnull
+  private final List<String> entryNames;
+  @Nullable
+  private final Manifest manifest;
+
+  private JarCentralDirectory( @Nonnull File file, @Nonnull List<String> entryNames, @Nullable Manifest manifest ) {
+    this.file = file;
+    this.entryNames = Collections.unmodifiableList( entryNames );
+    this.manifest = manifest;
+  }
+
+  @Nonnull
+  public File getFile() {
+    return file;
+  }
+
+  /**
+   * Returns the names of all entries (in the order of the central directory)
+   *
+   * @return the entry names
+   */
+  @Nonnull
+  public List<String> getEntryNames() {
+    //noinspection ReturnOfCollectionOrArrayField
+    return entryNames;
+  }
+
+  /**
+   * Returns the manifest
+   *
+   * @return the manifest or null if the JAR does not contain a manifest
+   */
+  @Nullable
+  public Manifest getManifest() {
+    return manifest;
+  }
+
+  /**
+   * Reads the central directory of the given JAR
+   *
+   * @param file the JAR file
+   * @return the central directory
+   *
+   * @throws IOException if the file could not be read or is not a valid zip file
+   */
+  @Nonnull
+  public static JarCentralDirectory read( @Nonnull File file ) throws IOException {
+    RandomAccessFile randomAccessFile = new RandomAccessFile( file, "r" );
+    try {
+      FileChannel channel = randomAccessFile.getChannel();
+      return read( file, channel );
+    } finally {
+      randomAccessFile.close();
+    }
+  }
+
+  @Nonnull
+  private static JarCentralDirectory read( @Nonnull File file, @Nonnull FileChannel channel ) throws IOException {
+    long fileSize = channel.size();
+    if ( fileSize < END_OF_CENTRAL_DIRECTORY_SIZE ) {
+      throw new IOException( "Not a zip file <" + file.getAbsolutePath() + ">: Too short" );
+    }
+
+    //The end of central directory record is followed by a comment of variable length
+    long tailStart = Math.max( 0, fileSize - END_OF_CENTRAL_DIRECTORY_SIZE - MAX_COMMENT_LENGTH - ZIP64_LOCATOR_SIZE );
+    MappedByteBuffer tail = map( channel, tailStart, fileSize - tailStart );
+
+    int endOfCentralDirectory = findEndOfCentralDirectory( tail );
+    if ( endOfCentralDirectory < 0 ) {
+      throw new IOException( "Not a zip file <" + file.getAbsolutePath() + ">: No end of central directory found" );
+    }
+
+    long entryCount = tail.getShort( endOfCentralDirectory + 10 ) & UNSIGNED_SHORT_MASK;
+    long centralDirectorySize = tail.getInt( endOfCentralDirectory + 12 ) & UNSIGNED_INT_MASK;
+    long centralDirectoryOffset = tail.getInt( endOfCentralDirectory + 16 ) & UNSIGNED_INT_MASK;
+
+    int locator = endOfCentralDirectory - ZIP64_LOCATOR_SIZE;
+    if ( locator >= 0 && tail.getInt( locator ) == ZIP64_LOCATOR_SIGNATURE ) {
+      long zip64Offset = tail.getLong( locator + 8 );
+      MappedByteBuffer zip64 = map( channel, zip64Offset, ZIP64_END_OF_CENTRAL_DIRECTORY_SIZE );
+      if ( zip64.getInt( 0 ) != ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE ) {
+        throw new IOException( "Invalid zip64 end of central directory in <" + file.getAbsolutePath() + ">" );
+      }
+      entryCount = zip64.getLong( 32 );
+      centralDirectorySize = zip64.getLong( 40 );
+      centralDirectoryOffset = zip64.getLong( 48 );
+    }
+
+    if ( centralDirectoryOffset + centralDirectorySize > fileSize ) {
+      throw new IOException( "Invalid central directory in <" + file.getAbsolutePath() + ">" );
+    }
+
+    MappedByteBuffer centralDirectory = map( channel, centralDirectoryOffset, centralDirectorySize );
+
+    List<String> entryNames = new ArrayList<String>( ( int ) Math.min( entryCount, Integer.MAX_VALUE ) );
+    @Nullable Manifest manifest = null;
+
+    int position = 0;
+    for ( long i = 0; i < entryCount; i++ ) {
+      if ( position + CENTRAL_HEADER_SIZE > centralDirectorySize || centralDirectory.getInt( position ) != CENTRAL_HEADER_SIGNATURE ) {
+        throw new IOException( "Invalid central directory entry #" + i + " in <" + file.getAbsolutePath() + ">" );
+      }
+
+      int method = centralDirectory.getShort( position + 10 ) & UNSIGNED_SHORT_MASK;
+      long compressedSize = centralDirectory.getInt( position + 20 ) & UNSIGNED_INT_MASK;
+      long uncompressedSize = centralDirectory.getInt( position + 24 ) & UNSIGNED_INT_MASK;
+      int nameLength = centralDirectory.getShort( position + 28 ) & UNSIGNED_SHORT_MASK;
+      int extraLength = centralDirectory.getShort( position + 30 ) & UNSIGNED_SHORT_MASK;
+      int commentLength = centralDirectory.getShort( position + 32 ) & UNSIGNED_SHORT_MASK;
+      long localHeaderOffset = centralDirectory.getInt( position + 42 ) & UNSIGNED_INT_MASK;
+
+      String name = readName( centralDirectory, position + CENTRAL_HEADER_SIZE, nameLength );
+      entryNames.add( name );
+
+      if ( manifest == null && JarFile.MANIFEST_NAME.equalsIgnoreCase( name ) ) {
+        if ( compressedSize == UNSIGNED_INT_MASK || uncompressedSize == UNSIGNED_INT_MASK || localHeaderOffset == UNSIGNED_INT_MASK ) {
+          throw new IOException( "Manifest too large in <" + file.getAbsolutePath() + ">" );
+        }
+        manifest = readManifest( file, channel, method, ( int ) compressedSize, ( int ) uncompressedSize, localHeaderOffset );
+      }
+
+      position += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+    }
+
+    return new JarCentralDirectory( file, entryNames, manifest );
+  }
+
+  @Nonnull
+  private static MappedByteBuffer map( @Nonnull FileChannel channel, long position, long size ) throws IOException {
+    if ( size > Integer.MAX_VALUE ) {
+      throw new IOException( "Region too large: " + size );
+    }
+    if ( position < 0 || position + size > channel.size() ) {
+      throw new IOException( "Region <" + position + ", " + size + "> exceeds the file" );
+    }
+    MappedByteBuffer buffer = channel.map( FileChannel.MapMode.READ_ONLY, position, size );
+    buffer.order( ByteOrder.LITTLE_ENDIAN );
+    return buffer;
+  }
+
+  /**
+   * Searches backwards for the end of central directory record
+   *
+   * @return the position within the buffer or -1 if no record has been found
+   */
+  private static int findEndOfCentralDirectory( @Nonnull MappedByteBuffer tail ) {
+    for ( int position = tail.limit() - END_OF_CENTRAL_DIRECTORY_SIZE; position >= 0; position-- ) {
+      if ( tail.getInt( position ) != END_OF_CENTRAL_DIRECTORY_SIGNATURE ) {
+        continue;
+      }
+      //The comment must reach exactly to the end of the file
+      int commentLength = tail.getShort( position + 20 ) & UNSIGNED_SHORT_MASK;
+      if ( position + END_OF_CENTRAL_DIRECTORY_SIZE + commentLength == tail.limit() ) {
+        return position;
+      }
+    }
+    return -1;
+  }
+
+  @Nonnull
+  private static String readName( @Nonnull MappedByteBuffer buffer, int position, int length ) {
+    byte[] bytes = new byte[length];
+    for ( int i = 0; i < length; i++ ) {
+      bytes[i] = buffer.get( position + i );
+    }
+    return new String( bytes, Charsets.UTF_8 );
+  }
+
+  @Nonnull
+  private static Manifest readManifest( @Nonnull File file, @Nonnull FileChannel channel, int method, int compressedSize, int uncompressedSize, long localHeaderOffset ) throws IOException {
+    MappedByteBuffer localHeader = map( channel, localHeaderOffset, LOCAL_HEADER_SIZE );
+    if ( localHeader.getInt( 0 ) != LOCAL_HEADER_SIGNATURE ) {
+      throw new IOException( "Invalid local header for manifest in <" + file.getAbsolutePath() + ">" );
+    }
+    int nameLength = localHeader.getShort( 26 ) & UNSIGNED_SHORT_MASK;
+    int extraLength = localHeader.getShort( 28 ) & UNSIGNED_SHORT_MASK;
+
+    MappedByteBuffer data = map( channel, localHeaderOffset + LOCAL_HEADER_SIZE + nameLength + extraLength, compressedSize );
+    byte[] compressed = new byte[compressedSize];
+    data.get( compressed );
+
+    byte[] content;
+    switch ( method ) {
+      case METHOD_STORED:
+        content = compressed;
+        break;
+      case METHOD_DEFLATED:
+        content = inflate( file, compressed, uncompressedSize );
+        break;
+      default:
+        throw new IOException( "Unsupported compression method <" + method + "> for manifest in <" + file.getAbsolutePath() + ">" );
+    }
+
+    return new Manifest( new ByteArrayInputStream( content ) );
+  }
+
+  @Nonnull
+  private static byte[] inflate( @Nonnull File file, @Nonnull byte[] compressed, int uncompressedSize ) throws IOException {
+    Inflater inflater = new Inflater( true );
+    try {
+      inflater.setInput( compressed );
+      byte[] content = new byte[uncompressedSize];
+      int length = 0;
+      while ( length < uncompressedSize && !inflater.finished() ) {
+        int read = inflater.inflate( content, length, uncompressedSize - length );
+        if ( read == 0 && ( inflater.needsInput() || inflater.needsDictionary() ) ) {
+          break;
+        }
+        length += read;
+      }
+      if ( length != uncompressedSize ) {
+        throw new IOException( "Could not inflate manifest in <" + file.getAbsolutePath() + ">" );
+      }
+      return content;
+    } catch ( DataFormatException e ) {
+      throw new IOException( "Could not inflate manifest in <" + file.getAbsolutePath() + ">: " + e.getMessage() );
+    } finally {
+      inflater.end();
+    }
+  }
+}
@@ -0,0 +1,312 @@
+package com.cedarsoft.osgi.validator;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parses OSGi manifest headers like Export-Package and Import-Package.
+ * <p/>
+ * <pre>
+ *   header    ::= clause ( ',' clause ) *
+ *   clause    ::= path ( ';' path ) * ( ';' parameter ) *
+ *   parameter ::= directive | attribute
+ *   directive ::= extended ':=' argument
+ *   attribute ::= extended ( ':' type ) ? '=' argument
+ *   argument  ::= extended | quoted-string
+ * </pre>
+ * Separators within quoted strings (e.g. <code>version="[1.0,2.0)"</code> or <code>uses:="a,b"</code>) are ignored.
+ * The header is parsed within one pass - each char is visited exactly once.
+ *
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+public class ManifestHeaderParser {
+  private ManifestHeaderParser() {
+  }
+
+  /**
+   * Parses the given header
+   *
+   * @param header the header value
+   * @return the clauses
+   *
+   * @throws IllegalArgumentException if the header contains an unterminated quoted string
+   */
+  @Nonnull
+  public static List<Clause> parse( @Nonnull CharSequence header ) throws IllegalArgumentException {
+    ClauseCollector collector = new ClauseCollector();
+    parse( header, collector );
+    return collector.clauses;
+  }
+
+  /**
+   * Returns the paths (e.g. the package names) of all clauses.
+   * The attributes and directives are skipped without creating any objects.
+   *
+   * @param header the header
+   * @return the paths in the order of the header
+   *
+   * @throws IllegalArgumentException if the header contains an unterminated quoted string
+   */
+  @Nonnull
+  public static List<String> parsePaths( @Nonnull CharSequence header ) throws IllegalArgumentException {
+    final List<String> paths = new ArrayList<String>();
+    parse( header, new Handler() {
+      @Override
+      public void path( @Nonnull String path ) {
+        paths.add( path );
+      }
+
+      @Override
+      public void parameter( @Nonnull CharSequence header, int start, int assignment, int end ) {
+      }
+
+      @Override
+      public void endClause() {
+      }
+    } );
+    return paths;
+  }
+
+  private static void parse( @Nonnull CharSequence header, @Nonnull Handler handler ) throws IllegalArgumentException {
+    int length = header.length();
+    int elementStart = 0;
+    //The index of the first '=' within the current element (-1 if there is none)
+    int assignment = -1;
+    boolean quoted = false;
+    boolean escaped = false;
+
+    for ( int i = 0; i < length; i++ ) {
+      char c = header.charAt( i );
+
+      if ( quoted ) {
+        if ( escaped ) {
+          escaped = false;
+        } else if ( c == '\\' ) {
+          escaped = true;
+        } else if ( c == '"' ) {
+          quoted = false;
+        }
+        continue;
+      }
+
+      switch ( c ) {
+        case '"':
+          quoted = true;
+          break;
+        case '=':
+          if ( assignment < 0 ) {
+            assignment = i;
+          }
+          break;
+        case ';':
+          element( header, elementStart, assignment, i, handler );
+          elementStart = i + 1;
+          assignment = -1;
+          break;
+        case ',':
+          element( header, elementStart, assignment, i, handler );
+          handler.endClause();
+          elementStart = i + 1;
+          assignment = -1;
+          break;
+        default:
+          break;
+      }
+    }
+
+    if ( quoted ) {
+      throw new IllegalArgumentException( "Unterminated quoted string in header <" + header + ">" );
+    }
+
+    element( header, elementStart, assignment, length, handler );
+    handler.endClause();
+  }
+
+  private static void element( @Nonnull CharSequence header, int start, int assignment, int end, @Nonnull Handler handler ) {
+    if ( assignment >= 0 ) {
+      handler.parameter( header, start, assignment, end );
+      return;
+    }
+
+    String path = trimmed( header, start, end );
+    if ( path.length() > 0 ) {
+      handler.path( path );
+    }
+  }
+
+  /**
+   * Returns the trimmed sub sequence
+   */
+  @Nonnull
+  private static String trimmed( @Nonnull CharSequence header, int start, int end ) {
+    int trimmedStart = start;
+    int trimmedEnd = end;
+    while ( trimmedStart < trimmedEnd && Character.isWhitespace( header.charAt( trimmedStart ) ) ) {
+      trimmedStart++;
+    }
+    while ( trimmedEnd > trimmedStart && Character.isWhitespace( header.charAt( trimmedEnd - 1 ) ) ) {
+      trimmedEnd--;
+    }
+    return header.subSequence( trimmedStart, trimmedEnd ).toString();
+  }
+
+  /**
+   * Removes the quotes (and the escape chars)
+   */
+  @Nonnull
+  private static String unquote( @Nonnull String argument ) {
+    if ( argument.length() < 2 || argument.charAt( 0 ) != '"' || argument.charAt( argument.length() - 1 ) != '"' ) {
+      return argument;
+    }
+
+    String content = argument.substring( 1, argument.length() - 1 );
+    if ( content.indexOf( '\\' ) < 0 ) {
+      return content;
+    }
+
+    StringBuilder builder = new StringBuilder( content.length() );
+    for ( int i = 0; i < content.length(); i++ ) {
+      char c = content.charAt( i );
+      if ( c == '\\' && i + 1 < content.length() ) {
+        i++;
+        c = content.charAt( i );
+      }
+      builder.append( c );
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Is notified about the elements of a header
+   */
+  private interface Handler {
+    void path( @Nonnull String path );
+
+    /**
+     * Called for attributes and directives
+     *
+     * @param header     the header
+     * @param start      the start of the element
+     * @param assignment the index of the '='
+     * @param end        the end of the element (exclusive)
+     */
+    void parameter( @Nonnull CharSequence header, int start, int assignment, int end );
+
+    void endClause();
+  }
+
+  private static class ClauseCollector implements Handler {
+    @Nonnull
+    private final List<Clause> clauses = new ArrayList<Clause>();
+
+    @Nonnull
+    private List<String> paths = new ArrayList<String>();
+    @Nullable
+    private Map<String, String> attributes;
+    @Nullable
+    private Map<String, String> directives;
+
+    @Override
+    public void path( @Nonnull String path ) {
+      paths.add( path );
+    }
+
+    @Override
+    public void parameter( @Nonnull CharSequence header, int start, int assignment, int end ) {
+      String argument = unquote( trimmed( header, assignment + 1, end ) );
+      if ( assignment > start && header.charAt( assignment - 1 ) == ':' ) {
+        if ( directives == null ) {
+          directives = new LinkedHashMap<String, String>();
+        }
+        directives.put( trimmed( header, start, assignment - 1 ), argument );
+        return;
+      }
+
+      String key = trimmed( header, start, assignment );
+      //Skip the type of typed attributes ("version:Version=1.0")
+      int typeSeparator = key.indexOf( ':' );
+      if ( typeSeparator >= 0 ) {
+        key = key.substring( 0, typeSeparator ).trim();
+      }
+      if ( attributes == null ) {
+        attributes = new LinkedHashMap<String, String>();
+      }
+      attributes.put( key, argument );
+    }
+
+    @Override
+    public void endClause() {
+      if ( paths.isEmpty() && attributes == null && directives == null ) {
+        return;
+      }
+      clauses.add( new Clause( paths, attributes == null ? ImmutableMap.<String, String>of() : attributes, directives == null ? ImmutableMap.<String, String>of() : directives ) );
+
+      paths = new ArrayList<String>();
+      attributes = null;
+      directives = null;
+    }
+  }
+
+  /**
+   * A clause of a header
+   */
+  public static class Clause {
+    @Nonnull
+    private final List<String> paths;
+    @Nonnull
+    private final Map<String, String> attributes;
+    @Nonnull
+    private final Map<String, String> directives;
+
+    public Clause( @Nonnull List<? extends String> paths, @Nonnull Map<? extends String, ? extends String> attributes, @Nonnull Map<? extends String, ? extends String> directives ) {
+      this.paths = ImmutableList.copyOf( paths );
+      this.attributes = ImmutableMap.copyOf( attributes );
+      this.directives = ImmutableMap.copyOf( directives );
+    }
+
+    /**
+     * Returns the paths (for package headers: the package names)
+     *
+     * @return the paths
+     */
+    @Nonnull
+    public List<String> getPaths() {
+      //noinspection ReturnOfCollectionOrArrayField
+      return paths;
+    }
+
+    @Nonnull
+    public Map<String, String> getAttributes() {
+      //noinspection ReturnOfCollectionOrArrayField
+      return attributes;
+    }
+
+    @Nullable
+    public String getAttribute( @Nonnull String key ) {
+      return attributes.get( key );
+    }
+
+    @Nonnull
+    public Map<String, String> getDirectives() {
+      //noinspection ReturnOfCollectionOrArrayField
+      return directives;
+    }
+
+    @Nullable
+    public String getDirective( @Nonnull String key ) {
+      return directives.get( key );
+    }
+
+    @Override
+    public String toString() {
+      return "Clause{" + paths + ", attributes=" + attributes + ", directives=" + directives + '}';
+    }
+  }
+}
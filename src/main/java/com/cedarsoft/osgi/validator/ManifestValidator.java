@@ -0,0 +1,100 @@
+package com.cedarsoft.osgi.validator;
+
+import org.apache.maven.plugin.logging.Log;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Set;
+import java.util.jar.Manifest;
+
+/**
+ * Validates the Export-Package and Import-Package headers of a manifest against the prohibited packages.
+ * The headers are checked by the {@link ProhibitedPackageRule}.
+ * The prohibited packages are patterns (see {@link PackagePatterns}).
+ *
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+public class ManifestValidator {
+  @Nonnull
+  private final PackagePatterns prohibitedPackages;
+
+  /**
+   * Creates a new validator
+   *
+   * @param prohibitedPackages the patterns of the prohibited packages
+   * @throws IllegalArgumentException if a pattern is invalid
+   */
+  public ManifestValidator( @Nonnull Set<? extends String> prohibitedPackages ) throws IllegalArgumentException {
+    this( PackagePatterns.compile( prohibitedPackages ) );
+  }
+
+  public ManifestValidator( @Nonnull PackagePatterns prohibitedPackages ) {
+    this.prohibitedPackages = prohibitedPackages;
+  }
+
+  @Nonnull
+  public Set<String> getProhibitedPackages() {
+    return prohibitedPackages.getPatterns();
+  }
+
+  /**
+   * Validates the given manifest file
+   *
+   * @param manifestFile the manifest file
+   * @param log          the log the errors are written to
+   * @return true if the manifest is valid
+   *
+   * @throws IOException if the manifest could not be read
+   */
+  public boolean validate( @Nonnull File manifestFile, @Nonnull Log log ) throws IOException {
+    FileInputStream is = new FileInputStream( manifestFile );
+    try {
+      return validate( new Manifest( is ), log );
+    } finally {
+      is.close();
+    }
+  }
+
+  /**
+   * Validates the given manifest
+   *
+   * @param manifest the manifest
+   * @param log      the log the errors are written to
+   * @return true if the manifest is valid
+   */
+  public boolean validate( @Nonnull Manifest manifest, @Nonnull final Log log ) {
+    final boolean[] valid = {true};
+    new ProhibitedPackageRule( this ).validateManifest( new RuleContext() {
+      @Nonnull
+      @Override
+      public String getProjectId() {
+        return "";
+      }
+
+      @Nonnull
+      @Override
+      public Log getLog() {
+        return log;
+      }
+
+      @Override
+      public void violation( @Nonnull String relativePath, int failingIndex, @Nonnull String reason ) {
+        log.error( reason );
+        valid[0] = false;
+      }
+    }, manifest );
+    return valid[0];
+  }
+
+  /**
+   * Returns whether the given package name is prohibited
+   *
+   * @param packageName the package name
+   * @return true if the package name matches the prohibited packages
+   */
+  public boolean isProhibited( @Nonnull String packageName ) {
+    return prohibitedPackages.matches( packageName );
+  }
+}
@@ -0,0 +1,319 @@
+package com.cedarsoft.osgi.validator;
+
+import com.google.common.base.Charsets;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/**
+ * Reads the package declaration of a java file.
+ * <p/>
+ * Only the first bytes of the file are read (up to a fixed limit) into a buffer that is reused for all files.
+ * Comments and annotations (package-info.java) in front of the declaration are skipped.
+ * <p/>
+ * Instances are not thread safe.
+ *
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+public class PackageDeclarationReader {
+  /**
+   * The default number of bytes that are read. Long license headers fit into this limit
+   */
+  public static final int DEFAULT_LIMIT = 8192;
+
+  /**
+   * Returned for files without package declaration
+   */
+  public static final String DEFAULT_PACKAGE = "";
+
+  @Nonnull
+  private final byte[] buffer;
+
+  public PackageDeclarationReader() {
+    this( DEFAULT_LIMIT );
+  }
+
+  /**
+   * Creates a new reader
+   *
+   * @param limit the maximum number of bytes that are read from each file
+   */
+  public PackageDeclarationReader( int limit ) {
+    this.buffer = new byte[limit];
+  }
+
+  /**
+   * Reads the package declaration of the given file
+   *
+   * @param javaFile the java file
+   * @return the declared package, {@link #DEFAULT_PACKAGE} if there is no package declaration or null if the
+   * declaration could not be found within the limit (or the file does not contain any code)
+   *
+   * @throws IOException if the file could not be read
+   */
+  @Nullable
+  public String read( @Nonnull File javaFile ) throws IOException {
+    int length = 0;
+    boolean complete = false;
+
+    FileInputStream in = new FileInputStream( javaFile );
+    try {
+      while ( length < buffer.length ) {
+        int read = in.read( buffer, length, buffer.length - length );
+        if ( read < 0 ) {
+          complete = true;
+          break;
+        }
+        length += read;
+      }
+    } finally {
+      in.close();
+    }
+
+    return parse( buffer, length, complete );
+  }
+
+  /**
+   * Parses the package declaration
+   *
+   * @param bytes    the bytes
+   * @param length   the number of valid bytes
+   * @param complete whether the bytes contain the complete file
+   * @return the package, {@link #DEFAULT_PACKAGE} or null if the declaration could not be determined
+   */
+  @Nullable
+  static String parse( @Nonnull byte[] bytes, int length, boolean complete ) {
+    int position = 0;
+    //UTF-8 byte order mark
+    if ( length >= 3 && bytes[0] == ( byte ) 0xEF && bytes[1] == ( byte ) 0xBB && bytes[2] == ( byte ) 0xBF ) {
+      position = 3;
+    }
+
+    while ( true ) {
+      position = skipWhitespaceAndComments( bytes, position, length );
+      if ( position < 0 || position >= length ) {
+        //Nothing found within the limit
+        return null;
+      }
+
+      byte current = bytes[position];
+      if ( current == '@' ) {
+        position = skipAnnotation( bytes, position + 1, length );
+        if ( position < 0 ) {
+          return null;
+        }
+        continue;
+      }
+
+      if ( !isIdentifierPart( current ) ) {
+        //Something else (should not happen for valid java files)
+        return DEFAULT_PACKAGE;
+      }
+
+      int wordEnd = skipIdentifier( bytes, position, length );
+      if ( wordEnd >= length && !complete ) {
+        return null;
+      }
+      if ( !matches( bytes, position, wordEnd, "package" ) ) {
+        //import, class, ...
+        return DEFAULT_PACKAGE;
+      }
+
+      return parsePackageName( bytes, wordEnd, length );
+    }
+  }
+
+  /**
+   * Parses the qualified name up to the ';'. Whitespace and comments between the parts are ignored.
+   */
+  @Nullable
+  private static String parsePackageName( @Nonnull byte[] bytes, int start, int length ) {
+    byte[] packageName = new byte[length - start];
+    int packageNameLength = 0;
+
+    int position = start;
+    while ( true ) {
+      position = skipWhitespaceAndComments( bytes, position, length );
+      if ( position < 0 || position >= length ) {
+        return null;
+      }
+
+      byte current = bytes[position];
+      if ( current == ';' ) {
+        return new String( packageName, 0, packageNameLength, Charsets.UTF_8 );
+      }
+      if ( current != '.' && !isIdentifierPart( current ) ) {
+        return null;
+      }
+      packageName[packageNameLength++] = current;
+      position++;
+    }
+  }
+
+  /**
+   * Skips an annotation (the '@' has already been skipped)
+   *
+   * @return the position after the annotation or -1 if the end of the annotation is not within the bytes
+   */
+  private static int skipAnnotation( @Nonnull byte[] bytes, int start, int length ) {
+    //The qualified name of the annotation type
+    int position = skipWhitespaceAndComments( bytes, start, length );
+    if ( position < 0 || position >= length ) {
+      return -1;
+    }
+    position = skipIdentifier( bytes, position, length );
+
+    while ( true ) {
+      int next = skipWhitespaceAndComments( bytes, position, length );
+      if ( next < 0 || next >= length ) {
+        return -1;
+      }
+      if ( bytes[next] != '.' ) {
+        position = next;
+        break;
+      }
+
+      next = skipWhitespaceAndComments( bytes, next + 1, length );
+      if ( next < 0 || next >= length ) {
+        return -1;
+      }
+      position = skipIdentifier( bytes, next, length );
+    }
+
+    if ( bytes[position] != '(' ) {
+      return position;
+    }
+
+    //Skip the arguments
+    int depth = 0;
+    while ( position < length ) {
+      byte current = bytes[position];
+      switch ( current ) {
+        case '(':
+          depth++;
+          position++;
+          break;
+        case ')':
+          depth--;
+          position++;
+          if ( depth == 0 ) {
+            return position;
+          }
+          break;
+        case '"':
+        case '\'':
+          position = skipLiteral( bytes, position, length );
+          if ( position < 0 ) {
+            return -1;
+          }
+          break;
+        case '/':
+          int afterComment = skipWhitespaceAndComments( bytes, position, length );
+          if ( afterComment < 0 ) {
+            return -1;
+          }
+          position = afterComment == position ? position + 1 : afterComment;
+          break;
+        default:
+          position++;
+          break;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Skips a string or char literal
+   *
+   * @return the position after the closing quote or -1
+   */
+  private static int skipLiteral( @Nonnull byte[] bytes, int start, int length ) {
+    byte quote = bytes[start];
+    int position = start + 1;
+    while ( position < length ) {
+      byte current = bytes[position];
+      if ( current == '\\' ) {
+        position += 2;
+        continue;
+      }
+      if ( current == quote ) {
+        return position + 1;
+      }
+      position++;
+    }
+    return -1;
+  }
+
+  /**
+   * Skips whitespace and comments
+   *
+   * @return the position of the next token or -1 if a comment is not closed within the bytes
+   */
+  private static int skipWhitespaceAndComments( @Nonnull byte[] bytes, int start, int length ) {
+    int position = start;
+    while ( position < length ) {
+      byte current = bytes[position];
+      if ( current == ' ' || current == '\t' || current == '\n' || current == '\r' || current == '\f' ) {
+        position++;
+        continue;
+      }
+
+      if ( current != '/' || position + 1 >= length ) {
+        return position;
+      }
+
+      byte next = bytes[position + 1];
+      if ( next == '/' ) {
+        position += 2;
+        while ( position < length && bytes[position] != '\n' ) {
+          position++;
+        }
+      } else if ( next == '*' ) {
+        position += 2;
+        while ( true ) {
+          if ( position + 1 >= length ) {
+            return -1;
+          }
+          if ( bytes[position] == '*' && bytes[position + 1] == '/' ) {
+            position += 2;
+            break;
+          }
+          position++;
+        }
+      } else {
+        return position;
+      }
+    }
+    return position;
+  }
+
+  private static int skipIdentifier( @Nonnull byte[] bytes, int start, int length ) {
+    int position = start;
+    while ( position < length && isIdentifierPart( bytes[position] ) ) {
+      position++;
+    }
+    return position;
+  }
+
+  /**
+   * Non ascii bytes are treated as identifier parts
+   */
+  private static boolean isIdentifierPart( byte current ) {
+    return current < 0 || current == '_' || current == '$' || ( current >= 'a' && current <= 'z' ) || ( current >= 'A' && current <= 'Z' ) || ( current >= '0' && current <= '9' );
+  }
+
+  private static boolean matches( @Nonnull byte[] bytes, int start, int end, @Nonnull String word ) {
+    if ( end - start != word.length() ) {
+      return false;
+    }
+    for ( int i = 0; i < word.length(); i++ ) {
+      if ( bytes[start + i] != word.charAt( i ) ) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
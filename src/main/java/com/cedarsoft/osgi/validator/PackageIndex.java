@@ -0,0 +1,455 @@
+package com.cedarsoft.osgi.validator;
+
+import com.google.common.collect.ImmutableSortedSet;
+
+import javax.annotation.Nonnull;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Maps the packages to the modules of a reactor that contain them (as sources or within the Export-Package header).
+ * A package that belongs to more than one module is a split package - those can not be resolved correctly by the OSGi framework.
+ * <p/>
+ * The index is updated incrementally: Each module replaces its own entry when it is validated.
+ * For each package the modules are held within a hash map - the lookup does not depend on the number of modules.
+ * <p/>
+ * The index is stored as binary file. The packages of each module are sorted and front coded
+ * (only the length of the prefix that is shared with the previous package and the remaining suffix are written).
+ *
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+public class PackageIndex {
+  private static final int MAGIC = 0x4f565049;
+  private static final int VERSION = 1;
+
+  /**
+   * The modules by id
+   */
+  @Nonnull
+  private final Map<String, Module> modules = new TreeMap<String, Module>();
+  /**
+   * The ids of the modules by package
+   */
+  @Nonnull
+  private final Map<String, SortedSet<String>> packages = new HashMap<String, SortedSet<String>>();
+
+  /**
+   * Replaces the entry of the given module
+   *
+   * @param moduleId         the id of the module
+   * @param baseDir          the base directory of the module
+   * @param sourcePackages   the packages that contain sources
+   * @param exportedPackages the exported packages
+   */
+  public synchronized void update( @Nonnull String moduleId, @Nonnull File baseDir, @Nonnull Collection<? extends String> sourcePackages, @Nonnull Collection<? extends String> exportedPackages ) {
+    remove( moduleId );
+
+    //A renamed module has the same base directory
+    for ( Iterator<Module> iterator = modules.values().iterator(); iterator.hasNext(); ) {
+      Module module = iterator.next();
+      if ( module.baseDir.equals( baseDir.getAbsolutePath() ) ) {
+        iterator.remove();
+        removePackages( module );
+      }
+    }
+
+    add( new Module( moduleId, baseDir.getAbsolutePath(), sourcePackages, exportedPackages ) );
+  }
+
+  /**
+   * Removes the given module
+   *
+   * @param moduleId the id of the module
+   */
+  public synchronized void remove( @Nonnull String moduleId ) {
+    Module module = modules.remove( moduleId );
+    if ( module != null ) {
+      removePackages( module );
+    }
+  }
+
+  /**
+   * Removes all modules that are not contained within the given ids (e.g. modules that have been removed from the reactor)
+   *
+   * @param moduleIds the ids of the modules that are kept
+   */
+  public synchronized void retain( @Nonnull Collection<? extends String> moduleIds ) {
+    for ( String moduleId : new ArrayList<String>( modules.keySet() ) ) {
+      if ( !moduleIds.contains( moduleId ) ) {
+        remove( moduleId );
+      }
+    }
+  }
+
+  /**
+   * Removes the modules whose base directory does not exist anymore
+   */
+  public synchronized void removeDeletedModules() {
+    for ( Module module : new ArrayList<Module>( modules.values() ) ) {
+      if ( !new File( module.baseDir ).isDirectory() ) {
+        remove( module.id );
+      }
+    }
+  }
+
+  private void add( @Nonnull Module module ) {
+    modules.put( module.id, module );
+    addPackages( module.id, module.sourcePackages );
+    addPackages( module.id, module.exportedPackages );
+  }
+
+  private void addPackages( @Nonnull String moduleId, @Nonnull Collection<String> packageNames ) {
+    for ( String packageName : packageNames ) {
+      SortedSet<String> moduleIds = packages.get( packageName );
+      if ( moduleIds == null ) {
+        moduleIds = new TreeSet<String>();
+        packages.put( packageName, moduleIds );
+      }
+      moduleIds.add( moduleId );
+    }
+  }
+
+  private void removePackages( @Nonnull Module module ) {
+    removePackages( module.id, module.sourcePackages );
+    removePackages( module.id, module.exportedPackages );
+  }
+
+  private void removePackages( @Nonnull String moduleId, @Nonnull Collection<String> packageNames ) {
+    for ( String packageName : packageNames ) {
+      SortedSet<String> moduleIds = packages.get( packageName );
+      if ( moduleIds == null ) {
+        continue;
+      }
+      moduleIds.remove( moduleId );
+      if ( moduleIds.isEmpty() ) {
+        packages.remove( packageName );
+      }
+    }
+  }
+
+  /**
+   * Returns the modules that contain the given package
+   *
+   * @param packageName the package
+   * @return the ids of the modules
+   */
+  @Nonnull
+  public synchronized SortedSet<String> getModules( @Nonnull String packageName ) {
+    SortedSet<String> moduleIds = packages.get( packageName );
+    if ( moduleIds == null ) {
+      return ImmutableSortedSet.of();
+    }
+    return ImmutableSortedSet.copyOf( moduleIds );
+  }
+
+  public synchronized int getModuleCount() {
+    return modules.size();
+  }
+
+  public synchronized int getPackageCount() {
+    return packages.size();
+  }
+
+  /**
+   * Returns all split packages
+   *
+   * @return the split packages and the ids of the modules that contain them
+   */
+  @Nonnull
+  public synchronized SortedMap<String, SortedSet<String>> findSplitPackages() {
+    SortedMap<String, SortedSet<String>> splitPackages = new TreeMap<String, SortedSet<String>>();
+    for ( Map.Entry<String, SortedSet<String>> entry : packages.entrySet() ) {
+      if ( entry.getValue().size() > 1 ) {
+        splitPackages.put( entry.getKey(), ImmutableSortedSet.copyOf( entry.getValue() ) );
+      }
+    }
+    return splitPackages;
+  }
+
+  /**
+   * Returns the split packages of the given module
+   *
+   * @param moduleId the id of the module
+   * @return the split packages and the ids of all modules that contain them
+   */
+  @Nonnull
+  public synchronized SortedMap<String, SortedSet<String>> findSplitPackages( @Nonnull String moduleId ) {
+    SortedMap<String, SortedSet<String>> splitPackages = new TreeMap<String, SortedSet<String>>();
+    Module module = modules.get( moduleId );
+    if ( module == null ) {
+      return splitPackages;
+    }
+
+    for ( String packageName : module.getPackages() ) {
+      SortedSet<String> moduleIds = packages.get( packageName );
+      if ( moduleIds != null && moduleIds.size() > 1 ) {
+        splitPackages.put( packageName, ImmutableSortedSet.copyOf( moduleIds ) );
+      }
+    }
+    return splitPackages;
+  }
+
+  /**
+   * Writes the index to the given file
+   *
+   * @param file the file
+   * @throws IOException if the file could not be written
+   */
+  public synchronized void store( @Nonnull File file ) throws IOException {
+    File dir = file.getParentFile();
+    if ( dir != null && !dir.isDirectory() && !dir.mkdirs() ) {
+      throw new IOException( "Could not create directory <" + dir.getAbsolutePath() + ">" );
+    }
+
+    //Write to a temporary file first. A broken build must not leave a half written index behind
+    File tmp = new File( file.getPath() + ".tmp" );
+    DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( tmp ) ) );
+    try {
+      out.writeInt( MAGIC );
+      out.writeInt( VERSION );
+
+      out.writeInt( modules.size() );
+      for ( Module module : modules.values() ) {
+        module.write( out );
+      }
+    } finally {
+      out.close();
+    }
+
+    if ( file.exists() && !file.delete() ) {
+      throw new IOException( "Could not delete <" + file.getAbsolutePath() + ">" );
+    }
+    if ( !tmp.renameTo( file ) ) {
+      throw new IOException( "Could not rename <" + tmp.getAbsolutePath() + "> to <" + file.getAbsolutePath() + ">" );
+    }
+  }
+
+  /**
+   * Loads the index from the given file.
+   * Returns an empty index if the file does not exist or has been written by another version.
+   *
+   * @param file the file
+   * @return the index
+   *
+   * @throws IOException if the file could not be read or is damaged
+   */
+  @Nonnull
+  public static PackageIndex load( @Nonnull File file ) throws IOException {
+    PackageIndex index = new PackageIndex();
+    if ( !file.isFile() ) {
+      return index;
+    }
+
+    //No count within the file can exceed the length of the file
+    long fileLength = file.length();
+    DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( file ) ) );
+    try {
+      if ( in.readInt() != MAGIC || in.readInt() != VERSION ) {
+        return index;
+      }
+
+      int moduleCount = checkCount( in.readInt(), fileLength );
+      for ( int i = 0; i < moduleCount; i++ ) {
+        index.add( Module.read( in, fileLength ) );
+      }
+    } finally {
+      in.close();
+    }
+    return index;
+  }
+
+  /**
+   * Loads the stored index. A damaged file is treated as empty index - and is overwritten when the index is stored.
+   * The modules are added again when they are validated the next time.
+   */
+  @Nonnull
+  private static PackageIndex loadOrEmpty( @Nonnull File file ) {
+    try {
+      return load( file );
+    } catch ( IOException ignore ) {
+      return new PackageIndex();
+    } catch ( RuntimeException ignore ) {
+      return new PackageIndex();
+    }
+  }
+
+  private static int checkCount( int count, long fileLength ) throws IOException {
+    if ( count < 0 || count > fileLength ) {
+      throw new IOException( "Damaged index file: invalid count " + count );
+    }
+    return count;
+  }
+
+  /**
+   * Updates the entry of the given module within the index file.
+   *
+   * @param file             the index file
+   * @param moduleId         the id of the module
+   * @param baseDir          the base directory of the module
+   * @param sourcePackages   the packages that contain sources
+   * @param exportedPackages the exported packages
+   * @return the updated index
+   *
+   * @throws IOException if the file could not be read or written
+   */
+  @Nonnull
+  public static PackageIndex updateFile( @Nonnull File file, @Nonnull final String moduleId, @Nonnull final File baseDir, @Nonnull final Collection<? extends String> sourcePackages, @Nonnull final Collection<? extends String> exportedPackages ) throws IOException {
+    return updateFile( file, new Updater() {
+      @Override
+      public void update( @Nonnull PackageIndex index ) {
+        index.update( moduleId, baseDir, sourcePackages, exportedPackages );
+      }
+    } );
+  }
+
+  /**
+   * Updates the index file.
+   * The file is locked while it is read and written - modules that are built concurrently (also by other processes) don't lose their entries.
+   * Modules whose base directory has been deleted are removed. A damaged file is replaced.
+   *
+   * @param file    the index file
+   * @param updater updates the loaded index
+   * @return the updated index
+   *
+   * @throws IOException if the file could not be read or written
+   */
+  @Nonnull
+  public static PackageIndex updateFile( @Nonnull final File file, @Nonnull final Updater updater ) throws IOException {
+    return FileLocks.update( file, new FileLocks.Update<PackageIndex>() {
+      @Override
+      public PackageIndex run() throws IOException {
+        PackageIndex index = loadOrEmpty( file );
+        index.removeDeletedModules();
+        updater.update( index );
+        index.store( file );
+        return index;
+      }
+    } );
+  }
+
+  /**
+   * Updates an index while the index file is locked
+   */
+  public interface Updater {
+    /**
+     * Updates the given index
+     *
+     * @param index the index that has been loaded
+     */
+    void update( @Nonnull PackageIndex index );
+  }
+
+  /**
+   * Converts a relative directory to a package name
+   *
+   * @param relativeDirectory the directory relative to the source root
+   * @return the package name
+   */
+  @Nonnull
+  public static String toPackageName( @Nonnull String relativeDirectory ) {
+    return relativeDirectory.replace( File.separatorChar, '.' );
+  }
+
+  /**
+   * The packages of one module
+   */
+  private static class Module {
+    @Nonnull
+    private final String id;
+    @Nonnull
+    private final String baseDir;
+    @Nonnull
+    private final SortedSet<String> sourcePackages;
+    @Nonnull
+    private final SortedSet<String> exportedPackages;
+
+    private Module( @Nonnull String id, @Nonnull String baseDir, @Nonnull Collection<? extends String> sourcePackages, @Nonnull Collection<? extends String> exportedPackages ) {
+      this.id = id;
+      this.baseDir = baseDir;
+      this.sourcePackages = ImmutableSortedSet.copyOf( sourcePackages );
+      //Exporting the own packages is not a split
+      TreeSet<String> exported = new TreeSet<String>( exportedPackages );
+      exported.removeAll( this.sourcePackages );
+      this.exportedPackages = ImmutableSortedSet.copyOf( exported );
+    }
+
+    @Nonnull
+    private SortedSet<String> getPackages() {
+      SortedSet<String> all = new TreeSet<String>( sourcePackages );
+      all.addAll( exportedPackages );
+      return all;
+    }
+
+    private void write( @Nonnull DataOutputStream out ) throws IOException {
+      out.writeUTF( id );
+      out.writeUTF( baseDir );
+      writePackages( out, sourcePackages );
+      writePackages( out, exportedPackages );
+    }
+
+    @Nonnull
+    private static Module read( @Nonnull DataInputStream in, long fileLength ) throws IOException {
+      String id = in.readUTF();
+      String baseDir = in.readUTF();
+      List<String> sourcePackages = readPackages( in, fileLength );
+      List<String> exportedPackages = readPackages( in, fileLength );
+      return new Module( id, baseDir, sourcePackages, exportedPackages );
+    }
+
+    /**
+     * Writes the sorted packages front coded
+     */
+    private static void writePackages( @Nonnull DataOutputStream out, @Nonnull SortedSet<String> packageNames ) throws IOException {
+      out.writeInt( packageNames.size() );
+      String previous = "";
+      for ( String packageName : packageNames ) {
+        int prefixLength = commonPrefixLength( previous, packageName );
+        out.writeShort( prefixLength );
+        out.writeUTF( packageName.substring( prefixLength ) );
+        previous = packageName;
+      }
+    }
+
+    @Nonnull
+    private static List<String> readPackages( @Nonnull DataInputStream in, long fileLength ) throws IOException {
+      int size = checkCount( in.readInt(), fileLength );
+      List<String> packageNames = new ArrayList<String>( size );
+      String previous = "";
+      for ( int i = 0; i < size; i++ ) {
+        int prefixLength = in.readUnsignedShort();
+        if ( prefixLength > previous.length() ) {
+          throw new IOException( "Invalid prefix length " + prefixLength );
+        }
+        String packageName = previous.substring( 0, prefixLength ) + in.readUTF();
+        packageNames.add( packageName );
+        previous = packageName;
+      }
+      return packageNames;
+    }
+
+    private static int commonPrefixLength( @Nonnull String first, @Nonnull String second ) {
+      int max = Math.min( Math.min( first.length(), second.length() ), 0xFFFF );
+      int length = 0;
+      while ( length < max && first.charAt( length ) == second.charAt( length ) ) {
+        length++;
+      }
+      return length;
+    }
+  }
+}
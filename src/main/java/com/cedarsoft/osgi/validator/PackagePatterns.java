@@ -0,0 +1,428 @@
+package com.cedarsoft.osgi.validator;
+
+import com.google.common.collect.ImmutableSet;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Matches package names against a set of patterns.
+ * <p/>
+ * The patterns are compared with the parts of the package name (separated by dots):
+ * <ul>
+ * <li><code>internal</code>: a pattern without wildcards matches the package parts anywhere within the name
+ * (<code>com.acme.internal.util</code> - but not <code>com.acme.internalization</code>)</li>
+ * <li><code>*</code> matches exactly one part: <code>*.internal.*</code></li>
+ * <li><code>**</code> matches any number of parts (including none): <code>com.acme.impl.**</code></li>
+ * <li><code>!</code> marks an exception. Names that match an exception are never matched: <code>!com.acme.internal.api.**</code></li>
+ * </ul>
+ * Wildcards must match whole parts (<code>impl*</code> is not supported).
+ * <p/>
+ * All patterns are compiled into one deterministic automaton that consumes one package part per step.
+ * So each name is matched within one pass - independent of the number of patterns.
+ * No substrings are created.
+ * <p/>
+ * Instances are immutable and thread safe.
+ *
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+public final class PackagePatterns {
+  /**
+   * The maximum number of states of the automaton. Protects against pathological combinations of wildcards.
+   */
+  public static final int MAX_STATES = 100000;
+
+  private static final char SEPARATOR = '.';
+  private static final char EXCEPTION_PREFIX = '!';
+
+  private static final int ANY_PART = -1;
+  private static final int ANY_PARTS = -2;
+  private static final int END = -3;
+
+  /**
+   * The symbol for all parts that are not contained within any pattern
+   */
+  private static final int OTHER = 0;
+
+  @Nonnull
+  private final Set<String> patterns;
+
+  /**
+   * Open addressing hash table of the literal parts. Index: hash & mask
+   */
+  @Nonnull
+  private final String[] literals;
+  @Nonnull
+  private final int[] literalSymbols;
+  private final int literalMask;
+
+  private final int symbolCount;
+  /**
+   * The transitions: state * symbolCount + symbol
+   */
+  @Nonnull
+  private final int[] transitions;
+  @Nonnull
+  private final boolean[] accepting;
+  /**
+   * The state that can not reach an accepting state anymore
+   */
+  private final int deadState;
+
+  private PackagePatterns( @Nonnull Set<String> patterns, @Nonnull Map<String, Integer> symbols, int symbolCount, @Nonnull int[] transitions, @Nonnull boolean[] accepting, int deadState ) {
+    this.patterns = patterns;
+    this.symbolCount = symbolCount;
+    this.transitions = transitions;
+    this.accepting = accepting;
+    this.deadState = deadState;
+
+    int tableSize = Integer.highestOneBit( Math.max( symbols.size(), 1 ) * 4 - 1 ) << 1;
+    literals = new String[tableSize];
+    literalSymbols = new int[tableSize];
+    literalMask = tableSize - 1;
+    for ( Map.Entry<String, Integer> entry : symbols.entrySet() ) {
+      int index = entry.getKey().hashCode() & literalMask;
+      while ( literals[index] != null ) {
+        index = ( index + 1 ) & literalMask;
+      }
+      literals[index] = entry.getKey();
+      literalSymbols[index] = entry.getValue();
+    }
+  }
+
+  /**
+   * Returns the patterns this instance has been compiled from
+   *
+   * @return the patterns
+   */
+  @Nonnull
+  public Set<String> getPatterns() {
+    //noinspection ReturnOfCollectionOrArrayField
+    return patterns;
+  }
+
+  /**
+   * Returns the number of states of the compiled automaton
+   *
+   * @return the number of states
+   */
+  public int getStateCount() {
+    return accepting.length;
+  }
+
+  /**
+   * Returns whether the given package name is matched by the patterns
+   *
+   * @param packageName the package name
+   * @return true if at least one pattern and no exception matches
+   */
+  public boolean matches( @Nonnull CharSequence packageName ) {
+    int state = 0;
+    int length = packageName.length();
+    int start = 0;
+    while ( true ) {
+      int end = start;
+      int hash = 0;
+      while ( end < length ) {
+        char c = packageName.charAt( end );
+        if ( c == SEPARATOR ) {
+          break;
+        }
+        hash = 31 * hash + c;
+        end++;
+      }
+
+      state = transitions[state * symbolCount + findSymbol( packageName, start, end, hash )];
+      if ( state == deadState ) {
+        return false;
+      }
+
+      if ( end == length ) {
+        return accepting[state];
+      }
+      start = end + 1;
+    }
+  }
+
+  private int findSymbol( @Nonnull CharSequence name, int start, int end, int hash ) {
+    int index = hash & literalMask;
+    while ( true ) {
+      String literal = literals[index];
+      if ( literal == null ) {
+        return OTHER;
+      }
+      if ( regionEquals( name, start, end, literal ) ) {
+        return literalSymbols[index];
+      }
+      index = ( index + 1 ) & literalMask;
+    }
+  }
+
+  private static boolean regionEquals( @Nonnull CharSequence name, int start, int end, @Nonnull String literal ) {
+    if ( end - start != literal.length() ) {
+      return false;
+    }
+    for ( int i = 0; i < literal.length(); i++ ) {
+      if ( name.charAt( start + i ) != literal.charAt( i ) ) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public String toString() {
+    return patterns.toString();
+  }
+
+  /**
+   * Compiles the given patterns
+   *
+   * @param patterns the patterns
+   * @return the compiled patterns
+   *
+   * @throws IllegalArgumentException if a pattern is invalid or the patterns result in too many states
+   */
+  @Nonnull
+  public static PackagePatterns compile( @Nonnull Iterable<? extends String> patterns ) throws IllegalArgumentException {
+    //The NFA: one position for each token of each pattern followed by an END position
+    List<Integer> tokens = new ArrayList<Integer>();
+    List<Boolean> exceptions = new ArrayList<Boolean>();
+    Map<String, Integer> symbols = new LinkedHashMap<String, Integer>();
+    List<Integer> starts = new ArrayList<Integer>();
+    Set<String> normalized = new LinkedHashSet<String>();
+
+    for ( String rawPattern : patterns ) {
+      String pattern = rawPattern.trim();
+      boolean exception = pattern.length() > 0 && pattern.charAt( 0 ) == EXCEPTION_PREFIX;
+      String body = exception ? pattern.substring( 1 ).trim() : pattern;
+      if ( body.length() == 0 ) {
+        throw new IllegalArgumentException( "Invalid package pattern <" + rawPattern + ">: empty" );
+      }
+      normalized.add( pattern );
+
+      List<Integer> patternTokens = new ArrayList<Integer>();
+      boolean wildcards = false;
+      for ( String part : splitParts( body ) ) {
+        if ( part.equals( "**" ) ) {
+          wildcards = true;
+          //Consecutive ** are equivalent to one
+          if ( patternTokens.isEmpty() || patternTokens.get( patternTokens.size() - 1 ) != ANY_PARTS ) {
+            patternTokens.add( ANY_PARTS );
+          }
+        } else if ( part.equals( "*" ) ) {
+          wildcards = true;
+          patternTokens.add( ANY_PART );
+        } else if ( part.indexOf( '*' ) >= 0 ) {
+          throw new IllegalArgumentException( "Invalid package pattern <" + rawPattern + ">: wildcards must match whole package parts" );
+        } else if ( part.length() == 0 ) {
+          throw new IllegalArgumentException( "Invalid package pattern <" + rawPattern + ">: empty package part" );
+        } else {
+          Integer symbol = symbols.get( part );
+          if ( symbol == null ) {
+            symbol = symbols.size() + 1;
+            symbols.put( part, symbol );
+          }
+          patternTokens.add( symbol );
+        }
+      }
+
+      //Patterns without wildcards match anywhere within the name
+      if ( !wildcards ) {
+        patternTokens.add( 0, ANY_PARTS );
+        patternTokens.add( ANY_PARTS );
+      }
+
+      starts.add( tokens.size() );
+      for ( Integer token : patternTokens ) {
+        tokens.add( token );
+        exceptions.add( exception );
+      }
+      tokens.add( END );
+      exceptions.add( exception );
+    }
+
+    int[] tokenArray = new int[tokens.size()];
+    boolean[] exceptionArray = new boolean[exceptions.size()];
+    for ( int i = 0; i < tokenArray.length; i++ ) {
+      tokenArray[i] = tokens.get( i );
+      exceptionArray[i] = exceptions.get( i );
+    }
+
+    return build( ImmutableSet.copyOf( normalized ), symbols, tokenArray, exceptionArray, starts );
+  }
+
+  /**
+   * Converts the NFA to a DFA (subset construction)
+   */
+  @Nonnull
+  private static PackagePatterns build( @Nonnull Set<String> patterns, @Nonnull Map<String, Integer> symbols, @Nonnull int[] tokens, @Nonnull boolean[] exceptions, @Nonnull List<Integer> starts ) {
+    int symbolCount = symbols.size() + 1;
+
+    //The additional position that represents "any pattern has matched a prefix followed by **"
+    int matchedPosition = tokens.length;
+
+    BitSet initial = new BitSet( tokens.length + 1 );
+    for ( Integer start : starts ) {
+      initial.set( start );
+    }
+    closure( initial, tokens );
+    normalize( initial, tokens, exceptions, matchedPosition );
+
+    Map<BitSet, Integer> stateIds = new HashMap<BitSet, Integer>();
+    List<BitSet> states = new ArrayList<BitSet>();
+    stateIds.put( initial, 0 );
+    states.add( initial );
+
+    IntList transitions = new IntList();
+    for ( int stateIndex = 0; stateIndex < states.size(); stateIndex++ ) {
+      BitSet state = states.get( stateIndex );
+      for ( int symbol = 0; symbol < symbolCount; symbol++ ) {
+        BitSet next = new BitSet( tokens.length + 1 );
+        for ( int position = state.nextSetBit( 0 ); position >= 0; position = state.nextSetBit( position + 1 ) ) {
+          if ( position == matchedPosition ) {
+            next.set( position );
+            break;
+          }
+
+          int token = tokens[position];
+          if ( token == ANY_PARTS ) {
+            next.set( position );
+          } else if ( token == ANY_PART || ( token > 0 && token == symbol ) ) {
+            next.set( position + 1 );
+          }
+        }
+        closure( next, tokens );
+        normalize( next, tokens, exceptions, matchedPosition );
+
+        Integer nextId = stateIds.get( next );
+        if ( nextId == null ) {
+          if ( states.size() >= MAX_STATES ) {
+            throw new IllegalArgumentException( "Package patterns too complex: more than " + MAX_STATES + " states for " + patterns );
+          }
+          nextId = states.size();
+          stateIds.put( next, nextId );
+          states.add( next );
+        }
+        transitions.add( nextId );
+      }
+    }
+
+    boolean[] accepting = new boolean[states.size()];
+    int deadState = -1;
+    for ( int i = 0; i < states.size(); i++ ) {
+      BitSet state = states.get( i );
+      boolean matched = false;
+      boolean excepted = false;
+      for ( int position = state.nextSetBit( 0 ); position >= 0; position = state.nextSetBit( position + 1 ) ) {
+        if ( position == matchedPosition ) {
+          matched = true;
+        } else if ( tokens[position] == END ) {
+          if ( exceptions[position] ) {
+            excepted = true;
+          } else {
+            matched = true;
+          }
+        }
+      }
+      accepting[i] = matched && !excepted;
+      if ( state.isEmpty() ) {
+        deadState = i;
+      }
+    }
+
+    return new PackagePatterns( patterns, symbols, symbolCount, transitions.toArray(), accepting, deadState );
+  }
+
+  /**
+   * Adds the positions that are reachable without consuming a part (** matches no part)
+   */
+  private static void closure( @Nonnull BitSet positions, @Nonnull int[] tokens ) {
+    for ( int position = positions.nextSetBit( 0 ); position >= 0 && position < tokens.length; position = positions.nextSetBit( position + 1 ) ) {
+      if ( tokens[position] == ANY_PARTS ) {
+        positions.set( position + 1 );
+      }
+    }
+  }
+
+  /**
+   * Reduces the number of states.
+   * A pattern that has been matched up to a trailing ** matches all longer names, too. Therefore it is not necessary
+   * to remember which pattern has matched:
+   * <ul>
+   * <li>Such an exception can never be left: the state is replaced by the dead state</li>
+   * <li>Such a pattern is represented by the matched position. The positions of the other patterns are removed
+   * (they could only match again). Only the exceptions are tracked further.</li>
+   * </ul>
+   * Without this step hundreds of patterns like <code>internal</code> would create one state for each combination of matched patterns.
+   */
+  private static void normalize( @Nonnull BitSet positions, @Nonnull int[] tokens, @Nonnull boolean[] exceptions, int matchedPosition ) {
+    boolean matched = positions.get( matchedPosition );
+    for ( int position = positions.nextSetBit( 0 ); position >= 0 && position < matchedPosition; position = positions.nextSetBit( position + 1 ) ) {
+      if ( tokens[position] == END && tokens[position - 1] == ANY_PARTS ) {
+        if ( exceptions[position] ) {
+          positions.clear();
+          return;
+        }
+        matched = true;
+      }
+    }
+
+    if ( !matched ) {
+      return;
+    }
+    for ( int position = positions.nextSetBit( 0 ); position >= 0 && position < matchedPosition; position = positions.nextSetBit( position + 1 ) ) {
+      if ( !exceptions[position] ) {
+        positions.clear( position );
+      }
+    }
+    positions.set( matchedPosition );
+  }
+
+  @Nonnull
+  private static List<String> splitParts( @Nonnull String pattern ) {
+    List<String> parts = new ArrayList<String>();
+    int start = 0;
+    while ( true ) {
+      int end = pattern.indexOf( SEPARATOR, start );
+      if ( end < 0 ) {
+        parts.add( pattern.substring( start ).trim() );
+        return parts;
+      }
+      parts.add( pattern.substring( start, end ).trim() );
+      start = end + 1;
+    }
+  }
+
+  /**
+   * Growable int array
+   */
+  private static class IntList {
+    @Nonnull
+    private int[] values = new int[64];
+    private int size;
+
+    void add( int value ) {
+      if ( size == values.length ) {
+        int[] grown = new int[values.length * 2];
+        System.arraycopy( values, 0, grown, 0, size );
+        values = grown;
+      }
+      values[size++] = value;
+    }
+
+    @Nonnull
+    int[] toArray() {
+      int[] result = new int[size];
+      System.arraycopy( values, 0, result, 0, size );
+      return result;
+    }
+  }
+}
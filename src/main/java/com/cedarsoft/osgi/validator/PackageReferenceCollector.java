@@ -0,0 +1,205 @@
+package com.cedarsoft.osgi.validator;
+
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.ImmutableSortedSet;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Collects the packages that are referenced by the class files below a classes directory.
+ * <p/>
+ * Used as handler for the {@link SourceTreeScanner} - the class files are read concurrently if the scanner is parallel.
+ * The class files of a directory are read into one reused buffer. Only the constant pool is inspected (see {@link ConstantPoolScanner}).
+ *
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+public class PackageReferenceCollector implements SourceTreeScanner.DirectoryHandler {
+  /**
+   * The initial size of the buffer the class files are read into. The buffer is reused for all files within a directory
+   */
+  public static final int BUFFER_SIZE = 8192;
+
+  /**
+   * The referenced packages - and one of the classes that references it
+   */
+  @Nonnull
+  private final ConcurrentMap<String, String> referencedPackages = new ConcurrentHashMap<String, String>();
+  /**
+   * The packages that contain class files
+   */
+  @Nonnull
+  private final Set<String> ownPackages = Collections.newSetFromMap( new ConcurrentHashMap<String, Boolean>() );
+  @Nonnull
+  private final ConcurrentMap<String, IOException> failures = new ConcurrentHashMap<String, IOException>();
+
+  @Nonnull
+  private final AtomicInteger directoryCount = new AtomicInteger();
+  @Nonnull
+  private final AtomicInteger classFileCount = new AtomicInteger();
+
+  @Nonnull
+  @Override
+  public List<String> handle( @Nonnull File directory, @Nonnull String relativeDirectory ) {
+    String[] names = directory.list();
+    if ( names == null ) {
+      return Collections.emptyList();
+    }
+    directoryCount.incrementAndGet();
+
+    List<String> subDirectories = new ArrayList<String>();
+    //Reused for all classes within this directory
+    Set<String> packages = new HashSet<String>();
+    ClassFileBuffer buffer = new ClassFileBuffer();
+
+    for ( String name : names ) {
+      File file = new File( directory, name );
+      if ( !name.endsWith( BundleContentValidator.CLASS_FILE_SUFFIX ) ) {
+        if ( file.isDirectory() ) {
+          subDirectories.add( name );
+        }
+        continue;
+      }
+
+      classFileCount.incrementAndGet();
+      String relativePath = SourceTreeScanner.relativePath( relativeDirectory, name );
+      ownPackages.add( relativeDirectory.replace( File.separatorChar, '.' ) );
+
+      packages.clear();
+      try {
+        //The file might be rewritten by the compiler meanwhile: only the bytes that have been read are scanned
+        int length = buffer.read( file );
+        ConstantPoolScanner.collectReferencedPackages( buffer.bytes, length, packages );
+      } catch ( IOException e ) {
+        failures.put( relativePath, e );
+        continue;
+      }
+
+      for ( String referencedPackage : packages ) {
+        addReference( referencedPackage, relativePath );
+      }
+    }
+
+    return subDirectories;
+  }
+
+  /**
+   * Remembers the smallest path for each package - the result does not depend on the order the directories are visited
+   */
+  private void addReference( @Nonnull String referencedPackage, @Nonnull String relativePath ) {
+    @Nullable String existing = referencedPackages.putIfAbsent( referencedPackage, relativePath );
+    while ( existing != null && relativePath.compareTo( existing ) < 0 ) {
+      if ( referencedPackages.replace( referencedPackage, existing, relativePath ) ) {
+        return;
+      }
+      existing = referencedPackages.get( referencedPackage );
+    }
+  }
+
+  /**
+   * The buffer the class files are read into. Is reused for all class files within one directory.
+   */
+  private static class ClassFileBuffer {
+    @Nonnull
+    private byte[] bytes = new byte[BUFFER_SIZE];
+
+    /**
+     * Reads the given file into the buffer (the buffer grows if necessary)
+     *
+     * @return the number of bytes that have been read
+     */
+    private int read( @Nonnull File classFile ) throws IOException {
+      long length = classFile.length();
+      if ( length > Integer.MAX_VALUE ) {
+        throw new IOException( "File too large" );
+      }
+      if ( bytes.length < length ) {
+        bytes = new byte[( int ) length];
+      }
+
+      FileInputStream in = new FileInputStream( classFile );
+      try {
+        int position = 0;
+        while ( position < bytes.length ) {
+          int read = in.read( bytes, position, bytes.length - position );
+          if ( read < 0 ) {
+            return position;
+          }
+          position += read;
+        }
+        //The file has grown since its length has been queried
+        if ( in.read() >= 0 ) {
+          throw new IOException( "File has been changed while reading" );
+        }
+        return position;
+      } finally {
+        in.close();
+      }
+    }
+  }
+
+  /**
+   * Returns the packages that are referenced by the classes - except the own packages
+   *
+   * @return the referenced packages and one of the class files that reference the package
+   */
+  @Nonnull
+  public SortedMap<String, String> getReferencedPackages() {
+    SortedMap<String, String> foreign = new TreeMap<String, String>( referencedPackages );
+    foreign.keySet().removeAll( ownPackages );
+    return foreign;
+  }
+
+  /**
+   * Returns the packages that contain class files
+   *
+   * @return the own packages
+   */
+  @Nonnull
+  public SortedSet<String> getOwnPackages() {
+    return ImmutableSortedSet.copyOf( ownPackages );
+  }
+
+  /**
+   * Returns the number of directories that have been listed
+   *
+   * @return the number of directories
+   */
+  public int getDirectoryCount() {
+    return directoryCount.get();
+  }
+
+  /**
+   * Returns the number of class files that have been scanned (including the ones that could not be read)
+   *
+   * @return the number of class files
+   */
+  public int getClassFileCount() {
+    return classFileCount.get();
+  }
+
+  /**
+   * Returns the class files that could not be read
+   *
+   * @return the class files (relative paths) and the exceptions
+   */
+  @Nonnull
+  public Map<String, IOException> getFailures() {
+    return ImmutableSortedMap.copyOf( failures );
+  }
+}
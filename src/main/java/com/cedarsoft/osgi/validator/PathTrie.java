@@ -0,0 +1,337 @@
+package com.cedarsoft.osgi.validator;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stores values for relative paths within a prefix tree.
+ * <p/>
+ * Generated source trees contain millions of paths that share long directory prefixes.
+ * Within a map each key repeats the complete prefix. Within the trie each path element is stored once -
+ * the paths are only rebuilt when the entries are visited.
+ * Additionally the names of the directories are interned within the trie (e.g. "com" is stored once for all source roots).
+ * The last path element (usually a unique file name) is not interned.
+ * The names are stored as byte arrays (if they only contain ISO-8859-1 characters) or char arrays - without the overhead of a String.
+ * <p/>
+ * The children are kept sorted by name. Therefore the entries are visited in a deterministic order:
+ * sorted by path element (a directory is visited before its content).
+ * <p/>
+ * Lookups do not create any substrings. The trie is thread safe: each node is locked separately.
+ *
+ * @param <V> the type of the values
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+public class PathTrie<V> {
+  private final char separator;
+  @Nonnull
+  private final Node<V> root = new Node<V>( new byte[0] );
+  /**
+   * The interned (encoded) directory names
+   */
+  @Nonnull
+  private final Map<String, Object> names = new HashMap<String, Object>();
+  @Nonnull
+  private final AtomicInteger size = new AtomicInteger();
+
+  public PathTrie( char separator ) {
+    this.separator = separator;
+  }
+
+  public char getSeparator() {
+    return separator;
+  }
+
+  /**
+   * Stores the value for the given path
+   *
+   * @param path  the relative path (empty for the root)
+   * @param value the value
+   * @return the previous value or null
+   */
+  @Nullable
+  public V put( @Nonnull String path, @Nonnull V value ) {
+    Node<V> node = root;
+    int length = path.length();
+    int start = 0;
+    while ( start < length ) {
+      int end = path.indexOf( separator, start );
+      boolean last = end < 0;
+      if ( last ) {
+        end = length;
+      }
+      if ( end > start ) {
+        node = node.getOrCreateChild( path, start, end, last ? null : this );
+      }
+      start = end + 1;
+    }
+
+    V previous = node.setValue( value );
+    if ( previous == null ) {
+      size.incrementAndGet();
+    }
+    return previous;
+  }
+
+  /**
+   * Returns the value for the given path
+   *
+   * @param path the relative path
+   * @return the value or null if there is no value for the path
+   */
+  @Nullable
+  public V get( @Nonnull CharSequence path ) {
+    @Nullable Node<V> node = findNode( path );
+    return node == null ? null : node.value;
+  }
+
+  public boolean containsPath( @Nonnull CharSequence path ) {
+    return get( path ) != null;
+  }
+
+  @Nullable
+  private Node<V> findNode( @Nonnull CharSequence path ) {
+    Node<V> node = root;
+    int length = path.length();
+    int start = 0;
+    while ( start < length ) {
+      int end = start;
+      while ( end < length && path.charAt( end ) != separator ) {
+        end++;
+      }
+      if ( end > start ) {
+        node = node.findChild( path, start, end );
+        if ( node == null ) {
+          return null;
+        }
+      }
+      start = end + 1;
+    }
+    return node;
+  }
+
+  /**
+   * Returns the number of paths with a value
+   *
+   * @return the number of entries
+   */
+  public int size() {
+    return size.get();
+  }
+
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  /**
+   * Visits all entries sorted by path element.
+   * Entries that are added while visiting might be skipped.
+   *
+   * @param visitor the visitor
+   */
+  public void visit( @Nonnull Visitor<? super V> visitor ) {
+    visit( root, new StringBuilder(), visitor );
+  }
+
+  private void visit( @Nonnull Node<V> node, @Nonnull StringBuilder path, @Nonnull Visitor<? super V> visitor ) {
+    @Nullable V value = node.value;
+    if ( value != null ) {
+      visitor.visit( path.toString(), value );
+    }
+
+    int pathLength = path.length();
+    for ( Node<V> child : node.getChildren() ) {
+      if ( pathLength > 0 ) {
+        path.append( separator );
+      }
+      appendName( path, child.name );
+      visit( child, path, visitor );
+      path.setLength( pathLength );
+    }
+  }
+
+  @Nonnull
+  private Object intern( @Nonnull String name ) {
+    synchronized ( names ) {
+      Object existing = names.get( name );
+      if ( existing != null ) {
+        return existing;
+      }
+      Object encoded = encode( name );
+      names.put( name, encoded );
+      return encoded;
+    }
+  }
+
+  /**
+   * Encodes the name as byte array (if possible) or char array
+   */
+  @Nonnull
+  private static Object encode( @Nonnull String name ) {
+    int length = name.length();
+    byte[] bytes = new byte[length];
+    for ( int i = 0; i < length; i++ ) {
+      char c = name.charAt( i );
+      if ( c > 0xFF ) {
+        return name.toCharArray();
+      }
+      bytes[i] = ( byte ) c;
+    }
+    return bytes;
+  }
+
+  private static void appendName( @Nonnull StringBuilder path, @Nonnull Object name ) {
+    if ( name instanceof byte[] ) {
+      for ( byte b : ( byte[] ) name ) {
+        path.append( ( char ) ( b & 0xFF ) );
+      }
+    } else {
+      path.append( ( char[] ) name );
+    }
+  }
+
+  /**
+   * Compares the encoded name with the given region
+   */
+  private static int compare( @Nonnull Object name, @Nonnull CharSequence path, int start, int end ) {
+    int length = end - start;
+    if ( name instanceof byte[] ) {
+      byte[] bytes = ( byte[] ) name;
+      int limit = Math.min( bytes.length, length );
+      for ( int i = 0; i < limit; i++ ) {
+        int difference = ( bytes[i] & 0xFF ) - path.charAt( start + i );
+        if ( difference != 0 ) {
+          return difference;
+        }
+      }
+      return bytes.length - length;
+    }
+
+    char[] chars = ( char[] ) name;
+    int limit = Math.min( chars.length, length );
+    for ( int i = 0; i < limit; i++ ) {
+      int difference = chars[i] - path.charAt( start + i );
+      if ( difference != 0 ) {
+        return difference;
+      }
+    }
+    return chars.length - length;
+  }
+
+  /**
+   * Visits the entries of a trie
+   *
+   * @param <V> the type of the values
+   */
+  public interface Visitor<V> {
+    /**
+     * Is called for each entry
+     *
+     * @param path  the path
+     * @param value the value
+     */
+    void visit( @Nonnull String path, @Nonnull V value );
+  }
+
+  private static class Node<V> {
+    private static final Node<?>[] NO_CHILDREN = new Node<?>[0];
+
+    /**
+     * The encoded name: byte[] or char[]
+     */
+    @Nonnull
+    private final Object name;
+    @Nullable
+    private volatile V value;
+    /**
+     * The children sorted by name. Guarded by this.
+     */
+    @Nonnull
+    private Node<V>[] children = newChildren( 0 );
+    private int childCount;
+
+    private Node( @Nonnull Object name ) {
+      this.name = name;
+    }
+
+    @Nullable
+    private synchronized V setValue( @Nonnull V value ) {
+      V previous = this.value;
+      this.value = value;
+      return previous;
+    }
+
+    @Nullable
+    private synchronized Node<V> findChild( @Nonnull CharSequence path, int start, int end ) {
+      int index = search( path, start, end );
+      return index >= 0 ? children[index] : null;
+    }
+
+    /**
+     * Returns the child with the given name. Creates the child if necessary.
+     *
+     * @param trie the trie the name is interned with (null if the name shall not be interned)
+     */
+    @Nonnull
+    private synchronized Node<V> getOrCreateChild( @Nonnull String path, int start, int end, @Nullable PathTrie<V> trie ) {
+      int index = search( path, start, end );
+      if ( index >= 0 ) {
+        return children[index];
+      }
+
+      String childName = path.substring( start, end );
+      Node<V> child = new Node<V>( trie == null ? encode( childName ) : trie.intern( childName ) );
+
+      int insertionPoint = -index - 1;
+      if ( childCount == children.length ) {
+        Node<V>[] grown = newChildren( Math.max( 2, childCount + ( childCount >> 1 ) + 1 ) );
+        System.arraycopy( children, 0, grown, 0, childCount );
+        children = grown;
+      }
+      System.arraycopy( children, insertionPoint, children, insertionPoint + 1, childCount - insertionPoint );
+      children[insertionPoint] = child;
+      childCount++;
+      return child;
+    }
+
+    @Nonnull
+    private synchronized Node<V>[] getChildren() {
+      Node<V>[] copy = newChildren( childCount );
+      System.arraycopy( children, 0, copy, 0, childCount );
+      return copy;
+    }
+
+    /**
+     * Binary search for the name within the given region
+     *
+     * @return the index or (-(insertion point) - 1)
+     */
+    private int search( @Nonnull CharSequence path, int start, int end ) {
+      int low = 0;
+      int high = childCount - 1;
+      while ( low <= high ) {
+        int middle = ( low + high ) >>> 1;
+        int comparison = compare( children[middle].name, path, start, end );
+        if ( comparison < 0 ) {
+          low = middle + 1;
+        } else if ( comparison > 0 ) {
+          high = middle - 1;
+        } else {
+          return middle;
+        }
+      }
+      return -( low + 1 );
+    }
+
+    /**
+     * Creates a children array (the shared empty array for 0)
+     */
+    @SuppressWarnings( "unchecked" )
+    @Nonnull
+    private static <V> Node<V>[] newChildren( int length ) {
+      return ( Node<V>[] ) ( length == 0 ? NO_CHILDREN : new Node<?>[length] );
+    }
+  }
+}
@@ -0,0 +1,65 @@
+package com.cedarsoft.osgi.validator;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.Manifest;
+
+/**
+ * Verifies that the manifest neither exports nor imports prohibited packages (see {@link ManifestValidator}).
+ *
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+public class ProhibitedPackageRule extends AbstractValidationRule {
+  /**
+   * The path violations within the manifest are reported for
+   */
+  @Nonnull
+  public static final String MANIFEST_PATH = "META-INF/MANIFEST.MF";
+
+  @Nonnull
+  private final ManifestValidator manifestValidator;
+
+  public ProhibitedPackageRule( @Nonnull ManifestValidator manifestValidator ) {
+    this.manifestValidator = manifestValidator;
+  }
+
+  @Nonnull
+  @Override
+  public String getName() {
+    return "prohibitedPackages";
+  }
+
+  @Override
+  public boolean isThreadSafe() {
+    return true;
+  }
+
+  @Override
+  public void validateManifest( @Nonnull RuleContext context, @Nonnull Manifest manifest ) {
+    Attributes mainAttributes = manifest.getMainAttributes();
+    validateHeader( context, mainAttributes.getValue( "Export-Package" ), "Export-Package", "Prohibited package exported: " );
+    validateHeader( context, mainAttributes.getValue( "Import-Package" ), "Import-Package", "Prohibited package imported: " );
+  }
+
+  private void validateHeader( @Nonnull RuleContext context, @Nullable String header, @Nonnull String headerName, @Nonnull String message ) {
+    if ( header == null ) {
+      return;
+    }
+
+    List<String> packageNames;
+    try {
+      packageNames = ManifestHeaderParser.parsePaths( header );
+    } catch ( IllegalArgumentException e ) {
+      context.violation( MANIFEST_PATH, -1, "Invalid " + headerName + " header: " + e.getMessage() );
+      return;
+    }
+
+    for ( String packageName : packageNames ) {
+      if ( manifestValidator.isProhibited( packageName ) ) {
+        context.violation( MANIFEST_PATH, -1, message + packageName );
+      }
+    }
+  }
+}
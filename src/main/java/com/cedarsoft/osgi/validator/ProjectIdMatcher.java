@@ -0,0 +1,177 @@
+package com.cedarsoft.osgi.validator;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Matches relative paths against the parts of a project id.
+ * <p/>
+ * All decisions that only depend on the project id (which parts may be skipped, whether the remaining parts
+ * may be ignored at the end of the path) are calculated once.
+ * The path is walked in place: No substrings or lists are created.
+ * <p/>
+ * The result is encoded within a long to avoid any allocation:
+ * {@link #MATCHED} or the failing path index (-1 if the path is too short) and the index of the expected project id part.
+ *
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+public final class ProjectIdMatcher {
+  /**
+   * Returned if the path matches
+   */
+  public static final long MATCHED = Long.MIN_VALUE;
+  /**
+   * The failing path index for paths that are too short
+   */
+  public static final int TOO_SHORT = -1;
+
+  private final char separator;
+  @Nonnull
+  private final String[] parts;
+  /**
+   * Whether the part at the index may be skipped if the path element does not match.
+   * This is the case for parts to ignore and for duplicates (same as the part before)
+   */
+  @Nonnull
+  private final boolean[] skippable;
+  /**
+   * Whether all parts starting at the index may be ignored (length is parts.length + 1)
+   */
+  @Nonnull
+  private final boolean[] remainingIgnorable;
+
+  public ProjectIdMatcher( @Nonnull List<? extends String> parts, @Nonnull Set<? extends String> partsToIgnore ) {
+    this( parts, partsToIgnore, File.separatorChar );
+  }
+
+  public ProjectIdMatcher( @Nonnull List<? extends String> parts, @Nonnull Set<? extends String> partsToIgnore, char separator ) {
+    this.separator = separator;
+    this.parts = parts.toArray( new String[parts.size()] );
+    this.skippable = new boolean[this.parts.length];
+    this.remainingIgnorable = new boolean[this.parts.length + 1];
+
+    for ( int i = 0; i < this.parts.length; i++ ) {
+      boolean duplicate = i > 0 && this.parts[i].equals( this.parts[i - 1] );
+      skippable[i] = duplicate || partsToIgnore.contains( this.parts[i] );
+    }
+
+    remainingIgnorable[this.parts.length] = true;
+    for ( int i = this.parts.length - 1; i >= 0; i-- ) {
+      remainingIgnorable[i] = remainingIgnorable[i + 1] && partsToIgnore.contains( this.parts[i] );
+    }
+  }
+
+  @Nonnull
+  public String getPart( int index ) {
+    return parts[index];
+  }
+
+  public int getPartCount() {
+    return parts.length;
+  }
+
+  /**
+   * Matches the given path
+   *
+   * @param path the path
+   * @return {@link #MATCHED} or the encoded failure
+   */
+  public long match( @Nonnull CharSequence path ) {
+    if ( parts.length == 0 ) {
+      return MATCHED;
+    }
+
+    int length = path.length();
+    int partIndex = 0;
+    int pathIndex = 0;
+
+    int start = skipSeparators( path, 0, length );
+    while ( start < length ) {
+      int end = findSeparator( path, start, length );
+
+      //Skip project id parts until one matches the current path element
+      while ( !regionEquals( path, start, end, parts[partIndex] ) ) {
+        if ( !skippable[partIndex] ) {
+          return failure( pathIndex, partIndex );
+        }
+
+        //Do *not* advance within the path
+        partIndex++;
+        if ( partIndex == parts.length ) {
+          return MATCHED;
+        }
+      }
+
+      //Direct hit, continue!
+      partIndex++;
+      if ( partIndex == parts.length ) {
+        return MATCHED;
+      }
+
+      pathIndex++;
+      start = skipSeparators( path, end, length );
+    }
+
+    //check whether the remaining parts might be ignored
+    if ( remainingIgnorable[partIndex] ) {
+      return MATCHED;
+    }
+    return failure( TOO_SHORT, partIndex );
+  }
+
+  public boolean matches( @Nonnull CharSequence path ) {
+    return match( path ) == MATCHED;
+  }
+
+  /**
+   * Returns the index of the failing path element
+   *
+   * @param result the result of {@link #match(CharSequence)}
+   * @return the failing path index or {@link #TOO_SHORT}
+   */
+  public static int getFailingIndex( long result ) {
+    return ( int ) ( result >> 32 );
+  }
+
+  /**
+   * Returns the index of the project id part that has been expected
+   *
+   * @param result the result of {@link #match(CharSequence)}
+   * @return the index of the expected part
+   */
+  public static int getExpectedPartIndex( long result ) {
+    return ( int ) result;
+  }
+
+  private static long failure( int pathIndex, int partIndex ) {
+    return ( ( long ) pathIndex << 32 ) | ( partIndex & 0xFFFFFFFFL );
+  }
+
+  private int skipSeparators( @Nonnull CharSequence path, int index, int length ) {
+    while ( index < length && path.charAt( index ) == separator ) {
+      index++;
+    }
+    return index;
+  }
+
+  private int findSeparator( @Nonnull CharSequence path, int index, int length ) {
+    while ( index < length && path.charAt( index ) != separator ) {
+      index++;
+    }
+    return index;
+  }
+
+  private static boolean regionEquals( @Nonnull CharSequence path, int start, int end, @Nonnull String part ) {
+    if ( end - start != part.length() ) {
+      return false;
+    }
+    for ( int i = 0; i < part.length(); i++ ) {
+      if ( path.charAt( start + i ) != part.charAt( i ) ) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,68 @@
+package com.cedarsoft.osgi.validator;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.util.List;
+
+/**
+ * Verifies that the package directories reflect the project id (see {@link Validator}).
+ * <p/>
+ * The result only depends on the directory. Therefore the {@link Validator} is called once per directory - with a
+ * placeholder file name that contains a '.' and never matches a part of the project id.
+ * (Resource files without extension like "README" could match a part - the verdict would depend on the order of the files).
+ * The {@link SourceRootValidator} applies this rule itself and caches the results.
+ *
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+public class ProjectIdRule extends AbstractValidationRule {
+  /**
+   * The file name that is used to validate a directory
+   */
+  @Nonnull
+  static final String PLACEHOLDER_FILE_NAME = "package-info.java";
+
+  @Nonnull
+  private final Validator validator;
+
+  public ProjectIdRule( @Nonnull Validator validator ) {
+    this.validator = validator;
+  }
+
+  @Nonnull
+  public Validator getValidator() {
+    return validator;
+  }
+
+  @Nonnull
+  @Override
+  public String getName() {
+    return "projectId";
+  }
+
+  @Override
+  public boolean isThreadSafe() {
+    return true;
+  }
+
+  /**
+   * Validates the given directory
+   *
+   * @param relativeDirectory the directory relative to the source root
+   * @return the result for all files within the directory
+   */
+  @Nonnull
+  public ValidationResult check( @Nonnull String relativeDirectory ) {
+    return validator.validate( SourceTreeScanner.relativePath( relativeDirectory, PLACEHOLDER_FILE_NAME ) );
+  }
+
+  @Override
+  public void validateDirectory( @Nonnull RuleContext context, @Nonnull File directory, @Nonnull String relativeDirectory, @Nonnull List<String> fileNames ) {
+    ValidationResult result = check( relativeDirectory );
+    if ( result.isValid() ) {
+      return;
+    }
+    for ( String fileName : fileNames ) {
+      context.violation( SourceTreeScanner.relativePath( relativeDirectory, fileName ), result.getFailingIndex(), result.getReason() );
+    }
+  }
+}
@@ -0,0 +1,45 @@
+package com.cedarsoft.osgi.validator;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.util.Collection;
+
+/**
+ * Decides which files within a resource directory are validated.
+ * <p/>
+ * Resources end up within the bundle next to the classes - so their package directories have to match the project id, too.
+ * All files within a package directory are validated. Files directly within the resource directory and
+ * the contents of META-INF and OSGI-INF are ignored.
+ *
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+public class ResourceFileSelector extends SourceFileSelector {
+  public ResourceFileSelector( @Nonnull Collection<? extends String> excludes ) {
+    super( excludes );
+  }
+
+  @Nonnull
+  @Override
+  public String getIncludePattern() {
+    return "**";
+  }
+
+  @Override
+  public boolean isIncluded( @Nonnull String relativePath ) {
+    //META-INF and OSGI-INF are never visited
+    return relativePath.indexOf( File.separatorChar ) >= 0 && !isExcluded( relativePath );
+  }
+
+  @Override
+  public boolean isExcludedCompletely( @Nonnull String relativeDirectory ) {
+    return isMetaDirectory( relativeDirectory ) || super.isExcludedCompletely( relativeDirectory );
+  }
+
+  private static boolean isMetaDirectory( @Nonnull String relativePath ) {
+    return isOrIsBelow( relativePath, "META-INF" ) || isOrIsBelow( relativePath, "OSGI-INF" );
+  }
+
+  private static boolean isOrIsBelow( @Nonnull String relativePath, @Nonnull String directory ) {
+    return relativePath.equals( directory ) || relativePath.startsWith( directory + File.separatorChar );
+  }
+}
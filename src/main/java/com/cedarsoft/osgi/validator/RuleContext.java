@@ -0,0 +1,37 @@
+package com.cedarsoft.osgi.validator;
+
+import org.apache.maven.plugin.logging.Log;
+
+import javax.annotation.Nonnull;
+
+/**
+ * The context a {@link ValidationRule} is called with
+ *
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+public interface RuleContext {
+  /**
+   * Returns the project id (groupId + "." + artifactId)
+   *
+   * @return the project id
+   */
+  @Nonnull
+  String getProjectId();
+
+  /**
+   * Returns the log
+   *
+   * @return the log
+   */
+  @Nonnull
+  Log getLog();
+
+  /**
+   * Reports a violation
+   *
+   * @param relativePath the path of the file relative to the source root (or the path of the manifest)
+   * @param failingIndex the index of the path part that failed (-1 if the complete file failed)
+   * @param reason       the reason
+   */
+  void violation( @Nonnull String relativePath, int failingIndex, @Nonnull String reason );
+}
@@ -0,0 +1,110 @@
+package com.cedarsoft.osgi.validator;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Sets;
+import org.codehaus.plexus.util.SelectorUtils;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Decides which files within a source root are validated.
+ * <p/>
+ * Mirrors the semantics of the plexus DirectoryScanner with the include pattern "**&#47;*.java"
+ * and the skipped files as exclude patterns.
+ *
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+public class SourceFileSelector {
+  @Nonnull
+  public static final String JAVA_FILE_SUFFIX = ".java";
+
+  @Nonnull
+  private final List<String> excludes;
+
+  public SourceFileSelector( @Nonnull Collection<? extends String> excludes ) {
+    ImmutableList.Builder<String> builder = ImmutableList.builder();
+    //Sorted to get a stable representation (used as part of the cache key)
+    for ( String exclude : Sets.newTreeSet( excludes ) ) {
+      builder.add( normalizePattern( exclude ) );
+    }
+    this.excludes = builder.build();
+  }
+
+  /**
+   * Returns the normalized exclude patterns
+   *
+   * @return the normalized exclude patterns
+   */
+  @Nonnull
+  public List<String> getExcludes() {
+    //noinspection ReturnOfCollectionOrArrayField
+    return excludes;
+  }
+
+  /**
+   * Returns the pattern for the files that are included (before the excludes are applied)
+   *
+   * @return the include pattern
+   */
+  @Nonnull
+  public String getIncludePattern() {
+    return "**" + File.separator + "*" + JAVA_FILE_SUFFIX;
+  }
+
+  /**
+   * Returns whether the file with the given relative path shall be validated
+   *
+   * @param relativePath the path relative to the source root
+   * @return true if the file is a java file that is not excluded
+   */
+  public boolean isIncluded( @Nonnull String relativePath ) {
+    return relativePath.endsWith( JAVA_FILE_SUFFIX ) && !isExcluded( relativePath );
+  }
+
+  public boolean isExcluded( @Nonnull String relativePath ) {
+    for ( String exclude : excludes ) {
+      if ( SelectorUtils.matchPath( exclude, relativePath, true ) ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns whether the directory and everything below it is excluded.
+   * Those directories do not have to be visited at all.
+   *
+   * @param relativeDirectory the directory relative to the source root
+   * @return true if all files within the directory (and its sub directories) are excluded
+   */
+  public boolean isExcludedCompletely( @Nonnull String relativeDirectory ) {
+    for ( String exclude : excludes ) {
+      if ( !exclude.equals( "**" ) && !exclude.endsWith( File.separator + "**" ) ) {
+        continue;
+      }
+
+      if ( SelectorUtils.matchPath( exclude, relativeDirectory, true ) ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Normalizes the pattern the same way the plexus scanners do
+   *
+   * @param pattern the pattern
+   * @return the normalized pattern
+   */
+  @Nonnull
+  static String normalizePattern( @Nonnull String pattern ) {
+    String normalized = pattern.trim().replace( '/', File.separatorChar ).replace( '\\', File.separatorChar );
+    if ( normalized.endsWith( File.separator ) ) {
+      normalized += "**";
+    }
+    return normalized;
+  }
+}
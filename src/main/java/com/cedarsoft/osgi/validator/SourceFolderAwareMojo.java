@@ -44,6 +44,12 @@ public abstract class SourceFolderAwareMojo extends AbstractMojo {
   @Parameter (defaultValue = "${project.build.outputDirectory}", readonly = true, required = true)
   protected File classesDir;
 
+  /**
+   * The build directory. Caches and reports are written below this directory.
+   */
+  @Parameter (defaultValue = "${project.build.directory}", readonly = true)
+  protected File buildDirectory;
+
   @Parameter (defaultValue = "${project}", readonly = true, required = true)
   protected MavenProject mavenProject;
 
@@ -57,4 +63,28 @@ public abstract class SourceFolderAwareMojo extends AbstractMojo {
   public List<String> getSourceRoots() {
     return Collections.unmodifiableList(sourceRoots);
   }
+
+  @Nonnull
+  public List<String> getTestSourceRoots() {
+    if ( testSourceRoots == null ) {
+      return Collections.emptyList();
+    }
+    return Collections.unmodifiableList( testSourceRoots );
+  }
+
+  @Nonnull
+  public List<Resource> getResources() {
+    if ( resources == null ) {
+      return Collections.emptyList();
+    }
+    return Collections.unmodifiableList( resources );
+  }
+
+  @Nonnull
+  public List<Resource> getTestResources() {
+    if ( testResources == null ) {
+      return Collections.emptyList();
+    }
+    return Collections.unmodifiableList( testResources );
+  }
 }
@@ -0,0 +1,739 @@
+package com.cedarsoft.osgi.validator;
+
+import com.google.common.collect.ImmutableList;
+import org.apache.maven.plugin.logging.Log;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Validates all java files within a source root.
+ * <p/>
+ * The source root is walked directory by directory.
+ * Directories that are unchanged since the last run are taken from the cache. They are neither listed nor validated again.
+ * <p/>
+ * The {@link Validator} is called only once for each package directory: The file name is always the last
+ * part of the path and contains a '.' - therefore it never matches a part of the project id.
+ * So the result is the same for all java files within a directory (except the file name within the message).
+ * <p/>
+ * The directories are handed over from the {@link SourceTreeScanner} as soon as they are reached.
+ * If the scanner is parallel, several directories are validated concurrently.
+ *
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+public class SourceRootValidator {
+  /**
+   * Directories that have been modified within this time span before the scan started are not cached.
+   * Some file systems only store the modification time with a resolution of one or two seconds.
+   * A change that happens directly after the scan might not be visible in the modification time otherwise.
+   */
+  public static final long MODIFICATION_TIME_GRANULARITY = 2000;
+
+  @Nonnull
+  private final Validator validator;
+  @Nonnull
+  private final ProjectIdRule projectIdRule;
+  @Nonnull
+  private final SourceFileSelector selector;
+  @Nonnull
+  private final ValidationCache previous;
+  @Nonnull
+  private final ValidationCache next;
+  @Nonnull
+  private final Log log;
+  @Nonnull
+  private final SourceTreeScanner scanner;
+  @Nonnull
+  private final String fingerprint;
+
+  /**
+   * Whether the package declarations of the java files are compared with the directories.
+   * Those are read for every file (even within unchanged directories) since file modifications are not visible
+   * in the modification time of the directory.
+   */
+  private boolean checkPackageDeclarations;
+
+  /**
+   * The additional rules that are applied to each directory that contains selected files
+   */
+  @Nonnull
+  private List<? extends ValidationRule> rules = Collections.emptyList();
+
+  /**
+   * Is notified about the violations (if set). Otherwise they are collected within the result.
+   */
+  @Nullable
+  private ViolationHandler violationHandler;
+
+  /**
+   * Creates a new source root validator
+   *
+   * @param validator the validator
+   * @param selector  the selector
+   * @param previous  the cache of the last run (only read)
+   * @param next      the cache for the next run (only written)
+   * @param log       the log
+   */
+  public SourceRootValidator( @Nonnull Validator validator, @Nonnull SourceFileSelector selector, @Nonnull ValidationCache previous, @Nonnull ValidationCache next, @Nonnull Log log ) {
+    this( validator, selector, previous, next, log, new SourceTreeScanner() );
+  }
+
+  /**
+   * Creates a new source root validator
+   *
+   * @param validator the validator
+   * @param selector  the selector
+   * @param previous  the cache of the last run (only read)
+   * @param next      the cache for the next run (only written)
+   * @param log       the log
+   * @param scanner   the scanner that is used to walk the source roots
+   */
+  public SourceRootValidator( @Nonnull Validator validator, @Nonnull SourceFileSelector selector, @Nonnull ValidationCache previous, @Nonnull ValidationCache next, @Nonnull Log log, @Nonnull SourceTreeScanner scanner ) {
+    this.validator = validator;
+    this.projectIdRule = new ProjectIdRule( validator );
+    this.selector = selector;
+    this.previous = previous;
+    this.next = next;
+    this.log = log;
+    this.scanner = scanner;
+    this.fingerprint = ValidationCache.createFingerprint( validator.getProjectId(), validator.getPartsToIgnore(), selector.getExcludes() ) + "|" + selector.getIncludePattern();
+  }
+
+  /**
+   * Returns the fingerprint of the configuration (project id, package parts to skip, excludes, include pattern)
+   *
+   * @return the fingerprint
+   */
+  @Nonnull
+  public String getFingerprint() {
+    return fingerprint;
+  }
+
+  @Nonnull
+  public SourceFileSelector getSelector() {
+    return selector;
+  }
+
+  public boolean isCheckPackageDeclarations() {
+    return checkPackageDeclarations;
+  }
+
+  /**
+   * Sets whether the package declarations are compared with the directories. Must be set before the validation is started.
+   *
+   * @param checkPackageDeclarations whether the package declarations are checked
+   */
+  public void setCheckPackageDeclarations( boolean checkPackageDeclarations ) {
+    this.checkPackageDeclarations = checkPackageDeclarations;
+  }
+
+  @Nonnull
+  public List<? extends ValidationRule> getRules() {
+    //noinspection ReturnOfCollectionOrArrayField
+    return rules;
+  }
+
+  /**
+   * Sets the additional rules. They are applied within the same traversal (also to directories that are taken from the cache).
+   * Must be set before the validation is started.
+   *
+   * @param rules the rules
+   */
+  public void setRules( @Nonnull List<? extends ValidationRule> rules ) {
+    this.rules = ImmutableList.copyOf( rules );
+  }
+
+  @Nullable
+  public ViolationHandler getViolationHandler() {
+    return violationHandler;
+  }
+
+  /**
+   * Sets the handler that is notified about the violations as soon as they are found.
+   * If a handler is set, the violations are not collected within the results (and no exceptions are created).
+   * Must be set before the jobs are created.
+   *
+   * @param violationHandler the handler (null to collect the violations within the results)
+   */
+  public void setViolationHandler( @Nullable ViolationHandler violationHandler ) {
+    this.violationHandler = violationHandler;
+  }
+
+  /**
+   * Validates all java files within the given source root
+   *
+   * @param sourceRoot the source root
+   * @return the problematic files (relative path to exception), sorted by path
+   *
+   * @throws InterruptedException if the thread is interrupted while waiting for the scanner
+   */
+  @Nonnull
+  public Map<String, ValidationFailedException> validate( @Nonnull File sourceRoot ) throws InterruptedException {
+    Job job = createJob( sourceRoot, log );
+    scanner.scan( sourceRoot, job );
+    return job.getResult().getProblematicFiles();
+  }
+
+  /**
+   * Validates all java files within the given source roots.
+   * If the scanner is parallel, the source roots are validated concurrently.
+   * <p/>
+   * The messages for each source root are collected separately. They are not written to the log.
+   *
+   * @param sourceRoots the source roots
+   * @return the results (in the same order as the source roots)
+   *
+   * @throws InterruptedException if the thread is interrupted while waiting for the scanner
+   */
+  @Nonnull
+  public List<Result> validate( @Nonnull List<? extends File> sourceRoots ) throws InterruptedException {
+    Map<File, Job> jobs = new LinkedHashMap<File, Job>();
+    for ( File sourceRoot : sourceRoots ) {
+      jobs.put( sourceRoot, createJob( sourceRoot, new BufferedLog( log ) ) );
+    }
+
+    scanner.scan( jobs );
+
+    List<Result> results = new ArrayList<Result>();
+    for ( File sourceRoot : sourceRoots ) {
+      results.add( jobs.get( sourceRoot ).getResult() );
+    }
+    return results;
+  }
+
+  /**
+   * Validates only the given files within the source root (e.g. the files that have been changed).
+   * The directories are not listed and the cache is not used.
+   *
+   * @param sourceRoot       the source root
+   * @param relativePaths    the paths of the files relative to the source root (the files must be selected by the selector)
+   * @param log              the log
+   * @param violationHandler the handler for the violations (null to collect the violations within the result)
+   * @return the result
+   */
+  @Nonnull
+  public Result validateFiles( @Nonnull File sourceRoot, @Nonnull Collection<? extends String> relativePaths, @Nonnull Log log, @Nullable ViolationHandler violationHandler ) {
+    //The files grouped by package directory
+    Map<String, List<String>> directories = new TreeMap<String, List<String>>();
+    for ( String relativePath : relativePaths ) {
+      int index = relativePath.lastIndexOf( File.separatorChar );
+      String relativeDirectory = index < 0 ? "" : relativePath.substring( 0, index );
+
+      List<String> names = directories.get( relativeDirectory );
+      if ( names == null ) {
+        names = new ArrayList<String>();
+        directories.put( relativeDirectory, names );
+      }
+      names.add( relativePath.substring( index + 1 ) );
+    }
+
+    Job job = createJob( sourceRoot, log, violationHandler );
+    for ( Map.Entry<String, List<String>> entry : directories.entrySet() ) {
+      String relativeDirectory = entry.getKey();
+      job.handleFiles( relativeDirectory.length() == 0 ? sourceRoot : new File( sourceRoot, relativeDirectory ), relativeDirectory, entry.getValue() );
+    }
+    return job.getResult();
+  }
+
+  /**
+   * Creates a job that validates the given source root.
+   * The job has to be passed to a {@link SourceTreeScanner}. This allows several source root validators to share one scan.
+   *
+   * @param sourceRoot the source root
+   * @param log        the log the messages for this source root are written to
+   * @return the job
+   */
+  @Nonnull
+  public Job createJob( @Nonnull File sourceRoot, @Nonnull Log log ) {
+    return createJob( sourceRoot, log, violationHandler );
+  }
+
+  /**
+   * Creates a job that validates the given source root and passes the violations to the given handler
+   *
+   * @param sourceRoot       the source root
+   * @param log              the log the messages for this source root are written to
+   * @param violationHandler the handler for the violations of this source root (null to collect the violations within the result)
+   * @return the job
+   */
+  @Nonnull
+  public Job createJob( @Nonnull File sourceRoot, @Nonnull Log log, @Nullable ViolationHandler violationHandler ) {
+    return new Job( sourceRoot, System.currentTimeMillis() - MODIFICATION_TIME_GRANULARITY, log, violationHandler );
+  }
+
+  @Nonnull
+  private ValidationCache.DirectoryEntry scan( @Nonnull File directory, @Nonnull String relativeDirectory, long lastModified, long length, @Nonnull Log log ) {
+    List<String> javaFiles = new ArrayList<String>();
+    List<String> subDirectories = new ArrayList<String>();
+
+    String[] names = directory.list();
+    if ( names == null ) {
+      log.warn( "Could not list <" + directory.getAbsolutePath() + ">" );
+      names = new String[0];
+    }
+    Arrays.sort( names );
+
+    for ( String name : names ) {
+      String relativePath = SourceTreeScanner.relativePath( relativeDirectory, name );
+      File file = new File( directory, name );
+
+      if ( file.isDirectory() ) {
+        if ( !selector.isExcludedCompletely( relativePath ) ) {
+          subDirectories.add( name );
+        }
+        continue;
+      }
+
+      if ( selector.isIncluded( relativePath ) ) {
+        javaFiles.add( name );
+      }
+    }
+
+    if ( javaFiles.isEmpty() ) {
+      return new ValidationCache.DirectoryEntry( lastModified, length, javaFiles, subDirectories, -1, null );
+    }
+
+    if ( log.isDebugEnabled() ) {
+      log.debug( "\tvalidating " + relativeDirectory + " (" + javaFiles.size() + " files)" );
+    }
+    ValidationResult result = projectIdRule.check( relativeDirectory );
+    if ( result.isValid() ) {
+      return new ValidationCache.DirectoryEntry( lastModified, length, javaFiles, subDirectories, -1, null );
+    }
+    return new ValidationCache.DirectoryEntry( lastModified, length, javaFiles, subDirectories, result.getFailingIndex(), result.getReason() );
+  }
+
+  /**
+   * Validates the directories of one source root
+   */
+  public class Job implements SourceTreeScanner.DirectoryHandler, RuleContext {
+    @Nonnull
+    private final File sourceRoot;
+    private final long cacheLimit;
+    @Nonnull
+    private final Log log;
+    @Nonnull
+    private final ValidationCache.Root previousRoot;
+    @Nonnull
+    private final ValidationCache.Root nextRoot;
+    @Nullable
+    private final ViolationHandler violationHandler;
+    /**
+     * Only used if there is no violation handler.
+     * Stored within a trie: generated trees might contain a huge number of problematic files with long common prefixes.
+     */
+    @Nonnull
+    private final PathTrie<Violation> problematicFiles = new PathTrie<Violation>( File.separatorChar );
+    @Nonnull
+    private final AtomicInteger violationCount = new AtomicInteger();
+    /**
+     * The packages (directories) that contain at least one selected file
+     */
+    @Nonnull
+    private final Set<String> packages = new ConcurrentSkipListSet<String>();
+
+    /**
+     * Statistics - only updated once per directory
+     */
+    @Nonnull
+    private final AtomicInteger directoryCount = new AtomicInteger();
+    @Nonnull
+    private final AtomicInteger cachedDirectoryCount = new AtomicInteger();
+    @Nonnull
+    private final AtomicInteger fileCount = new AtomicInteger();
+    /**
+     * The time (System.nanoTime) the root directory has been reached and the last directory has been finished
+     */
+    private volatile long started;
+    @Nonnull
+    private final AtomicLong finished = new AtomicLong();
+
+    private Job( @Nonnull File sourceRoot, long cacheLimit, @Nonnull Log log, @Nullable ViolationHandler violationHandler ) {
+      this.sourceRoot = sourceRoot;
+      this.cacheLimit = cacheLimit;
+      this.log = log;
+      this.violationHandler = violationHandler;
+
+      String sourceRootKey = sourceRoot.getAbsolutePath();
+      this.previousRoot = previous.getRoot( sourceRootKey, fingerprint );
+      this.nextRoot = next.getRoot( sourceRootKey, fingerprint );
+    }
+
+    /**
+     * Validates the java files within the given directory
+     *
+     * @return the sub directories that have to be visited
+     */
+    @Nonnull
+    @Override
+    public List<String> handle( @Nonnull File directory, @Nonnull String relativeDirectory ) {
+      if ( relativeDirectory.length() == 0 ) {
+        started = System.nanoTime();
+      }
+
+      long lastModified = directory.lastModified();
+      long length = directory.length();
+
+      ValidationCache.DirectoryEntry entry = previousRoot.get( relativeDirectory, lastModified, length );
+      if ( entry == null ) {
+        entry = scan( directory, relativeDirectory, lastModified, length, log );
+      } else {
+        cachedDirectoryCount.incrementAndGet();
+        if ( log.isDebugEnabled() ) {
+          log.debug( "\tunchanged " + relativeDirectory );
+        }
+      }
+      directoryCount.incrementAndGet();
+      fileCount.addAndGet( entry.getJavaFiles().size() );
+      if ( relativeDirectory.length() > 0 && !entry.getJavaFiles().isEmpty() ) {
+        packages.add( PackageIndex.toPackageName( relativeDirectory ) );
+      }
+
+      if ( !entry.isValid() ) {
+        for ( String javaFile : entry.getJavaFiles() ) {
+          //noinspection ConstantConditions
+          violation( SourceTreeScanner.relativePath( relativeDirectory, javaFile ), entry.getFailingIndex(), entry.getReason() );
+        }
+      }
+
+      //Files that are already problematic because of their path are not checked again
+      if ( checkPackageDeclarations && entry.isValid() && !entry.getJavaFiles().isEmpty() ) {
+        checkPackageDeclarations( directory, relativeDirectory, entry.getJavaFiles() );
+      }
+      if ( !entry.getJavaFiles().isEmpty() ) {
+        applyRules( directory, relativeDirectory, entry.getJavaFiles() );
+      }
+
+      if ( lastModified < cacheLimit ) {
+        nextRoot.put( relativeDirectory, entry );
+      }
+
+      updateFinished( System.nanoTime() );
+      return entry.getSubDirectories();
+    }
+
+    /**
+     * Validates the given files within the given directory. The directory is neither listed nor cached.
+     *
+     * @param directory         the directory
+     * @param relativeDirectory the directory relative to the source root
+     * @param names             the names of the files
+     */
+    public void handleFiles( @Nonnull File directory, @Nonnull String relativeDirectory, @Nonnull List<String> names ) {
+      if ( started == 0 ) {
+        started = System.nanoTime();
+      }
+      directoryCount.incrementAndGet();
+      fileCount.addAndGet( names.size() );
+      if ( names.isEmpty() ) {
+        return;
+      }
+      if ( relativeDirectory.length() > 0 ) {
+        packages.add( PackageIndex.toPackageName( relativeDirectory ) );
+      }
+
+      ValidationResult result = projectIdRule.check( relativeDirectory );
+      if ( !result.isValid() ) {
+        for ( String name : names ) {
+          violation( SourceTreeScanner.relativePath( relativeDirectory, name ), result.getFailingIndex(), result.getReason() );
+        }
+      } else if ( checkPackageDeclarations ) {
+        checkPackageDeclarations( directory, relativeDirectory, names );
+      }
+      applyRules( directory, relativeDirectory, names );
+
+      updateFinished( System.nanoTime() );
+    }
+
+    private void updateFinished( long now ) {
+      long current = finished.get();
+      while ( now > current && !finished.compareAndSet( current, now ) ) {
+        current = finished.get();
+      }
+    }
+
+    /**
+     * Applies the additional rules. The calls to rules that are not thread safe are serialized.
+     */
+    private void applyRules( @Nonnull File directory, @Nonnull String relativeDirectory, @Nonnull List<String> fileNames ) {
+      for ( ValidationRule rule : rules ) {
+        if ( rule.isThreadSafe() ) {
+          applyRule( rule, directory, relativeDirectory, fileNames );
+        } else {
+          //noinspection SynchronizationOnLocalVariableOrMethodParameter
+          synchronized ( rule ) {
+            applyRule( rule, directory, relativeDirectory, fileNames );
+          }
+        }
+      }
+    }
+
+    private void applyRule( @Nonnull ValidationRule rule, @Nonnull File directory, @Nonnull String relativeDirectory, @Nonnull List<String> fileNames ) {
+      rule.validateDirectory( this, directory, relativeDirectory, fileNames );
+      for ( String fileName : fileNames ) {
+        rule.validateFile( this, new File( directory, fileName ), SourceTreeScanner.relativePath( relativeDirectory, fileName ) );
+      }
+    }
+
+    @Nonnull
+    @Override
+    public String getProjectId() {
+      return validator.getProjectId();
+    }
+
+    @Nonnull
+    @Override
+    public Log getLog() {
+      return log;
+    }
+
+    @Override
+    public void violation( @Nonnull String relativePath, int failingIndex, @Nonnull String reason ) {
+      violationCount.incrementAndGet();
+      if ( violationHandler != null ) {
+        violationHandler.violation( sourceRoot, relativePath, failingIndex, reason );
+      } else {
+        problematicFiles.put( relativePath, new Violation( failingIndex, reason ) );
+      }
+    }
+
+    /**
+     * Compares the package declarations of the given java files with the directory
+     */
+    private void checkPackageDeclarations( @Nonnull File directory, @Nonnull String relativeDirectory, @Nonnull List<String> javaFiles ) {
+      String expectedPackage = relativeDirectory.replace( File.separatorChar, '.' );
+      PackageDeclarationReader reader = new PackageDeclarationReader();
+
+      for ( String javaFile : javaFiles ) {
+        String relativePath = SourceTreeScanner.relativePath( relativeDirectory, javaFile );
+
+        @Nullable String declaredPackage;
+        try {
+          declaredPackage = reader.read( new File( directory, javaFile ) );
+        } catch ( IOException e ) {
+          log.warn( "Could not read <" + relativePath + ">: " + e.getMessage() );
+          continue;
+        }
+
+        if ( declaredPackage == null ) {
+          if ( log.isDebugEnabled() ) {
+            log.debug( "\tno package declaration found in " + relativePath );
+          }
+          continue;
+        }
+        if ( declaredPackage.equals( expectedPackage ) ) {
+          continue;
+        }
+
+        StringBuilder reason = new StringBuilder();
+        reason.append( "Declared package <" ).append( declaredPackage ).append( "> does not match the directory" );
+        ValidationResult result = validator.validate( SourceTreeScanner.relativePath( declaredPackage.replace( '.', File.separatorChar ), javaFile ) );
+        if ( !result.isValid() ) {
+          reason.append( " and is invalid for the project id: " ).append( result.getReason() );
+        }
+        violation( relativePath, -1, reason.toString() );
+      }
+    }
+
+    /**
+     * Returns the result. Must only be called after the scan has finished.
+     *
+     * @return the result
+     */
+    @Nonnull
+    public Result getResult() {
+      long nanos = Math.max( 0, finished.get() - started );
+      return new Result( sourceRoot, problematicFiles, violationCount.get(), log, new Statistics( directoryCount.get(), cachedDirectoryCount.get(), fileCount.get(), nanos ), packages );
+    }
+  }
+
+  /**
+   * The result for one source root
+   */
+  public static class Result {
+    @Nonnull
+    private final File sourceRoot;
+    @Nonnull
+    private final PathTrie<Violation> problematicFiles;
+    private final int violationCount;
+    @Nonnull
+    private final Log log;
+    @Nonnull
+    private final Statistics statistics;
+    @Nonnull
+    private final Set<String> packages;
+
+    public Result( @Nonnull File sourceRoot, @Nonnull Map<String, ValidationFailedException> problematicFiles, @Nonnull Log log ) {
+      this( sourceRoot, toTrie( problematicFiles ), problematicFiles.size(), log, new Statistics( 0, 0, 0, 0 ), Collections.<String>emptySet() );
+    }
+
+    public Result( @Nonnull File sourceRoot, @Nonnull PathTrie<Violation> problematicFiles, int violationCount, @Nonnull Log log, @Nonnull Statistics statistics, @Nonnull Set<String> packages ) {
+      this.sourceRoot = sourceRoot;
+      this.problematicFiles = problematicFiles;
+      this.violationCount = violationCount;
+      this.log = log;
+      this.statistics = statistics;
+      this.packages = packages;
+    }
+
+    @Nonnull
+    public File getSourceRoot() {
+      return sourceRoot;
+    }
+
+    /**
+     * Returns the problematic files (relative path to exception), sorted by path.
+     * Is empty if the violations have been passed to a {@link ViolationHandler}.
+     * <p/>
+     * The paths and exceptions are created on each call.
+     *
+     * @return the problematic files
+     */
+    @Nonnull
+    public SortedMap<String, ValidationFailedException> getProblematicFiles() {
+      final SortedMap<String, ValidationFailedException> files = new TreeMap<String, ValidationFailedException>();
+      problematicFiles.visit( new PathTrie.Visitor<Violation>() {
+        @Override
+        public void visit( @Nonnull String path, @Nonnull Violation violation ) {
+          files.put( path, new ValidationFailedException( path, Validator.splitPath( path ), violation.failingIndex, violation.reason ) );
+        }
+      } );
+      return files;
+    }
+
+    @Nonnull
+    private static PathTrie<Violation> toTrie( @Nonnull Map<String, ValidationFailedException> problematicFiles ) {
+      PathTrie<Violation> trie = new PathTrie<Violation>( File.separatorChar );
+      for ( Map.Entry<String, ValidationFailedException> entry : problematicFiles.entrySet() ) {
+        trie.put( entry.getKey(), new Violation( entry.getValue().getFailingIndex(), entry.getValue().getReason() ) );
+      }
+      return trie;
+    }
+
+    /**
+     * Returns the number of problematic files (also if they have been passed to a {@link ViolationHandler})
+     *
+     * @return the number of problematic files
+     */
+    public int getViolationCount() {
+      return violationCount;
+    }
+
+    @Nonnull
+    public Statistics getStatistics() {
+      return statistics;
+    }
+
+    /**
+     * Returns the packages that contain at least one selected file (sorted)
+     *
+     * @return the package names
+     */
+    @Nonnull
+    public Set<String> getPackages() {
+      return Collections.unmodifiableSet( packages );
+    }
+
+    /**
+     * Writes the messages that have been collected while validating the source root.
+     * Does nothing if the messages have been written directly.
+     */
+    public void flushLog() {
+      if ( log instanceof BufferedLog ) {
+        ( ( BufferedLog ) log ).flush();
+      }
+    }
+  }
+
+  /**
+   * Describes the work that has been done for one source root
+   */
+  public static class Statistics {
+    private final int directoryCount;
+    private final int cachedDirectoryCount;
+    private final int fileCount;
+    private final long nanos;
+
+    public Statistics( int directoryCount, int cachedDirectoryCount, int fileCount, long nanos ) {
+      this.directoryCount = directoryCount;
+      this.cachedDirectoryCount = cachedDirectoryCount;
+      this.fileCount = fileCount;
+      this.nanos = nanos;
+    }
+
+    /**
+     * Returns the number of directories that have been visited (including the cached ones)
+     *
+     * @return the number of visited directories
+     */
+    public int getDirectoryCount() {
+      return directoryCount;
+    }
+
+    /**
+     * Returns the number of directories that have been taken from the cache
+     *
+     * @return the number of cached directories
+     */
+    public int getCachedDirectoryCount() {
+      return cachedDirectoryCount;
+    }
+
+    /**
+     * Returns the number of java files (including the ones within cached directories)
+     *
+     * @return the number of java files
+     */
+    public int getFileCount() {
+      return fileCount;
+    }
+
+    /**
+     * Returns the time between reaching the root directory and finishing the last directory.
+     * The source roots overlap if they are walked concurrently.
+     *
+     * @return the wall time in nano seconds
+     */
+    public long getNanos() {
+      return nanos;
+    }
+  }
+
+  /**
+   * A problematic file. The reason is shared by all files of the directory.
+   */
+  public static final class Violation {
+    private final int failingIndex;
+    @Nonnull
+    private final String reason;
+
+    public Violation( int failingIndex, @Nonnull String reason ) {
+      this.failingIndex = failingIndex;
+      this.reason = reason;
+    }
+
+    public int getFailingIndex() {
+      return failingIndex;
+    }
+
+    @Nonnull
+    public String getReason() {
+      return reason;
+    }
+  }
+}
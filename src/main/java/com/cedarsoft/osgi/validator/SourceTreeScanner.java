@@ -0,0 +1,227 @@
+package com.cedarsoft.osgi.validator;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Walks a source tree directory by directory.
+ * <p/>
+ * Every directory is passed to the {@link DirectoryHandler} as soon as it is reached. The handler decides which
+ * sub directories are visited next.
+ * <p/>
+ * If an executor is set, the sub trees are split across the threads of the executor: For each directory all sub directories
+ * except the last one are submitted as separate tasks. The last one is visited by the current thread.
+ * Several roots are walked concurrently. The handlers must be thread safe in that case.
+ * <p/>
+ * The scan can be stopped early by calling {@link #cancel()} (e.g. from within a handler).
+ *
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+public class SourceTreeScanner {
+  @Nullable
+  private final Executor executor;
+
+  private volatile boolean cancelled;
+
+  /**
+   * Creates a scanner that walks the tree within the calling thread
+   */
+  public SourceTreeScanner() {
+    this( null );
+  }
+
+  /**
+   * Creates a new scanner
+   *
+   * @param executor the executor the sub trees are distributed to (null to walk the tree within the calling thread)
+   */
+  public SourceTreeScanner( @Nullable Executor executor ) {
+    this.executor = executor;
+  }
+
+  public boolean isParallel() {
+    return executor != null;
+  }
+
+  /**
+   * Stops the scan: No further directories are passed to the handlers - also by the workers.
+   * Directories that are handled at the moment are finished. The scans return as soon as all workers have stopped.
+   * A cancelled scanner does not walk any further trees.
+   */
+  public void cancel() {
+    cancelled = true;
+  }
+
+  public boolean isCancelled() {
+    return cancelled;
+  }
+
+  /**
+   * Walks the tree below the given root. Returns when all directories have been handled.
+   *
+   * @param root    the root directory
+   * @param handler the handler
+   * @throws InterruptedException if the thread is interrupted while waiting for the workers
+   */
+  public void scan( @Nonnull File root, @Nonnull DirectoryHandler handler ) throws InterruptedException {
+    scan( Collections.singletonMap( root, handler ) );
+  }
+
+  /**
+   * Walks the trees below the given roots. Returns when all directories of all roots have been handled.
+   * If the scanner is parallel, the roots are walked concurrently.
+   *
+   * @param roots the roots and their handlers
+   * @throws InterruptedException if the thread is interrupted while waiting for the workers
+   */
+  public void scan( @Nonnull Map<? extends File, ? extends DirectoryHandler> roots ) throws InterruptedException {
+    if ( executor == null ) {
+      for ( Map.Entry<? extends File, ? extends DirectoryHandler> entry : roots.entrySet() ) {
+        visit( entry.getKey(), "", entry.getValue() );
+      }
+      return;
+    }
+
+    new ParallelWalk( executor ).walk( roots );
+  }
+
+  private void visit( @Nonnull File directory, @Nonnull String relativeDirectory, @Nonnull DirectoryHandler handler ) {
+    if ( cancelled ) {
+      return;
+    }
+    for ( String subDirectory : handler.handle( directory, relativeDirectory ) ) {
+      visit( new File( directory, subDirectory ), relativePath( relativeDirectory, subDirectory ), handler );
+    }
+  }
+
+  /**
+   * Returns the relative path of the given child
+   *
+   * @param relativeDirectory the relative path of the parent directory ("" for the root)
+   * @param name              the name of the child
+   * @return the relative path of the child
+   */
+  @Nonnull
+  public static String relativePath( @Nonnull String relativeDirectory, @Nonnull String name ) {
+    if ( relativeDirectory.length() == 0 ) {
+      return name;
+    }
+    return relativeDirectory + File.separator + name;
+  }
+
+  /**
+   * Is notified about each directory within the source tree
+   */
+  public interface DirectoryHandler {
+    /**
+     * Handles the given directory
+     *
+     * @param directory         the directory
+     * @param relativeDirectory the path of the directory relative to the root ("" for the root itself)
+     * @return the names of the sub directories that shall be visited
+     */
+    @Nonnull
+    List<String> handle( @Nonnull File directory, @Nonnull String relativeDirectory );
+  }
+
+  private class ParallelWalk {
+    @Nonnull
+    private final Executor executor;
+
+    @Nonnull
+    private final AtomicInteger pending = new AtomicInteger();
+    @Nonnull
+    private final CountDownLatch finished = new CountDownLatch( 1 );
+    @Nonnull
+    private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+    private ParallelWalk( @Nonnull Executor executor ) {
+      this.executor = executor;
+    }
+
+    private void walk( @Nonnull Map<? extends File, ? extends DirectoryHandler> roots ) throws InterruptedException {
+      //Prevents the latch from being released before all roots have been submitted
+      pending.incrementAndGet();
+      for ( Map.Entry<? extends File, ? extends DirectoryHandler> entry : roots.entrySet() ) {
+        submit( entry.getKey(), "", entry.getValue() );
+      }
+      if ( pending.decrementAndGet() == 0 ) {
+        finished.countDown();
+      }
+
+      finished.await();
+
+      Throwable throwable = failure.get();
+      if ( throwable instanceof RuntimeException ) {
+        throw ( RuntimeException ) throwable;
+      }
+      if ( throwable instanceof Error ) {
+        throw ( Error ) throwable;
+      }
+    }
+
+    private void submit( @Nonnull final File directory, @Nonnull final String relativeDirectory, @Nonnull final DirectoryHandler handler ) {
+      if ( cancelled ) {
+        return;
+      }
+      pending.incrementAndGet();
+      try {
+        execute( directory, relativeDirectory, handler );
+      } catch ( RejectedExecutionException e ) {
+        failure.compareAndSet( null, e );
+        if ( pending.decrementAndGet() == 0 ) {
+          finished.countDown();
+        }
+      }
+    }
+
+    private void execute( @Nonnull final File directory, @Nonnull final String relativeDirectory, @Nonnull final DirectoryHandler handler ) {
+      executor.execute( new Runnable() {
+        @Override
+        public void run() {
+          try {
+            visitSubTree( directory, relativeDirectory, handler );
+          } catch ( Throwable e ) {
+            failure.compareAndSet( null, e );
+          } finally {
+            if ( pending.decrementAndGet() == 0 ) {
+              finished.countDown();
+            }
+          }
+        }
+      } );
+    }
+
+    private void visitSubTree( @Nonnull File directory, @Nonnull String relativeDirectory, @Nonnull DirectoryHandler handler ) {
+      File current = directory;
+      String currentRelative = relativeDirectory;
+
+      while ( failure.get() == null && !cancelled ) {
+        List<String> subDirectories = handler.handle( current, currentRelative );
+        if ( subDirectories.isEmpty() ) {
+          return;
+        }
+
+        //Split: All but the last sub directory are handed over to other threads
+        int last = subDirectories.size() - 1;
+        for ( int i = 0; i < last; i++ ) {
+          String subDirectory = subDirectories.get( i );
+          submit( new File( current, subDirectory ), relativePath( currentRelative, subDirectory ), handler );
+        }
+
+        String subDirectory = subDirectories.get( last );
+        current = new File( current, subDirectory );
+        currentRelative = relativePath( currentRelative, subDirectory );
+      }
+    }
+  }
+}
@@ -0,0 +1,182 @@
+package com.cedarsoft.osgi.validator;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Detects the directories within source roots that have been changed since the last poll.
+ * <p/>
+ * Adding, removing or renaming a file updates the modification time of the directory (see {@link ValidationCache}).
+ * Therefore one stat call per directory is enough - files are only listed for directories that have been changed
+ * (to find new sub directories).
+ * <p/>
+ * Only one value is held per directory. The memory usage does not grow while watching.
+ * <p/>
+ * The watcher is not thread safe.
+ *
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+public class SourceTreeWatcher {
+  @Nonnull
+  private final SourceFileSelector selector;
+  /**
+   * The stamps of the directories (relative path) for each root
+   */
+  @Nonnull
+  private final Map<File, Map<String, Long>> roots = new LinkedHashMap<File, Map<String, Long>>();
+
+  public SourceTreeWatcher( @Nonnull SourceFileSelector selector ) {
+    this.selector = selector;
+  }
+
+  /**
+   * Registers the given root. All directories below the root are visited once.
+   *
+   * @param root the root
+   */
+  public void register( @Nonnull File root ) {
+    Map<String, Long> directories = new HashMap<String, Long>();
+    roots.put( root, directories );
+    addSubTree( root, "", directories, new TreeSet<String>() );
+  }
+
+  /**
+   * Returns the number of directories that are watched
+   *
+   * @return the number of watched directories
+   */
+  public int getDirectoryCount() {
+    int count = 0;
+    for ( Map<String, Long> directories : roots.values() ) {
+      count += directories.size();
+    }
+    return count;
+  }
+
+  /**
+   * Returns the directories that have been changed, created or deleted since the last poll
+   *
+   * @return the changed directories (relative paths, sorted) for each root that contains changes
+   */
+  @Nonnull
+  public Map<File, SortedSet<String>> poll() {
+    Map<File, SortedSet<String>> changes = new LinkedHashMap<File, SortedSet<String>>();
+
+    for ( Map.Entry<File, Map<String, Long>> rootEntry : roots.entrySet() ) {
+      File root = rootEntry.getKey();
+      Map<String, Long> directories = rootEntry.getValue();
+
+      SortedSet<String> changed = new TreeSet<String>();
+      List<String> deleted = new ArrayList<String>();
+      for ( Map.Entry<String, Long> entry : directories.entrySet() ) {
+        File directory = resolve( root, entry.getKey() );
+        if ( !directory.isDirectory() ) {
+          deleted.add( entry.getKey() );
+          continue;
+        }
+
+        long stamp = stamp( directory );
+        if ( stamp != entry.getValue() ) {
+          entry.setValue( stamp );
+          changed.add( entry.getKey() );
+        }
+      }
+
+      //Sub directories are only searched within changed directories
+      for ( String relativeDirectory : deleted ) {
+        removeSubTree( relativeDirectory, directories, changed );
+      }
+      for ( String relativeDirectory : new ArrayList<String>( changed ) ) {
+        if ( directories.containsKey( relativeDirectory ) ) {
+          addNewSubDirectories( resolve( root, relativeDirectory ), relativeDirectory, directories, changed );
+        }
+      }
+
+      if ( !changed.isEmpty() ) {
+        changes.put( root, changed );
+      }
+    }
+
+    return changes;
+  }
+
+  private void addNewSubDirectories( @Nonnull File directory, @Nonnull String relativeDirectory, @Nonnull Map<String, Long> directories, @Nonnull SortedSet<String> changed ) {
+    File[] children = directory.listFiles();
+    if ( children == null ) {
+      return;
+    }
+
+    for ( File child : children ) {
+      String relativePath = SourceTreeScanner.relativePath( relativeDirectory, child.getName() );
+      if ( child.isDirectory() && !directories.containsKey( relativePath ) && !selector.isExcludedCompletely( relativePath ) ) {
+        addSubTree( child, relativePath, directories, changed );
+      }
+    }
+  }
+
+  /**
+   * Adds the given directory and all directories below
+   */
+  private void addSubTree( @Nonnull File directory, @Nonnull String relativeDirectory, @Nonnull Map<String, Long> directories, @Nonnull SortedSet<String> added ) {
+    Deque<File> stack = new ArrayDeque<File>();
+    Deque<String> relativeStack = new ArrayDeque<String>();
+    stack.push( directory );
+    relativeStack.push( relativeDirectory );
+
+    while ( !stack.isEmpty() ) {
+      File current = stack.pop();
+      String currentRelative = relativeStack.pop();
+
+      directories.put( currentRelative, stamp( current ) );
+      added.add( currentRelative );
+
+      File[] children = current.listFiles();
+      if ( children == null ) {
+        continue;
+      }
+      for ( File child : children ) {
+        String relativePath = SourceTreeScanner.relativePath( currentRelative, child.getName() );
+        if ( child.isDirectory() && !selector.isExcludedCompletely( relativePath ) ) {
+          stack.push( child );
+          relativeStack.push( relativePath );
+        }
+      }
+    }
+  }
+
+  private static void removeSubTree( @Nonnull String relativeDirectory, @Nonnull Map<String, Long> directories, @Nonnull SortedSet<String> removed ) {
+    String prefix = relativeDirectory + File.separator;
+    for ( Iterator<String> iterator = directories.keySet().iterator(); iterator.hasNext(); ) {
+      String candidate = iterator.next();
+      if ( candidate.equals( relativeDirectory ) || relativeDirectory.length() == 0 || candidate.startsWith( prefix ) ) {
+        iterator.remove();
+        removed.add( candidate );
+      }
+    }
+  }
+
+  @Nonnull
+  private static File resolve( @Nonnull File root, @Nonnull String relativeDirectory ) {
+    if ( relativeDirectory.length() == 0 ) {
+      return root;
+    }
+    return new File( root, relativeDirectory );
+  }
+
+  /**
+   * Combines the modification time and the size of the directory
+   */
+  private static long stamp( @Nonnull File directory ) {
+    return directory.lastModified() * 31 + directory.length();
+  }
+}
@@ -0,0 +1,376 @@
+package com.cedarsoft.osgi.validator;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Sets;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Caches the validation results of package directories between two builds.
+ * <p/>
+ * An entry is only valid as long as the modification time and the size of the directory are unchanged.
+ * Adding, removing or renaming a file updates the modification time of the directory.
+ * The content of the files is irrelevant for the validation.
+ * <p/>
+ * Since the validation result only depends on the directory, one result is stored for each directory.
+ * <p/>
+ * The entries of each source root are bound to a fingerprint of the configuration (project id, package parts to skip, skipped files).
+ * If the configuration changes, the entries are discarded.
+ *
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+public class ValidationCache {
+  private static final int MAGIC = 0x4f564331;
+  private static final int VERSION = 4;
+
+  /**
+   * The entries for each source root (absolute path)
+   */
+  @Nonnull
+  private final Map<String, Root> roots = new HashMap<String, Root>();
+
+  /**
+   * Returns the entries for the given source root.
+   * If the entries have been created for another configuration, they are discarded.
+   *
+   * @param sourceRoot  the absolute path of the source root
+   * @param fingerprint the fingerprint of the configuration the source root is validated with
+   * @return the entries for the source root
+   */
+  @Nonnull
+  public synchronized Root getRoot( @Nonnull String sourceRoot, @Nonnull String fingerprint ) {
+    Root root = roots.get( sourceRoot );
+    if ( root == null || !root.getFingerprint().equals( fingerprint ) ) {
+      root = new Root( fingerprint );
+      roots.put( sourceRoot, root );
+    }
+    return root;
+  }
+
+  public synchronized int size() {
+    int size = 0;
+    for ( Root root : roots.values() ) {
+      size += root.size();
+    }
+    return size;
+  }
+
+  /**
+   * Writes the cache to the given file
+   *
+   * @param file the file
+   * @throws IOException if the file could not be written
+   */
+  public synchronized void store( @Nonnull File file ) throws IOException {
+    File dir = file.getParentFile();
+    if ( dir != null && !dir.isDirectory() && !dir.mkdirs() ) {
+      throw new IOException( "Could not create directory <" + dir.getAbsolutePath() + ">" );
+    }
+
+    //Write to a temporary file first. A broken build must not leave a half written cache behind
+    File tmp = new File( file.getPath() + ".tmp" );
+    DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( tmp ) ) );
+    try {
+      out.writeInt( MAGIC );
+      out.writeInt( VERSION );
+
+      out.writeInt( roots.size() );
+      for ( Map.Entry<String, Root> rootEntry : roots.entrySet() ) {
+        out.writeUTF( rootEntry.getKey() );
+        rootEntry.getValue().write( out );
+      }
+    } finally {
+      out.close();
+    }
+
+    if ( file.exists() && !file.delete() ) {
+      throw new IOException( "Could not delete <" + file.getAbsolutePath() + ">" );
+    }
+    if ( !tmp.renameTo( file ) ) {
+      throw new IOException( "Could not rename <" + tmp.getAbsolutePath() + "> to <" + file.getAbsolutePath() + ">" );
+    }
+  }
+
+  /**
+   * Loads the cache from the given file.
+   * Returns an empty cache if the file does not exist or has been written by another version.
+   *
+   * @param file the file
+   * @return the cache
+   *
+   * @throws IOException if the file could not be read or is damaged
+   */
+  @Nonnull
+  public static ValidationCache load( @Nonnull File file ) throws IOException {
+    ValidationCache cache = new ValidationCache();
+    if ( !file.isFile() ) {
+      return cache;
+    }
+
+    //No count within the file can exceed the length of the file
+    long fileLength = file.length();
+    DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( file ) ) );
+    try {
+      if ( in.readInt() != MAGIC || in.readInt() != VERSION ) {
+        return cache;
+      }
+
+      int rootCount = checkCount( in.readInt(), fileLength );
+      for ( int i = 0; i < rootCount; i++ ) {
+        String sourceRoot = in.readUTF();
+        cache.roots.put( sourceRoot, Root.read( in, fileLength ) );
+      }
+    } finally {
+      in.close();
+    }
+    return cache;
+  }
+
+  private static int checkCount( int count, long fileLength ) throws IOException {
+    if ( count < 0 || count > fileLength ) {
+      throw new IOException( "Damaged cache file: invalid count " + count );
+    }
+    return count;
+  }
+
+  /**
+   * Creates the fingerprint for the given configuration
+   *
+   * @param projectId     the project id
+   * @param partsToIgnore the package parts that are skipped
+   * @param excludes      the excludes
+   * @return the fingerprint
+   */
+  @Nonnull
+  public static String createFingerprint( @Nonnull String projectId, @Nonnull Collection<? extends String> partsToIgnore, @Nonnull Collection<? extends String> excludes ) {
+    return projectId + "|" + Joiner.on( ',' ).join( Sets.newTreeSet( partsToIgnore ) ) + "|" + Joiner.on( ',' ).join( Sets.newTreeSet( excludes ) );
+  }
+
+  /**
+   * The cached directories of one source root.
+   * The directories are stored within a trie - the common prefixes of deep (generated) trees are stored once.
+   */
+  public static class Root {
+    @Nonnull
+    private final String fingerprint;
+    @Nonnull
+    private final PathTrie<DirectoryEntry> entries = new PathTrie<DirectoryEntry>( File.separatorChar );
+
+    public Root( @Nonnull String fingerprint ) {
+      this.fingerprint = fingerprint;
+    }
+
+    @Nonnull
+    public String getFingerprint() {
+      return fingerprint;
+    }
+
+    /**
+     * Returns the cached entry if the directory has not been changed
+     *
+     * @param relativeDirectory the directory relative to the source root
+     * @param lastModified      the current modification time of the directory
+     * @param length            the current size of the directory
+     * @return the entry or null if there is no up-to-date entry
+     */
+    @Nullable
+    public DirectoryEntry get( @Nonnull String relativeDirectory, long lastModified, long length ) {
+      DirectoryEntry entry = entries.get( relativeDirectory );
+      if ( entry == null || !entry.isUpToDate( lastModified, length ) ) {
+        return null;
+      }
+      return entry;
+    }
+
+    /**
+     * Stores the entry for the given directory. May be called concurrently.
+     *
+     * @param relativeDirectory the directory relative to the source root
+     * @param entry             the entry
+     */
+    public void put( @Nonnull String relativeDirectory, @Nonnull DirectoryEntry entry ) {
+      entries.put( relativeDirectory, entry );
+    }
+
+    public int size() {
+      return entries.size();
+    }
+
+    private void write( @Nonnull final DataOutputStream out ) throws IOException {
+      //Collected first: entries might be added concurrently while the cache is written
+      final List<String> paths = new ArrayList<String>();
+      final List<DirectoryEntry> values = new ArrayList<DirectoryEntry>();
+      entries.visit( new PathTrie.Visitor<DirectoryEntry>() {
+        @Override
+        public void visit( @Nonnull String path, @Nonnull DirectoryEntry value ) {
+          paths.add( path );
+          values.add( value );
+        }
+      } );
+
+      out.writeUTF( fingerprint );
+      out.writeInt( paths.size() );
+      for ( int i = 0; i < paths.size(); i++ ) {
+        out.writeUTF( paths.get( i ) );
+        values.get( i ).write( out );
+      }
+    }
+
+    @Nonnull
+    private static Root read( @Nonnull DataInputStream in, long fileLength ) throws IOException {
+      Root root = new Root( in.readUTF() );
+      int entryCount = checkCount( in.readInt(), fileLength );
+      for ( int i = 0; i < entryCount; i++ ) {
+        String relativeDirectory = in.readUTF();
+        root.put( relativeDirectory, DirectoryEntry.read( in, fileLength ) );
+      }
+      return root;
+    }
+  }
+
+  /**
+   * The cached state of one directory
+   */
+  public static class DirectoryEntry {
+    private final long lastModified;
+    private final long length;
+    @Nonnull
+    private final List<String> javaFiles;
+    @Nonnull
+    private final List<String> subDirectories;
+    private final int failingIndex;
+    @Nullable
+    private final String reason;
+
+    /**
+     * Creates a new entry
+     *
+     * @param lastModified   the modification time of the directory
+     * @param length         the size of the directory
+     * @param javaFiles      the names of the java files
+     * @param subDirectories the names of the sub directories
+     * @param failingIndex   the failing index (only relevant if the reason is set)
+     * @param reason         the reason why the files within the directory are invalid. Null if they are valid
+     */
+    public DirectoryEntry( long lastModified, long length, @Nonnull List<? extends String> javaFiles, @Nonnull List<? extends String> subDirectories, int failingIndex, @Nullable String reason ) {
+      this.lastModified = lastModified;
+      this.length = length;
+      this.javaFiles = ImmutableList.copyOf( javaFiles );
+      this.subDirectories = ImmutableList.copyOf( subDirectories );
+      this.failingIndex = failingIndex;
+      this.reason = reason;
+    }
+
+    public boolean isUpToDate( long lastModified, long length ) {
+      return this.lastModified == lastModified && this.length == length;
+    }
+
+    public long getLastModified() {
+      return lastModified;
+    }
+
+    public long getLength() {
+      return length;
+    }
+
+    /**
+     * Returns the names of the java files within the directory (excluded files are not contained)
+     *
+     * @return the names of the java files
+     */
+    @Nonnull
+    public List<String> getJavaFiles() {
+      //noinspection ReturnOfCollectionOrArrayField
+      return javaFiles;
+    }
+
+    /**
+     * Returns the names of the sub directories that have to be visited
+     *
+     * @return the names of the sub directories
+     */
+    @Nonnull
+    public List<String> getSubDirectories() {
+      //noinspection ReturnOfCollectionOrArrayField
+      return subDirectories;
+    }
+
+    /**
+     * Returns whether the java files within the directory are valid
+     *
+     * @return true if the java files are valid
+     */
+    public boolean isValid() {
+      return reason == null;
+    }
+
+    public int getFailingIndex() {
+      return failingIndex;
+    }
+
+    @Nullable
+    public String getReason() {
+      return reason;
+    }
+
+    private void write( @Nonnull DataOutputStream out ) throws IOException {
+      out.writeLong( lastModified );
+      out.writeLong( length );
+      writeList( out, javaFiles );
+      writeList( out, subDirectories );
+
+      out.writeBoolean( reason != null );
+      if ( reason != null ) {
+        out.writeInt( failingIndex );
+        out.writeUTF( reason );
+      }
+    }
+
+    @Nonnull
+    private static DirectoryEntry read( @Nonnull DataInputStream in, long fileLength ) throws IOException {
+      long lastModified = in.readLong();
+      long length = in.readLong();
+      List<String> javaFiles = readList( in, fileLength );
+      List<String> subDirectories = readList( in, fileLength );
+
+      if ( in.readBoolean() ) {
+        int failingIndex = in.readInt();
+        String reason = in.readUTF();
+        return new DirectoryEntry( lastModified, length, javaFiles, subDirectories, failingIndex, reason );
+      }
+      return new DirectoryEntry( lastModified, length, javaFiles, subDirectories, -1, null );
+    }
+
+    private static void writeList( @Nonnull DataOutputStream out, @Nonnull List<String> list ) throws IOException {
+      out.writeInt( list.size() );
+      for ( String element : list ) {
+        out.writeUTF( element );
+      }
+    }
+
+    @Nonnull
+    private static List<String> readList( @Nonnull DataInputStream in, long fileLength ) throws IOException {
+      int size = checkCount( in.readInt(), fileLength );
+      List<String> list = new ArrayList<String>( size );
+      for ( int i = 0; i < size; i++ ) {
+        list.add( in.readUTF() );
+      }
+      return list;
+    }
+  }
+}
@@ -4,6 +4,7 @@ import com.google.common.base.Joiner;
 
 import javax.annotation.Nonnull;
 import java.io.File;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -13,11 +14,27 @@ public class ValidationFailedException extends Exception{
   @Nonnull
   private final String relativePath;
   private final int failingIndex;
+  @Nonnull
+  private final String reason;
 
   public ValidationFailedException( @Nonnull String relativePath, @Nonnull List<? extends String> splitPath, int failingIndex, @Nonnull String message ) {
     super( createMessage( relativePath, splitPath, failingIndex, message ) );
     this.relativePath = relativePath;
     this.failingIndex = failingIndex;
+    this.reason = message;
+  }
+
+  /**
+   * Creates the message for the given path - without creating an exception
+   *
+   * @param relativePath the relative path
+   * @param failingIndex the index of the path part that failed (-1 if the complete path failed)
+   * @param reason       the reason
+   * @return the message
+   */
+  @Nonnull
+  public static String createMessage( @Nonnull String relativePath, int failingIndex, @Nonnull String reason ) {
+    return createMessage( relativePath, failingIndex > 0 ? Validator.splitPath( relativePath ) : Collections.<String>emptyList(), failingIndex, reason );
   }
 
   @Nonnull
@@ -44,4 +61,14 @@ public class ValidationFailedException extends Exception{
   public String getRelativePath() {
     return relativePath;
   }
+
+  /**
+   * Returns the reason (the message without the path information)
+   *
+   * @return the reason
+   */
+  @Nonnull
+  public String getReason() {
+    return reason;
+  }
 }
@@ -0,0 +1,284 @@
+package com.cedarsoft.osgi.validator;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import org.apache.maven.plugin.logging.Log;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects the timing and throughput of the phases of a validation run.
+ * <p/>
+ * Only a few values are recorded per phase (the counters are collected once per directory by the validators).
+ * Therefore the overhead is negligible.
+ * <p/>
+ * Must only be used by the build thread.
+ *
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+public class ValidationMetrics {
+  @Nonnull
+  private final String projectId;
+  @Nonnull
+  private final List<Phase> phases = new ArrayList<Phase>();
+  /**
+   * The phases that have been measured directly (not summed up)
+   */
+  @Nonnull
+  private final List<Phase> measured = new ArrayList<Phase>();
+
+  private int peakResultCount;
+
+  /**
+   * Creates new metrics
+   *
+   * @param projectId the id of the project the metrics are collected for
+   */
+  public ValidationMetrics( @Nonnull String projectId ) {
+    this.projectId = projectId;
+  }
+
+  /**
+   * Returns the current time that is used as start of a phase
+   *
+   * @return the current time in nano seconds
+   */
+  public static long start() {
+    return System.nanoTime();
+  }
+
+  /**
+   * Adds a measured phase (e.g. the scan of one source root)
+   *
+   * @param phase the phase
+   * @return the phase
+   */
+  @Nonnull
+  public Phase add( @Nonnull Phase phase ) {
+    phases.add( phase );
+    measured.add( phase );
+    updatePeakResultCount( phase.getResultCount() );
+    return phase;
+  }
+
+  /**
+   * Adds a phase that has been started at the given time and is finished now.
+   * The files and directories are summed up from the given parts.
+   *
+   * @param name        the name of the phase
+   * @param detail      the detail (e.g. the source root) or null
+   * @param started     the start time (see {@link #start()})
+   * @param resultCount the number of results (problematic files)
+   * @param parts       the phases that have been executed as part of this phase
+   * @return the phase
+   */
+  @Nonnull
+  public Phase finish( @Nonnull String name, @Nullable String detail, long started, int resultCount, @Nonnull Iterable<? extends Phase> parts ) {
+    long nanos = System.nanoTime() - started;
+
+    int fileCount = 0;
+    int directoryCount = 0;
+    int cachedDirectoryCount = 0;
+    for ( Phase part : parts ) {
+      fileCount += part.getFileCount();
+      directoryCount += part.getDirectoryCount();
+      cachedDirectoryCount += part.getCachedDirectoryCount();
+    }
+
+    Phase phase = new Phase( name, detail, nanos, fileCount, directoryCount, cachedDirectoryCount, resultCount );
+    phases.add( phase );
+    updatePeakResultCount( resultCount );
+    return phase;
+  }
+
+  /**
+   * Adds the phase that covers the complete run. Sums up all phases that have been added using {@link #add(Phase)}.
+   *
+   * @param name    the name of the phase
+   * @param started the start time (see {@link #start()})
+   * @return the phase
+   */
+  @Nonnull
+  public Phase finishTotal( @Nonnull String name, long started ) {
+    return finish( name, null, started, peakResultCount, new ArrayList<Phase>( measured ) );
+  }
+
+  /**
+   * Updates the peak number of results that have been held at once
+   *
+   * @param resultCount the current number of results
+   */
+  public void updatePeakResultCount( int resultCount ) {
+    peakResultCount = Math.max( peakResultCount, resultCount );
+  }
+
+  public int getPeakResultCount() {
+    return peakResultCount;
+  }
+
+  @Nonnull
+  public String getProjectId() {
+    return projectId;
+  }
+
+  /**
+   * Returns the phases (in the order they have been finished)
+   *
+   * @return the phases
+   */
+  @Nonnull
+  public List<Phase> getPhases() {
+    return ImmutableList.copyOf( phases );
+  }
+
+  /**
+   * Writes a summary to the given log (info level)
+   *
+   * @param log the log
+   */
+  public void logSummary( @Nonnull Log log ) {
+    log.info( "Validation metrics:" );
+    for ( Phase phase : phases ) {
+      log.info( "\t" + phase );
+    }
+    log.info( "\tpeak result count: " + peakResultCount );
+  }
+
+  /**
+   * Writes the metrics as JSON to the given file
+   *
+   * @param file the file
+   * @throws IOException if the file could not be written
+   */
+  public void write( @Nonnull File file ) throws IOException {
+    Files.createParentDirs( file );
+    Files.write( toJson(), file, Charsets.UTF_8 );
+  }
+
+  /**
+   * Returns the metrics as JSON
+   *
+   * @return the JSON representation
+   */
+  @Nonnull
+  public String toJson() {
+    StringBuilder json = new StringBuilder();
+    json.append( "{\n" );
+    json.append( "  \"projectId\": " ).append( Escaping.json( projectId ) ).append( ",\n" );
+    json.append( "  \"peakResultCount\": " ).append( peakResultCount ).append( ",\n" );
+    json.append( "  \"phases\": [" );
+
+    for ( int i = 0; i < phases.size(); i++ ) {
+      Phase phase = phases.get( i );
+      json.append( i == 0 ? "\n" : ",\n" );
+      json.append( "    {\"name\": " ).append( Escaping.json( phase.getName() ) );
+      if ( phase.getDetail() != null ) {
+        json.append( ", \"detail\": " ).append( Escaping.json( phase.getDetail() ) );
+      }
+      json.append( ", \"nanos\": " ).append( phase.getNanos() );
+      json.append( ", \"files\": " ).append( phase.getFileCount() );
+      json.append( ", \"directories\": " ).append( phase.getDirectoryCount() );
+      json.append( ", \"cachedDirectories\": " ).append( phase.getCachedDirectoryCount() );
+      json.append( ", \"filesPerSecond\": " ).append( phase.getFilesPerSecond() );
+      json.append( ", \"resultCount\": " ).append( phase.getResultCount() );
+      json.append( "}" );
+    }
+
+    json.append( phases.isEmpty() ? "]\n" : "\n  ]\n" );
+    json.append( "}\n" );
+    return json.toString();
+  }
+
+  /**
+   * One measured phase
+   */
+  public static class Phase {
+    @Nonnull
+    private final String name;
+    @Nullable
+    private final String detail;
+    private final long nanos;
+    private final int fileCount;
+    private final int directoryCount;
+    private final int cachedDirectoryCount;
+    private final int resultCount;
+
+    public Phase( @Nonnull String name, @Nullable String detail, long nanos, int fileCount, int directoryCount, int cachedDirectoryCount, int resultCount ) {
+      this.name = name;
+      this.detail = detail;
+      this.nanos = nanos;
+      this.fileCount = fileCount;
+      this.directoryCount = directoryCount;
+      this.cachedDirectoryCount = cachedDirectoryCount;
+      this.resultCount = resultCount;
+    }
+
+    @Nonnull
+    public String getName() {
+      return name;
+    }
+
+    @Nullable
+    public String getDetail() {
+      return detail;
+    }
+
+    public long getNanos() {
+      return nanos;
+    }
+
+    public int getFileCount() {
+      return fileCount;
+    }
+
+    public int getDirectoryCount() {
+      return directoryCount;
+    }
+
+    public int getCachedDirectoryCount() {
+      return cachedDirectoryCount;
+    }
+
+    public int getResultCount() {
+      return resultCount;
+    }
+
+    /**
+     * Returns the throughput
+     *
+     * @return the files per second (0 if the phase has not taken any measurable time)
+     */
+    public long getFilesPerSecond() {
+      if ( nanos <= 0 ) {
+        return 0;
+      }
+      return Math.round( fileCount * ( double ) TimeUnit.SECONDS.toNanos( 1 ) / nanos );
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder builder = new StringBuilder( name );
+      if ( detail != null ) {
+        builder.append( " <" ).append( detail ).append( ">" );
+      }
+      builder.append( ": " ).append( TimeUnit.NANOSECONDS.toMillis( nanos ) ).append( " ms" );
+      if ( fileCount > 0 || directoryCount > 0 ) {
+        builder.append( ", " ).append( fileCount ).append( " files" );
+        builder.append( ", " ).append( directoryCount ).append( " directories" );
+        if ( cachedDirectoryCount > 0 ) {
+          builder.append( " (" ).append( cachedDirectoryCount ).append( " cached)" );
+        }
+        builder.append( ", " ).append( getFilesPerSecond() ).append( " files/s" );
+      }
+      builder.append( ", " ).append( resultCount ).append( " results" );
+      return builder.toString();
+    }
+  }
+}
@@ -0,0 +1,159 @@
+package com.cedarsoft.osgi.validator;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * The result of the validation of a path (see {@link Validator#validate(String)}).
+ * <p/>
+ * Valid paths share the {@link #VALID} instance. A failure only holds references to the path, the failing index,
+ * the reason code and the part of the project id the reason refers to.
+ * The reason and the message are built on demand - callers that only count the failures don't pay for them.
+ *
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+public final class ValidationResult {
+  /**
+   * The result for all valid paths
+   */
+  @Nonnull
+  public static final ValidationResult VALID = new ValidationResult( null, -1, null, null );
+
+  /**
+   * Describes why a path is invalid
+   */
+  public enum ReasonCode {
+    /**
+     * The path ends before all required parts of the project id have been found
+     */
+    TOO_SHORT,
+    /**
+     * A part of the path does not match the expected part of the project id
+     */
+    UNEXPECTED_PART
+  }
+
+  @Nullable
+  private final String relativePath;
+  private final int failingIndex;
+  @Nullable
+  private final ReasonCode reasonCode;
+  /**
+   * The project id (for {@link ReasonCode#TOO_SHORT}) or the expected part (for {@link ReasonCode#UNEXPECTED_PART})
+   */
+  @Nullable
+  private final String expected;
+
+  private ValidationResult( @Nullable String relativePath, int failingIndex, @Nullable ReasonCode reasonCode, @Nullable String expected ) {
+    this.relativePath = relativePath;
+    this.failingIndex = failingIndex;
+    this.reasonCode = reasonCode;
+    this.expected = expected;
+  }
+
+  /**
+   * Creates a failure
+   *
+   * @param relativePath the relative path that has been validated
+   * @param failingIndex the index of the path part that failed (-1 if the complete path failed)
+   * @param reasonCode   the reason code
+   * @param expected     the project id (for {@link ReasonCode#TOO_SHORT}) or the expected part (for {@link ReasonCode#UNEXPECTED_PART})
+   * @return the failure
+   */
+  @Nonnull
+  public static ValidationResult failure( @Nonnull String relativePath, int failingIndex, @Nonnull ReasonCode reasonCode, @Nonnull String expected ) {
+    return new ValidationResult( relativePath, failingIndex, reasonCode, expected );
+  }
+
+  public boolean isValid() {
+    return reasonCode == null;
+  }
+
+  /**
+   * Returns the relative path
+   *
+   * @return the relative path (null for {@link #VALID})
+   */
+  @Nullable
+  public String getRelativePath() {
+    return relativePath;
+  }
+
+  /**
+   * Returns the index of the path part that failed
+   *
+   * @return the failing index or -1 if the complete path failed (or the path is valid)
+   */
+  public int getFailingIndex() {
+    return failingIndex;
+  }
+
+  /**
+   * Returns the reason code
+   *
+   * @return the reason code (null for {@link #VALID})
+   */
+  @Nullable
+  public ReasonCode getReasonCode() {
+    return reasonCode;
+  }
+
+  /**
+   * Builds the reason (the message without the path information)
+   *
+   * @return the reason
+   *
+   * @throws IllegalStateException if the path is valid
+   */
+  @Nonnull
+  public String getReason() throws IllegalStateException {
+    if ( reasonCode == null ) {
+      throw new IllegalStateException( "Valid" );
+    }
+
+    switch ( reasonCode ) {
+      case TOO_SHORT:
+        return "Too short for project id <" + expected + ">";
+      case UNEXPECTED_PART:
+        return "Expected <" + expected + ">.";
+      default:
+        throw new IllegalStateException( "Unknown reason code " + reasonCode );
+    }
+  }
+
+  /**
+   * Builds the message (the same as the message of the corresponding exception)
+   *
+   * @return the message
+   *
+   * @throws IllegalStateException if the path is valid
+   */
+  @Nonnull
+  public String getMessage() throws IllegalStateException {
+    String reason = getReason();
+    assert relativePath != null;
+    return ValidationFailedException.createMessage( relativePath, failingIndex, reason );
+  }
+
+  /**
+   * Creates the corresponding exception
+   *
+   * @return the exception
+   *
+   * @throws IllegalStateException if the path is valid
+   */
+  @Nonnull
+  public ValidationFailedException toException() throws IllegalStateException {
+    String reason = getReason();
+    assert relativePath != null;
+    return new ValidationFailedException( relativePath, Validator.splitPath( relativePath ), failingIndex, reason );
+  }
+
+  @Override
+  public String toString() {
+    if ( reasonCode == null ) {
+      return "VALID";
+    }
+    return getMessage();
+  }
+}
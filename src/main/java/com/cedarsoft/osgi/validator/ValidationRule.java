@@ -0,0 +1,63 @@
+package com.cedarsoft.osgi.validator;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.util.List;
+import java.util.jar.Manifest;
+
+/**
+ * A check that is fed by the traversal of the source roots and the validation of the manifest.
+ * <p/>
+ * All rules share one traversal: For each visited directory that contains selected files, the directory
+ * and each file are passed to the rules. The manifest is passed once.
+ * <p/>
+ * Custom rules are loaded from the plugin dependencies - either registered as service
+ * (META-INF/services/com.cedarsoft.osgi.validator.ValidationRule) or configured by class name.
+ * They need a public no-arg constructor. Extend {@link AbstractValidationRule} to implement only some of the callbacks.
+ *
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+public interface ValidationRule {
+  /**
+   * Returns the name of the rule (used within the build output)
+   *
+   * @return the name
+   */
+  @Nonnull
+  String getName();
+
+  /**
+   * Whether the rule may be called concurrently for several directories.
+   * The calls to rules that are not thread safe are serialized.
+   *
+   * @return true if the rule is thread safe
+   */
+  boolean isThreadSafe();
+
+  /**
+   * Validates a directory. Is called for each directory that contains at least one selected file.
+   *
+   * @param context           the context the violations are reported to
+   * @param directory         the directory
+   * @param relativeDirectory the directory relative to the source root
+   * @param fileNames         the names of the selected files within the directory
+   */
+  void validateDirectory( @Nonnull RuleContext context, @Nonnull File directory, @Nonnull String relativeDirectory, @Nonnull List<String> fileNames );
+
+  /**
+   * Validates a selected file
+   *
+   * @param context      the context the violations are reported to
+   * @param file         the file
+   * @param relativePath the path relative to the source root
+   */
+  void validateFile( @Nonnull RuleContext context, @Nonnull File file, @Nonnull String relativePath );
+
+  /**
+   * Validates the manifest of the bundle
+   *
+   * @param context  the context the violations are reported to
+   * @param manifest the manifest
+   */
+  void validateManifest( @Nonnull RuleContext context, @Nonnull Manifest manifest );
+}
@@ -2,11 +2,11 @@ package com.cedarsoft.osgi.validator;
 
 import com.google.common.base.CharMatcher;
 import com.google.common.base.Splitter;
-import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 
 import javax.annotation.Nonnull;
 import java.io.File;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -18,17 +18,40 @@ public class Validator {
   private final String projectId;
 
   @Nonnull
-  private final Set<String> partsToIgnore;
+  private final PackagePatterns partsToIgnore;
 
-  public Validator( @Nonnull String projectId, @Nonnull Set<? extends String> partsToIgnore ) {
+  @Nonnull
+  private final ProjectIdMatcher matcher;
+
+  /**
+   * Creates a new validator
+   *
+   * @param projectId     the project id
+   * @param partsToIgnore the patterns of the project id parts that may be skipped
+   * @throws IllegalArgumentException if a pattern is invalid
+   */
+  public Validator( @Nonnull String projectId, @Nonnull Set<? extends String> partsToIgnore ) throws IllegalArgumentException {
+    this( projectId, PackagePatterns.compile( partsToIgnore ) );
+  }
+
+  public Validator( @Nonnull String projectId, @Nonnull PackagePatterns partsToIgnore ) {
     this.projectId = projectId;
-    this.partsToIgnore = ImmutableSet.copyOf( partsToIgnore );
+    this.partsToIgnore = partsToIgnore;
+
+    //The patterns are only evaluated once for each part of the project id
+    List<? extends String> parts = splitProjectId( projectId );
+    Set<String> ignoredParts = new HashSet<String>();
+    for ( String part : parts ) {
+      if ( partsToIgnore.matches( part ) ) {
+        ignoredParts.add( part );
+      }
+    }
+    this.matcher = new ProjectIdMatcher( parts, ignoredParts );
   }
 
   @Nonnull
   public Set<String> getPartsToIgnore() {
-    //noinspection ReturnOfCollectionOrArrayField
-    return partsToIgnore;
+    return partsToIgnore.getPatterns();
   }
 
   @Nonnull
@@ -36,68 +59,54 @@ public class Validator {
     return projectId;
   }
 
-  public void isValid( @Nonnull String relativePath ) throws ValidationFailedException{
-    List<? extends String> projectIdParts = splitProjectId( projectId );
-    int projectIdIndex = 0;
-
-    //Every part within the package should be reflected by the project id parts
-    List<? extends String> splitPath = splitPath( relativePath );
-    for ( int pathIndex = 0; pathIndex < splitPath.size(); ) {
-      String pathElement = splitPath.get( pathIndex );
-
-      String projectIdPart = projectIdParts.get( projectIdIndex );
-
-      //Direct hit, continue!
-      if ( pathElement.equals( projectIdPart ) ) {
-        projectIdIndex++;
-
-        if ( projectIdIndex == projectIdParts.size() ) {
-          return;
-        }
-
-        pathIndex++;
-        continue;
-      }
-
-
-      //Maybe the project id part is ignored(?)
-      if ( partsToIgnore.contains( projectIdPart ) ) {
-        projectIdIndex++;
-
-        //Do *not* increase the index of the path
-        if ( projectIdIndex == projectIdParts.size() ) {
-          return;
-        }
-        continue;
-      }
-
-      //Maybe the part is a duplicate(?)
-      if ( projectIdIndex > 0 && projectIdPart.equals( projectIdParts.get( projectIdIndex - 1 ) ) ) {
-        projectIdIndex++;
-
-        //Do *not* increase the index of the path
-        if ( projectIdIndex == projectIdParts.size() ) {
-          return;
-        }
-        continue;
-      }
+  /**
+   * Every part within the package should be reflected by the project id parts.
+   * Parts of the project id that are ignored or duplicates may be skipped.
+   *
+   * @param relativePath the relative path
+   * @return true if the path is valid
+   */
+  public boolean matches( @Nonnull CharSequence relativePath ) {
+    return matcher.matches( relativePath );
+  }
 
-      throw new ValidationFailedException( relativePath, splitPath, pathIndex, "Expected <" + projectIdPart + ">." );
+  /**
+   * Validates the given path. Does not throw an exception and does not build a message.
+   *
+   * @param relativePath the relative path
+   * @return {@link ValidationResult#VALID} or the failure
+   */
+  @Nonnull
+  public ValidationResult validate( @Nonnull String relativePath ) {
+    long result = matcher.match( relativePath );
+    if ( result == ProjectIdMatcher.MATCHED ) {
+      return ValidationResult.VALID;
     }
 
-    //check whether the remaining parts might be ignored
-    while ( projectIdIndex < projectIdParts.size() ) {
+    int failingIndex = ProjectIdMatcher.getFailingIndex( result );
+    if ( failingIndex == ProjectIdMatcher.TOO_SHORT ) {
+      return ValidationResult.failure( relativePath, -1, ValidationResult.ReasonCode.TOO_SHORT, projectId );
+    }
+    return ValidationResult.failure( relativePath, failingIndex, ValidationResult.ReasonCode.UNEXPECTED_PART, matcher.getPart( ProjectIdMatcher.getExpectedPartIndex( result ) ) );
+  }
 
-      if ( !partsToIgnore.contains( projectIdParts.get( projectIdIndex ) ) ) {
-        throw new ValidationFailedException( relativePath, splitPath, -1, "Too short for project id <" + projectId + ">" );
-      }
-      projectIdIndex++;
+  /**
+   * Validates the given path
+   *
+   * @param relativePath the relative path
+   * @throws ValidationFailedException if the path is invalid
+   * @see #validate(String)
+   */
+  public void isValid( @Nonnull String relativePath ) throws ValidationFailedException {
+    ValidationResult result = validate( relativePath );
+    if ( !result.isValid() ) {
+      throw result.toException();
     }
   }
 
 
   @Nonnull
-  private static List<? extends String> splitPath( @Nonnull String fileName ) {
+  static List<? extends String> splitPath( @Nonnull String fileName ) {
     Splitter splitter = Splitter.on( File.separator ).omitEmptyStrings();
     return Lists.newArrayList( splitter.split( fileName ) );
   }
@@ -0,0 +1,228 @@
+package com.cedarsoft.osgi.validator;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates the executors the file reading checks are distributed to.
+ * <p/>
+ * The thread count is configured like the fork count of Surefire: either an absolute number (<code>4</code>)
+ * or a factor of the available processors (<code>1C</code>, <code>1.5C</code>).
+ * <p/>
+ * The checks are I/O bound. If virtual threads are requested (and the VM supports them), each task runs within
+ * its own virtual thread. Otherwise a fixed pool of platform threads is used.
+ * <p/>
+ * Both executors apply back-pressure: The pool queues at most {@value #QUEUED_TASKS_PER_THREAD} tasks per thread,
+ * the virtual threads are limited to the same number of tasks (running and queued) that the pool would accept.
+ * If the limit is reached, the task is run by the submitting thread. This throttles the walk of huge source trees
+ * and can not dead lock if the tasks submit further tasks themselves (see {@link SourceTreeScanner}).
+ *
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+final class ValidatorExecutors {
+  /**
+   * The number of tasks that may wait for each thread
+   */
+  static final int QUEUED_TASKS_PER_THREAD = 64;
+
+  @Nonnull
+  private static final String THREAD_NAME_PREFIX = "osgi-validator-";
+
+  private ValidatorExecutors() {
+  }
+
+  /**
+   * Parses the thread count
+   *
+   * @param value      the configured value: a number or a factor of the processors followed by "C"
+   * @param processors the number of available processors
+   * @return the number of threads (at least 1)
+   *
+   * @throws IllegalArgumentException if the value is invalid
+   */
+  static int parseThreadCount( @Nonnull String value, int processors ) throws IllegalArgumentException {
+    String trimmed = value.trim();
+    try {
+      if ( trimmed.endsWith( "C" ) || trimmed.endsWith( "c" ) ) {
+        float factor = Float.parseFloat( trimmed.substring( 0, trimmed.length() - 1 ) );
+        if ( factor <= 0 || Float.isInfinite( factor ) || Float.isNaN( factor ) ) {
+          throw new IllegalArgumentException( "Invalid thread count <" + value + ">: the factor must be positive" );
+        }
+        return Math.max( 1, ( int ) Math.ceil( factor * processors ) );
+      }
+
+      int threads = Integer.parseInt( trimmed );
+      if ( threads < 1 ) {
+        throw new IllegalArgumentException( "Invalid thread count <" + value + ">: at least one thread is required" );
+      }
+      return threads;
+    } catch ( NumberFormatException e ) {
+      throw new IllegalArgumentException( "Invalid thread count <" + value + ">: expected a number (4) or a factor of the processors (1C)", e );
+    }
+  }
+
+  /**
+   * Whether the VM supports virtual threads.
+   * An executor is created as probe: the factory method exists on Java 19 and 20, too - but fails there unless the
+   * preview features have been enabled.
+   */
+  static boolean isVirtualThreadsSupported() {
+    @Nullable ExecutorService probe = createVirtualThreadExecutor();
+    if ( probe == null ) {
+      return false;
+    }
+    probe.shutdownNow();
+    return true;
+  }
+
+  /**
+   * Creates the executor
+   *
+   * @param threads        the number of platform threads (the limit of the virtual threads is derived from it)
+   * @param virtualThreads whether virtual threads shall be used (if supported)
+   * @return the executor
+   */
+  @Nonnull
+  static ExecutorService create( int threads, boolean virtualThreads ) {
+    if ( virtualThreads ) {
+      @Nullable ExecutorService virtualExecutor = createVirtualThreadExecutor();
+      if ( virtualExecutor != null ) {
+        return new BoundedExecutorService( virtualExecutor, threads * ( QUEUED_TASKS_PER_THREAD + 1 ) );
+      }
+    }
+    return createPlatformThreadExecutor( threads );
+  }
+
+  @Nonnull
+  static ExecutorService createPlatformThreadExecutor( int threads ) {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor( threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>( threads * QUEUED_TASKS_PER_THREAD ), new ThreadFactoryBuilder().setNameFormat( THREAD_NAME_PREFIX + "%d" ).setDaemon( true ).build() );
+    executor.setRejectedExecutionHandler( new RunInCallerUnlessShutdown() );
+    return executor;
+  }
+
+  /**
+   * Creates an executor that starts a virtual thread for each task (Java 21+)
+   *
+   * @return the executor or null if virtual threads are not supported
+   */
+  @Nullable
+  private static ExecutorService createVirtualThreadExecutor() {
+    @Nullable Method factoryMethod = findVirtualThreadFactory();
+    if ( factoryMethod == null ) {
+      return null;
+    }
+    try {
+      return ( ExecutorService ) factoryMethod.invoke( null );
+    } catch ( IllegalAccessException ignore ) {
+      return null;
+    } catch ( InvocationTargetException ignore ) {
+      //e.g. virtual threads are a preview feature of the VM that has not been enabled
+      return null;
+    }
+  }
+
+  @Nullable
+  private static Method findVirtualThreadFactory() {
+    try {
+      return Executors.class.getMethod( "newVirtualThreadPerTaskExecutor" );
+    } catch ( NoSuchMethodException ignore ) {
+      return null;
+    }
+  }
+
+  /**
+   * Runs rejected tasks within the submitting thread. Throws an exception if the executor has been shut down.
+   */
+  private static class RunInCallerUnlessShutdown implements RejectedExecutionHandler {
+    @Override
+    public void rejectedExecution( Runnable runnable, ThreadPoolExecutor executor ) {
+      if ( executor.isShutdown() ) {
+        throw new RejectedExecutionException( "Executor has been shut down" );
+      }
+      runnable.run();
+    }
+  }
+
+  /**
+   * Limits the number of tasks that have been handed over to the delegate.
+   * Tasks that exceed the limit are run within the submitting thread.
+   */
+  static class BoundedExecutorService extends AbstractExecutorService {
+    @Nonnull
+    private final ExecutorService delegate;
+    @Nonnull
+    private final Semaphore permits;
+
+    BoundedExecutorService( @Nonnull ExecutorService delegate, int maxTasks ) {
+      this.delegate = delegate;
+      this.permits = new Semaphore( maxTasks );
+    }
+
+    @Override
+    public void execute( @Nonnull final Runnable command ) {
+      if ( delegate.isShutdown() ) {
+        throw new RejectedExecutionException( "Executor has been shut down" );
+      }
+      if ( !permits.tryAcquire() ) {
+        command.run();
+        return;
+      }
+
+      try {
+        delegate.execute( new Runnable() {
+          @Override
+          public void run() {
+            try {
+              command.run();
+            } finally {
+              permits.release();
+            }
+          }
+        } );
+      } catch ( RejectedExecutionException e ) {
+        permits.release();
+        throw e;
+      }
+    }
+
+    @Override
+    public void shutdown() {
+      delegate.shutdown();
+    }
+
+    @Nonnull
+    @Override
+    public List<Runnable> shutdownNow() {
+      return delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+      return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+      return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination( long timeout, @Nonnull TimeUnit unit ) throws InterruptedException {
+      return delegate.awaitTermination( timeout, unit );
+    }
+  }
+}
@@ -1,64 +1,86 @@
 package com.cedarsoft.osgi.validator;
 
 import com.google.common.base.CharMatcher;
+import com.google.common.base.Charsets;
 import com.google.common.base.Joiner;
 import com.google.common.base.Splitter;
-import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Lists;
-import com.google.common.collect.Sets;
+import com.google.common.io.Files;
+import org.apache.maven.model.Resource;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
-import org.codehaus.plexus.util.DirectoryScanner;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeMap;
-import java.util.jar.Attributes;
-import java.util.jar.Manifest;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
 
 /**
  * Validates the package structure for usage with OSGi.
  * This plugin verifies whether the groupId and artifactId are reflected by the package names.
  * This ensures that no duplicate packages can be exported.
+ * <p/>
+ * The test sources and the resources can be validated, too. All roots are walked within one scan.
+ * If a list of changed files is given, only those files are validated.
+ * <p/>
+ * The mojo is thread safe. The source roots are validated concurrently if more than one thread is configured.
+ * The report is always the same as for a serial run.
  *
  * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
  */
-@Mojo( name = "validate", defaultPhase = LifecyclePhase.VALIDATE )
-public class ValidatorMojo extends SourceFolderAwareMojo {
+@Mojo( name = "validate", defaultPhase = LifecyclePhase.VALIDATE, threadSafe = true )
+public class ValidatorMojo extends AbstractValidatorMojo {
   public static final String MAVEN_PLUGIN_SUFFIX = "-maven-plugin";
+
   /**
-   * Whether the build shall fail if a validation is detected
+   * The categories of the validated roots. The violations of all categories except the main sources are prefixed with the category.
    */
-  @Parameter( defaultValue = "${fail}", property = "osgi-validation.fail" )
-  private boolean fail = true;
+  public static final String MAIN = "main";
+  public static final String TEST = "test";
+  public static final String RESOURCES = "resources";
+  public static final String TEST_RESOURCES = "test-resources";
 
   /**
-   * The source directories containing the test sources to be compiled.
+   * Whether the test source roots are validated, too
    */
-  @Parameter( defaultValue = "${skipped.files}", property = "skipped.files" )
-  protected List<String> skippedFiles = new ArrayList<String>();
+  @Parameter( defaultValue = "false", property = "osgi-validation.testSources" )
+  protected boolean validateTestSources;
 
   /**
-   * The prohibited package parts
+   * Whether the package directories within the resource directories are validated, too.
+   * The test resources are validated if the test sources are validated, too.
+   * Resources with a target path are skipped.
    */
-  @Parameter
-  protected Set<String> prohibitedPackages = ImmutableSet.of( "internal" );
+  @Parameter( defaultValue = "false", property = "osgi-validation.resources" )
+  protected boolean validateResources;
 
-  @Parameter
-  protected Set<String> packagePartsToSkip = ImmutableSet.of( "commons", "maven", "plugin" );
+  /**
+   * The files that have been changed. If set (or if {@link #changedFilesList} is set), only these files are validated
+   * instead of walking the source roots.
+   * Relative paths are resolved against the directory the build has been started in and the base directory of the project.
+   * Files that are not placed within a validated root, that are excluded or that do not exist (anymore) are ignored.
+   */
+  @Parameter( property = "osgi-validation.changedFiles" )
+  protected List<String> changedFiles;
+
+  /**
+   * A file that contains the changed files - one path per line (e.g. the output of <code>git diff --name-only</code>).
+   * Empty lines and lines starting with '#' are ignored.
+   */
+  @Parameter( property = "osgi-validation.changedFilesList" )
+  protected File changedFilesList;
 
   @Override
   public void execute() throws MojoExecutionException, MojoFailureException {
@@ -69,146 +91,442 @@ public class ValidatorMojo extends SourceFolderAwareMojo {
 
     getLog().info( "Validating OSGi-stuff" );
 
-    validatePackages();
-    validateImportedPackages();
+    long started = ValidationMetrics.start();
+    metrics = collectMetrics ? new ValidationMetrics( getProjectId( getProject() ) ) : null;
+    try {
+      @Nullable Set<String> sourcePackages = isChangedFilesOnly() ? validateChangedFiles() : validatePackages();
+      validateSplitPackages( sourcePackages );
+      validateImportedPackages();
+    } finally {
+      if ( metrics != null ) {
+        metrics.finishTotal( "execute", started );
+        reportMetrics();
+      }
+    }
   }
 
-  private void validateImportedPackages() throws MojoFailureException {
-    File manifestFile = new File( new File( classesDir, "META-INF" ), "MANIFEST.MF" );
-
-    if ( !manifestFile.exists() ) {
-      getLog().info( "No MANIFEST.MF found" );
-      return;
+  private void validateImportedPackages() throws MojoExecutionException, MojoFailureException {
+    long started = ValidationMetrics.start();
+    int phaseCount = metrics == null ? 0 : metrics.getPhases().size();
+    int resultCount = 1;
+    try {
+      if ( !validateManifest( classesDir ) ) {
+        throw new MojoFailureException( "Invalid package export/import" );
+      }
+      if ( !validateBytecode( classesDir ) ) {
+        throw new MojoFailureException( "Prohibited packages referenced" );
+      }
+      resultCount = 0;
+    } finally {
+      if ( metrics != null ) {
+        //Contains the scan of the class files (if enabled)
+        List<ValidationMetrics.Phase> phases = metrics.getPhases();
+        metrics.finish( "validateImportedPackages", null, started, resultCount, phases.subList( phaseCount, phases.size() ) );
+      }
     }
+  }
 
-    getLog().info( "Validating MANIFEST @ " + manifestFile.getAbsolutePath() );
+  /**
+   * Validates the packages of all source roots
+   *
+   * @return the packages of the main sources or null if the validation has been stopped early
+   *
+   * @throws MojoExecutionException if there are problematic files and the build shall fail
+   */
+  @Nullable
+  private Set<String> validatePackages() throws MojoExecutionException {
+    long started = ValidationMetrics.start();
+
+    getLog().debug( "Skipped Files: " + skippedFiles );
 
+    Validator validator = createValidator( getProjectId( getProject() ) );
+    SourceFileSelector selector = new SourceFileSelector( skippedFiles );
+
+    @Nullable File cacheFile = getCacheFile();
+    ValidationCache previousCache = loadCache( cacheFile );
+    ValidationCache nextCache = new ValidationCache();
+
+    Map<String, List<String>> rootsByCategory = getRootsByCategory();
+
+    //All roots of all categories are validated within one scan (concurrently if there are several threads)
+    //The violations are streamed to the report
+    Map<File, SourceRootValidator.Job> jobs = new LinkedHashMap<File, SourceRootValidator.Job>();
+    @Nullable ExecutorService executor = createExecutor();
+    SourceTreeScanner scanner = new SourceTreeScanner( executor );
+    ViolationReport report = createViolationReport( "validate", scanner );
     try {
-      FileInputStream is = new FileInputStream( manifestFile );
-      try {
-        Manifest manifest = new Manifest( is );
-
-
-        boolean containsError = false;
-        Attributes mainAttributes = manifest.getMainAttributes();
-
-        @Nullable String exportPackage = mainAttributes.getValue( "Export-Package" );
-        if ( exportPackage != null ) {
-          Iterable<String> packages = Splitter.on( ',' ).split( exportPackage );
-          for ( String packageName : packages ) {
-            for ( String prohibitedPackage : prohibitedPackages ) {
-              if ( packageName.contains( prohibitedPackage ) ) {
-                getLog().error( "Prohibited package exported: " + packageName );
-                containsError = true;
-              }
-            }
+      SourceRootValidator sourceValidator = new SourceRootValidator( validator, selector, previousCache, nextCache, getLog(), scanner );
+      sourceValidator.setCheckPackageDeclarations( checkPackageDeclarations );
+      sourceValidator.setRules( getRules() );
+      SourceRootValidator resourceValidator = new SourceRootValidator( validator, new ResourceFileSelector( skippedFiles ), previousCache, nextCache, getLog(), scanner );
+      resourceValidator.setRules( getRules() );
+
+      for ( Map.Entry<String, List<String>> entry : rootsByCategory.entrySet() ) {
+        String category = entry.getKey();
+        SourceRootValidator rootValidator = isResourceCategory( category ) ? resourceValidator : sourceValidator;
+        ViolationHandler violationHandler = MAIN.equals( category ) ? report : report.forPrefix( category );
+
+        for ( String root : entry.getValue() ) {
+          File rootDir = new File( root );
+          if ( rootDir.isDirectory() && !jobs.containsKey( rootDir ) ) {
+            jobs.put( rootDir, rootValidator.createJob( rootDir, new BufferedLog( getLog() ), violationHandler ) );
           }
         }
+      }
 
-        @Nullable String importPackage = mainAttributes.getValue( "Import-Package" );
-        if ( importPackage != null ) {
-          Iterable<String> packages = Splitter.on( ',' ).split( importPackage );
-          for ( String packageName : packages ) {
-            for ( String prohibitedPackage : prohibitedPackages ) {
-              if ( packageName.contains( prohibitedPackage ) ) {
-                getLog().error( "Prohibited package imported: " + packageName );
-                containsError = true;
-              }
-            }
-          }
+      scanner.scan( jobs );
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new MojoExecutionException( "Interrupted while validating the source roots", e );
+    } finally {
+      if ( executor != null ) {
+        executor.shutdownNow();
+      }
+      closeViolationReport( report );
+    }
+
+    //Report in the order of the roots - independent of the order the work has been done
+    List<ValidationMetrics.Phase> rootPhases = new ArrayList<ValidationMetrics.Phase>();
+    Set<File> reported = new HashSet<File>();
+    Set<String> sourcePackages = new TreeSet<String>();
+    for ( Map.Entry<String, List<String>> entry : rootsByCategory.entrySet() ) {
+      String category = entry.getKey();
+      getLog().info( getTitle( category ) + ":" );
+
+      int violationCount = 0;
+      for ( String root : entry.getValue() ) {
+        getLog().info( "\t" + root );
+
+        File rootDir = new File( root );
+        @Nullable SourceRootValidator.Job job = jobs.get( rootDir );
+        if ( job == null ) {
+          getLog().info( "Skipping <" + root + ">: Is not a directory." );
+          continue;
+        }
+        if ( !reported.add( rootDir ) ) {
+          getLog().info( "Skipping <" + root + ">: Has already been validated." );
+          continue;
+        }
+
+        SourceRootValidator.Result result = job.getResult();
+        result.flushLog();
+        violationCount += result.getViolationCount();
+        if ( MAIN.equals( category ) ) {
+          sourcePackages.addAll( result.getPackages() );
         }
 
-        if ( containsError ) {
-          throw new MojoFailureException( "Invalid package export/import" );
+        if ( metrics != null ) {
+          SourceRootValidator.Statistics statistics = result.getStatistics();
+          rootPhases.add( metrics.add( new ValidationMetrics.Phase( "scanSourceRoot", root, statistics.getNanos(), statistics.getFileCount(), statistics.getDirectoryCount(), statistics.getCachedDirectoryCount(), result.getViolationCount() ) ) );
         }
-      } finally {
-        is.close();
       }
-    } catch ( IOException e ) {
-      throw new MojoFailureException( "Could not read manifest", e );
+
+      if ( rootsByCategory.size() > 1 ) {
+        getLog().info( "\t" + violationCount + " problematic files in " + category );
+      }
+    }
+
+    storeCache( nextCache, cacheFile );
+    if ( metrics != null ) {
+      metrics.finish( "validatePackages", null, started, report.getViolationCount(), rootPhases );
     }
+    reportViolations( report );
+
+    if ( report.isTruncated() ) {
+      return null;
+    }
+    return sourcePackages;
   }
 
-  private void validatePackages() throws MojoExecutionException {
-    Map<String, ValidationFailedException> problematicFiles = new TreeMap<String, ValidationFailedException>();
+  private boolean isChangedFilesOnly() {
+    return changedFilesList != null || ( changedFiles != null && !changedFiles.isEmpty() );
+  }
 
-    getLog().info( "Source Roots:" );
-    getLog().debug( "Skipped Files: " + skippedFiles );
+  /**
+   * Validates only the changed files.
+   *
+   * @return always null - the packages of the module are not known
+   *
+   * @throws MojoExecutionException if there are problematic files and the build shall fail or the list could not be read
+   */
+  @Nullable
+  private Set<String> validateChangedFiles() throws MojoExecutionException {
+    long started = ValidationMetrics.start();
+
+    Validator validator = createValidator( getProjectId( getProject() ) );
+    SourceRootValidator sourceValidator = new SourceRootValidator( validator, new SourceFileSelector( skippedFiles ), new ValidationCache(), new ValidationCache(), getLog() );
+    sourceValidator.setCheckPackageDeclarations( checkPackageDeclarations );
+    sourceValidator.setRules( getRules() );
+    SourceRootValidator resourceValidator = new SourceRootValidator( validator, new ResourceFileSelector( skippedFiles ), new ValidationCache(), new ValidationCache(), getLog() );
+    resourceValidator.setRules( getRules() );
+
+    //The roots (canonical) and the categories they belong to
+    Map<File, String> rootCategories = new LinkedHashMap<File, String>();
+    for ( Map.Entry<String, List<String>> entry : getRootsByCategory().entrySet() ) {
+      for ( String root : entry.getValue() ) {
+        File rootDir = canonical( new File( root ) );
+        if ( rootDir.isDirectory() && !rootCategories.containsKey( rootDir ) ) {
+          rootCategories.put( rootDir, entry.getKey() );
+        }
+      }
+    }
 
-    for ( String sourceRoot : getSourceRoots() ) {
-      getLog().info( "\t" + sourceRoot );
+    List<String> paths = readChangedFiles();
+    Map<File, List<String>> filesByRoot = new LinkedHashMap<File, List<String>>();
+    for ( String path : paths ) {
+      @Nullable File file = resolveChangedFile( path );
+      if ( file == null ) {
+        getLog().debug( "Skipping changed file <" + path + ">: Does not exist" );
+        continue;
+      }
 
-      File sourceRootDir = new File( sourceRoot );
+      @Nullable File root = findRoot( rootCategories.keySet(), file );
+      if ( root == null ) {
+        getLog().debug( "Skipping changed file <" + path + ">: Not within a validated root" );
+        continue;
+      }
 
-      if ( !sourceRootDir.isDirectory() ) {
-        getLog().info( "Skipping <" + sourceRoot + ">: Is not a directory." );
+      String relativePath = file.getPath().substring( root.getPath().length() + 1 );
+      SourceRootValidator rootValidator = isResourceCategory( rootCategories.get( root ) ) ? resourceValidator : sourceValidator;
+      if ( !rootValidator.getSelector().isIncluded( relativePath ) ) {
+        getLog().debug( "Skipping changed file <" + path + ">: Excluded" );
         continue;
       }
 
-      problematicFiles.putAll( validate( sourceRootDir, skippedFiles ) );
+      List<String> files = filesByRoot.get( root );
+      if ( files == null ) {
+        files = new ArrayList<String>();
+        filesByRoot.put( root, files );
+      }
+      files.add( relativePath );
     }
 
-    if ( problematicFiles.isEmpty() ) {
-      getLog().info( "No problematic files found" );
-      return;
+    getLog().info( "Validating changed files only (" + paths.size() + " listed):" );
+
+    List<ValidationMetrics.Phase> rootPhases = new ArrayList<ValidationMetrics.Phase>();
+    ViolationReport report = createViolationReport( "validate", null );
+    try {
+      for ( Map.Entry<File, List<String>> entry : filesByRoot.entrySet() ) {
+        File root = entry.getKey();
+        String category = rootCategories.get( root );
+        SourceRootValidator rootValidator = isResourceCategory( category ) ? resourceValidator : sourceValidator;
+
+        getLog().info( "\t" + root.getPath() + ": " + entry.getValue().size() + " files" );
+        SourceRootValidator.Result result = rootValidator.validateFiles( root, entry.getValue(), getLog(), MAIN.equals( category ) ? report : report.forPrefix( category ) );
+
+        if ( metrics != null ) {
+          SourceRootValidator.Statistics statistics = result.getStatistics();
+          rootPhases.add( metrics.add( new ValidationMetrics.Phase( "validateChangedFiles", root.getPath(), statistics.getNanos(), statistics.getFileCount(), statistics.getDirectoryCount(), 0, result.getViolationCount() ) ) );
+        }
+      }
+    } finally {
+      closeViolationReport( report );
+    }
+
+    if ( metrics != null ) {
+      metrics.finish( "validatePackages", null, started, report.getViolationCount(), rootPhases );
+    }
+    reportViolations( report );
+    return null;
+  }
+
+  /**
+   * Returns the changed files from the configuration and the list file
+   *
+   * @return the paths
+   *
+   * @throws MojoExecutionException if the list could not be read
+   */
+  @Nonnull
+  private List<String> readChangedFiles() throws MojoExecutionException {
+    List<String> paths = new ArrayList<String>();
+    if ( changedFiles != null ) {
+      for ( String changedFile : changedFiles ) {
+        if ( changedFile.trim().length() > 0 ) {
+          paths.add( changedFile.trim() );
+        }
+      }
     }
 
-    if ( fail ) {
-      getLog().error( "Found files within a problematic package:" );
-      for ( Map.Entry<String, ValidationFailedException> entry : problematicFiles.entrySet() ) {
-        getLog().error( "  " + entry.getKey() );
-        //noinspection ThrowableResultOfMethodCallIgnored
-        getLog().error( "     " + entry.getValue().getMessage() );
+    if ( changedFilesList != null ) {
+      try {
+        for ( String line : Files.readLines( changedFilesList, Charsets.UTF_8 ) ) {
+          String trimmed = line.trim();
+          if ( trimmed.length() > 0 && !trimmed.startsWith( "#" ) ) {
+            paths.add( trimmed );
+          }
+        }
+      } catch ( IOException e ) {
+        throw new MojoExecutionException( "Could not read changed files <" + changedFilesList.getAbsolutePath() + ">", e );
       }
-      throw new MojoExecutionException( "There exist " + problematicFiles.size() + " files that seem to be placed within a problematic package" );
-    } else {
-      getLog().warn( "Found files within a problematic package:" );
-      for ( Map.Entry<String, ValidationFailedException> entry : problematicFiles.entrySet() ) {
-        getLog().warn( "  " + entry.getKey() );
-        //noinspection ThrowableResultOfMethodCallIgnored
-        getLog().warn( "     " + entry.getValue().getMessage() );
+    }
+    return paths;
+  }
+
+  /**
+   * Resolves the given (changed) path
+   *
+   * @param path the path (absolute or relative to the execution root or the project)
+   * @return the canonical file or null if no existing file has been found
+   */
+  @Nullable
+  private File resolveChangedFile( @Nonnull String path ) {
+    String normalized = path.replace( '/', File.separatorChar ).replace( '\\', File.separatorChar );
+    File file = new File( normalized );
+    if ( file.isAbsolute() ) {
+      return file.isFile() ? canonical( file ) : null;
+    }
+
+    if ( executionRootDirectory != null ) {
+      File candidate = new File( executionRootDirectory, normalized );
+      if ( candidate.isFile() ) {
+        return canonical( candidate );
       }
     }
+    if ( getProject().getBasedir() != null ) {
+      File candidate = new File( getProject().getBasedir(), normalized );
+      if ( candidate.isFile() ) {
+        return canonical( candidate );
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the (innermost) root that contains the given file
+   */
+  @Nullable
+  private static File findRoot( @Nonnull Iterable<? extends File> roots, @Nonnull File file ) {
+    @Nullable File found = null;
+    String path = file.getPath();
+    for ( File root : roots ) {
+      if ( path.startsWith( root.getPath() + File.separator ) && ( found == null || root.getPath().length() > found.getPath().length() ) ) {
+        found = root;
+      }
+    }
+    return found;
   }
 
   @Nonnull
-  private Map<String, ValidationFailedException> validate( @Nonnull File sourceRoot, @Nonnull Collection<? extends String> skippedFiles ) {
-    String[] javaFiles = findAllJavaFiles( sourceRoot, skippedFiles );
+  private static File canonical( @Nonnull File file ) {
+    try {
+      return file.getCanonicalFile();
+    } catch ( IOException ignore ) {
+      return file.getAbsoluteFile();
+    }
+  }
 
-    String groupId = getProject().getGroupId();
-    String artifactId = getProject().getArtifactId();
-    String projectId = groupId + "." + artifactId;
+  /**
+   * Adds the packages of this module to the package index of the reactor and reports the packages that are contained within other modules, too
+   *
+   * @param sourcePackages the packages of the main sources (null if they are not complete)
+   * @throws MojoFailureException if there are split packages and the build shall fail
+   */
+  private void validateSplitPackages( @Nullable final Set<String> sourcePackages ) throws MojoFailureException {
+    if ( !detectSplitPackages ) {
+      return;
+    }
+    @Nullable File indexFile = getPackageIndexFile();
+    if ( indexFile == null || sourcePackages == null || getProject().getBasedir() == null ) {
+      getLog().debug( "Skipping split package detection" );
+      return;
+    }
 
-    Validator validator = new Validator( projectId, packagePartsToSkip );
+    long started = ValidationMetrics.start();
+    final String moduleId = getModuleId( getProject() );
+    final File baseDir = getProject().getBasedir();
+    final List<String> exportedPackages = readExportedPackages( classesDir );
+    final Set<String> reactorModuleIds = getReactorModuleIds();
 
-    Map<String, ValidationFailedException> problematicFiles = new TreeMap<String, ValidationFailedException>();
-    for ( String javaFile : javaFiles ) {
-      getLog().debug( "\tvalidating " + javaFile );
+    PackageIndex index;
+    try {
+      index = PackageIndex.updateFile( indexFile, new PackageIndex.Updater() {
+        @Override
+        public void update( @Nonnull PackageIndex index ) {
+          index.retain( reactorModuleIds );
+          index.update( moduleId, baseDir, sourcePackages, exportedPackages );
+        }
+      } );
+    } catch ( IOException e ) {
+      getLog().warn( "Could not update package index <" + indexFile.getAbsolutePath() + ">: " + e.getMessage() );
+      return;
+    }
 
-      try {
-        validator.isValid( javaFile );
-      } catch ( ValidationFailedException e ) {
-        //noinspection ThrowableResultOfMethodCallIgnored
-        problematicFiles.put( javaFile, e );
-      }
+    SortedMap<String, SortedSet<String>> splitPackages = index.findSplitPackages( moduleId );
+    if ( metrics != null ) {
+      metrics.add( new ValidationMetrics.Phase( "validateSplitPackages", indexFile.getPath(), System.nanoTime() - started, 0, 0, 0, splitPackages.size() ) );
     }
+    reportSplitPackages( splitPackages );
+  }
 
-    return problematicFiles;
+  /**
+   * Returns the roots that are validated
+   *
+   * @return the category and the roots - the main sources first
+   */
+  @Nonnull
+  private Map<String, List<String>> getRootsByCategory() {
+    Map<String, List<String>> rootsByCategory = new LinkedHashMap<String, List<String>>();
+    rootsByCategory.put( MAIN, getSourceRoots() );
+
+    if ( validateTestSources ) {
+      rootsByCategory.put( TEST, getTestSourceRoots() );
+    }
+    if ( validateResources ) {
+      rootsByCategory.put( RESOURCES, getResourceDirectories( getResources() ) );
+    }
+    if ( validateResources && validateTestSources ) {
+      rootsByCategory.put( TEST_RESOURCES, getResourceDirectories( getTestResources() ) );
+    }
+    return rootsByCategory;
   }
 
   @Nonnull
-  private static String[] findAllJavaFiles( @Nonnull File sourceRoot, @Nonnull Collection<? extends String> skippedFiles ) {
-    DirectoryScanner scanner = new DirectoryScanner();
-    scanner.setBasedir( sourceRoot );
-    scanner.setIncludes( new String[]{"**/*.java"} );
+  private List<String> getResourceDirectories( @Nonnull List<? extends Resource> resources ) {
+    List<String> directories = new ArrayList<String>();
+    for ( Resource resource : resources ) {
+      if ( resource.getDirectory() == null ) {
+        continue;
+      }
+      //The package of the files would be prefixed by the target path
+      if ( resource.getTargetPath() != null ) {
+        getLog().debug( "Skipping resources <" + resource.getDirectory() + ">: Target path <" + resource.getTargetPath() + "> is set" );
+        continue;
+      }
+      directories.add( resource.getDirectory() );
+    }
+    return directories;
+  }
 
-    Set<String> excludes = Sets.newHashSet();
-    excludes.addAll( skippedFiles );
+  private static boolean isResourceCategory( @Nonnull String category ) {
+    return RESOURCES.equals( category ) || TEST_RESOURCES.equals( category );
+  }
 
-    scanner.setExcludes( excludes.toArray( new String[excludes.size()] ) );
-    scanner.scan();
+  @Nonnull
+  private static String getTitle( @Nonnull String category ) {
+    if ( TEST.equals( category ) ) {
+      return "Test Source Roots";
+    }
+    if ( RESOURCES.equals( category ) ) {
+      return "Resource Directories";
+    }
+    if ( TEST_RESOURCES.equals( category ) ) {
+      return "Test Resource Directories";
+    }
+    return "Source Roots";
+  }
 
-    return scanner.getIncludedFiles();
+  /**
+   * Returns the cache file
+   *
+   * @return the cache file or null if there is no build directory
+   */
+  @Nullable
+  private File getCacheFile() {
+    if ( buildDirectory == null ) {
+      return null;
+    }
+    return new File( new File( buildDirectory, "osgi-validator" ), "validation.cache" );
   }
 
   @Deprecated
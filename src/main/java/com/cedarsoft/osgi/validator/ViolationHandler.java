@@ -0,0 +1,23 @@
+package com.cedarsoft.osgi.validator;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+
+/**
+ * Is notified about each file that is placed within a problematic package - as soon as it has been found.
+ * <p/>
+ * Must be thread safe: The source roots and directories might be validated concurrently.
+ *
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+public interface ViolationHandler {
+  /**
+   * Is called for each problematic file
+   *
+   * @param sourceRoot   the source root that contains the file
+   * @param relativePath the path of the file relative to the source root
+   * @param failingIndex the index of the path part that failed (-1 if the complete path failed)
+   * @param reason       the reason
+   */
+  void violation( @Nonnull File sourceRoot, @Nonnull String relativePath, int failingIndex, @Nonnull String reason );
+}
@@ -0,0 +1,293 @@
+package com.cedarsoft.osgi.validator;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.io.Files;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Writes the violations to the report files as soon as they are found.
+ * <p/>
+ * Only the first violations (sorted by path) are kept in memory for the console output.
+ * Therefore the memory usage does not depend on the number of violations.
+ * <p/>
+ * Two files are written:
+ * <ul>
+ *   <li>JSON: an array with one object for each violation</li>
+ *   <li>JUnit XML: one failed test case for each violation. Can be read by CI servers.
+ *   The test cases are streamed to a temporary file - the element with the counts is written on close.</li>
+ * </ul>
+ * If a maximum number of violations is set, further violations are ignored and the report is marked as truncated.
+ * <p/>
+ * The violations are written in the order they are found. This order might differ between runs if the
+ * source roots are validated concurrently.
+ * <p/>
+ * The report is thread safe.
+ *
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+public class ViolationReport implements ViolationHandler {
+  /**
+   * The default number of violations that are kept for the console output
+   */
+  public static final int DEFAULT_MAX_LISTED = 100;
+
+  private final int maxListed;
+  @Nullable
+  private final File jsonFile;
+  @Nullable
+  private final File junitFile;
+  @Nullable
+  private final File junitBodyFile;
+
+  @Nullable
+  private Writer json;
+  @Nullable
+  private Writer junitBody;
+
+  /**
+   * The first violations sorted by key
+   */
+  @Nonnull
+  private final TreeMap<String, String> listed = new TreeMap<String, String>();
+  private int violationCount;
+
+  /**
+   * The maximum number of violations (0 for no limit)
+   */
+  private int maxViolations;
+  /**
+   * Is called once when the maximum number of violations has been reached
+   */
+  @Nullable
+  private Runnable limitReachedCallback;
+  private boolean truncated;
+
+  /**
+   * The first exception that occurred while writing. Is thrown on close
+   */
+  @Nullable
+  private IOException failure;
+
+  /**
+   * Creates a report that only keeps the first violations in memory (no files are written)
+   *
+   * @param maxListed the number of violations that are kept (negative for all)
+   */
+  public ViolationReport( int maxListed ) {
+    this.maxListed = maxListed;
+    this.jsonFile = null;
+    this.junitFile = null;
+    this.junitBodyFile = null;
+  }
+
+  /**
+   * Creates a report that writes the given files
+   *
+   * @param maxListed the number of violations that are kept for the console output (negative for all)
+   * @param jsonFile  the JSON file
+   * @param junitFile the JUnit XML file
+   * @throws IOException if the files could not be created
+   */
+  public ViolationReport( int maxListed, @Nonnull File jsonFile, @Nonnull File junitFile ) throws IOException {
+    this.maxListed = maxListed;
+    this.jsonFile = jsonFile;
+    this.junitFile = junitFile;
+    this.junitBodyFile = new File( junitFile.getParentFile(), junitFile.getName() + ".part" );
+
+    json = open( jsonFile );
+    json.write( "{\n  \"violations\": [" );
+    junitBody = open( junitBodyFile );
+  }
+
+  @Nonnull
+  private static Writer open( @Nonnull File file ) throws IOException {
+    Files.createParentDirs( file );
+    return new BufferedWriter( new OutputStreamWriter( new FileOutputStream( file ), Charsets.UTF_8 ) );
+  }
+
+  /**
+   * Sets the maximum number of violations. Must be called before the first violation is added.
+   *
+   * @param maxViolations        the maximum number of violations (0 or negative for no limit)
+   * @param limitReachedCallback is called once (within the thread that adds the last violation) when the limit has been reached
+   */
+  public synchronized void setMaxViolations( int maxViolations, @Nullable Runnable limitReachedCallback ) {
+    this.maxViolations = Math.max( 0, maxViolations );
+    this.limitReachedCallback = limitReachedCallback;
+  }
+
+  public synchronized int getMaxViolations() {
+    return maxViolations;
+  }
+
+  /**
+   * Whether the maximum number of violations has been reached. Further violations have been ignored
+   * and the validation might have been stopped early.
+   *
+   * @return true if the report is truncated
+   */
+  public synchronized boolean isTruncated() {
+    return truncated;
+  }
+
+  @Override
+  public void violation( @Nonnull File sourceRoot, @Nonnull String relativePath, int failingIndex, @Nonnull String reason ) {
+    add( relativePath, sourceRoot, relativePath, failingIndex, reason );
+  }
+
+  /**
+   * Returns a handler that adds the violations prefixed with the given name (e.g. the module or the category of the source root)
+   *
+   * @param prefix the prefix
+   * @return the handler
+   */
+  @Nonnull
+  public ViolationHandler forPrefix( @Nonnull final String prefix ) {
+    return new ViolationHandler() {
+      @Override
+      public void violation( @Nonnull File sourceRoot, @Nonnull String relativePath, int failingIndex, @Nonnull String reason ) {
+        add( prefix + ": " + relativePath, sourceRoot, relativePath, failingIndex, reason );
+      }
+    };
+  }
+
+  /**
+   * Adds a violation
+   *
+   * @param key          the key the violation is listed with (usually the relative path)
+   * @param sourceRoot   the source root
+   * @param relativePath the relative path
+   * @param failingIndex the failing index
+   * @param reason       the reason
+   */
+  public void add( @Nonnull String key, @Nonnull File sourceRoot, @Nonnull String relativePath, int failingIndex, @Nonnull String reason ) {
+    @Nullable Runnable callback;
+    synchronized ( this ) {
+      if ( truncated ) {
+        return;
+      }
+      write( key, sourceRoot, relativePath, failingIndex, reason );
+
+      if ( maxViolations == 0 || violationCount < maxViolations ) {
+        return;
+      }
+      truncated = true;
+      callback = limitReachedCallback;
+    }
+
+    //Called outside of the lock
+    if ( callback != null ) {
+      callback.run();
+    }
+  }
+
+  private void write( @Nonnull String key, @Nonnull File sourceRoot, @Nonnull String relativePath, int failingIndex, @Nonnull String reason ) {
+    String message = ValidationFailedException.createMessage( relativePath, failingIndex, reason );
+
+    violationCount++;
+    if ( maxListed != 0 ) {
+      listed.put( key, message );
+      if ( maxListed > 0 && listed.size() > maxListed ) {
+        listed.pollLastEntry();
+      }
+    }
+
+    if ( json == null || junitBody == null || failure != null ) {
+      return;
+    }
+    try {
+      json.write( violationCount == 1 ? "\n" : ",\n" );
+      json.write( "    {\"file\": " + Escaping.json( key ) + ", \"sourceRoot\": " + Escaping.json( sourceRoot.getPath() ) + ", \"message\": " + Escaping.json( message ) + "}" );
+
+      junitBody.write( "  <testcase classname=\"" + Escaping.xml( sourceRoot.getPath() ) + "\" name=\"" + Escaping.xml( key ) + "\">\n" );
+      junitBody.write( "    <failure type=\"" + ValidationFailedException.class.getName() + "\" message=\"" + Escaping.xml( message ) + "\"/>\n" );
+      junitBody.write( "  </testcase>\n" );
+    } catch ( IOException e ) {
+      failure = e;
+    }
+  }
+
+  /**
+   * Returns the number of violations
+   *
+   * @return the number of violations
+   */
+  public synchronized int getViolationCount() {
+    return violationCount;
+  }
+
+  /**
+   * Returns the violations that are kept for the console output.
+   * These are the first violations sorted by key - independent of the order they have been found.
+   *
+   * @return the keys and the messages of the first violations
+   */
+  @Nonnull
+  public synchronized SortedMap<String, String> getListed() {
+    return ImmutableSortedMap.copyOf( listed );
+  }
+
+  @Nullable
+  public File getJsonFile() {
+    return jsonFile;
+  }
+
+  @Nullable
+  public File getJunitFile() {
+    return junitFile;
+  }
+
+  /**
+   * Finishes the report files
+   *
+   * @throws IOException if the files could not be written
+   */
+  public synchronized void close() throws IOException {
+    if ( json == null || junitBody == null || junitFile == null || junitBodyFile == null ) {
+      return;
+    }
+
+    try {
+      json.write( violationCount == 0 ? "],\n" : "\n  ],\n" );
+      json.write( "  \"violationCount\": " + violationCount + ",\n" );
+      json.write( "  \"truncated\": " + truncated + "\n}\n" );
+    } finally {
+      json.close();
+      junitBody.close();
+      json = null;
+      junitBody = null;
+    }
+
+    if ( failure != null ) {
+      throw failure;
+    }
+
+    Writer junit = open( junitFile );
+    try {
+      junit.write( "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" );
+      junit.write( "<testsuite name=\"osgi-validator\" tests=\"" + violationCount + "\" failures=\"" + violationCount + "\" errors=\"0\" skipped=\"0\">\n" );
+      junit.write( "  <properties>\n" );
+      junit.write( "    <property name=\"truncated\" value=\"" + truncated + "\"/>\n" );
+      junit.write( "  </properties>\n" );
+      Files.copy( junitBodyFile, Charsets.UTF_8, junit );
+      junit.write( "</testsuite>\n" );
+    } finally {
+      junit.close();
+    }
+
+    if ( !junitBodyFile.delete() ) {
+      throw new IOException( "Could not delete <" + junitBodyFile.getAbsolutePath() + ">" );
+    }
+  }
+}
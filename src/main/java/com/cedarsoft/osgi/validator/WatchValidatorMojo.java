@@ -0,0 +1,303 @@
+package com.cedarsoft.osgi.validator;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validates the source roots continuously.
+ * <p/>
+ * After the initial validation the source roots are polled for changed directories (see {@link SourceTreeWatcher}).
+ * Changes are collected until the source roots have been quiet for {@link #quietPeriod} - so a burst of changes
+ * (e.g. a refactoring within the IDE) is validated as one batch. If the changes do not stop, the batch is validated
+ * at the latest after {@link #maxQuietPeriods} quiet periods.
+ * Only the changed package directories are validated again. Only new and resolved problematic files are printed.
+ * <p/>
+ * Only the current problematic files and one value per directory are held in memory.
+ * <p/>
+ * The package declarations (if checked) are only validated again if the directory has been changed.
+ * Modifying the content of a file does not update the directory.
+ * <p/>
+ * Polling is deliberate - not only because the plugin targets Java 6: {@code java.nio.file.WatchService} watches
+ * single directories (one registration and one OS watch handle per package directory, limited e.g. by
+ * <code>fs.inotify.max_user_watches</code> on Linux), falls back to polling itself on some platforms (e.g. Mac OS X)
+ * and drops events on overflow. One stat call per directory and poll interval is cheap and works everywhere.
+ *
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+@Mojo( name = "watch" )
+public class WatchValidatorMojo extends AbstractValidatorMojo {
+  /**
+   * The interval the source roots are polled for changes (in milliseconds)
+   */
+  @Parameter( defaultValue = "1000", property = "osgi-validation.pollInterval" )
+  protected long pollInterval = 1000;
+
+  /**
+   * The time (in milliseconds) without any changes before the changed directories are validated
+   */
+  @Parameter( defaultValue = "300", property = "osgi-validation.quietPeriod" )
+  protected long quietPeriod = 300;
+
+  /**
+   * The maximum number of quiet periods changes are collected for. Validates the changed directories even if
+   * the source roots are changed continuously (e.g. by a generator).
+   */
+  @Parameter( defaultValue = "10", property = "osgi-validation.maxQuietPeriods" )
+  protected int maxQuietPeriods = 10;
+
+  /**
+   * Stops watching after this time (in seconds). 0 watches until the build is interrupted.
+   */
+  @Parameter( defaultValue = "0", property = "osgi-validation.watchTimeout" )
+  protected long watchTimeout;
+
+  /**
+   * The current problematic files for each root: package directory to (relative path to message)
+   */
+  @Nonnull
+  private final Map<File, Map<String, Map<String, String>>> violations = new LinkedHashMap<File, Map<String, Map<String, String>>>();
+
+  @Override
+  public void execute() throws MojoExecutionException, MojoFailureException {
+    if ( "pom".equals( mavenProject.getPackaging() ) ) {
+      getLog().info( "Skipping for packaging \"pom\"" );
+      return;
+    }
+
+    Validator validator = createValidator( getProjectId( getProject() ) );
+    SourceFileSelector selector = new SourceFileSelector( skippedFiles );
+
+    List<File> sourceRoots = new ArrayList<File>();
+    for ( String sourceRoot : getSourceRoots() ) {
+      File sourceRootDir = new File( sourceRoot );
+      if ( sourceRootDir.isDirectory() && !sourceRoots.contains( sourceRootDir ) ) {
+        sourceRoots.add( sourceRootDir );
+      }
+    }
+
+    //Registered before the initial validation - changes that happen during the validation are not missed
+    SourceTreeWatcher watcher = new SourceTreeWatcher( selector );
+    for ( File sourceRoot : sourceRoots ) {
+      watcher.register( sourceRoot );
+    }
+
+    try {
+      validateInitially( validator, selector, sourceRoots );
+      getLog().info( "Watching " + watcher.getDirectoryCount() + " directories within " + sourceRoots.size() + " source roots" );
+
+      long stopAt = watchTimeout > 0 ? System.currentTimeMillis() + TimeUnit.SECONDS.toMillis( watchTimeout ) : Long.MAX_VALUE;
+      while ( System.currentTimeMillis() < stopAt ) {
+        Thread.sleep( pollInterval );
+
+        Map<File, SortedSet<String>> changes = watcher.poll();
+        if ( changes.isEmpty() ) {
+          continue;
+        }
+
+        //Collect further changes until the source roots are quiet - but not forever
+        long validateAt = System.currentTimeMillis() + Math.max( 1, maxQuietPeriods ) * quietPeriod;
+        while ( System.currentTimeMillis() < validateAt ) {
+          Thread.sleep( quietPeriod );
+          Map<File, SortedSet<String>> moreChanges = watcher.poll();
+          if ( moreChanges.isEmpty() ) {
+            break;
+          }
+          merge( changes, moreChanges );
+        }
+
+        revalidate( validator, selector, changes );
+      }
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      getLog().info( "Stopped watching" );
+    }
+  }
+
+  private void validateInitially( @Nonnull Validator validator, @Nonnull SourceFileSelector selector, @Nonnull List<File> sourceRoots ) throws InterruptedException, MojoExecutionException {
+    Map<File, SourceRootValidator.Job> jobs = new LinkedHashMap<File, SourceRootValidator.Job>();
+    Map<File, Map<String, String>> found = new HashMap<File, Map<String, String>>();
+
+    @Nullable ExecutorService executor = createExecutor();
+    SourceTreeScanner scanner = new SourceTreeScanner( executor );
+    try {
+      SourceRootValidator sourceRootValidator = createSourceRootValidator( validator, selector, scanner );
+      for ( File sourceRoot : sourceRoots ) {
+        Map<String, String> rootViolations = new TreeMap<String, String>();
+        found.put( sourceRoot, rootViolations );
+        jobs.put( sourceRoot, sourceRootValidator.createJob( sourceRoot, getLog(), collect( rootViolations ) ) );
+      }
+      scanner.scan( jobs );
+    } finally {
+      if ( executor != null ) {
+        executor.shutdownNow();
+      }
+    }
+
+    int listed = 0;
+    for ( File sourceRoot : sourceRoots ) {
+      Map<String, Map<String, String>> rootState = getRootViolations( sourceRoot );
+      for ( Map.Entry<String, String> entry : found.get( sourceRoot ).entrySet() ) {
+        add( rootState, entry.getKey(), entry.getValue() );
+
+        if ( maxListedViolations < 0 || listed < maxListedViolations ) {
+          getLog().warn( "  " + entry.getKey() );
+          getLog().warn( "     " + entry.getValue() );
+        }
+        listed++;
+      }
+    }
+    if ( maxListedViolations >= 0 && listed > maxListedViolations ) {
+      getLog().warn( "  ... and " + ( listed - maxListedViolations ) + " more" );
+    }
+    logSummary();
+  }
+
+  /**
+   * Validates the changed directories and prints the differences
+   */
+  private void revalidate( @Nonnull Validator validator, @Nonnull SourceFileSelector selector, @Nonnull Map<File, SortedSet<String>> changes ) throws MojoExecutionException {
+    //No cache: all changed directories are listed and validated again
+    SourceRootValidator sourceRootValidator = createSourceRootValidator( validator, selector, new SourceTreeScanner() );
+
+    int changedCount = 0;
+    for ( Map.Entry<File, SortedSet<String>> entry : changes.entrySet() ) {
+      File sourceRoot = entry.getKey();
+      Map<String, Map<String, String>> rootState = getRootViolations( sourceRoot );
+
+      Map<String, String> found = new TreeMap<String, String>();
+      SourceRootValidator.Job job = sourceRootValidator.createJob( sourceRoot, getLog(), collect( found ) );
+      for ( String relativeDirectory : entry.getValue() ) {
+        File directory = relativeDirectory.length() == 0 ? sourceRoot : new File( sourceRoot, relativeDirectory );
+        if ( directory.isDirectory() ) {
+          //The new sub directories are contained within the changes
+          job.handle( directory, relativeDirectory );
+        }
+      }
+
+      Map<String, Map<String, String>> foundState = new HashMap<String, Map<String, String>>();
+      for ( Map.Entry<String, String> violation : found.entrySet() ) {
+        add( foundState, violation.getKey(), violation.getValue() );
+      }
+
+      for ( String relativeDirectory : entry.getValue() ) {
+        changedCount++;
+        @Nullable Map<String, String> before = rootState.remove( relativeDirectory );
+        @Nullable Map<String, String> after = foundState.get( relativeDirectory );
+
+        if ( after != null ) {
+          rootState.put( relativeDirectory, after );
+          for ( Map.Entry<String, String> violation : after.entrySet() ) {
+            if ( before == null || !violation.getValue().equals( before.get( violation.getKey() ) ) ) {
+              getLog().warn( "[new] " + violation.getKey() );
+              getLog().warn( "     " + violation.getValue() );
+            }
+          }
+        }
+
+        if ( before != null ) {
+          for ( String relativePath : before.keySet() ) {
+            if ( after == null || !after.containsKey( relativePath ) ) {
+              getLog().info( "[resolved] " + relativePath );
+            }
+          }
+        }
+      }
+    }
+
+    getLog().info( "Validated " + changedCount + " changed directories" );
+    logSummary();
+  }
+
+  @Nonnull
+  private SourceRootValidator createSourceRootValidator( @Nonnull Validator validator, @Nonnull SourceFileSelector selector, @Nonnull SourceTreeScanner scanner ) throws MojoExecutionException {
+    SourceRootValidator sourceRootValidator = new SourceRootValidator( validator, selector, new ValidationCache(), new ValidationCache(), getLog(), scanner );
+    sourceRootValidator.setCheckPackageDeclarations( checkPackageDeclarations );
+    sourceRootValidator.setRules( getRules() );
+    return sourceRootValidator;
+  }
+
+  private void logSummary() {
+    int count = 0;
+    for ( Map<String, Map<String, String>> rootState : violations.values() ) {
+      for ( Map<String, String> directoryViolations : rootState.values() ) {
+        count += directoryViolations.size();
+      }
+    }
+
+    if ( count == 0 ) {
+      getLog().info( "No problematic files found" );
+    } else {
+      getLog().warn( count + " problematic files" );
+    }
+  }
+
+  @Nonnull
+  private Map<String, Map<String, String>> getRootViolations( @Nonnull File sourceRoot ) {
+    Map<String, Map<String, String>> rootState = violations.get( sourceRoot );
+    if ( rootState == null ) {
+      rootState = new HashMap<String, Map<String, String>>();
+      violations.put( sourceRoot, rootState );
+    }
+    return rootState;
+  }
+
+  private static void add( @Nonnull Map<String, Map<String, String>> rootState, @Nonnull String relativePath, @Nonnull String message ) {
+    String directory = getDirectory( relativePath );
+    Map<String, String> directoryViolations = rootState.get( directory );
+    if ( directoryViolations == null ) {
+      directoryViolations = new TreeMap<String, String>();
+      rootState.put( directory, directoryViolations );
+    }
+    directoryViolations.put( relativePath, message );
+  }
+
+  @Nonnull
+  private static String getDirectory( @Nonnull String relativePath ) {
+    int index = relativePath.lastIndexOf( File.separatorChar );
+    if ( index < 0 ) {
+      return "";
+    }
+    return relativePath.substring( 0, index );
+  }
+
+  private static void merge( @Nonnull Map<File, SortedSet<String>> changes, @Nonnull Map<File, SortedSet<String>> moreChanges ) {
+    for ( Map.Entry<File, SortedSet<String>> entry : moreChanges.entrySet() ) {
+      SortedSet<String> existing = changes.get( entry.getKey() );
+      if ( existing == null ) {
+        changes.put( entry.getKey(), entry.getValue() );
+      } else {
+        existing.addAll( entry.getValue() );
+      }
+    }
+  }
+
+  /**
+   * Returns a handler that collects the messages within the given map
+   */
+  @Nonnull
+  private static ViolationHandler collect( @Nonnull final Map<String, String> target ) {
+    return new ViolationHandler() {
+      @Override
+      public void violation( @Nonnull File sourceRoot, @Nonnull String relativePath, int failingIndex, @Nonnull String reason ) {
+        synchronized ( target ) {
+          target.put( relativePath, ValidationFailedException.createMessage( relativePath, failingIndex, reason ) );
+        }
+      }
+    };
+  }
+}
@@ -0,0 +1,98 @@
+package com.cedarsoft.osgi.validator;
+
+import com.google.common.io.ByteStreams;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.fest.assertions.Fail.fail;
+
+/**
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+public class ConstantPoolScannerTest {
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void testReferencedPackages() throws Exception {
+    Set<String> packages = new TreeSet<String>();
+    byte[] classFile = ByteStreams.toByteArray( open( ManifestHeaderParser.Clause.class ) );
+    ConstantPoolScanner.collectReferencedPackages( classFile, classFile.length, packages );
+
+    assertThat( packages ).contains( "com.cedarsoft.osgi.validator", "com.google.common.collect", "java.util", "java.lang" );
+  }
+
+  @Test
+  public void testInvalid() throws Exception {
+    try {
+      ConstantPoolScanner.collectReferencedPackages( new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10}, 10, new TreeSet<String>() );
+      fail( "Where is the Exception" );
+    } catch ( IOException ignore ) {
+    }
+
+    try {
+      byte[] classFile = ByteStreams.toByteArray( open( ManifestHeaderParser.Clause.class ) );
+      ConstantPoolScanner.collectReferencedPackages( classFile, 20, new TreeSet<String>() );
+      fail( "Where is the Exception" );
+    } catch ( IOException ignore ) {
+    }
+  }
+
+  @Test
+  public void testCollector() throws Exception {
+    File classesDir = tmp.newFolder( "classes" );
+    copyClass( ManifestHeaderParser.class, classesDir );
+    copyClass( ManifestHeaderParser.Clause.class, classesDir );
+
+    PackageReferenceCollector collector = new PackageReferenceCollector();
+    new SourceTreeScanner().scan( classesDir, collector );
+
+    assertThat( collector.getFailures() ).isEmpty();
+    assertThat( collector.getOwnPackages() ).containsOnly( "com.cedarsoft.osgi.validator" );
+    assertThat( collector.getReferencedPackages().keySet() ).contains( "com.google.common.collect", "java.util" ).excludes( "com.cedarsoft.osgi.validator" );
+    assertThat( collector.getReferencedPackages().get( "com.google.common.collect" ) ).isEqualTo( path( "com/cedarsoft/osgi/validator/ManifestHeaderParser$Clause.class" ) );
+  }
+
+  private static void copyClass( @Nonnull Class<?> type, @Nonnull File classesDir ) throws IOException {
+    File target = new File( classesDir, path( type.getName().replace( '.', '/' ) + ".class" ) );
+    assertThat( target.getParentFile().isDirectory() || target.getParentFile().mkdirs() ).isTrue();
+
+    InputStream in = open( type );
+    try {
+      OutputStream out = new FileOutputStream( target );
+      try {
+        byte[] buffer = new byte[4096];
+        int read;
+        while ( ( read = in.read( buffer ) ) >= 0 ) {
+          out.write( buffer, 0, read );
+        }
+      } finally {
+        out.close();
+      }
+    } finally {
+      in.close();
+    }
+  }
+
+  @Nonnull
+  private static InputStream open( @Nonnull Class<?> type ) {
+    InputStream in = type.getResourceAsStream( "/" + type.getName().replace( '.', '/' ) + ".class" );
+    assertThat( in ).isNotNull();
+    return in;
+  }
+
+  @Nonnull
+  private static String path( @Nonnull String path ) {
+    return path.replace( '/', File.separatorChar );
+  }
+}
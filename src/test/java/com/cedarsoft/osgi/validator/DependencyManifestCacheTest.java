@@ -0,0 +1,143 @@
+package com.cedarsoft.osgi.validator;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.jar.Manifest;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.*;
+
+/**
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+public class DependencyManifestCacheTest {
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private File jar;
+
+  @Before
+  public void setUp() throws Exception {
+    jar = tmp.newFile( "dependency-1.0.jar" );
+    Files.write( "content", jar, Charsets.UTF_8 );
+  }
+
+  @Test
+  public void testKey() throws Exception {
+    String key = DependencyManifestCache.createKey( "com.cedarsoft:dependency:1.0", jar );
+    assertThat( key ).startsWith( "com.cedarsoft:dependency:1.0|" );
+    assertThat( DependencyManifestCache.createKey( "com.cedarsoft:dependency:1.1", jar ) ).isNotEqualTo( key );
+
+    Files.write( "0123456789ABCDEF0123456789abcdef01234567  dependency-1.0.jar", new File( jar.getPath() + ".sha1" ), Charsets.UTF_8 );
+    assertThat( DependencyManifestCache.createKey( "com.cedarsoft:dependency:1.0", jar ) ).isEqualTo( "com.cedarsoft:dependency:1.0|sha1:0123456789abcdef0123456789abcdef01234567" );
+  }
+
+  @Test
+  public void testStoreAndLoad() throws Exception {
+    Manifest manifest = new Manifest();
+    manifest.getMainAttributes().putValue( "Manifest-Version", "1.0" );
+    manifest.getMainAttributes().putValue( "Bundle-SymbolicName", "com.cedarsoft.dependency" );
+    manifest.getMainAttributes().putValue( "Import-Package", "com.cedarsoft.internal;version=\"[1.0,2)\"" );
+
+    DependencyManifestCache cache = new DependencyManifestCache();
+    cache.put( "bundle", manifest );
+    cache.put( "plain", null );
+
+    File file = new File( tmp.getRoot(), "cache/dependency-manifests.bin" );
+    cache.merge( file );
+
+    DependencyManifestCache other = new DependencyManifestCache();
+    other.put( "other", null );
+    other.merge( file );
+    assertThat( other.size() ).isEqualTo( 3 );
+
+    DependencyManifestCache loaded = DependencyManifestCache.load( file );
+    assertThat( loaded.size() ).isEqualTo( 3 );
+    assertThat( loaded.contains( "plain" ) ).isTrue();
+    assertThat( loaded.get( "plain" ) ).isNull();
+    assertThat( loaded.contains( "unknown" ) ).isFalse();
+
+    Manifest cached = loaded.get( "bundle" );
+    assertThat( cached ).isNotNull();
+    assertThat( cached.getMainAttributes() ).isEqualTo( manifest.getMainAttributes() );
+  }
+
+  @Test
+  public void testTruncatedFile() throws Exception {
+    DependencyManifestCache cache = new DependencyManifestCache();
+    cache.put( "bundle", createManifest() );
+    cache.put( "plain", null );
+
+    File file = new File( tmp.getRoot(), "dependency-manifests.bin" );
+    cache.merge( file );
+
+    byte[] content = Files.toByteArray( file );
+    byte[] truncated = new byte[content.length - 10];
+    System.arraycopy( content, 0, truncated, 0, truncated.length );
+    Files.write( truncated, file );
+
+    assertDamaged( file );
+  }
+
+  @Test
+  public void testGarbageLength() throws Exception {
+    File file = new File( tmp.getRoot(), "dependency-manifests.bin" );
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream( bytes );
+    out.writeInt( DependencyManifestCache.MAGIC );
+    out.writeInt( DependencyManifestCache.VERSION );
+    out.writeInt( 1 );
+    out.writeUTF( "bundle" );
+    out.writeLong( System.currentTimeMillis() );
+    out.writeBoolean( true );
+    out.writeInt( 1 );
+    out.writeUTF( "Bundle-SymbolicName" );
+    out.writeInt( Integer.MAX_VALUE );
+    out.close();
+    Files.write( bytes.toByteArray(), file );
+    assertDamaged( file );
+
+    bytes.reset();
+    out = new DataOutputStream( bytes );
+    out.writeInt( DependencyManifestCache.MAGIC );
+    out.writeInt( DependencyManifestCache.VERSION );
+    out.writeInt( -5 );
+    out.close();
+    Files.write( bytes.toByteArray(), file );
+    assertDamaged( file );
+  }
+
+  /**
+   * Verifies that the damaged file can not be loaded - but is overwritten by the next merge
+   */
+  private static void assertDamaged( File file ) throws Exception {
+    try {
+      DependencyManifestCache.load( file );
+      fail( "Where is the Exception" );
+    } catch ( IOException ignore ) {
+    }
+
+    DependencyManifestCache cache = new DependencyManifestCache();
+    cache.put( "other", createManifest() );
+    cache.merge( file );
+
+    DependencyManifestCache loaded = DependencyManifestCache.load( file );
+    assertThat( loaded.size() ).isEqualTo( 1 );
+    assertThat( loaded.get( "other" ) ).isNotNull();
+  }
+
+  private static Manifest createManifest() {
+    Manifest manifest = new Manifest();
+    manifest.getMainAttributes().putValue( "Manifest-Version", "1.0" );
+    manifest.getMainAttributes().putValue( "Bundle-SymbolicName", "com.cedarsoft.dependency" );
+    return manifest;
+  }
+}
@@ -0,0 +1,64 @@
+package com.cedarsoft.osgi.validator;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.List;
+import java.util.SortedMap;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+/**
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+public class DuplicateClassIndexTest {
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void testDuplicates() throws Exception {
+    DuplicateClassIndex index = new DuplicateClassIndex();
+    int sources = index.addOrigin( "src/main/java", 0, false );
+    int generated = index.addOrigin( "target/generated-sources", 0, false );
+    int classes = index.addOrigin( "target/classes", 0, true );
+    int jar = index.addOrigin( "dependency.jar", 1, false );
+
+    index.add( sources, "com/cedarsoft/A" );
+    index.add( sources, "com/cedarsoft/B" );
+    index.add( generated, "com/cedarsoft/B" );
+    index.add( classes, "com/cedarsoft/A" );
+    index.add( classes, "com/cedarsoft/B" );
+    //Only contained within the classes directory
+    index.add( classes, "com/cedarsoft/C" );
+    index.add( jar, "com/cedarsoft/C" );
+    index.add( jar, "org/other/D" );
+    index.add( jar, "org/other/D" );
+
+    assertThat( index.getClassCount() ).isEqualTo( 4 );
+    assertThat( index.getPackageCount() ).isEqualTo( 2 );
+
+    SortedMap<String, List<String>> duplicates = index.findDuplicateClasses();
+    assertThat( duplicates.keySet() ).containsOnly( "com.cedarsoft.B", "com.cedarsoft.C" );
+    assertThat( duplicates.get( "com.cedarsoft.B" ) ).containsOnly( "src/main/java", "target/generated-sources" );
+    assertThat( duplicates.get( "com.cedarsoft.C" ) ).containsOnly( "target/classes", "dependency.jar" );
+
+    assertThat( index.findSplitPackages( 0 ).keySet() ).containsOnly( "com.cedarsoft" );
+    assertThat( index.findSplitPackages( 1 ).keySet() ).containsOnly( "com.cedarsoft" );
+  }
+
+  @Test
+  public void testClassNames() throws Exception {
+    assertThat( DuplicateClassIndex.toClassNames( ImmutableList.of( "com/cedarsoft/A.class", "com/cedarsoft/A$Inner.class", "com/cedarsoft/package-info.class", "module-info.class", "META-INF/versions/9/com/cedarsoft/A.class", "com/cedarsoft/a.txt", "com/cedarsoft/" ) ) ).containsOnly( "com/cedarsoft/A" );
+
+    File root = tmp.newFolder( "src" );
+    assertThat( new File( root, "com/cedarsoft" ).mkdirs() ).isTrue();
+    assertThat( new File( root, "com/cedarsoft/A.java" ).createNewFile() ).isTrue();
+    assertThat( new File( root, "com/cedarsoft/package-info.java" ).createNewFile() ).isTrue();
+    assertThat( new File( root, "com/cedarsoft/B.txt" ).createNewFile() ).isTrue();
+    assertThat( new File( root, "C.java" ).createNewFile() ).isTrue();
+
+    assertThat( DuplicateClassIndex.collectClassNames( root, DuplicateClassIndex.SOURCE_FILE_SUFFIX ) ).containsOnly( "com/cedarsoft/A", "C" );
+  }
+}
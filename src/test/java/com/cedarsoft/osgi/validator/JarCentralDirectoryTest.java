@@ -0,0 +1,135 @@
+package com.cedarsoft.osgi.validator;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import javax.annotation.Nonnull;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.fest.assertions.Fail.fail;
+
+/**
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+public class JarCentralDirectoryTest {
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void testDeflated() throws Exception {
+    File jar = createJar( ZipEntry.DEFLATED );
+
+    JarCentralDirectory centralDirectory = JarCentralDirectory.read( jar );
+    assertThat( centralDirectory.getEntryNames() ).containsOnly( "META-INF/", "META-INF/MANIFEST.MF", "module-info.class", "com/cedarsoft/test/A.class", "com/cedarsoft/test/A$Inner.class", "com/cedarsoft/other/B.class", "com/cedarsoft/test/readme.txt" );
+    assertThat( centralDirectory.getManifest() ).isNotNull();
+    assertThat( centralDirectory.getManifest().getMainAttributes().getValue( "Export-Package" ) ).isEqualTo( "com.cedarsoft.test" );
+  }
+
+  @Test
+  public void testStored() throws Exception {
+    File jar = createJar( ZipEntry.STORED );
+
+    JarCentralDirectory centralDirectory = JarCentralDirectory.read( jar );
+    assertThat( centralDirectory.getEntryNames() ).hasSize( 7 );
+    assertThat( centralDirectory.getManifest().getMainAttributes().getValue( "Export-Package" ) ).isEqualTo( "com.cedarsoft.test" );
+  }
+
+  @Test
+  public void testNoZip() throws Exception {
+    File file = tmp.newFile( "invalid.jar" );
+    FileOutputStream out = new FileOutputStream( file );
+    try {
+      out.write( new byte[100] );
+    } finally {
+      out.close();
+    }
+
+    try {
+      JarCentralDirectory.read( file );
+      fail( "Where is the Exception" );
+    } catch ( IOException ignore ) {
+    }
+  }
+
+  @Test
+  public void testValidateEntries() throws Exception {
+    JarCentralDirectory centralDirectory = JarCentralDirectory.read( createJar( ZipEntry.DEFLATED ) );
+
+    BundleContentValidator validator = new BundleContentValidator( new Validator( "com.cedarsoft.test", ImmutableSet.<String>of() ), new SourceFileSelector( ImmutableList.<String>of() ) );
+    Map<String, ValidationFailedException> problematicFiles = validator.validate( centralDirectory.getEntryNames() );
+    //The module descriptor within the root directory is skipped
+    assertThat( problematicFiles.keySet() ).containsOnly( path( "com/cedarsoft/other/B.class" ) );
+
+    BundleContentValidator excluding = new BundleContentValidator( new Validator( "com.cedarsoft.other", ImmutableSet.<String>of() ), new SourceFileSelector( ImmutableList.of( "**/A.java" ) ) );
+    assertThat( excluding.validate( centralDirectory.getEntryNames() ) ).isEmpty();
+  }
+
+  @Test
+  public void testSourcePath() throws Exception {
+    assertThat( BundleContentValidator.getSourcePath( path( "com/cedarsoft/A.class" ) ) ).isEqualTo( path( "com/cedarsoft/A.java" ) );
+    assertThat( BundleContentValidator.getSourcePath( path( "com/cedarsoft/A$Inner$1.class" ) ) ).isEqualTo( path( "com/cedarsoft/A.java" ) );
+  }
+
+  @Nonnull
+  private File createJar( int method ) throws IOException {
+    Manifest manifest = new Manifest();
+    manifest.getMainAttributes().put( Attributes.Name.MANIFEST_VERSION, "1.0" );
+    manifest.getMainAttributes().putValue( "Export-Package", "com.cedarsoft.test" );
+
+    File jar = tmp.newFile( "bundle-" + method + ".jar" );
+    JarOutputStream out = new JarOutputStream( new FileOutputStream( jar ) );
+    try {
+      out.setMethod( method );
+      addEntry( out, "META-INF/", new byte[0], method );
+
+      addEntry( out, "META-INF/MANIFEST.MF", toBytes( manifest ), method );
+      addEntry( out, "module-info.class", new byte[]{0}, method );
+
+      addEntry( out, "com/cedarsoft/test/A.class", new byte[]{1, 2, 3}, method );
+      addEntry( out, "com/cedarsoft/test/A$Inner.class", new byte[]{1, 2, 3}, method );
+      addEntry( out, "com/cedarsoft/other/B.class", new byte[]{4, 5, 6}, method );
+      addEntry( out, "com/cedarsoft/test/readme.txt", new byte[]{7}, method );
+    } finally {
+      out.close();
+    }
+    return jar;
+  }
+
+  private static void addEntry( @Nonnull JarOutputStream out, @Nonnull String name, @Nonnull byte[] content, int method ) throws IOException {
+    ZipEntry entry = new ZipEntry( name );
+    if ( method == ZipEntry.STORED ) {
+      CRC32 crc = new CRC32();
+      crc.update( content );
+      entry.setSize( content.length );
+      entry.setCompressedSize( content.length );
+      entry.setCrc( crc.getValue() );
+    }
+    out.putNextEntry( entry );
+    out.write( content );
+    out.closeEntry();
+  }
+
+  @Nonnull
+  private static byte[] toBytes( @Nonnull Manifest manifest ) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    manifest.write( out );
+    return out.toByteArray();
+  }
+
+  @Nonnull
+  private static String path( @Nonnull String path ) {
+    return path.replace( '/', File.separatorChar );
+  }
+}
@@ -0,0 +1,68 @@
+package com.cedarsoft.osgi.validator;
+
+import com.google.common.collect.ImmutableSet;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.*;
+
+import java.util.List;
+import java.util.jar.Manifest;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.fest.assertions.Fail.fail;
+
+/**
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+public class ManifestHeaderParserTest {
+  @Test
+  public void testSimple() throws Exception {
+    assertThat( ManifestHeaderParser.parsePaths( "com.cedarsoft.a,com.cedarsoft.b" ) ).containsExactly( "com.cedarsoft.a", "com.cedarsoft.b" );
+    assertThat( ManifestHeaderParser.parsePaths( " com.cedarsoft.a , com.cedarsoft.b ," ) ).containsExactly( "com.cedarsoft.a", "com.cedarsoft.b" );
+    assertThat( ManifestHeaderParser.parsePaths( "" ) ).isEmpty();
+  }
+
+  @Test
+  public void testQuoted() throws Exception {
+    List<ManifestHeaderParser.Clause> clauses = ManifestHeaderParser.parse( "com.cedarsoft.a;version=\"[1.0,2.0)\";resolution:=optional,com.cedarsoft.b;uses:=\"com.cedarsoft.a,com.cedarsoft.c\";version=1.2" );
+    assertThat( clauses ).hasSize( 2 );
+
+    assertThat( clauses.get( 0 ).getPaths() ).containsExactly( "com.cedarsoft.a" );
+    assertThat( clauses.get( 0 ).getAttribute( "version" ) ).isEqualTo( "[1.0,2.0)" );
+    assertThat( clauses.get( 0 ).getDirective( "resolution" ) ).isEqualTo( "optional" );
+
+    assertThat( clauses.get( 1 ).getPaths() ).containsExactly( "com.cedarsoft.b" );
+    assertThat( clauses.get( 1 ).getDirective( "uses" ) ).isEqualTo( "com.cedarsoft.a,com.cedarsoft.c" );
+    assertThat( clauses.get( 1 ).getAttribute( "version" ) ).isEqualTo( "1.2" );
+  }
+
+  @Test
+  public void testSeveralPathsAndTypes() throws Exception {
+    List<ManifestHeaderParser.Clause> clauses = ManifestHeaderParser.parse( "a;b;version:Version=\"1.0\";x=\"say \\\"hello\\\"\"" );
+    assertThat( clauses ).hasSize( 1 );
+    assertThat( clauses.get( 0 ).getPaths() ).containsExactly( "a", "b" );
+    assertThat( clauses.get( 0 ).getAttribute( "version" ) ).isEqualTo( "1.0" );
+    assertThat( clauses.get( 0 ).getAttribute( "x" ) ).isEqualTo( "say \"hello\"" );
+  }
+
+  @Test
+  public void testUnterminated() throws Exception {
+    try {
+      ManifestHeaderParser.parse( "a;version=\"[1.0,2.0)" );
+      fail( "Where is the Exception" );
+    } catch ( IllegalArgumentException ignore ) {
+    }
+  }
+
+  @Test
+  public void testValidator() throws Exception {
+    Manifest manifest = new Manifest();
+    manifest.getMainAttributes().putValue( "Export-Package", "com.cedarsoft.a;uses:=\"com.cedarsoft.internal.b\";version=\"1.0\"" );
+    manifest.getMainAttributes().putValue( "Import-Package", "com.cedarsoft.c;version=\"[1.0,2.0)\"" );
+
+    ManifestValidator validator = new ManifestValidator( ImmutableSet.of( "internal" ) );
+    assertThat( validator.validate( manifest, new SystemStreamLog() ) ).isTrue();
+
+    manifest.getMainAttributes().putValue( "Import-Package", "com.cedarsoft.c;version=\"[1.0,2.0)\",com.cedarsoft.internal.d" );
+    assertThat( validator.validate( manifest, new SystemStreamLog() ) ).isFalse();
+  }
+}
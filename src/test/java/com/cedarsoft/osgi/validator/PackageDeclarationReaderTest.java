@@ -0,0 +1,54 @@
+package com.cedarsoft.osgi.validator;
+
+import com.google.common.base.Charsets;
+import org.junit.*;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+/**
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+public class PackageDeclarationReaderTest {
+  @Test
+  public void testSimple() throws Exception {
+    assertThat( parse( "package com.cedarsoft.test;\n\npublic class A {}" ) ).isEqualTo( "com.cedarsoft.test" );
+    assertThat( parse( "package com . cedarsoft\n  .test ;" ) ).isEqualTo( "com.cedarsoft.test" );
+  }
+
+  @Test
+  public void testComments() throws Exception {
+    assertThat( parse( "/*\n * License; package com.wrong;\n */\n// package com.wrong;\npackage /* here */ com.cedarsoft.test;" ) ).isEqualTo( "com.cedarsoft.test" );
+    assertThat( parse( "\u00EF\u00BB\u00BFpackage com.cedarsoft.test;" ) ).isEqualTo( "com.cedarsoft.test" );
+  }
+
+  @Test
+  public void testAnnotations() throws Exception {
+    assertThat( parse( "@ParametersAreNonnullByDefault\npackage com.cedarsoft.test;" ) ).isEqualTo( "com.cedarsoft.test" );
+    assertThat( parse( "@javax.annotation.Generated( value = {\"a;package b;\", \")\"} )\n@Deprecated package com.cedarsoft.test;" ) ).isEqualTo( "com.cedarsoft.test" );
+  }
+
+  @Test
+  public void testDefaultPackage() throws Exception {
+    assertThat( parse( "import java.util.List;\npublic class A {}" ) ).isEqualTo( PackageDeclarationReader.DEFAULT_PACKAGE );
+    assertThat( parse( "public class A {}" ) ).isEqualTo( PackageDeclarationReader.DEFAULT_PACKAGE );
+  }
+
+  @Test
+  public void testUndetermined() throws Exception {
+    assertThat( parse( "" ) ).isNull();
+    assertThat( parse( "// only a comment" ) ).isNull();
+    assertThat( parse( "/* not closed" ) ).isNull();
+
+    byte[] bytes = "/* long comment */ package com.cedarsoft.test;".getBytes( Charsets.ISO_8859_1 );
+    assertThat( PackageDeclarationReader.parse( bytes, 10, false ) ).isNull();
+  }
+
+  @Nullable
+  private static String parse( @Nonnull String content ) {
+    byte[] bytes = content.getBytes( Charsets.ISO_8859_1 );
+    return PackageDeclarationReader.parse( bytes, bytes.length, true );
+  }
+}
@@ -0,0 +1,131 @@
+package com.cedarsoft.osgi.validator;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.SortedMap;
+import java.util.SortedSet;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.*;
+
+/**
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+public class PackageIndexTest {
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private File moduleA;
+  private File moduleB;
+
+  @Before
+  public void setUp() throws Exception {
+    moduleA = tmp.newFolder( "a" );
+    moduleB = tmp.newFolder( "b" );
+  }
+
+  @Test
+  public void testSplitPackages() throws Exception {
+    PackageIndex index = new PackageIndex();
+    index.update( "com.cedarsoft:a", moduleA, ImmutableList.of( "com.cedarsoft.a", "com.cedarsoft.shared" ), ImmutableList.of( "com.cedarsoft.a" ) );
+    index.update( "com.cedarsoft:b", moduleB, ImmutableList.of( "com.cedarsoft.b" ), ImmutableList.of( "com.cedarsoft.b", "com.cedarsoft.shared" ) );
+
+    assertThat( index.getModules( "com.cedarsoft.shared" ) ).containsOnly( "com.cedarsoft:a", "com.cedarsoft:b" );
+    assertThat( index.getModules( "com.cedarsoft.a" ) ).containsOnly( "com.cedarsoft:a" );
+    assertThat( index.getModules( "com.other" ) ).isEmpty();
+
+    SortedMap<String, SortedSet<String>> splitPackages = index.findSplitPackages();
+    assertThat( splitPackages.keySet() ).containsOnly( "com.cedarsoft.shared" );
+    assertThat( index.findSplitPackages( "com.cedarsoft:b" ).keySet() ).containsOnly( "com.cedarsoft.shared" );
+
+    //The module is fixed
+    index.update( "com.cedarsoft:b", moduleB, ImmutableList.of( "com.cedarsoft.b" ), ImmutableList.of( "com.cedarsoft.b" ) );
+    assertThat( index.findSplitPackages() ).isEmpty();
+    assertThat( index.getPackageCount() ).isEqualTo( 3 );
+  }
+
+  @Test
+  public void testRenamedModule() throws Exception {
+    PackageIndex index = new PackageIndex();
+    index.update( "com.cedarsoft:a", moduleA, ImmutableList.of( "com.cedarsoft.a" ), Collections.<String>emptyList() );
+    index.update( "com.cedarsoft:renamed", moduleA, ImmutableList.of( "com.cedarsoft.a" ), Collections.<String>emptyList() );
+
+    assertThat( index.getModuleCount() ).isEqualTo( 1 );
+    assertThat( index.findSplitPackages() ).isEmpty();
+  }
+
+  @Test
+  public void testRemovedFromReactor() throws Exception {
+    File file = new File( tmp.getRoot(), "package-index.bin" );
+    PackageIndex.updateFile( file, "com.cedarsoft:a", moduleA, ImmutableList.of( "com.cedarsoft.shared" ), Collections.<String>emptyList() );
+
+    //Module a has been removed from the reactor - but its directory still exists
+    PackageIndex index = PackageIndex.updateFile( file, new PackageIndex.Updater() {
+      @Override
+      public void update( @Nonnull PackageIndex index ) {
+        index.retain( ImmutableList.of( "com.cedarsoft:b" ) );
+        index.update( "com.cedarsoft:b", moduleB, ImmutableList.of( "com.cedarsoft.shared" ), Collections.<String>emptyList() );
+      }
+    } );
+
+    assertThat( index.getModuleCount() ).isEqualTo( 1 );
+    assertThat( index.findSplitPackages() ).isEmpty();
+  }
+
+  @Test
+  public void testStoreAndLoad() throws Exception {
+    File file = new File( tmp.getRoot(), "package-index.bin" );
+
+    PackageIndex.updateFile( file, "com.cedarsoft:a", moduleA, ImmutableList.of( "com.cedarsoft.a", "com.cedarsoft.a.impl", "com.cedarsoft.shared" ), Collections.<String>emptyList() );
+    PackageIndex index = PackageIndex.updateFile( file, "com.cedarsoft:b", moduleB, ImmutableList.of( "com.cedarsoft.b", "com.cedarsoft.shared" ), Collections.<String>emptyList() );
+    assertThat( index.getModuleCount() ).isEqualTo( 2 );
+
+    PackageIndex loaded = PackageIndex.load( file );
+    assertThat( loaded.getModuleCount() ).isEqualTo( 2 );
+    assertThat( loaded.getModules( "com.cedarsoft.a.impl" ) ).containsOnly( "com.cedarsoft:a" );
+    assertThat( loaded.findSplitPackages() ).isEqualTo( index.findSplitPackages() );
+
+    //Deleted modules are removed on the next update
+    assertThat( moduleB.delete() ).isTrue();
+    index = PackageIndex.updateFile( file, "com.cedarsoft:a", moduleA, ImmutableList.of( "com.cedarsoft.a", "com.cedarsoft.shared" ), Collections.<String>emptyList() );
+    assertThat( index.getModuleCount() ).isEqualTo( 1 );
+    assertThat( index.findSplitPackages() ).isEmpty();
+  }
+
+  @Test
+  public void testDamagedFile() throws Exception {
+    File file = new File( tmp.getRoot(), "package-index.bin" );
+    PackageIndex.updateFile( file, "com.cedarsoft:a", moduleA, ImmutableList.of( "com.cedarsoft.a", "com.cedarsoft.shared" ), Collections.<String>emptyList() );
+    byte[] content = Files.toByteArray( file );
+
+    //Truncated
+    byte[] truncated = new byte[content.length - 3];
+    System.arraycopy( content, 0, truncated, 0, truncated.length );
+    Files.write( truncated, file );
+    assertRepaired( file );
+
+    //Negative module count (follows the magic number and the version)
+    content[8] = ( byte ) 0xFF;
+    Files.write( content, file );
+    assertRepaired( file );
+  }
+
+  private void assertRepaired( File file ) throws Exception {
+    try {
+      PackageIndex.load( file );
+      fail( "Where is the Exception" );
+    } catch ( IOException ignore ) {
+    }
+
+    PackageIndex index = PackageIndex.updateFile( file, "com.cedarsoft:b", moduleB, ImmutableList.of( "com.cedarsoft.b", "com.cedarsoft.shared" ), Collections.<String>emptyList() );
+    assertThat( index.getModuleCount() ).isEqualTo( 1 );
+    assertThat( PackageIndex.load( file ).getModules( "com.cedarsoft.b" ) ).containsOnly( "com.cedarsoft:b" );
+  }
+}
@@ -0,0 +1,91 @@
+package com.cedarsoft.osgi.validator;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.*;
+
+/**
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+public class PackagePatternsTest {
+  @Test
+  public void testPlainPatterns() throws Exception {
+    PackagePatterns patterns = PackagePatterns.compile( ImmutableList.of( "internal", "com.acme.impl" ) );
+    assertThat( patterns.matches( "internal" ) ).isTrue();
+    assertThat( patterns.matches( "com.cedarsoft.internal" ) ).isTrue();
+    assertThat( patterns.matches( "com.cedarsoft.internal.util" ) ).isTrue();
+    assertThat( patterns.matches( "org.acme.com.acme.impl.util" ) ).isTrue();
+
+    assertThat( patterns.matches( "com.cedarsoft.internalization" ) ).isFalse();
+    assertThat( patterns.matches( "com.cedarsoft.notinternal" ) ).isFalse();
+    assertThat( patterns.matches( "com.acme.implementation" ) ).isFalse();
+    assertThat( patterns.matches( "com.acme" ) ).isFalse();
+    assertThat( patterns.matches( "" ) ).isFalse();
+  }
+
+  @Test
+  public void testWildcards() throws Exception {
+    PackagePatterns patterns = PackagePatterns.compile( ImmutableList.of( "*.internal.*", "com.acme.impl.**" ) );
+    assertThat( patterns.matches( "com.internal.util" ) ).isTrue();
+    assertThat( patterns.matches( "com.cedarsoft.internal.util" ) ).isFalse();
+    assertThat( patterns.matches( "com.internal" ) ).isFalse();
+
+    assertThat( patterns.matches( "com.acme.impl" ) ).isTrue();
+    assertThat( patterns.matches( "com.acme.impl.a.b.c" ) ).isTrue();
+    assertThat( patterns.matches( "org.com.acme.impl" ) ).isFalse();
+    assertThat( patterns.matches( "com.acme" ) ).isFalse();
+  }
+
+  @Test
+  public void testExceptions() throws Exception {
+    PackagePatterns patterns = PackagePatterns.compile( ImmutableList.of( "internal", "!com.acme.internal.api.**", "!org.internal" ) );
+    assertThat( patterns.matches( "com.acme.internal" ) ).isTrue();
+    assertThat( patterns.matches( "com.acme.internal.impl" ) ).isTrue();
+    assertThat( patterns.matches( "com.acme.internal.api" ) ).isFalse();
+    assertThat( patterns.matches( "com.acme.internal.api.sub" ) ).isFalse();
+    assertThat( patterns.matches( "org.internal" ) ).isFalse();
+    assertThat( patterns.matches( "com.org.internal.x" ) ).isFalse();
+  }
+
+  @Test
+  public void testEmpty() throws Exception {
+    PackagePatterns patterns = PackagePatterns.compile( Collections.<String>emptyList() );
+    assertThat( patterns.matches( "com.cedarsoft" ) ).isFalse();
+    assertThat( patterns.matches( "" ) ).isFalse();
+  }
+
+  @Test
+  public void testManyPatterns() throws Exception {
+    List<String> patternList = new ArrayList<String>();
+    for ( int i = 0; i < 500; i++ ) {
+      patternList.add( "part" + i );
+    }
+    PackagePatterns patterns = PackagePatterns.compile( patternList );
+    assertThat( patterns.getStateCount() ).isLessThan( 10 );
+
+    assertThat( patterns.matches( "com.part1.part499.part7" ) ).isTrue();
+    assertThat( patterns.matches( "com.part500" ) ).isFalse();
+  }
+
+  @Test
+  public void testInvalid() throws Exception {
+    try {
+      PackagePatterns.compile( ImmutableList.of( "impl*" ) );
+      fail( "Where is the Exception" );
+    } catch ( IllegalArgumentException e ) {
+      assertThat( e.getMessage() ).contains( "impl*" );
+    }
+
+    try {
+      PackagePatterns.compile( ImmutableList.of( "!" ) );
+      fail( "Where is the Exception" );
+    } catch ( IllegalArgumentException ignore ) {
+    }
+  }
+}
@@ -0,0 +1,86 @@
+package com.cedarsoft.osgi.validator;
+
+import org.junit.*;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+/**
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+public class PathTrieTest {
+  @Test
+  public void testPutAndGet() throws Exception {
+    PathTrie<String> trie = new PathTrie<String>( '/' );
+    assertThat( trie.isEmpty() ).isTrue();
+
+    assertThat( trie.put( "com/cedarsoft/A.java", "a" ) ).isNull();
+    assertThat( trie.put( "com/cedarsoft/B.java", "b" ) ).isNull();
+    assertThat( trie.put( "com", "com" ) ).isNull();
+    assertThat( trie.put( "", "root" ) ).isNull();
+    assertThat( trie.put( "com/cedarsoft/A.java", "a2" ) ).isEqualTo( "a" );
+
+    assertThat( trie.size() ).isEqualTo( 4 );
+    assertThat( trie.get( "com/cedarsoft/A.java" ) ).isEqualTo( "a2" );
+    assertThat( trie.get( new StringBuilder( "com/cedarsoft/B.java" ) ) ).isEqualTo( "b" );
+    assertThat( trie.get( "com" ) ).isEqualTo( "com" );
+    assertThat( trie.get( "" ) ).isEqualTo( "root" );
+    assertThat( trie.get( "com/cedarsoft" ) ).isNull();
+    assertThat( trie.get( "com/cedarsoft/C.java" ) ).isNull();
+    assertThat( trie.get( "org" ) ).isNull();
+    assertThat( trie.containsPath( "com/cedarsoft/B.java" ) ).isTrue();
+  }
+
+  @Test
+  public void testSortedVisit() throws Exception {
+    PathTrie<String> trie = new PathTrie<String>( '/' );
+    trie.put( "org/z", "1" );
+    trie.put( "com/b/X.java", "2" );
+    trie.put( "com/a", "3" );
+    trie.put( "com/b", "4" );
+    trie.put( "com/ab/Y.java", "5" );
+
+    assertThat( visit( trie ) ).containsExactly( "com/a=3", "com/ab/Y.java=5", "com/b=4", "com/b/X.java=2", "org/z=1" );
+  }
+
+  @Test
+  public void testConcurrentPuts() throws Exception {
+    final PathTrie<Integer> trie = new PathTrie<Integer>( '/' );
+    ExecutorService executor = Executors.newFixedThreadPool( 4 );
+    for ( int thread = 0; thread < 4; thread++ ) {
+      final int offset = thread;
+      executor.execute( new Runnable() {
+        @Override
+        public void run() {
+          for ( int i = offset; i < 4000; i += 4 ) {
+            trie.put( "com/cedarsoft/p" + i % 10 + "/p" + i % 7 + "/File" + i + ".java", i );
+          }
+        }
+      } );
+    }
+    executor.shutdown();
+    assertThat( executor.awaitTermination( 10, TimeUnit.SECONDS ) ).isTrue();
+
+    assertThat( trie.size() ).isEqualTo( 4000 );
+    assertThat( visit( trie ) ).hasSize( 4000 );
+    assertThat( trie.get( "com/cedarsoft/p3/p4/File123.java" ) ).isEqualTo( 123 );
+  }
+
+  @Nonnull
+  private static List<String> visit( @Nonnull PathTrie<?> trie ) {
+    final List<String> visited = new ArrayList<String>();
+    trie.visit( new PathTrie.Visitor<Object>() {
+      @Override
+      public void visit( @Nonnull String path, @Nonnull Object value ) {
+        visited.add( path + "=" + value );
+      }
+    } );
+    return visited;
+  }
+}
@@ -0,0 +1,128 @@
+package com.cedarsoft.osgi.validator;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import org.junit.*;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+/**
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+public class ProjectIdMatcherTest {
+  @Test
+  public void testBasic() throws Exception {
+    ProjectIdMatcher matcher = new ProjectIdMatcher( ImmutableList.of( "com", "cedarsoft", "commons", "xml", "commons" ), ImmutableSet.of( "commons" ), '/' );
+
+    assertThat( matcher.matches( "com/cedarsoft/xml" ) ).isTrue();
+    assertThat( matcher.matches( "com/cedarsoft/commons/xml/Foo.java" ) ).isTrue();
+    assertThat( matcher.matches( new StringBuilder( "/com//cedarsoft/xml/" ) ) ).isTrue();
+
+    long result = matcher.match( "com/cedarsoft/xml2/commons" );
+    assertThat( ProjectIdMatcher.getFailingIndex( result ) ).isEqualTo( 2 );
+    assertThat( matcher.getPart( ProjectIdMatcher.getExpectedPartIndex( result ) ) ).isEqualTo( "xml" );
+  }
+
+  @Test
+  public void testTooShort() throws Exception {
+    ProjectIdMatcher matcher = new ProjectIdMatcher( ImmutableList.of( "com", "cedarsoft", "mygroup" ), ImmutableSet.<String>of(), '/' );
+
+    assertThat( ProjectIdMatcher.getFailingIndex( matcher.match( "com/cedarsoft" ) ) ).isEqualTo( ProjectIdMatcher.TOO_SHORT );
+    assertThat( ProjectIdMatcher.getFailingIndex( matcher.match( "" ) ) ).isEqualTo( ProjectIdMatcher.TOO_SHORT );
+  }
+
+  @Test
+  public void testDuplicate() throws Exception {
+    ProjectIdMatcher matcher = new ProjectIdMatcher( ImmutableList.of( "com", "foo", "foo" ), ImmutableSet.<String>of(), '/' );
+
+    assertThat( matcher.matches( "com/foo/Bar.java" ) ).isTrue();
+    //Duplicates are not ignored at the end of the path
+    assertThat( matcher.matches( "com/foo" ) ).isFalse();
+  }
+
+  /**
+   * Compares the matcher with the original algorithm for all combinations of some path elements
+   */
+  @Test
+  public void testSameAsReference() throws Exception {
+    List<String> elements = ImmutableList.of( "com", "cedarsoft", "commons", "xml", "plugin", "X.java" );
+    Set<String> partsToIgnore = ImmutableSet.of( "commons", "plugin" );
+
+    for ( List<String> projectIdParts : ImmutableList.<List<String>>of(
+      ImmutableList.of( "com", "cedarsoft", "commons", "xml", "commons" ),
+      ImmutableList.of( "com", "cedarsoft", "xml", "xml", "plugin" ),
+      ImmutableList.of( "com", "commons", "commons" ) ) ) {
+      ProjectIdMatcher matcher = new ProjectIdMatcher( projectIdParts, partsToIgnore, '/' );
+
+      for ( String path : createPaths( elements, 5 ) ) {
+        assertThat( matcher.match( path ) ).describedAs( projectIdParts + ": " + path ).isEqualTo( reference( projectIdParts, partsToIgnore, path ) );
+      }
+    }
+  }
+
+  @Nonnull
+  private static List<String> createPaths( @Nonnull List<String> elements, int maxDepth ) {
+    List<String> paths = Lists.newArrayList( "" );
+    List<String> current = Lists.newArrayList( "" );
+
+    for ( int depth = 0; depth < maxDepth; depth++ ) {
+      List<String> next = new ArrayList<String>();
+      for ( String prefix : current ) {
+        for ( String element : elements ) {
+          next.add( prefix.length() == 0 ? element : prefix + "/" + element );
+        }
+      }
+      paths.addAll( next );
+      current = next;
+    }
+    return paths;
+  }
+
+  /**
+   * The original implementation of Validator#isValid
+   */
+  private static long reference( @Nonnull List<String> projectIdParts, @Nonnull Set<String> partsToIgnore, @Nonnull String relativePath ) {
+    int projectIdIndex = 0;
+
+    List<String> splitPath = Lists.newArrayList( Splitter.on( '/' ).omitEmptyStrings().split( relativePath ) );
+    for ( int pathIndex = 0; pathIndex < splitPath.size(); ) {
+      String pathElement = splitPath.get( pathIndex );
+      String projectIdPart = projectIdParts.get( projectIdIndex );
+
+      if ( pathElement.equals( projectIdPart ) ) {
+        projectIdIndex++;
+        if ( projectIdIndex == projectIdParts.size() ) {
+          return ProjectIdMatcher.MATCHED;
+        }
+        pathIndex++;
+        continue;
+      }
+
+      if ( partsToIgnore.contains( projectIdPart ) || ( projectIdIndex > 0 && projectIdPart.equals( projectIdParts.get( projectIdIndex - 1 ) ) ) ) {
+        projectIdIndex++;
+        if ( projectIdIndex == projectIdParts.size() ) {
+          return ProjectIdMatcher.MATCHED;
+        }
+        continue;
+      }
+
+      return ( ( long ) pathIndex << 32 ) | projectIdIndex;
+    }
+
+    int remainingStart = projectIdIndex;
+    while ( projectIdIndex < projectIdParts.size() ) {
+      if ( !partsToIgnore.contains( projectIdParts.get( projectIdIndex ) ) ) {
+        return ( ( long ) ProjectIdMatcher.TOO_SHORT << 32 ) | remainingStart;
+      }
+      projectIdIndex++;
+    }
+    return ProjectIdMatcher.MATCHED;
+  }
+}
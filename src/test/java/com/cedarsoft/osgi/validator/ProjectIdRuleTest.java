@@ -0,0 +1,72 @@
+package com.cedarsoft.osgi.validator;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.*;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+/**
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+public class ProjectIdRuleTest {
+  private ProjectIdRule rule;
+
+  @Before
+  public void setUp() throws Exception {
+    rule = new ProjectIdRule( new Validator( "com.cedarsoft.foo", ImmutableSet.<String>of() ) );
+  }
+
+  @Test
+  public void testCheck() throws Exception {
+    String directory = "com" + File.separator + "cedarsoft";
+    assertThat( rule.check( directory ).isValid() ).isFalse();
+    assertThat( rule.check( directory + File.separator + "foo" ).isValid() ).isTrue();
+  }
+
+  @Test
+  public void testVerdictIndependentOfFileNames() throws Exception {
+    //A resource file without extension matches the last part of the project id
+    String directory = "com" + File.separator + "cedarsoft";
+    Map<String, String> first = validateDirectory( directory, ImmutableList.of( "foo", "README.txt" ) );
+    Map<String, String> second = validateDirectory( directory, ImmutableList.of( "README.txt", "foo" ) );
+
+    assertThat( first ).hasSize( 2 );
+    assertThat( first ).isEqualTo( second );
+    assertThat( first.get( directory + File.separator + "foo" ) ).isEqualTo( first.get( directory + File.separator + "README.txt" ) );
+
+    assertThat( validateDirectory( directory + File.separator + "foo", ImmutableList.of( "README" ) ) ).isEmpty();
+  }
+
+  @Nonnull
+  private Map<String, String> validateDirectory( @Nonnull String relativeDirectory, @Nonnull List<String> fileNames ) {
+    final Map<String, String> violations = new TreeMap<String, String>();
+    rule.validateDirectory( new RuleContext() {
+      @Nonnull
+      @Override
+      public String getProjectId() {
+        return "com.cedarsoft.foo";
+      }
+
+      @Nonnull
+      @Override
+      public Log getLog() {
+        return new SystemStreamLog();
+      }
+
+      @Override
+      public void violation( @Nonnull String relativePath, int failingIndex, @Nonnull String reason ) {
+        violations.put( relativePath, failingIndex + ": " + reason );
+      }
+    }, new File( relativeDirectory ), relativeDirectory, fileNames );
+    return violations;
+  }
+}
@@ -0,0 +1,410 @@
+package com.cedarsoft.osgi.validator;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.Files;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.fest.assertions.Fail.fail;
+
+/**
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+public class SourceRootValidatorTest {
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private File sourceRoot;
+  private CountingValidator validator;
+  private SourceFileSelector selector;
+
+  @Before
+  public void setUp() throws Exception {
+    sourceRoot = tmp.newFolder( "src" );
+    validator = new CountingValidator( "com.cedarsoft.test", ImmutableSet.<String>of() );
+    selector = new SourceFileSelector( ImmutableList.of( "**/Skipped.java" ) );
+
+    createFile( "com/cedarsoft/test/A.java" );
+    createFile( "com/cedarsoft/test/B.java" );
+    createFile( "com/cedarsoft/test/Skipped.java" );
+    createFile( "com/cedarsoft/test/readme.txt" );
+    createFile( "com/cedarsoft/other/C.java" );
+    makeOld( sourceRoot );
+  }
+
+  @Test
+  public void testFullRun() throws Exception {
+    Map<String, ValidationFailedException> problematicFiles = validate( new ValidationCache(), new ValidationCache() );
+
+    assertThat( problematicFiles.keySet() ).hasSize( 1 ).contains( path( "com/cedarsoft/other/C.java" ) );
+    //Once per package directory
+    assertThat( validator.count ).isEqualTo( 2 );
+  }
+
+  @Test
+  public void testOncePerDirectory() throws Exception {
+    for ( int i = 0; i < 100; i++ ) {
+      createFile( "com/cedarsoft/test/Valid" + i + ".java" );
+      createFile( "com/cedarsoft/other/Invalid" + i + ".java" );
+    }
+
+    Map<String, ValidationFailedException> problematicFiles = validate( new ValidationCache(), new ValidationCache() );
+
+    assertThat( validator.count ).isEqualTo( 2 );
+    assertThat( problematicFiles.keySet() ).hasSize( 101 ).contains( path( "com/cedarsoft/other/C.java" ), path( "com/cedarsoft/other/Invalid99.java" ) );
+
+    //Every file gets its own message
+    for ( Map.Entry<String, ValidationFailedException> entry : problematicFiles.entrySet() ) {
+      try {
+        new Validator( "com.cedarsoft.test", ImmutableSet.<String>of() ).isValid( entry.getKey() );
+        fail( "Where is the Exception" );
+      } catch ( ValidationFailedException e ) {
+        assertThat( entry.getValue().getMessage() ).isEqualTo( e.getMessage() );
+      }
+    }
+  }
+
+  @Test
+  public void testParallel() throws Exception {
+    for ( int i = 0; i < 20; i++ ) {
+      createFile( "com/cedarsoft/test/sub" + i + "/A.java" );
+      createFile( "com/cedarsoft/other/sub" + i + "/deeper/B.java" );
+    }
+
+    Map<String, ValidationFailedException> sequential = validate( new ValidationCache(), new ValidationCache() );
+
+    ExecutorService executor = Executors.newFixedThreadPool( 4 );
+    try {
+      ValidationCache next = new ValidationCache();
+      Map<String, ValidationFailedException> parallel = new SourceRootValidator( validator, selector, new ValidationCache(), next, new SystemStreamLog(), new SourceTreeScanner( executor ) ).validate( sourceRoot );
+
+      assertThat( parallel.keySet() ).hasSize( 21 );
+      assertThat( new ArrayList<String>( parallel.keySet() ) ).isEqualTo( new ArrayList<String>( sequential.keySet() ) );
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testSeveralSourceRoots() throws Exception {
+    File otherRoot = tmp.newFolder( "other" );
+    assertThat( new File( otherRoot, path( "com/cedarsoft/other" ) ).mkdirs() ).isTrue();
+    assertThat( new File( otherRoot, path( "com/cedarsoft/other/E.java" ) ).createNewFile() ).isTrue();
+
+    ExecutorService executor = Executors.newFixedThreadPool( 4 );
+    try {
+      List<SourceRootValidator.Result> results = new SourceRootValidator( validator, selector, new ValidationCache(), new ValidationCache(), new SystemStreamLog(), new SourceTreeScanner( executor ) ).validate( ImmutableList.of( otherRoot, sourceRoot ) );
+
+      assertThat( results ).hasSize( 2 );
+      assertThat( results.get( 0 ).getSourceRoot() ).isEqualTo( otherRoot );
+      assertThat( results.get( 0 ).getProblematicFiles().keySet() ).containsOnly( path( "com/cedarsoft/other/E.java" ) );
+      assertThat( results.get( 1 ).getSourceRoot() ).isEqualTo( sourceRoot );
+      assertThat( results.get( 1 ).getProblematicFiles().keySet() ).containsOnly( path( "com/cedarsoft/other/C.java" ) );
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testViolationHandler() throws Exception {
+    createFile( "com/cedarsoft/other/D.java" );
+
+    ViolationReport report = new ViolationReport( 1 );
+    SourceRootValidator sourceRootValidator = new SourceRootValidator( validator, selector, new ValidationCache(), new ValidationCache(), new SystemStreamLog() );
+    sourceRootValidator.setViolationHandler( report );
+    List<SourceRootValidator.Result> results = sourceRootValidator.validate( ImmutableList.of( sourceRoot ) );
+
+    //Not collected within the result
+    assertThat( results.get( 0 ).getProblematicFiles() ).isEmpty();
+    assertThat( results.get( 0 ).getViolationCount() ).isEqualTo( 2 );
+    assertThat( report.getViolationCount() ).isEqualTo( 2 );
+    assertThat( report.getListed().keySet() ).containsOnly( path( "com/cedarsoft/other/C.java" ) );
+  }
+
+  @Test
+  public void testCancelled() throws Exception {
+    for ( int i = 0; i < 50; i++ ) {
+      createFile( "com/cedarsoft/other/sub" + i + "/A.java" );
+    }
+
+    //Walked within the build thread: the result is deterministic
+    final SourceTreeScanner scanner = new SourceTreeScanner( null );
+    final DirectoryCounter counter = new DirectoryCounter();
+    final AtomicInteger handledWhenCancelled = new AtomicInteger( -1 );
+
+    ViolationReport report = new ViolationReport( 10 );
+    report.setMaxViolations( 3, new Runnable() {
+      @Override
+      public void run() {
+        handledWhenCancelled.set( counter.handled.get() );
+        scanner.cancel();
+      }
+    } );
+
+    SourceRootValidator sourceRootValidator = new SourceRootValidator( validator, selector, new ValidationCache(), new ValidationCache(), new SystemStreamLog(), scanner );
+    sourceRootValidator.setViolationHandler( report );
+    sourceRootValidator.setRules( ImmutableList.of( counter ) );
+    sourceRootValidator.validate( ImmutableList.of( sourceRoot ) );
+
+    assertThat( scanner.isCancelled() ).isTrue();
+    assertThat( report.isTruncated() ).isTrue();
+    assertThat( report.getViolationCount() ).isEqualTo( 3 );
+    assertThat( handledWhenCancelled.get() ).isGreaterThanOrEqualTo( 0 );
+    //The directory that reached the limit is finished - no further directory is handled
+    assertThat( counter.handled.get() ).isEqualTo( handledWhenCancelled.get() + 1 );
+  }
+
+  @Test
+  public void testUnchanged() throws Exception {
+    ValidationCache cache = new ValidationCache();
+    Map<String, ValidationFailedException> fullRun = validate( new ValidationCache(), cache );
+
+    File cacheFile = new File( tmp.getRoot(), "validation.cache" );
+    cache.store( cacheFile );
+    ValidationCache loaded = ValidationCache.load( cacheFile );
+    assertThat( loaded.size() ).isEqualTo( cache.size() );
+
+    validator.count = 0;
+    Map<String, ValidationFailedException> cachedRun = validate( loaded, new ValidationCache() );
+
+    assertThat( cachedRun.keySet() ).isEqualTo( fullRun.keySet() );
+    assertThat( cachedRun.get( path( "com/cedarsoft/other/C.java" ) ).getMessage() ).isEqualTo( fullRun.get( path( "com/cedarsoft/other/C.java" ) ).getMessage() );
+    assertThat( validator.count ).isEqualTo( 0 );
+  }
+
+  @Test
+  public void testStatistics() throws Exception {
+    ValidationCache cache = new ValidationCache();
+    SourceRootValidator.Job job = new SourceRootValidator( validator, selector, new ValidationCache(), cache, new SystemStreamLog() ).createJob( sourceRoot, new SystemStreamLog() );
+    new SourceTreeScanner().scan( sourceRoot, job );
+
+    SourceRootValidator.Statistics statistics = job.getResult().getStatistics();
+    //root, com, cedarsoft, test, other
+    assertThat( statistics.getDirectoryCount() ).isEqualTo( 5 );
+    assertThat( statistics.getCachedDirectoryCount() ).isEqualTo( 0 );
+    assertThat( statistics.getFileCount() ).isEqualTo( 3 );
+    assertThat( statistics.getNanos() ).isGreaterThan( 0 );
+
+    job = new SourceRootValidator( validator, selector, cache, new ValidationCache(), new SystemStreamLog() ).createJob( sourceRoot, new SystemStreamLog() );
+    new SourceTreeScanner().scan( sourceRoot, job );
+    statistics = job.getResult().getStatistics();
+    assertThat( statistics.getDirectoryCount() ).isEqualTo( 5 );
+    assertThat( statistics.getCachedDirectoryCount() ).isEqualTo( 5 );
+    assertThat( statistics.getFileCount() ).isEqualTo( 3 );
+  }
+
+  @Test
+  public void testChanged() throws Exception {
+    ValidationCache cache = new ValidationCache();
+    validate( new ValidationCache(), cache );
+
+    createFile( "com/cedarsoft/other/D.java" );
+    File changed = new File( sourceRoot, path( "com/cedarsoft/other" ) );
+    assertThat( changed.setLastModified( changed.lastModified() - 5000 ) ).isTrue();
+
+    validator.count = 0;
+    Map<String, ValidationFailedException> problematicFiles = validate( cache, new ValidationCache() );
+
+    assertThat( problematicFiles.keySet() ).hasSize( 2 ).contains( path( "com/cedarsoft/other/C.java" ), path( "com/cedarsoft/other/D.java" ) );
+    assertThat( validator.count ).isEqualTo( 1 );
+  }
+
+  @Test
+  public void testOtherFingerprint() throws Exception {
+    ValidationCache cache = new ValidationCache();
+    validate( new ValidationCache(), cache );
+
+    File cacheFile = new File( tmp.getRoot(), "validation.cache" );
+    cache.store( cacheFile );
+
+    CountingValidator otherValidator = new CountingValidator( "com.cedarsoft.other", ImmutableSet.<String>of() );
+    Map<String, ValidationFailedException> problematicFiles = new SourceRootValidator( otherValidator, selector, ValidationCache.load( cacheFile ), new ValidationCache(), new SystemStreamLog() ).validate( sourceRoot );
+
+    assertThat( problematicFiles.keySet() ).hasSize( 2 ).contains( path( "com/cedarsoft/test/A.java" ), path( "com/cedarsoft/test/B.java" ) );
+    assertThat( otherValidator.count ).isEqualTo( 2 );
+  }
+
+  @Test
+  public void testSharedCache() throws Exception {
+    File otherRoot = tmp.newFolder( "other" );
+    assertThat( new File( otherRoot, path( "com/cedarsoft/other" ) ).mkdirs() ).isTrue();
+    assertThat( new File( otherRoot, path( "com/cedarsoft/other/E.java" ) ).createNewFile() ).isTrue();
+    makeOld( otherRoot );
+
+    CountingValidator otherValidator = new CountingValidator( "com.cedarsoft.other", ImmutableSet.<String>of() );
+
+    ValidationCache cache = new ValidationCache();
+    validate( new ValidationCache(), cache );
+    new SourceRootValidator( otherValidator, selector, new ValidationCache(), cache, new SystemStreamLog() ).validate( otherRoot );
+
+    validator.count = 0;
+    otherValidator.count = 0;
+    ValidationCache next = new ValidationCache();
+    assertThat( validate( cache, next ).keySet() ).hasSize( 1 );
+    assertThat( new SourceRootValidator( otherValidator, selector, cache, next, new SystemStreamLog() ).validate( otherRoot ) ).isEmpty();
+
+    assertThat( validator.count ).isEqualTo( 0 );
+    assertThat( otherValidator.count ).isEqualTo( 0 );
+    assertThat( next.size() ).isEqualTo( cache.size() );
+  }
+
+  @Test
+  public void testPackageDeclarations() throws Exception {
+    writeFile( "com/cedarsoft/test/A.java", "package com.cedarsoft.test;" );
+    writeFile( "com/cedarsoft/test/B.java", "/* moved */\npackage com.cedarsoft.test.b;" );
+    writeFile( "com/cedarsoft/test/D.java", "package com.other;" );
+
+    SourceRootValidator sourceRootValidator = new SourceRootValidator( validator, selector, new ValidationCache(), new ValidationCache(), new SystemStreamLog() );
+    sourceRootValidator.setCheckPackageDeclarations( true );
+    Map<String, ValidationFailedException> problematicFiles = sourceRootValidator.validate( sourceRoot );
+
+    assertThat( problematicFiles.keySet() ).containsOnly( path( "com/cedarsoft/other/C.java" ), path( "com/cedarsoft/test/B.java" ), path( "com/cedarsoft/test/D.java" ) );
+    assertThat( problematicFiles.get( path( "com/cedarsoft/test/B.java" ) ).getReason() ).isEqualTo( "Declared package <com.cedarsoft.test.b> does not match the directory" );
+    assertThat( problematicFiles.get( path( "com/cedarsoft/test/D.java" ) ).getReason() ).startsWith( "Declared package <com.other> does not match the directory and is invalid for the project id: " );
+  }
+
+  @Test
+  public void testValidateFiles() throws Exception {
+    SourceRootValidator sourceRootValidator = new SourceRootValidator( validator, selector, new ValidationCache(), new ValidationCache(), new SystemStreamLog() );
+    SourceRootValidator.Result result = sourceRootValidator.validateFiles( sourceRoot, ImmutableList.of( path( "com/cedarsoft/test/A.java" ), path( "com/cedarsoft/other/C.java" ) ), new SystemStreamLog(), null );
+
+    assertThat( result.getProblematicFiles().keySet() ).containsOnly( path( "com/cedarsoft/other/C.java" ) );
+    assertThat( result.getStatistics().getFileCount() ).isEqualTo( 2 );
+    assertThat( result.getPackages() ).containsOnly( "com.cedarsoft.test", "com.cedarsoft.other" );
+    //Once per package directory - nothing is listed
+    assertThat( validator.count ).isEqualTo( 2 );
+  }
+
+  @Test
+  public void testRules() throws Exception {
+    for ( int i = 0; i < 20; i++ ) {
+      createFile( "com/cedarsoft/test/sub" + i + "/A.java" );
+    }
+    makeOld( sourceRoot );
+
+    //Not thread safe - the calls are serialized
+    final List<String> visitedFiles = new ArrayList<String>();
+    ValidationRule rule = new AbstractValidationRule() {
+      @Override
+      public void validateFile( @Nonnull RuleContext context, @Nonnull File file, @Nonnull String relativePath ) {
+        visitedFiles.add( relativePath );
+        if ( file.getName().equals( "B.java" ) ) {
+          context.violation( relativePath, -1, "B is not allowed in " + context.getProjectId() );
+        }
+      }
+    };
+
+    ExecutorService executor = Executors.newFixedThreadPool( 4 );
+    try {
+      ValidationCache next = new ValidationCache();
+      SourceRootValidator sourceRootValidator = new SourceRootValidator( validator, selector, new ValidationCache(), next, new SystemStreamLog(), new SourceTreeScanner( executor ) );
+      sourceRootValidator.setRules( ImmutableList.of( rule ) );
+      Map<String, ValidationFailedException> problematicFiles = sourceRootValidator.validate( sourceRoot );
+
+      assertThat( visitedFiles ).hasSize( 23 );
+      assertThat( problematicFiles.keySet() ).containsOnly( path( "com/cedarsoft/other/C.java" ), path( "com/cedarsoft/test/B.java" ) );
+      assertThat( problematicFiles.get( path( "com/cedarsoft/test/B.java" ) ).getReason() ).isEqualTo( "B is not allowed in com.cedarsoft.test" );
+
+      //The rules are also applied to cached directories
+      visitedFiles.clear();
+      sourceRootValidator = new SourceRootValidator( validator, selector, next, new ValidationCache(), new SystemStreamLog(), new SourceTreeScanner( executor ) );
+      sourceRootValidator.setRules( ImmutableList.of( rule ) );
+      assertThat( sourceRootValidator.validate( sourceRoot ).keySet() ).hasSize( 2 );
+      assertThat( visitedFiles ).hasSize( 23 );
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testResources() throws Exception {
+    createFile( "log4j.properties" );
+    createFile( "META-INF/services/com.other.Service" );
+    createFile( "OSGI-INF/component.xml" );
+    createFile( "com/cedarsoft/test/icon.png" );
+
+    ResourceFileSelector resourceSelector = new ResourceFileSelector( ImmutableList.of( "**/Skipped.java" ) );
+    Map<String, ValidationFailedException> problematicFiles = new SourceRootValidator( validator, resourceSelector, new ValidationCache(), new ValidationCache(), new SystemStreamLog() ).validate( sourceRoot );
+
+    assertThat( problematicFiles.keySet() ).containsOnly( path( "com/cedarsoft/other/C.java" ) );
+    assertThat( resourceSelector.isIncluded( path( "com/cedarsoft/test/readme.txt" ) ) ).isTrue();
+    assertThat( resourceSelector.isIncluded( path( "com/cedarsoft/test/Skipped.java" ) ) ).isFalse();
+  }
+
+  @Nonnull
+  private Map<String, ValidationFailedException> validate( @Nonnull ValidationCache previous, @Nonnull ValidationCache next ) throws InterruptedException {
+    return new SourceRootValidator( validator, selector, previous, next, new SystemStreamLog() ).validate( sourceRoot );
+  }
+
+  private void createFile( @Nonnull String relativePath ) throws IOException {
+    File file = new File( sourceRoot, path( relativePath ) );
+    assertThat( file.getParentFile().isDirectory() || file.getParentFile().mkdirs() ).isTrue();
+    assertThat( file.createNewFile() ).isTrue();
+  }
+
+  private void writeFile( @Nonnull String relativePath, @Nonnull String content ) throws IOException {
+    Files.write( content, new File( sourceRoot, path( relativePath ) ), Charsets.UTF_8 );
+  }
+
+  /**
+   * Directories that have been modified recently are not cached
+   */
+  private static void makeOld( @Nonnull File directory ) {
+    File[] children = directory.listFiles();
+    if ( children != null ) {
+      for ( File child : children ) {
+        if ( child.isDirectory() ) {
+          makeOld( child );
+        }
+      }
+    }
+    assertThat( directory.setLastModified( System.currentTimeMillis() - 60000 ) ).isTrue();
+  }
+
+  @Nonnull
+  private static String path( @Nonnull String path ) {
+    return path.replace( '/', File.separatorChar );
+  }
+
+  private static class CountingValidator extends Validator {
+    private int count;
+
+    private CountingValidator( @Nonnull String projectId, @Nonnull Set<? extends String> partsToIgnore ) {
+      super( projectId, partsToIgnore );
+    }
+
+    @Nonnull
+    @Override
+    public ValidationResult validate( @Nonnull String relativePath ) {
+      count++;
+      return super.validate( relativePath );
+    }
+  }
+
+  /**
+   * Counts the directories (containing files) the rules are applied to
+   */
+  private static class DirectoryCounter extends AbstractValidationRule {
+    private final AtomicInteger handled = new AtomicInteger();
+
+    @Override
+    public void validateDirectory( @Nonnull RuleContext context, @Nonnull File directory, @Nonnull String relativeDirectory, @Nonnull List<String> fileNames ) {
+      handled.incrementAndGet();
+    }
+  }
+}
@@ -0,0 +1,81 @@
+package com.cedarsoft.osgi.validator;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.util.Map;
+import java.util.SortedSet;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+/**
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+public class SourceTreeWatcherTest {
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private File sourceRoot;
+  private SourceTreeWatcher watcher;
+
+  @Before
+  public void setUp() throws Exception {
+    sourceRoot = tmp.newFolder( "src" );
+    assertThat( new File( sourceRoot, path( "com/cedarsoft/test" ) ).mkdirs() ).isTrue();
+    assertThat( new File( sourceRoot, path( "com/cedarsoft/other" ) ).mkdirs() ).isTrue();
+    assertThat( new File( sourceRoot, path( "com/cedarsoft/skipped" ) ).mkdirs() ).isTrue();
+    makeOld( sourceRoot );
+
+    watcher = new SourceTreeWatcher( new SourceFileSelector( ImmutableList.of( "**/skipped/**" ) ) );
+    watcher.register( sourceRoot );
+  }
+
+  @Test
+  public void testUnchanged() throws Exception {
+    assertThat( watcher.getDirectoryCount() ).isEqualTo( 5 );
+    assertThat( watcher.poll() ).isEmpty();
+  }
+
+  @Test
+  public void testChanges() throws Exception {
+    assertThat( new File( sourceRoot, path( "com/cedarsoft/test/A.java" ) ).createNewFile() ).isTrue();
+    assertThat( new File( sourceRoot, path( "com/cedarsoft/test/sub" ) ).mkdir() ).isTrue();
+
+    Map<File, SortedSet<String>> changes = watcher.poll();
+    assertThat( changes.get( sourceRoot ) ).containsOnly( path( "com/cedarsoft/test" ), path( "com/cedarsoft/test/sub" ) );
+    assertThat( watcher.getDirectoryCount() ).isEqualTo( 6 );
+    assertThat( watcher.poll() ).isEmpty();
+  }
+
+  @Test
+  public void testDeleted() throws Exception {
+    assertThat( new File( sourceRoot, path( "com/cedarsoft/other" ) ).delete() ).isTrue();
+
+    Map<File, SortedSet<String>> changes = watcher.poll();
+    assertThat( changes.get( sourceRoot ) ).containsOnly( path( "com/cedarsoft" ), path( "com/cedarsoft/other" ) );
+    assertThat( watcher.getDirectoryCount() ).isEqualTo( 4 );
+  }
+
+  @Nonnull
+  private static String path( @Nonnull String path ) {
+    return path.replace( '/', File.separatorChar );
+  }
+
+  /**
+   * Ensures that the changes are visible although the file system might have a coarse modification time
+   */
+  private static void makeOld( @Nonnull File directory ) {
+    File[] children = directory.listFiles();
+    if ( children != null ) {
+      for ( File child : children ) {
+        if ( child.isDirectory() ) {
+          makeOld( child );
+        }
+      }
+    }
+    assertThat( directory.setLastModified( System.currentTimeMillis() - 60000 ) ).isTrue();
+  }
+}
@@ -0,0 +1,79 @@
+package com.cedarsoft.osgi.validator;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.*;
+
+/**
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+public class ValidationCacheTest {
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private File file;
+
+  @Before
+  public void setUp() throws Exception {
+    ValidationCache cache = new ValidationCache();
+    cache.getRoot( "src/main/java", "fingerprint" ).put( "com/cedarsoft", new ValidationCache.DirectoryEntry( 1, 2, ImmutableList.of( "A.java", "B.java" ), ImmutableList.of( "internal" ), -1, null ) );
+    file = new File( tmp.getRoot(), "validation.cache" );
+    cache.store( file );
+  }
+
+  @Test
+  public void testStoreAndLoad() throws Exception {
+    ValidationCache loaded = ValidationCache.load( file );
+    assertThat( loaded.size() ).isEqualTo( 1 );
+
+    ValidationCache.DirectoryEntry entry = loaded.getRoot( "src/main/java", "fingerprint" ).get( "com/cedarsoft", 1, 2 );
+    assertThat( entry ).isNotNull();
+    assertThat( entry.getJavaFiles() ).containsExactly( "A.java", "B.java" );
+    assertThat( entry.getSubDirectories() ).containsExactly( "internal" );
+    assertThat( entry.isValid() ).isTrue();
+  }
+
+  @Test
+  public void testTruncated() throws Exception {
+    byte[] content = Files.toByteArray( file );
+    byte[] truncated = new byte[content.length - 5];
+    System.arraycopy( content, 0, truncated, 0, truncated.length );
+    Files.write( truncated, file );
+
+    assertDamaged();
+  }
+
+  @Test
+  public void testInvalidCounts() throws Exception {
+    //The number of roots follows the magic number and the version
+    writeRootCount( Integer.MAX_VALUE );
+    assertDamaged();
+
+    writeRootCount( -1 );
+    assertDamaged();
+  }
+
+  private void writeRootCount( int count ) throws IOException {
+    byte[] content = Files.toByteArray( file );
+    content[8] = ( byte ) ( count >>> 24 );
+    content[9] = ( byte ) ( count >>> 16 );
+    content[10] = ( byte ) ( count >>> 8 );
+    content[11] = ( byte ) count;
+    Files.write( content, file );
+  }
+
+  private void assertDamaged() {
+    try {
+      ValidationCache.load( file );
+      fail( "Where is the Exception" );
+    } catch ( IOException ignore ) {
+    }
+  }
+}
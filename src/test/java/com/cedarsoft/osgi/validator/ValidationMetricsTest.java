@@ -0,0 +1,48 @@
+package com.cedarsoft.osgi.validator;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.*;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+/**
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+public class ValidationMetricsTest {
+  @Test
+  public void testSummedUp() throws Exception {
+    ValidationMetrics metrics = new ValidationMetrics( "com.cedarsoft.test" );
+    long started = ValidationMetrics.start();
+
+    ValidationMetrics.Phase main = metrics.add( new ValidationMetrics.Phase( "scanSourceRoot", "src/main/java", 2000000000L, 1000, 100, 40, 3 ) );
+    ValidationMetrics.Phase test = metrics.add( new ValidationMetrics.Phase( "scanSourceRoot", "src/test/java", 1000000000L, 500, 50, 0, 7 ) );
+    ValidationMetrics.Phase packages = metrics.finish( "validatePackages", null, started, 10, ImmutableList.of( main, test ) );
+    ValidationMetrics.Phase total = metrics.finishTotal( "execute", started );
+
+    assertThat( main.getFilesPerSecond() ).isEqualTo( 500 );
+    assertThat( packages.getFileCount() ).isEqualTo( 1500 );
+    assertThat( packages.getDirectoryCount() ).isEqualTo( 150 );
+    assertThat( packages.getCachedDirectoryCount() ).isEqualTo( 40 );
+    assertThat( total.getFileCount() ).isEqualTo( 1500 );
+    assertThat( total.getResultCount() ).isEqualTo( 10 );
+    assertThat( metrics.getPeakResultCount() ).isEqualTo( 10 );
+    assertThat( metrics.getPhases() ).hasSize( 4 );
+
+    assertThat( main.toString() ).isEqualTo( "scanSourceRoot <src/main/java>: 2000 ms, 1000 files, 100 directories (40 cached), 500 files/s, 3 results" );
+  }
+
+  @Test
+  public void testJson() throws Exception {
+    ValidationMetrics metrics = new ValidationMetrics( "com.cedarsoft.test" );
+    assertThat( metrics.toJson() ).isEqualTo( "{\n  \"projectId\": \"com.cedarsoft.test\",\n  \"peakResultCount\": 0,\n  \"phases\": []\n}\n" );
+
+    metrics.add( new ValidationMetrics.Phase( "scanSourceRoot", "C:\\src\\\"main\"", 1000, 1, 2, 0, 3 ) );
+    assertThat( metrics.toJson() ).isEqualTo( "{\n" +
+                                                "  \"projectId\": \"com.cedarsoft.test\",\n" +
+                                                "  \"peakResultCount\": 3,\n" +
+                                                "  \"phases\": [\n" +
+                                                "    {\"name\": \"scanSourceRoot\", \"detail\": \"C:\\\\src\\\\\\\"main\\\"\", \"nanos\": 1000, \"files\": 1, \"directories\": 2, \"cachedDirectories\": 0, \"filesPerSecond\": 1000000, \"resultCount\": 3}\n" +
+                                                "  ]\n" +
+                                                "}\n" );
+  }
+}
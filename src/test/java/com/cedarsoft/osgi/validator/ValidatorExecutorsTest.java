@@ -0,0 +1,128 @@
+package com.cedarsoft.osgi.validator;
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.*;
+
+/**
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+public class ValidatorExecutorsTest {
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void testParseThreadCount() throws Exception {
+    assertThat( ValidatorExecutors.parseThreadCount( "4", 8 ) ).isEqualTo( 4 );
+    assertThat( ValidatorExecutors.parseThreadCount( " 1 ", 8 ) ).isEqualTo( 1 );
+    assertThat( ValidatorExecutors.parseThreadCount( "1C", 8 ) ).isEqualTo( 8 );
+    assertThat( ValidatorExecutors.parseThreadCount( "1.5C", 3 ) ).isEqualTo( 5 );
+    assertThat( ValidatorExecutors.parseThreadCount( "0.1c", 2 ) ).isEqualTo( 1 );
+
+    for ( String invalid : new String[]{"0", "-1", "C", "0C", "abc", ""} ) {
+      try {
+        ValidatorExecutors.parseThreadCount( invalid, 8 );
+        fail( "Where is the Exception for <" + invalid + ">" );
+      } catch ( IllegalArgumentException e ) {
+        assertThat( e.getMessage() ).contains( "Invalid thread count" );
+      }
+    }
+  }
+
+  @Test
+  public void testVirtualThreadsFallback() throws Exception {
+    ExecutorService executor = ValidatorExecutors.create( 1, true );
+    try {
+      //Only a working virtual thread executor is wrapped - the platform threads are used otherwise
+      assertThat( executor instanceof ValidatorExecutors.BoundedExecutorService ).isEqualTo( ValidatorExecutors.isVirtualThreadsSupported() );
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testBackPressure() throws Exception {
+    final CountDownLatch blocked = new CountDownLatch( 1 );
+    ExecutorService executor = ValidatorExecutors.createPlatformThreadExecutor( 1 );
+    try {
+      executor.execute( new Runnable() {
+        @Override
+        public void run() {
+          try {
+            blocked.await();
+          } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      } );
+
+      //Fills the queue - the next task is run within the calling thread
+      final List<Thread> threads = Collections.synchronizedList( new ArrayList<Thread>() );
+      for ( int i = 0; i < ValidatorExecutors.QUEUED_TASKS_PER_THREAD + 1; i++ ) {
+        executor.execute( new Runnable() {
+          @Override
+          public void run() {
+            threads.add( Thread.currentThread() );
+          }
+        } );
+      }
+      assertThat( threads ).containsOnly( Thread.currentThread() );
+
+      blocked.countDown();
+    } finally {
+      executor.shutdown();
+    }
+    assertThat( executor.awaitTermination( 10, TimeUnit.SECONDS ) ).isTrue();
+
+    try {
+      executor.execute( new Runnable() {
+        @Override
+        public void run() {
+        }
+      } );
+      fail( "Where is the Exception" );
+    } catch ( RejectedExecutionException ignore ) {
+    }
+  }
+
+  @Test
+  public void testScanWithBoundedExecutors() throws Exception {
+    File root = tmp.newFolder( "root" );
+    for ( int i = 0; i < 50; i++ ) {
+      for ( int j = 0; j < 10; j++ ) {
+        assertThat( new File( root, "p" + i + "/q" + j ).mkdirs() ).isTrue();
+      }
+    }
+
+    for ( boolean virtualThreads : new boolean[]{false, true} ) {
+      ExecutorService executor = ValidatorExecutors.create( 2, virtualThreads );
+      try {
+        final AtomicInteger directories = new AtomicInteger();
+        new SourceTreeScanner( executor ).scan( root, new SourceTreeScanner.DirectoryHandler() {
+          @Override
+          public List<String> handle( File directory, String relativeDirectory ) {
+            directories.incrementAndGet();
+            String[] children = directory.list();
+            return children == null ? Collections.<String>emptyList() : Arrays.asList( children );
+          }
+        } );
+        assertThat( directories.get() ).isEqualTo( 1 + 50 + 500 );
+      } finally {
+        executor.shutdownNow();
+      }
+    }
+  }
+}
@@ -100,6 +100,32 @@ public class ValidatorTest {
     }
   }
 
+  @Test
+  public void testValidationResult() throws Exception {
+    Validator validator = new Validator( "com.cedarsoft.mygroup", ImmutableSet.<String>of() );
+
+    assertThat( validator.validate( "com/cedarsoft/mygroup/A.java" ) ).isSameAs( ValidationResult.VALID );
+
+    ValidationResult failure = validator.validate( "com/cedarsoft/mygroup2/A.java" );
+    assertThat( failure.isValid() ).isFalse();
+    assertThat( failure.getRelativePath() ).isEqualTo( "com/cedarsoft/mygroup2/A.java" );
+    assertThat( failure.getFailingIndex() ).isEqualTo( 2 );
+    assertThat( failure.getReasonCode() ).isEqualTo( ValidationResult.ReasonCode.UNEXPECTED_PART );
+    assertThat( failure.getMessage() ).isEqualTo( "Invalid path <com/cedarsoft/mygroup2/A.java>. Failed at <com/cedarsoft/mygroup2>: Expected <mygroup>." );
+    assertThat( failure.toException() ).hasMessage( failure.getMessage() );
+
+    ValidationResult tooShort = validator.validate( "com/cedarsoft" );
+    assertThat( tooShort.getReasonCode() ).isEqualTo( ValidationResult.ReasonCode.TOO_SHORT );
+    assertThat( tooShort.getFailingIndex() ).isEqualTo( -1 );
+    try {
+      validator.isValid( "com/cedarsoft" );
+      fail( "Where is the Exception" );
+    } catch ( ValidationFailedException e ) {
+      assertThat( e ).hasMessage( tooShort.getMessage() );
+      assertThat( e.getReason() ).isEqualTo( tooShort.getReason() );
+    }
+  }
+
   @Test
   public void testSplitterEmpty() throws Exception {
     Splitter splitter = Splitter.on( File.separator ).omitEmptyStrings();
@@ -0,0 +1,115 @@
+package com.cedarsoft.osgi.validator;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+/**
+ * @author Johannes Schneider (<a href="mailto:js@cedarsoft.com">js@cedarsoft.com</a>)
+ */
+public class ViolationReportTest {
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void testListedBounded() throws Exception {
+    ViolationReport report = new ViolationReport( 3 );
+    File sourceRoot = new File( "src" );
+    for ( int i = 9; i >= 0; i-- ) {
+      report.violation( sourceRoot, "com/other/A" + i + ".java", -1, "Too short" );
+    }
+
+    assertThat( report.getViolationCount() ).isEqualTo( 10 );
+    assertThat( report.getListed().keySet() ).containsOnly( "com/other/A0.java", "com/other/A1.java", "com/other/A2.java" );
+    assertThat( report.getListed().get( "com/other/A0.java" ) ).isEqualTo( "Invalid path <com/other/A0.java>: Too short" );
+  }
+
+  @Test
+  public void testNothingListed() throws Exception {
+    ViolationReport report = new ViolationReport( 0 );
+    report.violation( new File( "src" ), "A.java", -1, "Too short" );
+    assertThat( report.getViolationCount() ).isEqualTo( 1 );
+    assertThat( report.getListed() ).isEmpty();
+  }
+
+  @Test
+  public void testPrefix() throws Exception {
+    ViolationReport report = new ViolationReport( -1 );
+    report.forPrefix( "module" ).violation( new File( "src" ), "A.java", -1, "Too short" );
+    assertThat( report.getListed().keySet() ).containsOnly( "module: A.java" );
+    assertThat( report.getListed().get( "module: A.java" ) ).isEqualTo( "Invalid path <A.java>: Too short" );
+  }
+
+  @Test
+  public void testMaxViolations() throws Exception {
+    final int[] called = new int[1];
+
+    ViolationReport report = new ViolationReport( 10 );
+    report.setMaxViolations( 2, new Runnable() {
+      @Override
+      public void run() {
+        called[0]++;
+      }
+    } );
+
+    for ( int i = 0; i < 5; i++ ) {
+      report.violation( new File( "src" ), "A" + i + ".java", -1, "Too short" );
+      assertThat( report.isTruncated() ).isEqualTo( i >= 1 );
+    }
+
+    assertThat( called[0] ).isEqualTo( 1 );
+    assertThat( report.getViolationCount() ).isEqualTo( 2 );
+    assertThat( report.getListed().keySet() ).containsOnly( "A0.java", "A1.java" );
+  }
+
+  @Test
+  public void testFiles() throws Exception {
+    File jsonFile = new File( tmp.getRoot(), "report/violations.json" );
+    File junitFile = new File( tmp.getRoot(), "report/TEST-validate.xml" );
+
+    ViolationReport report = new ViolationReport( 1, jsonFile, junitFile );
+    report.violation( new File( "src" ), "A.java", -1, "Expected <\"a\"> & more" );
+    report.violation( new File( "src" ), "B.java", -1, "Too short" );
+    report.close();
+
+    assertThat( Files.toString( jsonFile, Charsets.UTF_8 ) ).isEqualTo( "{\n" +
+                                                                          "  \"violations\": [\n" +
+                                                                          "    {\"file\": \"A.java\", \"sourceRoot\": \"src\", \"message\": \"Invalid path <A.java>: Expected <\\\"a\\\"> & more\"},\n" +
+                                                                          "    {\"file\": \"B.java\", \"sourceRoot\": \"src\", \"message\": \"Invalid path <B.java>: Too short\"}\n" +
+                                                                          "  ],\n" +
+                                                                          "  \"violationCount\": 2,\n" +
+                                                                          "  \"truncated\": false\n" +
+                                                                          "}\n" );
+
+    assertThat( Files.toString( junitFile, Charsets.UTF_8 ) ).isEqualTo( "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                                                                           "<testsuite name=\"osgi-validator\" tests=\"2\" failures=\"2\" errors=\"0\" skipped=\"0\">\n" +
+                                                                           "  <properties>\n" +
+                                                                           "    <property name=\"truncated\" value=\"false\"/>\n" +
+                                                                           "  </properties>\n" +
+                                                                           "  <testcase classname=\"src\" name=\"A.java\">\n" +
+                                                                           "    <failure type=\"com.cedarsoft.osgi.validator.ValidationFailedException\" message=\"Invalid path &lt;A.java&gt;: Expected &lt;&quot;a&quot;&gt; &amp; more\"/>\n" +
+                                                                           "  </testcase>\n" +
+                                                                           "  <testcase classname=\"src\" name=\"B.java\">\n" +
+                                                                           "    <failure type=\"com.cedarsoft.osgi.validator.ValidationFailedException\" message=\"Invalid path &lt;B.java&gt;: Too short\"/>\n" +
+                                                                           "  </testcase>\n" +
+                                                                           "</testsuite>\n" );
+    assertThat( new File( tmp.getRoot(), "report/TEST-validate.xml.part" ).exists() ).isFalse();
+    assertThat( report.getListed().keySet() ).containsOnly( "A.java" );
+  }
+
+  @Test
+  public void testEmptyFiles() throws Exception {
+    File jsonFile = tmp.newFile( "violations.json" );
+    File junitFile = tmp.newFile( "TEST-validate.xml" );
+
+    new ViolationReport( 10, jsonFile, junitFile ).close();
+
+    assertThat( Files.toString( jsonFile, Charsets.UTF_8 ) ).isEqualTo( "{\n  \"violations\": [],\n  \"violationCount\": 0,\n  \"truncated\": false\n}\n" );
+    assertThat( Files.toString( junitFile, Charsets.UTF_8 ) ).contains( "tests=\"0\"" );
+  }
+}